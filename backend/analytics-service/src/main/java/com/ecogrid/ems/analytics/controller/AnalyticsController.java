@@ -129,20 +129,32 @@ public class AnalyticsController {
     }
 
     /**
-     * Get all reports with pagination
+     * Get all reports with pagination. Passing after (empty for the first page) returns newest-first cursor
+     * pages instead, which stay fast at any depth; their total is only counted when includeTotal is set.
      */
     @GetMapping("/reports")
     public ResponseEntity<?> getAllReports(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDirection) {
+            @RequestParam(defaultValue = "desc") String sortDirection,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         try {
+            if (after != null) {
+                if (!sortBy.equals("createdAt") || !sortDirection.equalsIgnoreCase("desc")) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "Cursor pagination of reports only supports createdAt desc"));
+                }
+                return ResponseEntity.ok(analyticsService.getReportsAfter(after, size, includeTotal));
+            }
             Pageable pageable = PageRequest.of(page, size);
             Page<ReportResponse> reports = analyticsService.getAllReports(pageable, sortBy, sortDirection);
             logger.info("Retrieved {} reports (page {} of {})", reports.getNumberOfElements(),
                     page + 1, reports.getTotalPages());
             return ResponseEntity.ok(reports);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Failed to retrieve reports", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
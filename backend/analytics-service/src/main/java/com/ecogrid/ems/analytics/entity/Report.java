@@ -16,7 +16,9 @@ import java.util.Map;
     @Index(name = "idx_report_type", columnList = "reportType"),
     @Index(name = "idx_report_status", columnList = "status"),
     @Index(name = "idx_report_created", columnList = "createdAt"),
-    @Index(name = "idx_report_site", columnList = "siteId")
+    @Index(name = "idx_report_site", columnList = "siteId"),
+    // Keyset pagination: newest first with id as tie-breaker
+    @Index(name = "idx_report_created_id", columnList = "createdAt, id")
 })
 @EntityListeners(AuditingEntityListener.class)
 public class Report {
@@ -60,6 +60,22 @@ public interface ReportRepository extends JpaRepository<Report, Long> {
     @Query("SELECT r FROM Report r WHERE r.scheduledFrequency != 'ONCE' AND r.status = 'COMPLETED'")
     List<Report> findScheduledReports();
 
+    /**
+     * First keyset page of reports, newest first
+     */
+    @Query("SELECT r FROM Report r ORDER BY r.createdAt DESC, r.id DESC")
+    List<Report> findPage(Pageable pageable);
+
+    /**
+     * Keyset page of reports, newest first, after (afterCreatedAt, afterId)
+     */
+    @Query("SELECT r FROM Report r WHERE " +
+           "r.createdAt <= :afterCreatedAt AND (r.createdAt < :afterCreatedAt OR r.id < :afterId) " +
+           "ORDER BY r.createdAt DESC, r.id DESC")
+    List<Report> findPageAfter(@Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                               @Param("afterId") long afterId,
+                               Pageable pageable);
+
     /**
      * Count reports by status
      */
@@ -5,16 +5,20 @@ import com.ecogrid.ems.analytics.dto.ReportRequest;
 import com.ecogrid.ems.analytics.dto.ReportResponse;
 import com.ecogrid.ems.analytics.entity.Report;
 import com.ecogrid.ems.analytics.repository.ReportRepository;
+import com.ecogrid.ems.shared.dto.pagination.CursorPage;
+import com.ecogrid.ems.shared.dto.pagination.PageCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -193,6 +197,32 @@ public class AnalyticsService {
         return new PageImpl<>(reportResponses, pageable, reportPage.getTotalElements());
     }
 
+    /**
+     * Get the page of reports after a cursor, newest first (the first page when after is blank)
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<ReportResponse> getReportsAfter(String after, int size, boolean includeTotal) {
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<Report> reports;
+        if (after == null || after.isBlank()) {
+            reports = reportRepository.findPage(page);
+        } else {
+            PageCursor cursor = PageCursor.decode(after).requireSort("createdAt", true);
+            LocalDateTime afterCreatedAt;
+            try {
+                afterCreatedAt = LocalDateTime.parse(cursor.sortValue());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid page cursor", e);
+            }
+            reports = reportRepository.findPageAfter(afterCreatedAt, cursor.id(), page);
+        }
+        Long total = includeTotal ? reportRepository.count() : null;
+        return CursorPage.of(reports, size,
+                report -> new PageCursor("createdAt", true, report.getCreatedAt().toString(), report.getId()),
+                this::mapToReportResponse, total);
+    }
+
     /**
      * Get report by ID
      */
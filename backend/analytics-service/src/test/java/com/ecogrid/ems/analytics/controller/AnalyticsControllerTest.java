@@ -4,6 +4,7 @@ import com.ecogrid.ems.analytics.dto.DashboardResponse;
 import com.ecogrid.ems.analytics.dto.ReportRequest;
 import com.ecogrid.ems.analytics.dto.ReportResponse;
 import com.ecogrid.ems.analytics.service.AnalyticsService;
+import com.ecogrid.ems.shared.dto.pagination.CursorPage;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -293,6 +294,36 @@ public class AnalyticsControllerTest {
         verify(analyticsService).getAllReports(any(), eq("createdAt"), eq("desc"));
     }
 
+    @Test
+    void getAllReports_WithAfter_ShouldReturnCursorPage() throws Exception {
+        // Arrange
+        CursorPage<ReportResponse> cursorPage = new CursorPage<>(List.of(reportResponse), 10, false, null, 1L);
+        when(analyticsService.getReportsAfter("", 10, true)).thenReturn(cursorPage);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/analytics/reports")
+                        .param("after", "")
+                        .param("includeTotal", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(1))
+                .andExpect(jsonPath("$.hasNext").value(false))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist())
+                .andExpect(jsonPath("$.totalElements").value(1));
+
+        verify(analyticsService, never()).getAllReports(any(), any(), any());
+    }
+
+    @Test
+    void getAllReports_WithAfterAndOtherSort_ShouldReturnBadRequest() throws Exception {
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/analytics/reports")
+                        .param("after", "")
+                        .param("sortBy", "name"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(analyticsService);
+    }
+
     @Test
     void getReportById_ExistingReport_ShouldReturnReport() throws Exception {
         // Arrange
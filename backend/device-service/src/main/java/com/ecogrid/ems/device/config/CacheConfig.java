@@ -1,11 +1,22 @@
 package com.ecogrid.ems.device.config;
 
+import com.ecogrid.ems.device.service.DeviceTelemetryCacheService.CachedTelemetryData;
+import com.ecogrid.ems.device.service.OffHeapTelemetryStore;
+import com.ecogrid.ems.device.service.TelemetryTimestampRange;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
 /**
  * Configuration for caching in the device service
  * Enables caching for telemetry data and device status
@@ -14,16 +25,85 @@ import org.springframework.context.annotation.Configuration;
 @EnableCaching
 public class CacheConfig {
 
+    public static final String DEVICE_TELEMETRY_CACHE = "deviceTelemetry";
+    public static final String DEVICE_STATUS_CACHE = "deviceStatus";
+    public static final String SITE_OVERVIEW_CACHE = "siteOverview";
+
+    @Value("${app.cache.device-telemetry.max-size:1000000}")
+    private long deviceTelemetryMaxSize;
+
+    @Value("${app.cache.device-telemetry.expire-after-write:24h}")
+    private Duration deviceTelemetryExpireAfterWrite;
+
+    @Value("${app.cache.device-status.max-size:100000}")
+    private long deviceStatusMaxSize;
+
+    @Value("${app.cache.device-status.expire-after-write:10m}")
+    private Duration deviceStatusExpireAfterWrite;
+
+    @Value("${app.cache.site-overview.max-size:10000}")
+    private long siteOverviewMaxSize;
+
+    @Value("${app.cache.site-overview.expire-after-write:30s}")
+    private Duration siteOverviewExpireAfterWrite;
+
     /**
-     * Configure cache manager for in-memory caching
-     * In production, this should be replaced with Redis or another distributed cache
+     * Optional off-heap latest-value store for devices with a fixed telemetry schema.
+     * Memory-mapped onto app.telemetry.offheap.file when set, so it survives restarts.
+     * It takes max-devices times slot-bytes; samples too large for a slot are kept on the heap.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "app.telemetry.offheap", name = "enabled", havingValue = "true")
+    public OffHeapTelemetryStore offHeapTelemetryStore(
+            @Value("${app.telemetry.offheap.file:}") String file,
+            @Value("${app.telemetry.offheap.max-devices:1048576}") int maxDevices,
+            @Value("${app.telemetry.offheap.slot-bytes:512}") int slotBytes) throws IOException {
+        return file.isBlank()
+            ? OffHeapTelemetryStore.inMemory(maxDevices, slotBytes)
+            : OffHeapTelemetryStore.mapped(Path.of(file), maxDevices, slotBytes);
+    }
+
+    /**
+     * Tracks the oldest/newest cached telemetry timestamp as entries come and go
+     */
+    @Bean
+    public TelemetryTimestampRange telemetryTimestampRange() {
+        return new TelemetryTimestampRange();
+    }
+
+    /**
+     * Bounded Caffeine caches with statistics enabled; the caches are registered up front so
+     * actuator binds cache.gets, cache.puts, cache.evictions and cache.size metrics for each of them
      */
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager(
-            "deviceTelemetry",
-            "deviceStatus",
-            "siteOverview"
-        );
+    public CacheManager cacheManager(TelemetryTimestampRange telemetryTimestampRange) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+
+        cacheManager.registerCustomCache(DEVICE_TELEMETRY_CACHE, Caffeine.newBuilder()
+            .maximumSize(deviceTelemetryMaxSize)
+            .expireAfterWrite(deviceTelemetryExpireAfterWrite)
+            .executor(Runnable::run)
+            .removalListener((Object key, Object value, RemovalCause cause) -> {
+                if (value instanceof CachedTelemetryData data) {
+                    telemetryTimestampRange.removed(data.getTimestamp());
+                }
+            })
+            .recordStats()
+            .build());
+
+        cacheManager.registerCustomCache(DEVICE_STATUS_CACHE, Caffeine.newBuilder()
+            .maximumSize(deviceStatusMaxSize)
+            .expireAfterWrite(deviceStatusExpireAfterWrite)
+            .recordStats()
+            .build());
+
+        cacheManager.registerCustomCache(SITE_OVERVIEW_CACHE, Caffeine.newBuilder()
+            .maximumSize(siteOverviewMaxSize)
+            .expireAfterWrite(siteOverviewExpireAfterWrite)
+            .recordStats()
+            .build());
+
+        return cacheManager;
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,6 @@
 package com.ecogrid.ems.device.config;
 
-import com.ecogrid.ems.device.service.DeviceTelemetryProcessor;
+import com.ecogrid.ems.device.service.TelemetryIngestionService;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.MqttCallback;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
@@ -17,11 +17,11 @@ public class DeviceMqttCallback implements MqttCallback {
 
     private static final Logger logger = LoggerFactory.getLogger(DeviceMqttCallback.class);
 
-    private final DeviceTelemetryProcessor telemetryProcessor;
+    private final TelemetryIngestionService telemetryIngestionService;
 
     @Autowired
-    public DeviceMqttCallback(DeviceTelemetryProcessor telemetryProcessor) {
-        this.telemetryProcessor = telemetryProcessor;
+    public DeviceMqttCallback(TelemetryIngestionService telemetryIngestionService) {
+        this.telemetryIngestionService = telemetryIngestionService;
     }
 
     @Override
@@ -47,12 +47,12 @@ public class DeviceMqttCallback implements MqttCallback {
                 String deviceId = topicParts[3];    // 001, 002, etc.
                 
                 logger.info("📊 Processing device telemetry - Site: {}, Type: {}, Device: {}", siteId, deviceType, deviceId);
-                telemetryProcessor.processTelemetryMessage(topic, payload);
+                telemetryIngestionService.ingest(topic, payload);
                 logger.info("✅ Telemetry processing completed for topic: {}", topic);
             } else if (topic.contains("/telemetry/")) {
                 // Legacy telemetry pattern support
                 logger.info("📊 Processing legacy telemetry message for topic: {}", topic);
-                telemetryProcessor.processTelemetryMessage(topic, payload);
+                telemetryIngestionService.ingest(topic, payload);
                 logger.info("✅ Legacy telemetry processing completed for topic: {}", topic);
             } else if (topic.contains("/alerts/")) {
                 // Handle alert messages
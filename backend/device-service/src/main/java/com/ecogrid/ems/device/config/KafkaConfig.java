@@ -1,15 +1,27 @@
 package com.ecogrid.ems.device.config;
 
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.util.backoff.FixedBackOff;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,6 +34,10 @@ public class KafkaConfig {
     @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
     private String bootstrapServers;
 
+    // Bounds how long a send blocks the calling thread when no broker is reachable
+    @Value("${spring.kafka.producer.properties.max.block.ms:5000}")
+    private long maxBlockMs;
+
     @Bean
     public ProducerFactory<String, Object> producerFactory() {
         Map<String, Object> configProps = new HashMap<>();
@@ -32,6 +48,7 @@ public class KafkaConfig {
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
         configProps.put(ProducerConfig.RETRY_BACKOFF_MS_CONFIG, 1000);
         configProps.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, 30000);
+        configProps.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMs);
         
         return new DefaultKafkaProducerFactory<>(configProps);
     }
@@ -40,4 +57,38 @@ public class KafkaConfig {
     public KafkaTemplate<String, Object> kafkaTemplate() {
         return new KafkaTemplate<>(producerFactory());
     }
+
+    /**
+     * Raw telemetry topic of the Kafka-first ingestion mode, with a partition per consumer it may scale to
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.telemetry.ingestion", name = "mode", havingValue = "kafka")
+    public NewTopic rawTelemetryTopic(@Value("${app.telemetry.ingestion.raw-topic:telemetry-raw}") String rawTopic,
+                                      @Value("${app.telemetry.ingestion.partitions:12}") int partitions) {
+        return TopicBuilder.name(rawTopic).partitions(partitions).build();
+    }
+
+    /**
+     * Batch listener containers for the raw telemetry topic: records are read as bytes, up to
+     * max-poll-records at a time, and a failed batch is retried after retry-interval until it is stored.
+     * Its consumer factory is not a bean, so the JSON consumers keep Spring Boot's.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "app.telemetry.ingestion", name = "mode", havingValue = "kafka")
+    public ConcurrentKafkaListenerContainerFactory<String, byte[]> rawTelemetryListenerContainerFactory(
+            KafkaProperties kafkaProperties,
+            @Value("${app.telemetry.ingestion.consumer.max-poll-records:500}") int maxPollRecords,
+            @Value("${app.telemetry.ingestion.consumer.retry-interval:5s}") Duration retryInterval) {
+        Map<String, Object> consumerProps = kafkaProperties.buildConsumerProperties(null);
+        consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        consumerProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+
+        ConcurrentKafkaListenerContainerFactory<String, byte[]> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(consumerProps));
+        factory.setBatchListener(true);
+        factory.setCommonErrorHandler(
+            new DefaultErrorHandler(new FixedBackOff(retryInterval.toMillis(), FixedBackOff.UNLIMITED_ATTEMPTS)));
+        return factory;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.ecogrid.ems.device.config;
+
+import com.ecogrid.ems.device.service.RedisTelemetryStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Redis wiring for the shared latest-telemetry tier.
+ * Connection settings come from spring.data.redis; the tier is off unless app.telemetry.redis.enabled is true.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.telemetry.redis", name = "enabled", havingValue = "true")
+public class RedisConfig {
+
+    /**
+     * Subscribes this replica to near-cache invalidations from the other replicas
+     */
+    @Bean
+    public RedisMessageListenerContainer telemetryInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory, RedisTelemetryStore redisTelemetryStore) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(redisTelemetryStore, new ChannelTopic(RedisTelemetryStore.INVALIDATION_CHANNEL));
+        return container;
+    }
+}
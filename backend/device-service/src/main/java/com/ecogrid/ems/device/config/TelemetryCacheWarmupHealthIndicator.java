@@ -0,0 +1,33 @@
+package com.ecogrid.ems.device.config;
+
+import com.ecogrid.ems.device.service.TelemetryCacheWarmupService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports OUT_OF_SERVICE until the latest-value telemetry cache has been warmed.
+ * Part of the readiness group, so load balancers hold traffic back during warm-up.
+ */
+@Component("telemetryCacheWarmup")
+public class TelemetryCacheWarmupHealthIndicator implements HealthIndicator {
+
+    private final TelemetryCacheWarmupService warmupService;
+
+    public TelemetryCacheWarmupHealthIndicator(TelemetryCacheWarmupService warmupService) {
+        this.warmupService = warmupService;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = warmupService.isWarm() ? Health.up() : Health.outOfService();
+        builder.withDetail("state", warmupService.getState())
+            .withDetail("rowsRead", warmupService.getRowsRead())
+            .withDetail("devicesWarmed", warmupService.getDevicesWarmed())
+            .withDetail("elapsedMs", warmupService.getElapsed().toMillis());
+        if (warmupService.getFailure() != null) {
+            builder.withDetail("failure", warmupService.getFailure());
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,41 @@
+package com.ecogrid.ems.device.config;
+
+import com.ecogrid.ems.device.service.TelemetryCompressor;
+import com.ecogrid.ems.device.service.TelemetryIngestionService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Reports the telemetry circuit breaker, how much telemetry is waiting in the spool and how much the
+ * compressor has kept out of storage.
+ * Always UP: spooling is how the service rides out a database or Kafka outage, and those report their own health.
+ */
+@Component("telemetryIngestion")
+public class TelemetryIngestionHealthIndicator implements HealthIndicator {
+
+    private final TelemetryIngestionService ingestionService;
+    private final TelemetryCompressor compressor;
+
+    public TelemetryIngestionHealthIndicator(TelemetryIngestionService ingestionService, TelemetryCompressor compressor) {
+        this.ingestionService = ingestionService;
+        this.compressor = compressor;
+    }
+
+    @Override
+    public Health health() {
+        return Health.up()
+            .withDetail("enabled", ingestionService.isSpoolEnabled())
+            .withDetail("breaker", ingestionService.getBreakerState())
+            .withDetail("spooledMessages", ingestionService.getSpooledMessages())
+            .withDetail("droppedMessages", ingestionService.getDroppedMessages())
+            .withDetail("sizeOnDiskBytes", ingestionService.getSpoolSizeOnDisk())
+            .withDetail("compression", Map.of(
+                "enabled", compressor.isEnabled(),
+                "storedSamples", compressor.getStoredSamples(),
+                "suppressedSamples", compressor.getSuppressedSamples()))
+            .build();
+    }
+}
@@ -0,0 +1,18 @@
+package com.ecogrid.ems.device.config;
+
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Makes the partitioned device_telemetry schema exist before Hibernate's schema update runs,
+ * so Hibernate never creates an unpartitioned table of its own
+ */
+@Configuration
+public class TelemetryPartitionConfig {
+
+    @Bean
+    public static EntityManagerFactoryDependsOnPostProcessor entityManagerFactoryDependsOnTelemetryPartitions() {
+        return new EntityManagerFactoryDependsOnPostProcessor("telemetryPartitionService");
+    }
+}
@@ -0,0 +1,27 @@
+package com.ecogrid.ems.device.config;
+
+import com.ecogrid.ems.device.service.TelemetrySpool;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Disk spool that holds MQTT telemetry while the database or Kafka is unavailable
+ */
+@Configuration
+public class TelemetrySpoolConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "app.telemetry.spool", name = "enabled", havingValue = "true")
+    public TelemetrySpool telemetrySpool(
+            @Value("${app.telemetry.spool.directory:./data/telemetry-spool}") String directory,
+            @Value("${app.telemetry.spool.segment-size:64MB}") DataSize segmentSize,
+            @Value("${app.telemetry.spool.max-size:1GB}") DataSize maxSize) throws IOException {
+        return TelemetrySpool.open(Path.of(directory), Math.toIntExact(segmentSize.toBytes()), maxSize.toBytes());
+    }
+}
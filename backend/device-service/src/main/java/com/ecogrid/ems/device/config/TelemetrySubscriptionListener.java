@@ -0,0 +1,71 @@
+package com.ecogrid.ems.device.config;
+
+import com.ecogrid.ems.device.service.TelemetryBackfillService;
+import com.ecogrid.ems.device.service.TelemetrySubscriptionRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the telemetry subscription registry in sync with STOMP session events
+ * and sends new subscribers their history backfill
+ */
+@Component
+public class TelemetrySubscriptionListener {
+
+    private final TelemetrySubscriptionRegistry subscriptionRegistry;
+    private final TelemetryBackfillService backfillService;
+
+    public TelemetrySubscriptionListener(TelemetrySubscriptionRegistry subscriptionRegistry,
+                                         TelemetryBackfillService backfillService) {
+        this.subscriptionRegistry = subscriptionRegistry;
+        this.backfillService = backfillService;
+    }
+
+    @EventListener
+    public void handleSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+
+        Map<String, String> filterHeaders = new HashMap<>();
+        for (String name : new String[] {
+                TelemetrySubscriptionRegistry.DEVICE_IDS_HEADER,
+                TelemetrySubscriptionRegistry.DEVICE_TYPES_HEADER,
+                TelemetrySubscriptionRegistry.FIELDS_HEADER,
+                TelemetrySubscriptionRegistry.MAX_RATE_HEADER}) {
+            String value = headerAccessor.getFirstNativeHeader(name);
+            if (value != null) {
+                filterHeaders.put(name, value);
+            }
+        }
+
+        subscriptionRegistry.register(
+            headerAccessor.getSessionId(),
+            headerAccessor.getSubscriptionId(),
+            headerAccessor.getDestination(),
+            filterHeaders
+        );
+
+        backfillService.sendBackfill(
+            headerAccessor.getSessionId(),
+            headerAccessor.getSubscriptionId(),
+            headerAccessor.getDestination()
+        );
+    }
+
+    @EventListener
+    public void handleUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headerAccessor = StompHeaderAccessor.wrap(event.getMessage());
+        subscriptionRegistry.unregister(headerAccessor.getSessionId(), headerAccessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        subscriptionRegistry.unregisterSession(event.getSessionId());
+    }
+}
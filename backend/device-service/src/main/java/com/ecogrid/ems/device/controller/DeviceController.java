@@ -1,10 +1,15 @@
 package com.ecogrid.ems.device.controller;
 
+import com.ecogrid.ems.device.dto.BulkProvisioningReport;
 import com.ecogrid.ems.device.dto.DeviceRequest;
 import com.ecogrid.ems.device.dto.DeviceResponse;
+import com.ecogrid.ems.device.dto.TelemetryImportReport;
 import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.service.DeviceProvisioningService;
 import com.ecogrid.ems.device.service.DeviceService;
 import com.ecogrid.ems.device.service.MqttConnectionService;
+import com.ecogrid.ems.device.service.TelemetryImportService;
+import com.ecogrid.ems.device.service.TelemetryRangeService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,10 +17,15 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -29,12 +39,23 @@ public class DeviceController {
 
     private static final Logger logger = LoggerFactory.getLogger(DeviceController.class);
 
+    private static final int MAX_SEARCH_LIMIT = 100;
+
     private final DeviceService deviceService;
     private final MqttConnectionService mqttConnectionService;
+    private final TelemetryRangeService telemetryRangeService;
+    private final DeviceProvisioningService provisioningService;
+    private final TelemetryImportService telemetryImportService;
 
-    public DeviceController(DeviceService deviceService, MqttConnectionService mqttConnectionService) {
+    public DeviceController(DeviceService deviceService, MqttConnectionService mqttConnectionService,
+                            TelemetryRangeService telemetryRangeService,
+                            DeviceProvisioningService provisioningService,
+                            TelemetryImportService telemetryImportService) {
         this.deviceService = deviceService;
         this.mqttConnectionService = mqttConnectionService;
+        this.telemetryRangeService = telemetryRangeService;
+        this.provisioningService = provisioningService;
+        this.telemetryImportService = telemetryImportService;
     }
 
     /**
@@ -57,6 +78,54 @@ public class DeviceController {
         }
     }
 
+    /**
+     * Create devices in bulk from a CSV (header of request property names) or NDJSON body. Invalid rows
+     * are skipped and reported; errorsOnly leaves the created rows out of the report.
+     */
+    @PostMapping(value = "/bulk", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<?> createDevicesInBulk(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            @RequestParam(defaultValue = "false") boolean errorsOnly,
+            InputStream body) {
+        try {
+            DeviceProvisioningService.Format format = contentType.isCompatibleWith(
+                    MediaType.parseMediaType(DeviceProvisioningService.Format.CSV.getContentType()))
+                    ? DeviceProvisioningService.Format.CSV : DeviceProvisioningService.Format.NDJSON;
+            BulkProvisioningReport report = provisioningService.provision(body, format, errorsOnly);
+            logger.info("Bulk provisioning created {} devices, rejected {}", report.created(), report.rejected());
+            return ResponseEntity.ok(report);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Bulk provisioning failed: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Bulk provisioning failed", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to provision devices"));
+        }
+    }
+
+    /**
+     * Search-as-you-type over serial numbers and names: prefix matches first, then names and serial numbers
+     * containing the query. A misspelt query that matches nothing is corrected and the correction returned.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchDevices(@RequestParam String q,
+                                           @RequestParam(defaultValue = "20") int limit) {
+        try {
+            if (limit < 1) {
+                throw new IllegalArgumentException("limit must be positive");
+            }
+            return ResponseEntity.ok(deviceService.searchDevices(q, Math.min(limit, MAX_SEARCH_LIMIT)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Failed to search devices for '{}'", q, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to search devices"));
+        }
+    }
+
     /**
      * Get device by ID
      */
@@ -96,7 +165,8 @@ public class DeviceController {
     }
 
     /**
-     * Get all devices with pagination
+     * Get all devices with pagination. Passing after (empty for the first page) switches from offset pages to
+     * cursor pages, which stay fast at any depth; their total is only counted when includeTotal is set.
      */
     @GetMapping
     public ResponseEntity<?> getAllDevices(
@@ -104,8 +174,16 @@ public class DeviceController {
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         try {
+            if (after != null) {
+                String searchTerm = search != null && !search.trim().isEmpty() ? search.trim() : null;
+                return ResponseEntity.ok(deviceService.getDevicesAfter(searchTerm, sortBy, sortDir.equalsIgnoreCase("desc"),
+                        after, size, includeTotal));
+            }
+
             Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
             Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
 
@@ -125,6 +203,8 @@ public class DeviceController {
                     "hasNext", devicePage.hasNext(),
                     "hasPrevious", devicePage.hasPrevious()
             ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Failed to get devices", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -290,6 +370,67 @@ public class DeviceController {
         }
     }
 
+    /**
+     * Get telemetry history of a device, downsampled to at most maxPoints per field.
+     * Defaults to the last 24 hours and the key fields of the device type.
+     */
+    @GetMapping("/{deviceId}/telemetry")
+    public ResponseEntity<?> getTelemetryRange(
+            @PathVariable Long deviceId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) List<String> fields,
+            @RequestParam(defaultValue = "1000") int maxPoints) {
+        try {
+            LocalDateTime end = to != null ? to : LocalDateTime.now();
+            LocalDateTime start = from != null ? from : end.minusHours(24);
+            Optional<TelemetryRangeService.TelemetryRange> range =
+                    telemetryRangeService.getTelemetryRange(deviceId, start, end, fields, maxPoints);
+            if (range.isPresent()) {
+                return ResponseEntity.ok(range.get());
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Failed to get telemetry range for device: {}", deviceId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to retrieve telemetry"));
+        }
+    }
+
+    /**
+     * Import telemetry a device buffered while offline, as NDJSON or a JSON array of samples with ISO
+     * timestamps. The samples are stored as history without live aggregation, alerts or WebSocket updates;
+     * samples already stored are skipped, so a failed upload can be retried as a whole.
+     */
+    @PostMapping(value = "/{serialNumber}/telemetry:batch", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> importTelemetry(
+            @PathVariable String serialNumber,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            InputStream body) {
+        try {
+            TelemetryImportService.Format format = contentType.isCompatibleWith(MediaType.APPLICATION_JSON)
+                    ? TelemetryImportService.Format.JSON : TelemetryImportService.Format.NDJSON;
+            Optional<TelemetryImportReport> report = telemetryImportService.importTelemetry(serialNumber, body, format);
+            if (report.isPresent()) {
+                return ResponseEntity.ok(report.get());
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Telemetry import for device {} failed: {}", serialNumber, e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Telemetry import failed for device: {}", serialNumber, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to import telemetry"));
+        }
+    }
+
     /**
      * Get device statistics
      */
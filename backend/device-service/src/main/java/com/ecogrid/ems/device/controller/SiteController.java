@@ -1,11 +1,17 @@
 package com.ecogrid.ems.device.controller;
 
+import com.ecogrid.ems.device.config.AsyncRequestTimeoutConfig;
 import com.ecogrid.ems.device.dto.SiteRequest;
 import com.ecogrid.ems.device.dto.SiteResponse;
-import com.ecogrid.ems.device.dto.site.SiteOverviewDTO;
 import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.service.SiteDeltaStreamService;
 import com.ecogrid.ems.device.service.SiteService;
-import com.ecogrid.ems.device.service.SiteOverviewService;
+import com.ecogrid.ems.device.service.SiteSpatialIndexService;
+import com.ecogrid.ems.device.service.SiteOverviewSnapshotService;
+import com.ecogrid.ems.device.service.SiteOverviewSnapshotService.OverviewSnapshot;
+import com.ecogrid.ems.device.service.TelemetryExportService;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,10 +19,21 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -31,11 +48,19 @@ public class SiteController {
     private static final Logger logger = LoggerFactory.getLogger(SiteController.class);
 
     private final SiteService siteService;
-    private final SiteOverviewService siteOverviewService;
+    private final SiteOverviewSnapshotService overviewSnapshotService;
+    private final SiteDeltaStreamService deltaStreamService;
+    private final TelemetryExportService telemetryExportService;
+    private final SiteSpatialIndexService spatialIndexService;
 
-    public SiteController(SiteService siteService, SiteOverviewService siteOverviewService) {
+    public SiteController(SiteService siteService, SiteOverviewSnapshotService overviewSnapshotService,
+                          SiteDeltaStreamService deltaStreamService, TelemetryExportService telemetryExportService,
+                          SiteSpatialIndexService spatialIndexService) {
         this.siteService = siteService;
-        this.siteOverviewService = siteOverviewService;
+        this.overviewSnapshotService = overviewSnapshotService;
+        this.deltaStreamService = deltaStreamService;
+        this.telemetryExportService = telemetryExportService;
+        this.spatialIndexService = spatialIndexService;
     }
 
     /**
@@ -78,7 +103,8 @@ public class SiteController {
     }
 
     /**
-     * Get all sites with pagination
+     * Get all sites with pagination. Passing after (empty for the first page) switches from offset pages to
+     * cursor pages, which stay fast at any depth; their total is only counted when includeTotal is set.
      */
     @GetMapping
     public ResponseEntity<?> getAllSites(
@@ -86,8 +112,16 @@ public class SiteController {
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDir,
-            @RequestParam(required = false) String search) {
+            @RequestParam(required = false) String search,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         try {
+            if (after != null) {
+                String searchTerm = search != null && !search.trim().isEmpty() ? search.trim() : null;
+                return ResponseEntity.ok(siteService.getSitesAfter(searchTerm, sortBy, sortDir.equalsIgnoreCase("desc"),
+                        after, size, includeTotal));
+            }
+
             Sort.Direction direction = sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
             Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
 
@@ -107,6 +141,8 @@ public class SiteController {
                     "hasNext", sitePage.hasNext(),
                     "hasPrevious", sitePage.hasPrevious()
             ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             logger.error("Failed to get sites", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -179,20 +215,33 @@ public class SiteController {
     }
 
     /**
-     * Get site overview with all devices and latest telemetry
+     * Get site overview with all devices and latest telemetry.
+     * Served from a pre-serialized snapshot; unchanged polls with If-None-Match get 304.
      */
     @GetMapping("/{siteId}/overview")
-    public ResponseEntity<?> getSiteOverview(@PathVariable Long siteId) {
+    public ResponseEntity<?> getSiteOverview(@PathVariable Long siteId,
+                                             @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         try {
-            Optional<SiteOverviewDTO> overview = siteOverviewService.getSiteOverview(siteId);
-            if (overview.isEmpty()) {
+            Optional<OverviewSnapshot> snapshot = overviewSnapshotService.getSnapshot(siteId);
+            if (snapshot.isEmpty()) {
                 logger.warn("Site not found: {}", siteId);
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(Map.of("error", "Site not found with ID: " + siteId));
             }
-            
-            logger.info("Successfully retrieved site overview for site ID: {}", siteId);
-            return ResponseEntity.ok(overview.get());
+
+            if (snapshot.get().matches(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(snapshot.get().etag())
+                        .cacheControl(CacheControl.noCache())
+                        .build();
+            }
+
+            logger.debug("Serving overview snapshot {} for site ID: {}", snapshot.get().etag(), siteId);
+            return ResponseEntity.ok()
+                    .eTag(snapshot.get().etag())
+                    .cacheControl(CacheControl.noCache())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(snapshot.get().body());
         } catch (Exception e) {
             logger.error("Failed to get site overview for ID: {}", siteId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -200,6 +249,161 @@ public class SiteController {
         }
     }
 
+    /**
+     * Stream site dashboard deltas as Server-Sent Events.
+     * Resumes after Last-Event-ID (header, or lastEventId query parameter for the first connect).
+     */
+    @GetMapping(value = "/{siteId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<String>>> streamSiteDeltas(
+            @PathVariable Long siteId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        try {
+            if (siteService.getSiteById(siteId).isEmpty()) {
+                logger.warn("Site not found for stream: {}", siteId);
+                return ResponseEntity.notFound().build();
+            }
+
+            Long lastEventId = parseLastEventId(lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam);
+            return ResponseEntity.ok()
+                    .header("Cache-Control", "no-cache")
+                    .header("X-Accel-Buffering", "no")
+                    .body(deltaStreamService.stream(siteId, lastEventId));
+        } catch (Exception e) {
+            logger.error("Failed to open site stream for ID: {}", siteId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Export raw telemetry of all devices of a site in [from, to) as CSV or NDJSON, optionally gzipped.
+     * The body is streamed from the database cursor as it is read, for up to app.telemetry.export.timeout.
+     */
+    @GetMapping("/{siteId}/telemetry/export")
+    public ResponseEntity<StreamingResponseBody> exportTelemetry(
+            @PathVariable Long siteId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        try {
+            TelemetryExportService.Format exportFormat;
+            try {
+                exportFormat = TelemetryExportService.Format.valueOf(format.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                return exportError(HttpStatus.BAD_REQUEST, "Unsupported export format: " + format);
+            }
+            telemetryExportService.validateRange(from, to);
+            if (siteService.getSiteById(siteId).isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            DateTimeFormatter fileDate = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+            String filename = "telemetry-site-" + siteId + "-" + from.format(fileDate) + "-" + to.format(fileDate)
+                    + "." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+            StreamingResponseBody body = out -> telemetryExportService.export(siteId, from, to, exportFormat, gzip, out);
+            request.setAttribute(AsyncRequestTimeoutConfig.TIMEOUT_ATTRIBUTE, telemetryExportService.getTimeout());
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            return exportError(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (Exception e) {
+            logger.error("Failed to export telemetry for site: {}", siteId, e);
+            return exportError(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to export telemetry");
+        }
+    }
+
+    /**
+     * {"error": message} body for the streaming export endpoint, which cannot return a Map
+     */
+    private ResponseEntity<StreamingResponseBody> exportError(HttpStatus status, String message) {
+        byte[] json = ("{\"error\":\"" + new String(JsonStringEncoder.getInstance().quoteAsString(message)) + "\"}")
+                .getBytes(StandardCharsets.UTF_8);
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> out.write(json));
+    }
+
+    /**
+     * Get sites inside a bounding box, for the map view; minLng greater than maxLng crosses the antimeridian
+     */
+    @GetMapping("/geo/bbox")
+    public ResponseEntity<?> getSitesInArea(@RequestParam double minLat, @RequestParam double maxLat,
+                                            @RequestParam double minLng, @RequestParam double maxLng) {
+        try {
+            SiteSpatialIndexService.AreaSites area = spatialIndexService.findInArea(minLat, maxLat, minLng, maxLng);
+            return ResponseEntity.ok(Map.of(
+                    "sites", area.sites(),
+                    "total", area.total(),
+                    "truncated", area.total() > area.sites().size()
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Failed to get sites in area", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to retrieve sites in area"));
+        }
+    }
+
+    /**
+     * Get sites within a radius of a point, nearest first
+     */
+    @GetMapping("/geo/radius")
+    public ResponseEntity<?> getSitesWithinRadius(@RequestParam double lat, @RequestParam double lng,
+                                                  @RequestParam double radiusKm,
+                                                  @RequestParam(defaultValue = "100") int limit) {
+        try {
+            return ResponseEntity.ok(spatialIndexService.findWithinRadius(lat, lng, radiusKm, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Failed to get sites within {} km of {},{}", radiusKm, lat, lng, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to retrieve sites within radius"));
+        }
+    }
+
+    /**
+     * Get the k sites nearest to a point, nearest first
+     */
+    @GetMapping("/geo/nearest")
+    public ResponseEntity<?> getNearestSites(@RequestParam double lat, @RequestParam double lng,
+                                             @RequestParam(defaultValue = "10") int k) {
+        try {
+            return ResponseEntity.ok(spatialIndexService.findNearest(lat, lng, k));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Failed to get sites nearest to {},{}", lat, lng, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to retrieve nearest sites"));
+        }
+    }
+
+    /**
+     * Get site clusters (site count and total capacity) per map tile at a zoom level, for zoomed-out map views
+     */
+    @GetMapping("/geo/tiles")
+    public ResponseEntity<?> getSiteTiles(@RequestParam int zoom,
+                                          @RequestParam(defaultValue = "-90") double minLat,
+                                          @RequestParam(defaultValue = "90") double maxLat,
+                                          @RequestParam(defaultValue = "-180") double minLng,
+                                          @RequestParam(defaultValue = "180") double maxLng) {
+        try {
+            return ResponseEntity.ok(spatialIndexService.getTiles(zoom, minLat, maxLat, minLng, maxLng));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Failed to get site tiles at zoom {}", zoom, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to retrieve site tiles"));
+        }
+    }
+
     /**
      * Get site statistics
      */
@@ -226,4 +430,16 @@ public class SiteController {
                 "timestamp", System.currentTimeMillis()
         ));
     }
-}
\ No newline at end of file
+
+    private Long parseLastEventId(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.debug("Ignoring invalid Last-Event-ID: {}", value);
+            return null;
+        }
+    }
+}
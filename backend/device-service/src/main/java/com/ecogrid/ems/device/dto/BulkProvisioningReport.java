@@ -0,0 +1,60 @@
+package com.ecogrid.ems.device.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk device import, with one result per data row of the file
+ */
+public record BulkProvisioningReport(
+        @JsonProperty("totalRows")
+        int totalRows,
+
+        @JsonProperty("created")
+        int created,
+
+        @JsonProperty("rejected")
+        int rejected,
+
+        @JsonProperty("durationMs")
+        long durationMs,
+
+        @JsonProperty("results")
+        List<RowResult> results
+) {
+
+    public enum RowStatus {
+        CREATED, REJECTED
+    }
+
+    /**
+     * Result of one row; line is the line of the file the row starts on
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record RowResult(
+            @JsonProperty("line")
+            long line,
+
+            @JsonProperty("serialNumber")
+            String serialNumber,
+
+            @JsonProperty("status")
+            RowStatus status,
+
+            @JsonProperty("deviceId")
+            Long deviceId,
+
+            @JsonProperty("error")
+            String error
+    ) {
+        public static RowResult created(long line, String serialNumber, Long deviceId) {
+            return new RowResult(line, serialNumber, RowStatus.CREATED, deviceId, null);
+        }
+
+        public static RowResult rejected(long line, String serialNumber, String error) {
+            return new RowResult(line, serialNumber, RowStatus.REJECTED, null, error);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.ecogrid.ems.device.dto;
+
+import com.ecogrid.ems.device.entity.Device;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Columns of a device listing row, with the type and site names joined in the same query
+ */
+public interface DeviceListing {
+
+    Long getId();
+
+    String getSerialNumber();
+
+    String getName();
+
+    String getDescription();
+
+    String getDeviceType();
+
+    String getModel();
+
+    String getManufacturer();
+
+    String getFirmwareVersion();
+
+    Device.DeviceStatus getStatus();
+
+    BigDecimal getRatedPowerKw();
+
+    String getMqttTopic();
+
+    String getIpAddress();
+
+    String getMacAddress();
+
+    LocalDateTime getInstallationDate();
+
+    LocalDateTime getLastCommunication();
+
+    LocalDateTime getLastMaintenance();
+
+    Long getSiteId();
+
+    String getSiteName();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+}
@@ -0,0 +1,22 @@
+package com.ecogrid.ems.device.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Devices matching a search query, best matches first. correctedQuery is set when the query matched
+ * nothing and the devices were found with a spelling correction of it instead.
+ */
+public record DeviceSearchResponse(
+        @JsonProperty("query")
+        String query,
+
+        @JsonProperty("correctedQuery")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        String correctedQuery,
+
+        @JsonProperty("devices")
+        List<DeviceResponse> devices
+) {}
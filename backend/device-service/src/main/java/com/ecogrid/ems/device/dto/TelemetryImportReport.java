@@ -0,0 +1,80 @@
+package com.ecogrid.ems.device.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Outcome of a telemetry history import for one device, with the stats of every COPY batch
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TelemetryImportReport(
+        @JsonProperty("serialNumber")
+        String serialNumber,
+
+        @JsonProperty("received")
+        int received,
+
+        @JsonProperty("stored")
+        int stored,
+
+        @JsonProperty("duplicates")
+        int duplicates,
+
+        @JsonProperty("rejected")
+        int rejected,
+
+        @JsonProperty("appliedLive")
+        boolean appliedLive,
+
+        @JsonProperty("archiveBlocksRebuilt")
+        int archiveBlocksRebuilt,
+
+        @JsonProperty("from")
+        LocalDateTime from,
+
+        @JsonProperty("to")
+        LocalDateTime to,
+
+        @JsonProperty("durationMs")
+        long durationMs,
+
+        @JsonProperty("batches")
+        List<BatchStats> batches,
+
+        @JsonProperty("errors")
+        List<SampleError> errors
+) {
+
+    /**
+     * One COPY statement: how many rows it wrote, the time range they cover and how long it took
+     */
+    public record BatchStats(
+            @JsonProperty("rows")
+            int rows,
+
+            @JsonProperty("from")
+            LocalDateTime from,
+
+            @JsonProperty("to")
+            LocalDateTime to,
+
+            @JsonProperty("durationMs")
+            long durationMs
+    ) {
+    }
+
+    /**
+     * A rejected sample; line is the line of the body the sample starts on
+     */
+    public record SampleError(
+            @JsonProperty("line")
+            long line,
+
+            @JsonProperty("error")
+            String error
+    ) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.ecogrid.ems.device.dto.site;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A site and its great-circle distance from the queried point
+ */
+public record NearbySite(
+        @JsonProperty("site")
+        SiteLocation site,
+
+        @JsonProperty("distanceKm")
+        double distanceKm
+) {}
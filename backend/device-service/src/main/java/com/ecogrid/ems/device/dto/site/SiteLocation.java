@@ -0,0 +1,26 @@
+package com.ecogrid.ems.device.dto.site;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A site as a point on the map
+ */
+public record SiteLocation(
+        @JsonProperty("id")
+        Long id,
+
+        @JsonProperty("name")
+        String name,
+
+        @JsonProperty("status")
+        String status,
+
+        @JsonProperty("locationLat")
+        double locationLat,
+
+        @JsonProperty("locationLng")
+        double locationLng,
+
+        @JsonProperty("capacityMw")
+        Double capacityMw
+) {}
@@ -0,0 +1,30 @@
+package com.ecogrid.ems.device.dto.site;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The sites of one web map tile (zoom/x/y, as in slippy map tile URLs) rolled up into a cluster placed at
+ * their centroid
+ */
+public record SiteTile(
+        @JsonProperty("zoom")
+        int zoom,
+
+        @JsonProperty("x")
+        int x,
+
+        @JsonProperty("y")
+        int y,
+
+        @JsonProperty("siteCount")
+        int siteCount,
+
+        @JsonProperty("capacityMw")
+        double capacityMw,
+
+        @JsonProperty("centroidLat")
+        double centroidLat,
+
+        @JsonProperty("centroidLng")
+        double centroidLng
+) {}
@@ -0,0 +1,7 @@
+package com.ecogrid.ems.device.dto.telemetry;
+
+/**
+ * A telemetry message as it arrived over MQTT: its topic, the undecoded payload and the arrival time
+ * (epoch millis)
+ */
+public record RawTelemetryMessage(String topic, String payload, long receivedAt) {}
@@ -20,7 +20,10 @@ import java.util.Map;
     @Index(name = "idx_device_serial", columnList = "serialNumber"),
     @Index(name = "idx_device_type", columnList = "deviceType"),
     @Index(name = "idx_device_status", columnList = "status"),
-    @Index(name = "idx_device_site", columnList = "site_id")
+    @Index(name = "idx_device_site", columnList = "site_id"),
+    // Keyset pagination: sort key + id tie-breaker
+    @Index(name = "idx_device_name_id", columnList = "name, id"),
+    @Index(name = "idx_device_created_id", columnList = "created_at, id")
 })
 @EntityListeners(AuditingEntityListener.class)
 public class Device {
@@ -8,16 +8,25 @@ import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
- * DeviceTelemetry entity for storing time-series device telemetry data
+ * DeviceTelemetry entity for storing time-series device telemetry data.
+ * The table is range-partitioned by day; it and its indexes are created by
+ * db/device-telemetry-partitioning.sql (TelemetryPartitionService), not by Hibernate.
+ *
+ * Well-known numeric readings of BMS, solar and EV charger telemetry live in typed columns so
+ * aggregates can read them without parsing JSON; everything else goes to the jsonb overflow column.
+ * getData()/setData() still expose the combined map.
  */
 @Entity
-@Table(name = "device_telemetry", indexes = {
-    @Index(name = "idx_telemetry_device_timestamp", columnList = "device_id, timestamp DESC"),
-    @Index(name = "idx_telemetry_timestamp", columnList = "timestamp DESC")
-})
+@Table(name = "device_telemetry")
 @EntityListeners(AuditingEntityListener.class)
 public class DeviceTelemetry {
 
@@ -36,7 +45,50 @@ public class DeviceTelemetry {
 
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(name = "data", columnDefinition = "jsonb", nullable = false)
-    private Map<String, Object> data; // Type-specific telemetry data
+    private Map<String, Object> data = new HashMap<>(); // Readings without a typed column
+
+    // Common readings
+    @Column(name = "soc")
+    private Double soc;
+
+    @Column(name = "voltage")
+    private Double voltage;
+
+    @Column(name = "current")
+    private Double current;
+
+    @Column(name = "temperature")
+    private Double temperature;
+
+    @Column(name = "power")
+    private Double power;
+
+    // BMS
+    @Column(name = "charge_rate")
+    private Double chargeRate;
+
+    // Solar array
+    @Column(name = "current_output")
+    private Double currentOutput;
+
+    @Column(name = "energy_yield")
+    private Double energyYield;
+
+    @Column(name = "irradiance")
+    private Double irradiance;
+
+    @Column(name = "panel_temperature")
+    private Double panelTemperature;
+
+    // EV charger
+    @Column(name = "power_delivered")
+    private Double powerDelivered;
+
+    @Column(name = "energy_delivered")
+    private Double energyDelivered;
+
+    @Column(name = "active_sessions")
+    private Integer activeSessions;
 
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(name = "quality_indicators", columnDefinition = "jsonb")
@@ -55,7 +107,7 @@ public class DeviceTelemetry {
     public DeviceTelemetry(Device device, LocalDateTime timestamp, Map<String, Object> data) {
         this.device = device;
         this.timestamp = timestamp;
-        this.data = data;
+        setData(data);
     }
 
     // Getters and Setters
@@ -83,12 +135,45 @@ public class DeviceTelemetry {
         this.timestamp = timestamp;
     }
 
+    /**
+     * All readings: typed columns merged over the overflow map
+     */
     public Map<String, Object> getData() {
-        return data;
+        Map<String, Object> merged = new LinkedHashMap<>(data);
+        for (HotField field : HOT_FIELDS) {
+            Number value = field.getter().apply(this);
+            if (value != null) {
+                merged.put(field.key(), value);
+            }
+        }
+        return merged;
     }
 
+    /**
+     * Split readings into typed columns and the overflow map. Values of well-known keys that
+     * are not numbers stay in the overflow map unchanged.
+     */
     public void setData(Map<String, Object> data) {
-        this.data = data;
+        Map<String, Object> overflow = new HashMap<>();
+        HOT_FIELDS.forEach(field -> field.setter().accept(this, null));
+        if (data != null) {
+            data.forEach((key, value) -> {
+                HotField field = HOT_FIELDS_BY_KEY.get(key);
+                if (field != null && value instanceof Number number) {
+                    field.setter().accept(this, number);
+                } else {
+                    overflow.put(key, value);
+                }
+            });
+        }
+        this.data = overflow;
+    }
+
+    /**
+     * Readings without a typed column, as stored in the jsonb column
+     */
+    public Map<String, Object> getOverflowData() {
+        return data;
     }
 
     public Map<String, Object> getQualityIndicators() {
@@ -114,4 +199,146 @@ public class DeviceTelemetry {
     public void setCreatedAt(LocalDateTime createdAt) {
         this.createdAt = createdAt;
     }
-}
\ No newline at end of file
+
+    public Double getSoc() {
+        return soc;
+    }
+
+    public void setSoc(Double soc) {
+        this.soc = soc;
+    }
+
+    public Double getVoltage() {
+        return voltage;
+    }
+
+    public void setVoltage(Double voltage) {
+        this.voltage = voltage;
+    }
+
+    public Double getCurrent() {
+        return current;
+    }
+
+    public void setCurrent(Double current) {
+        this.current = current;
+    }
+
+    public Double getTemperature() {
+        return temperature;
+    }
+
+    public void setTemperature(Double temperature) {
+        this.temperature = temperature;
+    }
+
+    public Double getPower() {
+        return power;
+    }
+
+    public void setPower(Double power) {
+        this.power = power;
+    }
+
+    public Double getChargeRate() {
+        return chargeRate;
+    }
+
+    public void setChargeRate(Double chargeRate) {
+        this.chargeRate = chargeRate;
+    }
+
+    public Double getCurrentOutput() {
+        return currentOutput;
+    }
+
+    public void setCurrentOutput(Double currentOutput) {
+        this.currentOutput = currentOutput;
+    }
+
+    public Double getEnergyYield() {
+        return energyYield;
+    }
+
+    public void setEnergyYield(Double energyYield) {
+        this.energyYield = energyYield;
+    }
+
+    public Double getIrradiance() {
+        return irradiance;
+    }
+
+    public void setIrradiance(Double irradiance) {
+        this.irradiance = irradiance;
+    }
+
+    public Double getPanelTemperature() {
+        return panelTemperature;
+    }
+
+    public void setPanelTemperature(Double panelTemperature) {
+        this.panelTemperature = panelTemperature;
+    }
+
+    public Double getPowerDelivered() {
+        return powerDelivered;
+    }
+
+    public void setPowerDelivered(Double powerDelivered) {
+        this.powerDelivered = powerDelivered;
+    }
+
+    public Double getEnergyDelivered() {
+        return energyDelivered;
+    }
+
+    public void setEnergyDelivered(Double energyDelivered) {
+        this.energyDelivered = energyDelivered;
+    }
+
+    public Integer getActiveSessions() {
+        return activeSessions;
+    }
+
+    public void setActiveSessions(Integer activeSessions) {
+        this.activeSessions = activeSessions;
+    }
+
+    /**
+     * Readings stored in typed columns: JSON key, column name and accessors
+     */
+    public static final List<HotField> HOT_FIELDS = List.of(
+        new HotField("soc", "soc", DeviceTelemetry::getSoc,
+            (telemetry, value) -> telemetry.setSoc(value != null ? value.doubleValue() : null)),
+        new HotField("voltage", "voltage", DeviceTelemetry::getVoltage,
+            (telemetry, value) -> telemetry.setVoltage(value != null ? value.doubleValue() : null)),
+        new HotField("current", "current", DeviceTelemetry::getCurrent,
+            (telemetry, value) -> telemetry.setCurrent(value != null ? value.doubleValue() : null)),
+        new HotField("temperature", "temperature", DeviceTelemetry::getTemperature,
+            (telemetry, value) -> telemetry.setTemperature(value != null ? value.doubleValue() : null)),
+        new HotField("power", "power", DeviceTelemetry::getPower,
+            (telemetry, value) -> telemetry.setPower(value != null ? value.doubleValue() : null)),
+        new HotField("chargeRate", "charge_rate", DeviceTelemetry::getChargeRate,
+            (telemetry, value) -> telemetry.setChargeRate(value != null ? value.doubleValue() : null)),
+        new HotField("currentOutput", "current_output", DeviceTelemetry::getCurrentOutput,
+            (telemetry, value) -> telemetry.setCurrentOutput(value != null ? value.doubleValue() : null)),
+        new HotField("energyYield", "energy_yield", DeviceTelemetry::getEnergyYield,
+            (telemetry, value) -> telemetry.setEnergyYield(value != null ? value.doubleValue() : null)),
+        new HotField("irradiance", "irradiance", DeviceTelemetry::getIrradiance,
+            (telemetry, value) -> telemetry.setIrradiance(value != null ? value.doubleValue() : null)),
+        new HotField("panelTemperature", "panel_temperature", DeviceTelemetry::getPanelTemperature,
+            (telemetry, value) -> telemetry.setPanelTemperature(value != null ? value.doubleValue() : null)),
+        new HotField("powerDelivered", "power_delivered", DeviceTelemetry::getPowerDelivered,
+            (telemetry, value) -> telemetry.setPowerDelivered(value != null ? value.doubleValue() : null)),
+        new HotField("energyDelivered", "energy_delivered", DeviceTelemetry::getEnergyDelivered,
+            (telemetry, value) -> telemetry.setEnergyDelivered(value != null ? value.doubleValue() : null)),
+        new HotField("activeSessions", "active_sessions", DeviceTelemetry::getActiveSessions,
+            (telemetry, value) -> telemetry.setActiveSessions(value != null ? value.intValue() : null))
+    );
+
+    private static final Map<String, HotField> HOT_FIELDS_BY_KEY = HOT_FIELDS.stream()
+        .collect(Collectors.toMap(HotField::key, Function.identity()));
+
+    public record HotField(String key, String column, Function<DeviceTelemetry, Number> getter,
+                           BiConsumer<DeviceTelemetry, Number> setter) {}
+}
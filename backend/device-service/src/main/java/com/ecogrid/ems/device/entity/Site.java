@@ -19,7 +19,9 @@ import java.util.List;
 @Entity
 @Table(name = "sites", indexes = {
     @Index(name = "idx_site_name", columnList = "name"),
-    @Index(name = "idx_site_status", columnList = "status")
+    @Index(name = "idx_site_status", columnList = "status"),
+    // Keyset pagination: sort key + id tie-breaker
+    @Index(name = "idx_site_created_id", columnList = "created_at, id")
 })
 @EntityListeners(AuditingEntityListener.class)
 public class Site {
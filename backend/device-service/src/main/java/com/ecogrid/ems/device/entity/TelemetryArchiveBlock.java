@@ -0,0 +1,98 @@
+package com.ecogrid.ems.device.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Compressed numeric telemetry of one device for one closed hour, written by TelemetryArchiveService.
+ * The payload is encoded by TelemetryBlockCodec and outlives the raw device_telemetry partitions.
+ */
+@Entity
+@Table(name = "telemetry_archive_blocks",
+       uniqueConstraints = @UniqueConstraint(name = "uk_archive_block_device_start", columnNames = {"device_id", "block_start"}),
+       indexes = @Index(name = "idx_archive_block_start", columnList = "block_start"))
+public class TelemetryArchiveBlock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_id", nullable = false)
+    private Long deviceId;
+
+    @Column(name = "block_start", nullable = false)
+    private LocalDateTime blockStart;
+
+    @Column(name = "sample_count", nullable = false)
+    private Integer sampleCount;
+
+    @Column(name = "raw_bytes", nullable = false)
+    private Long rawBytes; // Size of the archived rows in device_telemetry
+
+    @Column(name = "payload", nullable = false)
+    private byte[] payload;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public TelemetryArchiveBlock() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(Long deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public LocalDateTime getBlockStart() {
+        return blockStart;
+    }
+
+    public void setBlockStart(LocalDateTime blockStart) {
+        this.blockStart = blockStart;
+    }
+
+    public Integer getSampleCount() {
+        return sampleCount;
+    }
+
+    public void setSampleCount(Integer sampleCount) {
+        this.sampleCount = sampleCount;
+    }
+
+    public Long getRawBytes() {
+        return rawBytes;
+    }
+
+    public void setRawBytes(Long rawBytes) {
+        this.rawBytes = rawBytes;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,64 @@
+package com.ecogrid.ems.device.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Device-hour that received telemetry after it closed, so its archive block may be missing those rows.
+ * Written with the rows and cleared by TelemetryArchiveService once the hour has been re-encoded.
+ */
+@Entity
+@Table(name = "telemetry_archive_dirty_hours",
+       uniqueConstraints = @UniqueConstraint(name = "uk_archive_dirty_device_start", columnNames = {"device_id", "block_start"}))
+public class TelemetryArchiveDirtyHour {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "device_id", nullable = false)
+    private Long deviceId;
+
+    @Column(name = "block_start", nullable = false)
+    private LocalDateTime blockStart;
+
+    @Column(name = "marked_at", nullable = false)
+    private LocalDateTime markedAt;
+
+    // Constructors
+    public TelemetryArchiveDirtyHour() {}
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(Long deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public LocalDateTime getBlockStart() {
+        return blockStart;
+    }
+
+    public void setBlockStart(LocalDateTime blockStart) {
+        this.blockStart = blockStart;
+    }
+
+    public LocalDateTime getMarkedAt() {
+        return markedAt;
+    }
+
+    public void setMarkedAt(LocalDateTime markedAt) {
+        this.markedAt = markedAt;
+    }
+}
@@ -0,0 +1,44 @@
+package com.ecogrid.ems.device.event;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.LocalDateTime;
+
+/**
+ * Event published when a device is created
+ */
+public record DeviceCreatedEvent(
+        @JsonProperty("deviceId")
+        Long deviceId,
+
+        @JsonProperty("serialNumber")
+        String serialNumber,
+
+        @JsonProperty("siteId")
+        Long siteId,
+
+        @JsonProperty("deviceType")
+        String deviceType,
+
+        @JsonProperty("status")
+        String status,
+
+        @JsonProperty("timestamp")
+        LocalDateTime timestamp,
+
+        @JsonProperty("eventType")
+        String eventType
+) {
+    public static DeviceCreatedEvent create(Long deviceId, String serialNumber, Long siteId,
+                                            String deviceType, String status) {
+        return new DeviceCreatedEvent(
+                deviceId,
+                serialNumber,
+                siteId,
+                deviceType,
+                status,
+                LocalDateTime.now(),
+                "DEVICE_CREATED"
+        );
+    }
+}
@@ -1,5 +1,6 @@
 package com.ecogrid.ems.device.repository;
 
+import com.ecogrid.ems.device.dto.DeviceListing;
 import com.ecogrid.ems.device.entity.Device;
 import com.ecogrid.ems.device.entity.DeviceType;
 import com.ecogrid.ems.device.entity.Site;
@@ -12,6 +13,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,13 +21,29 @@ import java.util.Optional;
  * Repository interface for Device entity operations
  */
 @Repository
-public interface DeviceRepository extends JpaRepository<Device, Long> {
+public interface DeviceRepository extends JpaRepository<Device, Long>, DeviceRepositoryCustom {
+
+    String LISTING_SELECT =
+        "SELECT d.id AS id, d.serialNumber AS serialNumber, d.name AS name, d.description AS description, " +
+        "dt.name AS deviceType, d.model AS model, d.manufacturer AS manufacturer, " +
+        "d.firmwareVersion AS firmwareVersion, d.status AS status, d.ratedPowerKw AS ratedPowerKw, " +
+        "d.mqttTopic AS mqttTopic, d.ipAddress AS ipAddress, d.macAddress AS macAddress, " +
+        "d.installationDate AS installationDate, d.lastCommunication AS lastCommunication, " +
+        "d.lastMaintenance AS lastMaintenance, s.id AS siteId, s.name AS siteName, " +
+        "d.createdAt AS createdAt, d.updatedAt AS updatedAt " +
+        "FROM Device d JOIN d.deviceType dt JOIN d.site s";
 
     /**
      * Find device by serial number
      */
     Optional<Device> findBySerialNumber(String serialNumber);
 
+    /**
+     * Find devices by serial numbers with their device type loaded in the same query
+     */
+    @Query("SELECT d FROM Device d JOIN FETCH d.deviceType WHERE d.serialNumber IN :serialNumbers")
+    List<Device> findWithTypeBySerialNumberIn(@Param("serialNumbers") Collection<String> serialNumbers);
+
     /**
      * Check if device exists by serial number
      */
@@ -41,6 +59,12 @@ public interface DeviceRepository extends JpaRepository<Device, Long> {
      */
     List<Device> findBySiteId(Long siteId);
 
+    /**
+     * Find devices by site ID with their device type loaded in the same query
+     */
+    @Query("SELECT d FROM Device d JOIN FETCH d.deviceType WHERE d.site.id = :siteId")
+    List<Device> findBySiteIdWithDeviceType(@Param("siteId") Long siteId);
+
     /**
      * Find devices by type
      */
@@ -118,4 +142,138 @@ public interface DeviceRepository extends JpaRepository<Device, Long> {
      */
     @Query("SELECT d FROM Device d JOIN FETCH d.site WHERE d.id = :deviceId")
     Optional<Device> findByIdWithSite(@Param("deviceId") Long deviceId);
-}
\ No newline at end of file
+
+    /**
+     * Listing row of a device by ID
+     */
+    @Query(LISTING_SELECT + " WHERE d.id = :deviceId")
+    Optional<DeviceListing> findListingById(@Param("deviceId") Long deviceId);
+
+    /**
+     * Listing row of a device by serial number
+     */
+    @Query(LISTING_SELECT + " WHERE d.serialNumber = :serialNumber")
+    Optional<DeviceListing> findListingBySerialNumber(@Param("serialNumber") String serialNumber);
+
+    /**
+     * Page of device listing rows
+     */
+    @Query(value = LISTING_SELECT, countQuery = "SELECT COUNT(d) FROM Device d")
+    Page<DeviceListing> findAllListings(Pageable pageable);
+
+    /**
+     * Device listing rows of a site
+     */
+    @Query(LISTING_SELECT + " WHERE s.id = :siteId")
+    List<DeviceListing> findListingsBySiteId(@Param("siteId") Long siteId);
+
+    /**
+     * Device listing rows by status
+     */
+    @Query(LISTING_SELECT + " WHERE d.status = :status")
+    List<DeviceListing> findListingsByStatus(@Param("status") Device.DeviceStatus status);
+
+    /**
+     * Device listing rows by type
+     */
+    @Query(LISTING_SELECT + " WHERE d.deviceType = :deviceType")
+    List<DeviceListing> findListingsByDeviceType(@Param("deviceType") DeviceType deviceType);
+
+    /**
+     * Device listing rows with a name containing the search term (case insensitive)
+     */
+    @Query(value = LISTING_SELECT + " WHERE LOWER(d.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))",
+           countQuery = "SELECT COUNT(d) FROM Device d WHERE LOWER(d.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
+    Page<DeviceListing> searchListingsByName(@Param("searchTerm") String searchTerm, Pageable pageable);
+
+    /**
+     * Count devices with a name containing the search term (case insensitive)
+     */
+    @Query("SELECT COUNT(d) FROM Device d WHERE LOWER(d.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
+    long countByNameSearch(@Param("searchTerm") String searchTerm);
+
+    /**
+     * Device listing rows of the given devices, in no particular order
+     */
+    @Query(LISTING_SELECT + " WHERE d.id IN :deviceIds")
+    List<DeviceListing> findListingsByIdIn(@Param("deviceIds") Collection<Long> deviceIds);
+
+    /**
+     * Listing rows of devices that haven't communicated recently
+     */
+    @Query(LISTING_SELECT + " WHERE d.lastCommunication < :threshold OR d.lastCommunication IS NULL")
+    List<DeviceListing> findStaleListings(@Param("threshold") LocalDateTime threshold);
+
+    /**
+     * Listing rows of devices due for maintenance
+     */
+    @Query(LISTING_SELECT + " WHERE d.lastMaintenance < :threshold OR d.lastMaintenance IS NULL")
+    List<DeviceListing> findListingsDueForMaintenance(@Param("threshold") LocalDateTime threshold);
+
+    /**
+     * Configuration entries of several devices in one query
+     */
+    @Query("SELECT d.id AS deviceId, KEY(c) AS attributeKey, VALUE(c) AS attributeValue " +
+           "FROM Device d JOIN d.configuration c WHERE d.id IN :deviceIds")
+    List<DeviceAttribute> findConfigurationByDeviceIds(@Param("deviceIds") Collection<Long> deviceIds);
+
+    /**
+     * Metadata entries of several devices in one query
+     */
+    @Query("SELECT d.id AS deviceId, KEY(m) AS attributeKey, VALUE(m) AS attributeValue " +
+           "FROM Device d JOIN d.metadata m WHERE d.id IN :deviceIds")
+    List<DeviceAttribute> findMetadataByDeviceIds(@Param("deviceIds") Collection<Long> deviceIds);
+
+    /**
+     * Device counts of several sites in one grouped query; sites without devices are absent
+     */
+    @Query("SELECT d.site.id AS siteId, COUNT(d) AS deviceCount FROM Device d " +
+           "WHERE d.site.id IN :siteIds GROUP BY d.site.id")
+    List<SiteDeviceCount> countBySiteIds(@Param("siteIds") Collection<Long> siteIds);
+
+    /**
+     * One configuration or metadata entry of a device
+     */
+    interface DeviceAttribute {
+
+        Long getDeviceId();
+
+        String getAttributeKey();
+
+        String getAttributeValue();
+    }
+
+    /**
+     * Device counts per status, for reconciling the fleet statistics counters
+     */
+    @Query("SELECT d.status AS status, COUNT(d) AS count FROM Device d GROUP BY d.status")
+    List<StatusCount> countGroupedByStatus();
+
+    /**
+     * Device counts per device type name, including types without devices
+     */
+    @Query("SELECT dt.name AS typeName, COUNT(d) AS count FROM DeviceType dt LEFT JOIN Device d ON d.deviceType = dt " +
+           "GROUP BY dt.name")
+    List<TypeCount> countGroupedByTypeName();
+
+    interface StatusCount {
+
+        Device.DeviceStatus getStatus();
+
+        long getCount();
+    }
+
+    interface TypeCount {
+
+        String getTypeName();
+
+        long getCount();
+    }
+
+    interface SiteDeviceCount {
+
+        Long getSiteId();
+
+        Long getDeviceCount();
+    }
+}
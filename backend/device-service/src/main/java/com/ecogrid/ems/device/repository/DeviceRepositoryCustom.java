@@ -0,0 +1,17 @@
+package com.ecogrid.ems.device.repository;
+
+import java.util.List;
+
+/**
+ * Keyset listing reads of devices that need a sort key chosen at runtime
+ */
+public interface DeviceRepositoryCustom {
+
+    List<KeysetSeek.Key> KEYSET_SORT_KEYS =
+        List.of(KeysetSeek.ID, KeysetSeek.NAME, KeysetSeek.SERIAL_NUMBER, KeysetSeek.CREATED_AT);
+
+    /**
+     * Up to limit devices after the given row (all from the start when null), optionally filtered by name
+     */
+    List<KeysetSeek.Row> seekDevices(String searchTerm, KeysetSeek.Key key, boolean descending, KeysetSeek.Row after, int limit);
+}
@@ -0,0 +1,23 @@
+package com.ecogrid.ems.device.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.List;
+import java.util.Map;
+
+class DeviceRepositoryCustomImpl implements DeviceRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<KeysetSeek.Row> seekDevices(String searchTerm, KeysetSeek.Key key, boolean descending,
+                                            KeysetSeek.Row after, int limit) {
+        if (searchTerm == null) {
+            return KeysetSeek.seek(entityManager, "Device", null, Map.of(), key, descending, after, limit);
+        }
+        return KeysetSeek.seek(entityManager, "Device", "LOWER(e.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))",
+            Map.of("searchTerm", searchTerm), key, descending, after, limit);
+    }
+}
@@ -4,6 +4,7 @@ import com.ecogrid.ems.device.entity.DeviceTelemetry;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -15,7 +16,7 @@ import java.util.List;
  * Repository interface for DeviceTelemetry entity
  */
 @Repository
-public interface DeviceTelemetryRepository extends JpaRepository<DeviceTelemetry, Long> {
+public interface DeviceTelemetryRepository extends JpaRepository<DeviceTelemetry, Long>, DeviceTelemetryRepositoryCustom {
 
     /**
      * Find telemetry data for a device within a time range
@@ -67,9 +68,12 @@ public interface DeviceTelemetryRepository extends JpaRepository<DeviceTelemetry
     );
 
     /**
-     * Delete old telemetry data before a certain date (for cleanup)
+     * Delete old telemetry data before a certain date in one statement.
+     * Routine retention drops whole partitions instead (TelemetryPartitionService).
      */
-    void deleteByTimestampBefore(LocalDateTime cutoffTime);
+    @Modifying
+    @Query("DELETE FROM DeviceTelemetry dt WHERE dt.timestamp < :cutoffTime")
+    int deleteByTimestampBefore(@Param("cutoffTime") LocalDateTime cutoffTime);
 
     /**
      * Count telemetry records for a device within a time range
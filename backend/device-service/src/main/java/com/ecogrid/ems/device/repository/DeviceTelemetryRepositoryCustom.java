@@ -0,0 +1,16 @@
+package com.ecogrid.ems.device.repository;
+
+import com.ecogrid.ems.device.entity.DeviceTelemetry;
+
+import java.util.List;
+
+/**
+ * Bulk writes of telemetry that bypass the persistence context
+ */
+public interface DeviceTelemetryRepositoryCustom {
+
+    /**
+     * Insert the samples with one JDBC batch; ids come from the table's sequence and are not set on them
+     */
+    void insertAll(List<DeviceTelemetry> telemetry);
+}
@@ -0,0 +1,98 @@
+package com.ecogrid.ems.device.repository;
+
+import com.ecogrid.ems.shared.dto.pagination.PageCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Keyset (seek) reads of listing pages: the (sort value, id) pairs of the rows after a cursor.
+ *
+ * The predicate is written as {@code key >= v AND (key > v OR id > i)} (mirrored when descending) so
+ * PostgreSQL can start the scan on a (key, id) index and every page costs the same however deep it is.
+ */
+public final class KeysetSeek {
+
+    public static final Key ID = new Key("id", "id", Long::valueOf);
+    public static final Key NAME = new Key("name", "name", value -> value);
+    public static final Key SERIAL_NUMBER = new Key("serialNumber", "serialNumber", value -> value);
+    public static final Key CREATED_AT = new Key("createdAt", "createdAt", LocalDateTime::parse);
+
+    private KeysetSeek() {
+    }
+
+    /**
+     * Sort key a listing may be paged by: request name, entity attribute and parser of the cursor value
+     */
+    public record Key(String name, String attribute, Function<String, Object> parser) {
+
+        public PageCursor cursorAt(Row row, boolean descending) {
+            return new PageCursor(name, descending, row.sortValue().toString(), row.id());
+        }
+
+        /**
+         * Row a cursor issued for this key and direction points at
+         * @throws IllegalArgumentException if the cursor belongs to another sort or its value does not parse
+         */
+        public Row rowAt(PageCursor cursor, boolean descending) {
+            cursor.requireSort(name, descending);
+            try {
+                return new Row(parser.apply(cursor.sortValue()), cursor.id());
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid page cursor", e);
+            }
+        }
+    }
+
+    /**
+     * Sort value and id of one listing row
+     */
+    public record Row(Object sortValue, long id) {}
+
+    /**
+     * Look up a supported sort key by its request name
+     * @throws IllegalArgumentException for keys not backed by a (key, id) index
+     */
+    public static Key key(String name, List<Key> supported) {
+        return supported.stream().filter(key -> key.name().equals(name)).findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Cursor pagination supports sortBy " +
+                supported.stream().map(Key::name).toList()));
+    }
+
+    /**
+     * @param entity entity name, aliased as {@code e} in filter
+     * @param filter extra JPQL condition on {@code e}, or null
+     * @param after row to continue after, or null for the first page
+     */
+    static List<Row> seek(EntityManager entityManager, String entity, String filter, Map<String, Object> parameters,
+                          Key key, boolean descending, Row after, int limit) {
+        String sortPath = "e." + key.attribute();
+        StringBuilder jpql = new StringBuilder("SELECT ").append(sortPath).append(", e.id FROM ").append(entity)
+            .append(" e WHERE 1 = 1");
+        if (filter != null) {
+            jpql.append(" AND (").append(filter).append(')');
+        }
+        if (after != null) {
+            String beyond = descending ? "<" : ">";
+            jpql.append(" AND ").append(sortPath).append(' ').append(beyond).append("= :afterValue AND (")
+                .append(sortPath).append(' ').append(beyond).append(" :afterValue OR e.id ").append(beyond)
+                .append(" :afterId)");
+        }
+        String direction = descending ? " DESC" : " ASC";
+        jpql.append(" ORDER BY ").append(sortPath).append(direction).append(", e.id").append(direction);
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql.toString(), Object[].class);
+        parameters.forEach(query::setParameter);
+        if (after != null) {
+            query.setParameter("afterValue", after.sortValue());
+            query.setParameter("afterId", after.id());
+        }
+        return query.setMaxResults(limit).getResultList().stream()
+            .map(row -> new Row(row[0], ((Number) row[1]).longValue()))
+            .toList();
+    }
+}
@@ -16,7 +16,7 @@ import java.util.Optional;
  * Repository interface for Site entity operations
  */
 @Repository
-public interface SiteRepository extends JpaRepository<Site, Long> {
+public interface SiteRepository extends JpaRepository<Site, Long>, SiteRepositoryCustom {
 
     /**
      * Find site by name
@@ -57,6 +57,12 @@ public interface SiteRepository extends JpaRepository<Site, Long> {
     @Query("SELECT s FROM Site s WHERE LOWER(s.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
     Page<Site> searchByName(@Param("searchTerm") String searchTerm, Pageable pageable);
 
+    /**
+     * Count sites with a name containing the search term (case insensitive)
+     */
+    @Query("SELECT COUNT(s) FROM Site s WHERE LOWER(s.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
+    long countByNameSearch(@Param("searchTerm") String searchTerm);
+
     /**
      * Get total capacity across all active sites
      */
@@ -74,4 +80,43 @@ public interface SiteRepository extends JpaRepository<Site, Long> {
      */
     @Query("SELECT s FROM Site s LEFT JOIN FETCH s.devices WHERE s.id = :siteId")
     Optional<Site> findByIdWithDevices(@Param("siteId") Long siteId);
-}
\ No newline at end of file
+
+    /**
+     * Site counts and summed capacity per status, for reconciling the fleet statistics counters
+     */
+    @Query("SELECT s.status AS status, COUNT(s) AS count, COALESCE(SUM(s.capacityMw), 0) AS capacityMw " +
+           "FROM Site s GROUP BY s.status")
+    List<StatusCapacity> countGroupedByStatus();
+
+    /**
+     * Locations of all sites with coordinates, for the in-memory spatial index
+     */
+    @Query("SELECT s.id AS id, s.name AS name, s.status AS status, s.locationLat AS locationLat, " +
+           "s.locationLng AS locationLng, s.capacityMw AS capacityMw " +
+           "FROM Site s WHERE s.locationLat IS NOT NULL AND s.locationLng IS NOT NULL")
+    List<LocationRow> findAllLocations();
+
+    interface StatusCapacity {
+
+        Site.SiteStatus getStatus();
+
+        long getCount();
+
+        BigDecimal getCapacityMw();
+    }
+
+    interface LocationRow {
+
+        Long getId();
+
+        String getName();
+
+        Site.SiteStatus getStatus();
+
+        BigDecimal getLocationLat();
+
+        BigDecimal getLocationLng();
+
+        BigDecimal getCapacityMw();
+    }
+}
@@ -0,0 +1,16 @@
+package com.ecogrid.ems.device.repository;
+
+import java.util.List;
+
+/**
+ * Keyset listing reads of sites that need a sort key chosen at runtime
+ */
+public interface SiteRepositoryCustom {
+
+    List<KeysetSeek.Key> KEYSET_SORT_KEYS = List.of(KeysetSeek.ID, KeysetSeek.NAME, KeysetSeek.CREATED_AT);
+
+    /**
+     * Up to limit sites after the given row (all from the start when null), optionally filtered by name
+     */
+    List<KeysetSeek.Row> seekSites(String searchTerm, KeysetSeek.Key key, boolean descending, KeysetSeek.Row after, int limit);
+}
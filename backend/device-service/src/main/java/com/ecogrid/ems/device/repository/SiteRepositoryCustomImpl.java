@@ -0,0 +1,23 @@
+package com.ecogrid.ems.device.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.util.List;
+import java.util.Map;
+
+class SiteRepositoryCustomImpl implements SiteRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<KeysetSeek.Row> seekSites(String searchTerm, KeysetSeek.Key key, boolean descending,
+                                          KeysetSeek.Row after, int limit) {
+        if (searchTerm == null) {
+            return KeysetSeek.seek(entityManager, "Site", null, Map.of(), key, descending, after, limit);
+        }
+        return KeysetSeek.seek(entityManager, "Site", "LOWER(e.name) LIKE LOWER(CONCAT('%', :searchTerm, '%'))",
+            Map.of("searchTerm", searchTerm), key, descending, after, limit);
+    }
+}
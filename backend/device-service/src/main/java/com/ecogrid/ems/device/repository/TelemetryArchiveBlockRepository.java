@@ -0,0 +1,48 @@
+package com.ecogrid.ems.device.repository;
+
+import com.ecogrid.ems.device.entity.TelemetryArchiveBlock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository interface for TelemetryArchiveBlock entity.
+ * Blocks are written and scanned through JDBC by TelemetryArchiveService.
+ */
+@Repository
+public interface TelemetryArchiveBlockRepository extends JpaRepository<TelemetryArchiveBlock, Long> {
+
+    /**
+     * Start of the newest archived block, or null when nothing is archived yet
+     */
+    @Query("SELECT MAX(b.blockStart) FROM TelemetryArchiveBlock b")
+    LocalDateTime findLatestBlockStart();
+
+    /**
+     * Delete blocks older than the archive retention in one statement
+     */
+    @Modifying
+    @Query("DELETE FROM TelemetryArchiveBlock b WHERE b.blockStart < :cutoffTime")
+    int deleteByBlockStartBefore(@Param("cutoffTime") LocalDateTime cutoffTime);
+
+    /**
+     * Archived size summary: raw bytes replaced and compressed bytes stored
+     */
+    @Query(value = "SELECT CAST(COALESCE(SUM(raw_bytes), 0) AS bigint) AS \"rawBytes\", " +
+                   "CAST(COALESCE(SUM(octet_length(payload)), 0) AS bigint) AS \"compressedBytes\", " +
+                   "COUNT(*) AS \"blocks\" FROM telemetry_archive_blocks", nativeQuery = true)
+    ArchiveSize getArchiveSize();
+
+    interface ArchiveSize {
+
+        Long getRawBytes();
+
+        Long getCompressedBytes();
+
+        Long getBlocks();
+    }
+}
@@ -1,5 +1,6 @@
 package com.ecogrid.ems.device.service;
 
+import com.ecogrid.ems.device.event.DeviceCreatedEvent;
 import com.ecogrid.ems.device.event.DeviceStatusEvent;
 import com.ecogrid.ems.device.event.DeviceTelemetryEvent;
 import org.slf4j.Logger;
@@ -8,6 +9,7 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -69,4 +71,36 @@ public class DeviceEventService {
             logger.error("Failed to publish status change event for device: {}", serialNumber, e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Publish device created event
+     */
+    public void publishDeviceCreatedEvent(DeviceCreatedEvent event) {
+        try {
+            eventPublisher.publishEvent(event);
+            kafkaTemplate.send("device-created", event.serialNumber(), event);
+            logger.info("Published created event for device: {}", event.serialNumber());
+        } catch (Exception e) {
+            logger.error("Failed to publish created event for device: {}", event.serialNumber(), e);
+        }
+    }
+
+    /**
+     * Publish created events of a bulk import; the Kafka producer batches the records and is flushed once
+     */
+    public void publishDeviceCreatedEvents(List<DeviceCreatedEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        try {
+            for (DeviceCreatedEvent event : events) {
+                eventPublisher.publishEvent(event);
+                kafkaTemplate.send("device-created", event.serialNumber(), event);
+            }
+            kafkaTemplate.flush();
+            logger.info("Published {} device created events", events.size());
+        } catch (Exception e) {
+            logger.error("Failed to publish device created events", e);
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.BulkProvisioningReport;
+import com.ecogrid.ems.device.dto.BulkProvisioningReport.RowResult;
+import com.ecogrid.ems.device.dto.DeviceRequest;
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceType;
+import com.ecogrid.ems.device.event.DeviceCreatedEvent;
+import com.ecogrid.ems.device.repository.DeviceTypeRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk device import from CSV or NDJSON.
+ *
+ * Every check that would cost a query per device in createDevice is done once for the whole file: serial
+ * numbers already taken are found with one array query, and device types and sites are resolved once.
+ * Devices and their attributes are then written in a single transaction, one multi-row INSERT per batch
+ * with the values bound as arrays. Rows that fail a check are reported and skipped; they do not fail the
+ * rest of the file.
+ */
+@Service
+public class DeviceProvisioningService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceProvisioningService.class);
+
+    private static final String CONFIGURATION_PREFIX = "configuration.";
+    private static final String METADATA_PREFIX = "metadata.";
+
+    // Length of the varchar columns the request does not validate itself
+    private static final int MAX_COLUMN_LENGTH = 255;
+
+    private static final Set<String> CSV_COLUMNS = Arrays.stream(DeviceRequest.class.getRecordComponents())
+        .map(component -> component.getName())
+        .filter(name -> !name.equals("configuration") && !name.equals("metadata"))
+        .collect(Collectors.toUnmodifiableSet());
+
+    private static final String TAKEN_SERIALS_QUERY =
+        "SELECT serial_number FROM devices WHERE serial_number = ANY(?)";
+
+    private static final String EXISTING_SITES_QUERY = "SELECT id FROM sites WHERE id = ANY(?)";
+
+    // One statement per batch: the rows go in as parallel arrays, and a serial taken by a concurrent create
+    // after the check is skipped instead of failing the batch; RETURNING tells which rows were inserted
+    private static final String INSERT_DEVICES =
+        "INSERT INTO devices (created_at, updated_at, serial_number, name, description, device_type_id, model, " +
+        "manufacturer, firmware_version, status, rated_power_kw, mqtt_topic, ip_address, mac_address, " +
+        "installation_date, site_id) " +
+        "SELECT ?::timestamp, ?::timestamp, u.* FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::bigint[], " +
+        "?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::numeric[], ?::varchar[], ?::varchar[], " +
+        "?::varchar[], ?::timestamp[], ?::bigint[]) AS u " +
+        "ON CONFLICT (serial_number) DO NOTHING RETURNING id, serial_number";
+
+    private static final String INSERT_CONFIGURATION =
+        "INSERT INTO device_configuration (device_id, config_key, config_value) " +
+        "SELECT * FROM unnest(?::bigint[], ?::varchar[], ?::varchar[])";
+
+    private static final String INSERT_METADATA =
+        "INSERT INTO device_metadata (device_id, meta_key, meta_value) " +
+        "SELECT * FROM unnest(?::bigint[], ?::varchar[], ?::varchar[])";
+
+    public enum Format {
+        CSV("text/csv"),
+        NDJSON("application/x-ndjson");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DeviceTypeRepository deviceTypeRepository;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final SiteOverviewSnapshotService overviewSnapshotService;
+    private final FleetStatisticsService fleetStatisticsService;
+    private final DeviceEventService deviceEventService;
+
+    @Value("${app.provisioning.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.provisioning.max-rows:200000}")
+    private int maxRows;
+
+    public DeviceProvisioningService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                     DeviceTypeRepository deviceTypeRepository, Validator validator,
+                                     ObjectMapper objectMapper, SiteOverviewSnapshotService overviewSnapshotService,
+                                     FleetStatisticsService fleetStatisticsService,
+                                     DeviceEventService deviceEventService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deviceTypeRepository = deviceTypeRepository;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.overviewSnapshotService = overviewSnapshotService;
+        this.fleetStatisticsService = fleetStatisticsService;
+        this.deviceEventService = deviceEventService;
+    }
+
+    /**
+     * Import the devices of a file and report every row; with errorsOnly the created rows are left out
+     * of the results. A file that cannot be read as a whole is rejected with IllegalArgumentException.
+     */
+    public BulkProvisioningReport provision(InputStream input, Format format, boolean errorsOnly) throws IOException {
+        long started = System.nanoTime();
+        Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+        List<ImportRow> rows = format == Format.CSV ? readCsv(reader) : readNdjson(reader);
+
+        List<ImportRow> accepted = validate(rows);
+        List<ImportRow> created = accepted.isEmpty() ? List.of() : transactionTemplate.execute(status -> insert(accepted));
+        deviceEventService.publishDeviceCreatedEvents(created.stream()
+            .map(row -> DeviceCreatedEvent.create(row.deviceId, row.request.serialNumber(), row.request.siteId(),
+                row.deviceType.getName(), row.status.name()))
+            .toList());
+
+        List<RowResult> results = rows.stream()
+            .filter(row -> !errorsOnly || row.error != null)
+            .map(row -> row.error == null
+                ? RowResult.created(row.line, row.request.serialNumber(), row.deviceId)
+                : RowResult.rejected(row.line, row.request != null ? row.request.serialNumber() : null, row.error))
+            .toList();
+        long durationMs = (System.nanoTime() - started) / 1_000_000;
+        logger.info("Provisioned {} of {} devices from {} in {} ms", created.size(), rows.size(), format, durationMs);
+        return new BulkProvisioningReport(rows.size(), created.size(), rows.size() - created.size(), durationMs, results);
+    }
+
+    /**
+     * Parse NDJSON, one device request per line; blank lines are skipped
+     */
+    List<ImportRow> readNdjson(Reader input) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        List<ImportRow> rows = new ArrayList<>();
+        long line = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            checkRowLimit(rows);
+            try {
+                DeviceRequest request = objectMapper.readValue(text, DeviceRequest.class);
+                rows.add(request != null ? ImportRow.parsed(line, request) : ImportRow.unreadable(line, "Expected a JSON object"));
+            } catch (JsonProcessingException e) {
+                rows.add(ImportRow.unreadable(line, "Malformed JSON: " + e.getOriginalMessage()));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Parse CSV with a header of DeviceRequest property names; configuration.key and metadata.key columns
+     * fill the attribute maps, and empty cells are left unset
+     */
+    List<ImportRow> readCsv(Reader input) throws IOException {
+        CsvReader reader = new CsvReader(input);
+        List<String> header = reader.next();
+        if (header == null) {
+            throw new IllegalArgumentException("CSV file has no header row");
+        }
+        if (header.get(0).startsWith("\uFEFF")) {
+            header.set(0, header.get(0).substring(1));
+        }
+        for (String column : header) {
+            if (!CSV_COLUMNS.contains(column) && !attributeColumn(column, CONFIGURATION_PREFIX)
+                    && !attributeColumn(column, METADATA_PREFIX)) {
+                throw new IllegalArgumentException("Unknown CSV column: '" + column + "'");
+            }
+        }
+
+        List<ImportRow> rows = new ArrayList<>();
+        List<String> cells;
+        while ((cells = reader.next()) != null) {
+            if (cells.size() == 1 && cells.get(0).isEmpty()) {
+                continue;
+            }
+            checkRowLimit(rows);
+            if (cells.size() != header.size()) {
+                rows.add(ImportRow.unreadable(reader.recordLine,
+                    "Expected " + header.size() + " columns but found " + cells.size()));
+                continue;
+            }
+            Map<String, Object> properties = new HashMap<>();
+            Map<String, String> configuration = new HashMap<>();
+            Map<String, String> metadata = new HashMap<>();
+            for (int i = 0; i < header.size(); i++) {
+                String column = header.get(i);
+                String value = cells.get(i);
+                if (value.isEmpty()) {
+                    continue;
+                }
+                if (column.startsWith(CONFIGURATION_PREFIX)) {
+                    configuration.put(column.substring(CONFIGURATION_PREFIX.length()), value);
+                } else if (column.startsWith(METADATA_PREFIX)) {
+                    metadata.put(column.substring(METADATA_PREFIX.length()), value);
+                } else {
+                    properties.put(column, value);
+                }
+            }
+            properties.put("configuration", configuration);
+            properties.put("metadata", metadata);
+            try {
+                rows.add(ImportRow.parsed(reader.recordLine, objectMapper.convertValue(properties, DeviceRequest.class)));
+            } catch (IllegalArgumentException e) {
+                String reason = e.getCause() instanceof JsonMappingException mapping
+                    ? mapping.getOriginalMessage() : e.getMessage();
+                rows.add(ImportRow.unreadable(reader.recordLine, "Invalid value: " + reason));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Reject rows that would fail createDevice, returning the rest; lookups are one query each for the whole file
+     */
+    List<ImportRow> validate(List<ImportRow> rows) {
+        Map<String, ImportRow> bySerial = new HashMap<>();
+        for (ImportRow row : rows) {
+            if (row.error != null) {
+                continue;
+            }
+            Set<ConstraintViolation<DeviceRequest>> violations = validator.validate(row.request);
+            if (!violations.isEmpty()) {
+                row.error = violations.stream().map(ConstraintViolation::getMessage).sorted()
+                    .collect(Collectors.joining("; "));
+                continue;
+            }
+            String tooLong = tooLongValue(row.request);
+            if (tooLong != null) {
+                row.error = tooLong + " must not exceed " + MAX_COLUMN_LENGTH + " characters";
+                continue;
+            }
+            if (row.request.status() != null && !row.request.status().isEmpty()) {
+                try {
+                    row.status = Device.DeviceStatus.valueOf(row.request.status().toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    row.error = "Invalid device status: " + row.request.status();
+                    continue;
+                }
+            }
+            ImportRow first = bySerial.putIfAbsent(row.request.serialNumber(), row);
+            if (first != null) {
+                row.error = "Duplicate serial number '" + row.request.serialNumber() + "' (first on line " + first.line + ")";
+            }
+        }
+
+        List<ImportRow> candidates = rows.stream().filter(row -> row.error == null).toList();
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        Set<String> taken = new HashSet<>(jdbcTemplate.query(TAKEN_SERIALS_QUERY,
+            parameters(column(candidates, "varchar", row -> row.request.serialNumber())),
+            (resultSet, rowNum) -> resultSet.getString(1)));
+        Set<Long> sites = new HashSet<>(jdbcTemplate.query(EXISTING_SITES_QUERY,
+            parameters(new SqlArray("bigint", candidates.stream().map(row -> row.request.siteId()).distinct().toArray())),
+            (resultSet, rowNum) -> resultSet.getLong(1)));
+        Map<String, DeviceType> deviceTypes = deviceTypeRepository.findAll().stream()
+            .collect(Collectors.toMap(DeviceType::getName, Function.identity()));
+
+        for (ImportRow row : candidates) {
+            if (taken.contains(row.request.serialNumber())) {
+                row.error = "Device with serial number '" + row.request.serialNumber() + "' already exists";
+            } else if (!sites.contains(row.request.siteId())) {
+                row.error = "Site not found with ID: " + row.request.siteId();
+            } else if ((row.deviceType = deviceTypes.get(row.request.deviceType().toUpperCase())) == null) {
+                row.error = "Invalid device type: " + row.request.deviceType();
+            }
+        }
+        return candidates.stream().filter(row -> row.error == null).toList();
+    }
+
+    /**
+     * Insert the accepted rows and their attributes, returning the rows that were created
+     */
+    private List<ImportRow> insert(List<ImportRow> accepted) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<ImportRow> created = new ArrayList<>(accepted.size());
+        for (List<ImportRow> batch : batches(accepted)) {
+            Map<String, Long> ids = new HashMap<>();
+            jdbcTemplate.query(INSERT_DEVICES, parameters(now, now,
+                    column(batch, "varchar", row -> row.request.serialNumber()),
+                    column(batch, "varchar", row -> row.request.name()),
+                    column(batch, "varchar", row -> row.request.description()),
+                    column(batch, "bigint", row -> row.deviceType.getId()),
+                    column(batch, "varchar", row -> row.request.model()),
+                    column(batch, "varchar", row -> row.request.manufacturer()),
+                    column(batch, "varchar", row -> row.request.firmwareVersion()),
+                    column(batch, "varchar", row -> row.status.name()),
+                    column(batch, "varchar", row -> text(row.request.ratedPowerKw())),
+                    column(batch, "varchar", DeviceProvisioningService::mqttTopic),
+                    column(batch, "varchar", row -> row.request.ipAddress()),
+                    column(batch, "varchar", row -> row.request.macAddress()),
+                    column(batch, "varchar", row -> text(row.request.installationDate())),
+                    column(batch, "bigint", row -> row.request.siteId())),
+                (RowCallbackHandler) resultSet -> ids.put(resultSet.getString("serial_number"), resultSet.getLong("id")));
+
+            for (ImportRow row : batch) {
+                row.deviceId = ids.get(row.request.serialNumber());
+                if (row.deviceId == null) {
+                    row.error = "Device with serial number '" + row.request.serialNumber() + "' already exists";
+                } else {
+                    created.add(row);
+                }
+            }
+        }
+
+        insertAttributes(INSERT_CONFIGURATION, created, row -> row.request.configuration());
+        insertAttributes(INSERT_METADATA, created, row -> row.request.metadata());
+
+        created.stream().map(row -> row.request.siteId()).distinct().forEach(overviewSnapshotService::invalidateSite);
+        fleetStatisticsService.devicesCreated(created.stream()
+            .map(row -> new FleetStatisticsService.DeviceState(row.status, row.deviceType.getName()))
+            .toList());
+        return created;
+    }
+
+    private void insertAttributes(String sql, List<ImportRow> created, Function<ImportRow, Map<String, String>> attributes) {
+        List<Object[]> values = new ArrayList<>();
+        for (ImportRow row : created) {
+            Map<String, String> map = attributes.apply(row);
+            if (map != null) {
+                map.forEach((key, value) -> values.add(new Object[]{row.deviceId, key, value}));
+            }
+        }
+        for (List<Object[]> batch : batches(values)) {
+            jdbcTemplate.update(sql, parameters(
+                column(batch, "bigint", value -> value[0]),
+                column(batch, "varchar", value -> value[1]),
+                column(batch, "varchar", value -> value[2])));
+        }
+    }
+
+    private <T> List<List<T>> batches(List<T> items) {
+        List<List<T>> batches = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += batchSize) {
+            batches.add(items.subList(from, Math.min(from + batchSize, items.size())));
+        }
+        return batches;
+    }
+
+    /**
+     * Bind values in order, SqlArray values as arrays of the statement's connection
+     */
+    private static PreparedStatementSetter parameters(Object... values) {
+        return statement -> {
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] instanceof SqlArray array) {
+                    statement.setArray(i + 1, statement.getConnection().createArrayOf(array.elementType(), array.elements()));
+                } else {
+                    statement.setObject(i + 1, values[i]);
+                }
+            }
+        };
+    }
+
+    private static <T> SqlArray column(List<T> rows, String elementType, Function<T, Object> value) {
+        return new SqlArray(elementType, rows.stream().map(value).toArray());
+    }
+
+    private static String mqttTopic(ImportRow row) {
+        DeviceRequest request = row.request;
+        return request.mqttTopic() != null && !request.mqttTopic().isEmpty()
+            ? request.mqttTopic()
+            : String.format("sites/%d/devices/%s/telemetry", request.siteId(), request.serialNumber());
+    }
+
+    private static String text(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    private void checkRowLimit(Collection<ImportRow> rows) {
+        if (rows.size() >= maxRows) {
+            throw new IllegalArgumentException("Import must not exceed " + maxRows + " devices");
+        }
+    }
+
+    private static boolean attributeColumn(String column, String prefix) {
+        return column.startsWith(prefix) && column.length() > prefix.length();
+    }
+
+    private static String tooLongValue(DeviceRequest request) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("Firmware version", request.firmwareVersion());
+        columns.put("MQTT topic", request.mqttTopic());
+        columns.put("IP address", request.ipAddress());
+        columns.put("MAC address", request.macAddress());
+        for (Map<String, String> attributes : Arrays.asList(request.configuration(), request.metadata())) {
+            if (attributes != null) {
+                attributes.forEach((key, value) -> {
+                    columns.put("Attribute key '" + key + "'", key);
+                    columns.put("Attribute '" + key + "'", value);
+                });
+            }
+        }
+        return columns.entrySet().stream()
+            .filter(entry -> entry.getValue() != null && entry.getValue().length() > MAX_COLUMN_LENGTH)
+            .map(Map.Entry::getKey)
+            .findFirst().orElse(null);
+    }
+
+    private record SqlArray(String elementType, Object[] elements) {
+    }
+
+    /**
+     * One data row of the file and what validation resolved for it
+     */
+    static final class ImportRow {
+
+        final long line;
+        final DeviceRequest request;
+        String error;
+        DeviceType deviceType;
+        Device.DeviceStatus status = Device.DeviceStatus.OFFLINE;
+        Long deviceId;
+
+        private ImportRow(long line, DeviceRequest request, String error) {
+            this.line = line;
+            this.request = request;
+            this.error = error;
+        }
+
+        static ImportRow parsed(long line, DeviceRequest request) {
+            return new ImportRow(line, request, null);
+        }
+
+        static ImportRow unreadable(long line, String error) {
+            return new ImportRow(line, null, error);
+        }
+    }
+
+    /**
+     * RFC 4180 records: quoted fields may hold commas, doubled quotes and line breaks
+     */
+    static final class CsvReader {
+
+        private final Reader reader;
+        private long line = 1;
+        private int pending = -2;
+        long recordLine;
+
+        CsvReader(Reader reader) {
+            this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+        }
+
+        /**
+         * Cells of the next record, or null at the end of the input
+         */
+        List<String> next() throws IOException {
+            recordLine = line;
+            List<String> cells = new ArrayList<>();
+            StringBuilder cell = new StringBuilder();
+            boolean inQuotes = false;
+            boolean read = false;
+            int c;
+            while ((c = read()) != -1) {
+                read = true;
+                if (inQuotes) {
+                    if (c == '"') {
+                        int following = read();
+                        if (following == '"') {
+                            cell.append('"');
+                        } else {
+                            inQuotes = false;
+                            pending = following;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        cell.append((char) c);
+                    }
+                } else if (c == '"' && cell.isEmpty()) {
+                    inQuotes = true;
+                } else if (c == ',') {
+                    cells.add(cell.toString());
+                    cell.setLength(0);
+                } else if (c == '\n') {
+                    line++;
+                    cells.add(cell.toString());
+                    return cells;
+                } else if (c != '\r') {
+                    cell.append((char) c);
+                }
+            }
+            if (inQuotes) {
+                throw new IllegalArgumentException("Unterminated quoted field starting on line " + recordLine);
+            }
+            if (!read) {
+                return null;
+            }
+            cells.add(cell.toString());
+            return cells;
+        }
+
+        private int read() throws IOException {
+            if (pending != -2) {
+                int c = pending;
+                pending = -2;
+                return c;
+            }
+            return reader.read();
+        }
+    }
+}
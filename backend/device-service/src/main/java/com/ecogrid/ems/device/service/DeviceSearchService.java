@@ -0,0 +1,208 @@
+package com.ecogrid.ems.device.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Prefix, infix and typo-tolerant search over device names and serial numbers.
+ *
+ * Matches always come from the database. Prefixes are range scans on "C"-collated expression indexes,
+ * which return rows in order and stop at the limit; infixes use pg_trgm GIN indexes when the extension can
+ * be installed, and plain scans otherwise. Only when neither finds anything is the query spell-corrected
+ * against an in-memory vocabulary of name words and run again, so a typo costs one more indexed lookup
+ * instead of a similarity scan over every device.
+ */
+@Service
+public class DeviceSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DeviceSearchService.class);
+
+    private static final String CREATE_TRIGRAM_EXTENSION = "CREATE EXTENSION IF NOT EXISTS pg_trgm";
+
+    // Built concurrently so a first start against a large fleet does not block writes
+    private static final List<String> PREFIX_INDEXES = List.of(
+        "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_device_name_prefix ON devices ((lower(name) COLLATE \"C\"), id)",
+        "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_device_serial_prefix ON devices ((lower(serial_number) COLLATE \"C\"), id)");
+
+    private static final List<String> TRIGRAM_INDEXES = List.of(
+        "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_device_name_trgm ON devices USING gin (lower(name) gin_trgm_ops)",
+        "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_device_serial_trgm ON devices USING gin (lower(serial_number) gin_trgm_ops)",
+        "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_site_name_trgm ON sites USING gin (lower(name) gin_trgm_ops)");
+
+    private static final String PREFIX_QUERY =
+        "SELECT id FROM devices WHERE lower(%1$s) COLLATE \"C\" >= ? AND lower(%1$s) COLLATE \"C\" < ? " +
+        "ORDER BY lower(%1$s) COLLATE \"C\", id LIMIT ?";
+
+    private static final String INFIX_QUERY =
+        "SELECT id FROM devices WHERE lower(%s) LIKE ? ESCAPE '\\' LIMIT ?";
+
+    // How many rows contain a term decides between a trigram bitmap and a scan that stops at the limit, and a
+    // generic plan cached for the prepared statement cannot know; custom plans cost far less than a wrong guess
+    private static final String CUSTOM_PLANS = "SET LOCAL plan_cache_mode = force_custom_plan";
+
+    private static final String NAMES_QUERY = "SELECT DISTINCT lower(name) FROM devices";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${app.search.trigram.enabled:true}")
+    private boolean trigramEnabled;
+
+    @Value("${app.search.fuzzy-threshold:0.4}")
+    private double fuzzyThreshold;
+
+    private volatile SearchVocabulary vocabulary = SearchVocabulary.EMPTY;
+
+    public DeviceSearchService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Create the search indexes and load the vocabulary in the background once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread thread = new Thread(() -> {
+            ensureSearchIndexes();
+            refreshVocabulary();
+        }, "device-search-setup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Create the prefix indexes and, if pg_trgm is available, the trigram indexes; searches work without
+     * them, only slower
+     */
+    public void ensureSearchIndexes() {
+        PREFIX_INDEXES.forEach(this::createIndex);
+        if (!trigramEnabled) {
+            logger.info("Trigram search indexes are disabled; infix search scans devices");
+            return;
+        }
+        try {
+            jdbcTemplate.execute(CREATE_TRIGRAM_EXTENSION);
+        } catch (DataAccessException e) {
+            logger.warn("pg_trgm is not available, infix search scans devices: {}", e.getMostSpecificCause().getMessage());
+            return;
+        }
+        TRIGRAM_INDEXES.forEach(this::createIndex);
+    }
+
+    /**
+     * Reload the words typos are corrected against
+     */
+    @Scheduled(fixedDelayString = "${app.search.vocabulary-refresh-interval-ms:600000}",
+               initialDelayString = "${app.search.vocabulary-refresh-interval-ms:600000}")
+    public void refreshVocabulary() {
+        long started = System.currentTimeMillis();
+        try {
+            Set<String> words = new HashSet<>();
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(NAMES_QUERY,
+                (RowCallbackHandler) resultSet -> words.addAll(SearchVocabulary.words(resultSet.getString(1)))));
+            vocabulary = new SearchVocabulary(words);
+            logger.info("Loaded device search vocabulary of {} words in {} ms",
+                words.size(), System.currentTimeMillis() - started);
+        } catch (DataAccessException e) {
+            logger.error("Failed to load device search vocabulary", e);
+        }
+    }
+
+    /**
+     * Ids of up to limit devices matching the query, best matches first: serial number prefixes, name
+     * prefixes, then serial numbers and names containing the query. When nothing matches, the query is
+     * corrected against the name vocabulary and searched again. Runs in the caller's transaction.
+     *
+     * @throws IllegalArgumentException for a blank query
+     */
+    public SearchHits search(String query, int limit) {
+        String normalized = query == null ? "" : query.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Search query must not be blank");
+        }
+        List<Long> ids = find(normalized, limit);
+        if (!ids.isEmpty()) {
+            return new SearchHits(ids, null);
+        }
+        String corrected = vocabulary.correct(normalized, fuzzyThreshold);
+        if (corrected == null) {
+            return new SearchHits(ids, null);
+        }
+        return new SearchHits(find(corrected, limit), corrected);
+    }
+
+    private List<Long> find(String term, int limit) {
+        jdbcTemplate.execute(CUSTOM_PLANS);
+        Set<Long> ids = new LinkedHashSet<>();
+        collectPrefix(ids, "serial_number", term, limit);
+        collectPrefix(ids, "name", term, limit);
+        // Trigram indexes cannot narrow shorter terms, which would mean a scan
+        if (term.length() >= 3) {
+            collectInfix(ids, "serial_number", term, limit);
+            collectInfix(ids, "name", term, limit);
+        }
+        return List.copyOf(ids);
+    }
+
+    private void collectPrefix(Set<Long> ids, String column, String term, int limit) {
+        if (ids.size() < limit) {
+            ids.addAll(jdbcTemplate.queryForList(String.format(PREFIX_QUERY, column), Long.class,
+                term, prefixUpperBound(term), limit));
+        }
+    }
+
+    private void collectInfix(Set<Long> ids, String column, String term, int limit) {
+        if (ids.size() < limit) {
+            // Rows already found may come back, so ask for enough to still fill the limit
+            ids.addAll(jdbcTemplate.queryForList(String.format(INFIX_QUERY, column), Long.class,
+                "%" + escapeLike(term) + "%", limit + ids.size()));
+        }
+    }
+
+    public int getVocabularySize() {
+        return vocabulary.size();
+    }
+
+    private void createIndex(String ddl) {
+        try {
+            jdbcTemplate.execute(ddl);
+        } catch (DataAccessException e) {
+            logger.warn("Could not create search index ({}): {}", ddl, e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    /**
+     * Smallest string greater than every string starting with the prefix, in code point order
+     */
+    static String prefixUpperBound(String prefix) {
+        int last = prefix.codePointBefore(prefix.length());
+        return prefix.substring(0, prefix.length() - Character.charCount(last)) + Character.toString(last + 1);
+    }
+
+    static String escapeLike(String term) {
+        return term.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * Matching device ids in rank order, and the corrected query they were found with if it was corrected
+     */
+    public record SearchHits(List<Long> ids, String correctedQuery) {}
+}
@@ -1,26 +1,37 @@
 package com.ecogrid.ems.device.service;
 
+import com.ecogrid.ems.device.dto.DeviceListing;
 import com.ecogrid.ems.device.dto.DeviceRequest;
 import com.ecogrid.ems.device.dto.DeviceResponse;
+import com.ecogrid.ems.device.dto.DeviceSearchResponse;
 import com.ecogrid.ems.device.entity.Device;
 import com.ecogrid.ems.device.entity.DeviceType;
 import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.event.DeviceCreatedEvent;
 import com.ecogrid.ems.device.repository.DeviceRepository;
+import com.ecogrid.ems.device.repository.DeviceRepository.DeviceAttribute;
+import com.ecogrid.ems.device.repository.DeviceRepositoryCustom;
 import com.ecogrid.ems.device.repository.DeviceTypeRepository;
+import com.ecogrid.ems.device.repository.KeysetSeek;
 import com.ecogrid.ems.device.repository.SiteRepository;
+import com.ecogrid.ems.shared.dto.pagination.CursorPage;
+import com.ecogrid.ems.shared.dto.pagination.PageCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -36,12 +47,20 @@ public class DeviceService {
     private final DeviceTypeRepository deviceTypeRepository;
     private final SiteRepository siteRepository;
     private final DeviceEventService deviceEventService;
+    private final SiteOverviewSnapshotService overviewSnapshotService;
+    private final FleetStatisticsService fleetStatisticsService;
+    private final DeviceSearchService deviceSearchService;
 
-    public DeviceService(DeviceRepository deviceRepository, DeviceTypeRepository deviceTypeRepository, SiteRepository siteRepository, DeviceEventService deviceEventService) {
+    public DeviceService(DeviceRepository deviceRepository, DeviceTypeRepository deviceTypeRepository, SiteRepository siteRepository,
+                         DeviceEventService deviceEventService, SiteOverviewSnapshotService overviewSnapshotService,
+                         FleetStatisticsService fleetStatisticsService, DeviceSearchService deviceSearchService) {
         this.deviceRepository = deviceRepository;
         this.deviceTypeRepository = deviceTypeRepository;
         this.siteRepository = siteRepository;
         this.deviceEventService = deviceEventService;
+        this.overviewSnapshotService = overviewSnapshotService;
+        this.fleetStatisticsService = fleetStatisticsService;
+        this.deviceSearchService = deviceSearchService;
     }
 
     /**
@@ -101,6 +120,12 @@ public class DeviceService {
         }
 
         Device savedDevice = deviceRepository.save(device);
+        overviewSnapshotService.invalidateSite(site.getId());
+        fleetStatisticsService.deviceChanged(null, FleetStatisticsService.DeviceState.of(savedDevice));
+        deviceEventService.publishDeviceCreatedEvent(DeviceCreatedEvent.create(
+            savedDevice.getId(), savedDevice.getSerialNumber(), site.getId(),
+            savedDevice.getDeviceType() != null ? savedDevice.getDeviceType().getName() : null,
+            savedDevice.getStatus().name()));
         logger.info("Created new device: {} (Serial: {})", savedDevice.getName(), savedDevice.getSerialNumber());
 
         return mapToDeviceResponse(savedDevice);
@@ -111,8 +136,8 @@ public class DeviceService {
      */
     @Transactional(readOnly = true)
     public Optional<DeviceResponse> getDeviceById(Long deviceId) {
-        return deviceRepository.findByIdWithSite(deviceId)
-                .map(this::mapToDeviceResponse);
+        return deviceRepository.findListingById(deviceId)
+                .map(listing -> toDeviceResponses(List.of(listing)).get(0));
     }
 
     /**
@@ -120,8 +145,8 @@ public class DeviceService {
      */
     @Transactional(readOnly = true)
     public Optional<DeviceResponse> getDeviceBySerialNumber(String serialNumber) {
-        return deviceRepository.findBySerialNumber(serialNumber)
-                .map(this::mapToDeviceResponse);
+        return deviceRepository.findListingBySerialNumber(serialNumber)
+                .map(listing -> toDeviceResponses(List.of(listing)).get(0));
     }
 
     /**
@@ -129,12 +154,30 @@ public class DeviceService {
      */
     @Transactional(readOnly = true)
     public Page<DeviceResponse> getAllDevices(Pageable pageable) {
-        Page<Device> devicePage = deviceRepository.findAll(pageable);
-        List<DeviceResponse> deviceResponses = devicePage.getContent().stream()
-                .map(this::mapToDeviceResponse)
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(deviceResponses, pageable, devicePage.getTotalElements());
+        Page<DeviceListing> devicePage = deviceRepository.findAllListings(pageable);
+        return new PageImpl<>(toDeviceResponses(devicePage.getContent()), pageable, devicePage.getTotalElements());
+    }
+
+    /**
+     * Get the page of devices after a cursor (the first page when after is null), optionally filtered by name.
+     * Unlike offset pages, the cost does not grow with depth and concurrent inserts don't shift rows between pages.
+     *
+     * @throws IllegalArgumentException for an unsupported sort key or a cursor issued for another sort
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<DeviceResponse> getDevicesAfter(String searchTerm, String sortBy, boolean descending,
+                                                      String after, int size, boolean includeTotal) {
+        KeysetSeek.Key key = KeysetSeek.key(sortBy, DeviceRepositoryCustom.KEYSET_SORT_KEYS);
+        KeysetSeek.Row cursor = after == null || after.isBlank() ? null
+            : key.rowAt(PageCursor.decode(after), descending);
+
+        List<KeysetSeek.Row> rows = deviceRepository.seekDevices(searchTerm, key, descending, cursor, size + 1);
+        Map<Long, DeviceResponse> devices = toDeviceResponses(deviceRepository.findListingsByIdIn(
+                rows.stream().limit(size).map(KeysetSeek.Row::id).toList()))
+            .stream().collect(Collectors.toMap(DeviceResponse::id, Function.identity()));
+        Long total = !includeTotal ? null
+            : searchTerm == null ? deviceRepository.count() : deviceRepository.countByNameSearch(searchTerm);
+        return CursorPage.of(rows, size, row -> key.cursorAt(row, descending), row -> devices.get(row.id()), total);
     }
 
     /**
@@ -142,9 +185,7 @@ public class DeviceService {
      */
     @Transactional(readOnly = true)
     public List<DeviceResponse> getDevicesBySite(Long siteId) {
-        return deviceRepository.findBySiteId(siteId).stream()
-                .map(this::mapToDeviceResponse)
-                .collect(Collectors.toList());
+        return toDeviceResponses(deviceRepository.findListingsBySiteId(siteId));
     }
 
     /**
@@ -152,9 +193,7 @@ public class DeviceService {
      */
     @Transactional(readOnly = true)
     public List<DeviceResponse> getDevicesByStatus(Device.DeviceStatus status) {
-        return deviceRepository.findByStatus(status).stream()
-                .map(this::mapToDeviceResponse)
-                .collect(Collectors.toList());
+        return toDeviceResponses(deviceRepository.findListingsByStatus(status));
     }
 
     /**
@@ -162,9 +201,7 @@ public class DeviceService {
      */
     @Transactional(readOnly = true)
     public List<DeviceResponse> getDevicesByType(DeviceType deviceType) {
-        return deviceRepository.findByDeviceType(deviceType).stream()
-                .map(this::mapToDeviceResponse)
-                .collect(Collectors.toList());
+        return toDeviceResponses(deviceRepository.findListingsByDeviceType(deviceType));
     }
 
     /**
@@ -177,17 +214,28 @@ public class DeviceService {
         return getDevicesByType(deviceType);
     }
 
+    /**
+     * Search devices by serial number and name prefix, then by infix, correcting misspelt queries that
+     * match nothing
+     *
+     * @throws IllegalArgumentException for a blank query
+     */
+    @Transactional(readOnly = true)
+    public DeviceSearchResponse searchDevices(String query, int limit) {
+        DeviceSearchService.SearchHits hits = deviceSearchService.search(query, limit);
+        Map<Long, DeviceResponse> devices = toDeviceResponses(deviceRepository.findListingsByIdIn(hits.ids()))
+            .stream().collect(Collectors.toMap(DeviceResponse::id, Function.identity()));
+        return new DeviceSearchResponse(query.trim(), hits.correctedQuery(),
+            hits.ids().stream().map(devices::get).filter(Objects::nonNull).toList());
+    }
+
     /**
      * Search devices by name
      */
     @Transactional(readOnly = true)
     public Page<DeviceResponse> searchDevicesByName(String searchTerm, Pageable pageable) {
-        Page<Device> devicePage = deviceRepository.searchByName(searchTerm, pageable);
-        List<DeviceResponse> deviceResponses = devicePage.getContent().stream()
-                .map(this::mapToDeviceResponse)
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(deviceResponses, pageable, devicePage.getTotalElements());
+        Page<DeviceListing> devicePage = deviceRepository.searchListingsByName(searchTerm, pageable);
+        return new PageImpl<>(toDeviceResponses(devicePage.getContent()), pageable, devicePage.getTotalElements());
     }
 
     /**
@@ -203,8 +251,11 @@ public class DeviceService {
             throw new IllegalArgumentException("Device with serial number '" + request.serialNumber() + "' already exists");
         }
 
+        FleetStatisticsService.DeviceState previousState = FleetStatisticsService.DeviceState.of(device);
+
         // Verify site exists if being changed
-        if (!device.getSite().getId().equals(request.siteId())) {
+        Long previousSiteId = device.getSite().getId();
+        if (!previousSiteId.equals(request.siteId())) {
             Site newSite = siteRepository.findById(request.siteId())
                     .orElseThrow(() -> new IllegalArgumentException("Site not found with ID: " + request.siteId()));
             device.setSite(newSite);
@@ -248,6 +299,9 @@ public class DeviceService {
         }
 
         Device updatedDevice = deviceRepository.save(device);
+        overviewSnapshotService.invalidateSite(previousSiteId);
+        overviewSnapshotService.invalidateSite(updatedDevice.getSite().getId());
+        fleetStatisticsService.deviceChanged(previousState, FleetStatisticsService.DeviceState.of(updatedDevice));
         logger.info("Updated device: {} (Serial: {})", updatedDevice.getName(), updatedDevice.getSerialNumber());
 
         return mapToDeviceResponse(updatedDevice);
@@ -264,7 +318,10 @@ public class DeviceService {
         String previousStatus = device.getStatus().name();
         String newStatus = status.name();
         
+        FleetStatisticsService.DeviceState previousState = FleetStatisticsService.DeviceState.of(device);
         deviceRepository.updateStatus(deviceId, status, LocalDateTime.now());
+        overviewSnapshotService.invalidateSite(device.getSite().getId());
+        fleetStatisticsService.deviceChanged(previousState, new FleetStatisticsService.DeviceState(status, previousState.typeName()));
         logger.info("Updated device status for device ID {}: {}", deviceId, status);
         
         // Publish status change event
@@ -293,6 +350,8 @@ public class DeviceService {
                 .orElseThrow(() -> new IllegalArgumentException("Device not found with ID: " + deviceId));
 
         deviceRepository.delete(device);
+        overviewSnapshotService.invalidateSite(device.getSite().getId());
+        fleetStatisticsService.deviceChanged(FleetStatisticsService.DeviceState.of(device), null);
         logger.info("Deleted device: {} (Serial: {})", device.getName(), device.getSerialNumber());
     }
 
@@ -302,9 +361,7 @@ public class DeviceService {
     @Transactional(readOnly = true)
     public List<DeviceResponse> getStaleDevices(int hoursThreshold) {
         LocalDateTime threshold = LocalDateTime.now().minusHours(hoursThreshold);
-        return deviceRepository.findStaleDevices(threshold).stream()
-                .map(this::mapToDeviceResponse)
-                .collect(Collectors.toList());
+        return toDeviceResponses(deviceRepository.findStaleListings(threshold));
     }
 
     /**
@@ -313,29 +370,16 @@ public class DeviceService {
     @Transactional(readOnly = true)
     public List<DeviceResponse> getDevicesDueForMaintenance(int daysThreshold) {
         LocalDateTime threshold = LocalDateTime.now().minusDays(daysThreshold);
-        return deviceRepository.findDevicesDueForMaintenance(threshold).stream()
-                .map(this::mapToDeviceResponse)
-                .collect(Collectors.toList());
+        return toDeviceResponses(deviceRepository.findListingsDueForMaintenance(threshold));
     }
 
     /**
      * Get device statistics
      */
-    @Transactional(readOnly = true)
+    // Served from in-memory counters, so no transaction (and no connection) is needed
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public DeviceStatistics getDeviceStatistics() {
-        long totalDevices = deviceRepository.count();
-        long onlineDevices = deviceRepository.countByStatus(Device.DeviceStatus.ONLINE);
-        long offlineDevices = deviceRepository.countByStatus(Device.DeviceStatus.OFFLINE);
-        long maintenanceDevices = deviceRepository.countByStatus(Device.DeviceStatus.MAINTENANCE);
-        long errorDevices = deviceRepository.countByStatus(Device.DeviceStatus.ERROR);
-
-        Map<String, Long> devicesByType = new HashMap<>();
-        List<DeviceType> deviceTypes = deviceTypeRepository.findAll();
-        for (DeviceType type : deviceTypes) {
-            devicesByType.put(type.getName(), deviceRepository.countByDeviceType(type));
-        }
-
-        return new DeviceStatistics(totalDevices, onlineDevices, offlineDevices, maintenanceDevices, errorDevices, devicesByType);
+        return fleetStatisticsService.getDeviceStatistics();
     }
 
     /**
@@ -345,6 +389,49 @@ public class DeviceService {
         return String.format("sites/%d/devices/%s/telemetry", siteId, serialNumber);
     }
 
+    /**
+     * Map listing rows to DeviceResponse DTOs; configuration and metadata of all rows take one query each
+     */
+    private List<DeviceResponse> toDeviceResponses(List<DeviceListing> listings) {
+        if (listings.isEmpty()) {
+            return List.of();
+        }
+        List<Long> deviceIds = listings.stream().map(DeviceListing::getId).toList();
+        Map<Long, Map<String, String>> configuration = groupByDevice(deviceRepository.findConfigurationByDeviceIds(deviceIds));
+        Map<Long, Map<String, String>> metadata = groupByDevice(deviceRepository.findMetadataByDeviceIds(deviceIds));
+
+        return listings.stream()
+                .map(listing -> new DeviceResponse(
+                        listing.getId(),
+                        listing.getSerialNumber(),
+                        listing.getName(),
+                        listing.getDescription(),
+                        listing.getDeviceType(),
+                        listing.getModel(),
+                        listing.getManufacturer(),
+                        listing.getFirmwareVersion(),
+                        listing.getStatus().name(),
+                        listing.getRatedPowerKw(),
+                        listing.getMqttTopic(),
+                        listing.getIpAddress(),
+                        listing.getMacAddress(),
+                        listing.getInstallationDate(),
+                        listing.getLastCommunication(),
+                        listing.getLastMaintenance(),
+                        listing.getSiteId(),
+                        listing.getSiteName(),
+                        configuration.getOrDefault(listing.getId(), new HashMap<>()),
+                        metadata.getOrDefault(listing.getId(), new HashMap<>()),
+                        listing.getCreatedAt(),
+                        listing.getUpdatedAt()))
+                .collect(Collectors.toList());
+    }
+
+    private Map<Long, Map<String, String>> groupByDevice(List<DeviceAttribute> attributes) {
+        return attributes.stream().collect(Collectors.groupingBy(DeviceAttribute::getDeviceId,
+                Collectors.toMap(DeviceAttribute::getAttributeKey, DeviceAttribute::getAttributeValue)));
+    }
+
     /**
      * Map Device entity to DeviceResponse DTO
      */
@@ -384,6 +471,7 @@ public class DeviceService {
             long offlineDevices,
             long maintenanceDevices,
             long errorDevices,
-            Map<String, Long> devicesByType
+            Map<String, Long> devicesByType,
+            FleetStatisticsService.Reconciliation reconciliation
     ) {}
 }
\ No newline at end of file
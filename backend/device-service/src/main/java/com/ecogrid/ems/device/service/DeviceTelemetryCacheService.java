@@ -1,39 +1,85 @@
 package com.ecogrid.ems.device.service;
 
+import com.ecogrid.ems.device.config.CacheConfig;
+import com.ecogrid.ems.device.dto.telemetry.BMSTelemetryDTO;
 import com.ecogrid.ems.device.dto.telemetry.BaseTelemetryDTO;
+import com.ecogrid.ems.device.dto.telemetry.EVChargerTelemetryDTO;
+import com.ecogrid.ems.device.dto.telemetry.SolarArrayTelemetryDTO;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
 
 /**
- * Service for caching the latest telemetry values for each device
+ * Service for caching the latest telemetry values for each device.
+ * Entries live in the bounded deviceTelemetry Caffeine cache from CacheConfig or, when the
+ * off-heap store is enabled, as fixed-schema numeric slots outside the Java heap plus a small
+ * on-heap overflow for the rest of the sample. With the
+ * Redis tier enabled these local copies act as a near-cache in front of the shared Redis values.
  */
 @Service
 public class DeviceTelemetryCacheService {
 
     private static final Logger logger = LoggerFactory.getLogger(DeviceTelemetryCacheService.class);
 
+    private static final int INVALIDATION_STRIPES = 1024;
+
     private final ObjectMapper objectMapper;
-    
-    // In-memory cache for latest telemetry data per device
-    private final Map<Long, CachedTelemetryData> telemetryCache = new ConcurrentHashMap<>();
+    private final TelemetryTimestampRange timestampRange;
+
+    // Latest telemetry data per device, shared with the Spring cache abstraction
+    private final Cache<Object, Object> telemetryCache;
+
+    // Optional off-heap store; devices without a fixed schema stay in telemetryCache
+    private final OffHeapTelemetryStore offHeapStore;
+
+    // Optional shared tier across replicas
+    private final RedisTelemetryStore redisStore;
+
+    // Invalidations seen per stripe of device IDs, so a Redis read can tell it raced with one
+    private final AtomicLongArray invalidations = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    // Notified with the device ID when its latest value changes here or in another replica
+    private final List<Consumer<Long>> changeListeners = new CopyOnWriteArrayList<>();
 
-    public DeviceTelemetryCacheService(ObjectMapper objectMapper) {
+    @SuppressWarnings("unchecked")
+    public DeviceTelemetryCacheService(ObjectMapper objectMapper, CacheManager cacheManager,
+                                       TelemetryTimestampRange timestampRange,
+                                       ObjectProvider<OffHeapTelemetryStore> offHeapStore,
+                                       ObjectProvider<RedisTelemetryStore> redisStore) {
         this.objectMapper = objectMapper;
+        this.timestampRange = timestampRange;
+        this.offHeapStore = offHeapStore.getIfAvailable();
+        if (this.offHeapStore != null) {
+            this.offHeapStore.forEachTimestamp(timestampRange::added);
+        }
+        this.redisStore = redisStore.getIfAvailable();
+        if (this.redisStore != null) {
+            this.redisStore.addInvalidationListener(this::evictLocal);
+        }
+        org.springframework.cache.Cache cache = cacheManager.getCache(CacheConfig.DEVICE_TELEMETRY_CACHE);
+        if (cache == null || !(cache.getNativeCache() instanceof Cache)) {
+            throw new IllegalStateException("Caffeine cache '" + CacheConfig.DEVICE_TELEMETRY_CACHE + "' is not configured");
+        }
+        this.telemetryCache = (Cache<Object, Object>) cache.getNativeCache();
     }
 
     /**
      * Cache the latest telemetry data for a device
      */
-    @CachePut(value = "deviceTelemetry", key = "#deviceId")
     public CachedTelemetryData cacheLatestTelemetry(Long deviceId, BaseTelemetryDTO telemetryDTO) {
         logger.debug("Caching latest telemetry for device: {}", deviceId);
         
@@ -44,7 +90,7 @@ public class DeviceTelemetryCacheService {
             telemetryDTO.getClass().getSimpleName()
         );
         
-        telemetryCache.put(deviceId, cachedData);
+        store(deviceId, cachedData, schemaFor(telemetryDTO));
         logger.debug("Cached telemetry for device {}: {}", deviceId, cachedData);
         
         return cachedData;
@@ -54,7 +100,6 @@ public class DeviceTelemetryCacheService {
      * Cache the latest telemetry data from a saved DeviceTelemetry entity
      * This preserves all the raw sensor data
      */
-    @CachePut(value = "deviceTelemetry", key = "#deviceId")
     public CachedTelemetryData cacheLatestTelemetryFromEntity(Long deviceId, com.ecogrid.ems.device.entity.DeviceTelemetry telemetryEntity) {
         logger.debug("Caching latest telemetry from entity for device: {}", deviceId);
         
@@ -73,7 +118,7 @@ public class DeviceTelemetryCacheService {
             telemetryType
         );
         
-        telemetryCache.put(deviceId, cachedData);
+        store(deviceId, cachedData, TelemetrySchema.fromDeviceType(telemetryType));
         logger.debug("Cached telemetry from entity for device {}: {}", deviceId, cachedData);
         
         return cachedData;
@@ -82,29 +127,206 @@ public class DeviceTelemetryCacheService {
     /**
      * Get the latest cached telemetry for a device
      */
-    @Cacheable(value = "deviceTelemetry", key = "#deviceId")
     public CachedTelemetryData getLatestTelemetry(Long deviceId) {
         logger.debug("Retrieving cached telemetry for device: {}", deviceId);
-        return telemetryCache.get(deviceId);
+        return getLatestTelemetryForDevices(List.of(deviceId)).get(deviceId);
     }
 
     /**
-     * Get latest telemetry for multiple devices
+     * Get latest telemetry for multiple devices in one bulk lookup per tier:
+     * off-heap, then the Caffeine cache, then one pipelined Redis round trip for the rest
      */
     public Map<Long, CachedTelemetryData> getLatestTelemetryForDevices(Iterable<Long> deviceIds) {
         Map<Long, CachedTelemetryData> result = new HashMap<>();
-        
-        for (Long deviceId : deviceIds) {
-            CachedTelemetryData cachedData = getLatestTelemetry(deviceId);
-            if (cachedData != null) {
-                result.put(deviceId, cachedData);
+
+        if (offHeapStore != null) {
+            result.putAll(offHeapStore.getAll(deviceIds));
+        }
+
+        List<Long> missing = missingIds(deviceIds, result);
+        telemetryCache.getAllPresent(missing).forEach((deviceId, cachedData) ->
+            result.put((Long) deviceId, (CachedTelemetryData) cachedData));
+
+        if (redisStore != null) {
+            missing = missingIds(missing, result);
+            long[] invalidationsBefore = new long[missing.size()];
+            for (int i = 0; i < invalidationsBefore.length; i++) {
+                invalidationsBefore[i] = invalidations.get(stripe(missing.get(i)));
+            }
+            Map<Long, CachedTelemetryData> shared = redisStore.getAll(missing);
+            for (int i = 0; i < invalidationsBefore.length; i++) {
+                Long deviceId = missing.get(i);
+                CachedTelemetryData cachedData = shared.get(deviceId);
+                if (cachedData == null) {
+                    continue;
+                }
+                storeLocal(deviceId, cachedData, TelemetrySchema.fromDeviceType(cachedData.getTelemetryType()));
+                // An invalidation since the GET may already have run against the empty local entry;
+                // the value read can be stale, so it must not stay in the near-cache
+                if (invalidations.get(stripe(deviceId)) != invalidationsBefore[i]) {
+                    removeLocal(deviceId);
+                }
             }
+            result.putAll(shared);
         }
-        
+
         logger.debug("Retrieved cached telemetry for {} devices", result.size());
         return result;
     }
 
+    /**
+     * Seed the local tiers from persisted state after a restart. Devices with a newer entry, from live
+     * telemetry or the shared tier, are left alone; the comparison and the write are atomic per device,
+     * so live telemetry arriving meanwhile is never overwritten. An entry as new as the current one
+     * replaces it, restoring the non-numeric fields a reopened off-heap store does not keep.
+     * Nothing is written to or published on the shared tier, which already holds live values.
+     * @return number of devices written
+     */
+    public int warmLatestTelemetry(List<CachedTelemetryData> entries) {
+        List<Long> deviceIds = new ArrayList<>(entries.size());
+        for (CachedTelemetryData entry : entries) {
+            deviceIds.add(entry.getDeviceId());
+        }
+        Map<Long, CachedTelemetryData> existing = getLatestTelemetryForDevices(deviceIds);
+
+        int warmed = 0;
+        for (CachedTelemetryData entry : entries) {
+            CachedTelemetryData current = existing.get(entry.getDeviceId());
+            if (entry.getTimestamp() == null || isOlder(entry.getTimestamp(), current)) {
+                continue;
+            }
+            if (warmLocal(entry.getDeviceId(), entry, TelemetrySchema.fromDeviceType(entry.getTelemetryType()))) {
+                notifyChanged(entry.getDeviceId());
+                warmed++;
+            }
+        }
+        return warmed;
+    }
+
+    private static boolean isOlder(LocalDateTime candidate, CachedTelemetryData current) {
+        return current != null && current.getTimestamp() != null && candidate.isBefore(current.getTimestamp());
+    }
+
+    /**
+     * storeLocal that keeps a newer local entry
+     */
+    private boolean warmLocal(Long deviceId, CachedTelemetryData cachedData, TelemetrySchema schema) {
+        if (offHeapStore != null && schema != null) {
+            OffHeapTelemetryStore.WriteResult result = offHeapStore.putIfNotOlder(deviceId, schema,
+                cachedData.getTelemetryType(), cachedData.getTimestamp(), cachedData.getTelemetryData());
+            if (result.stored()) {
+                timestampRange.removed(result.previousTimestamp());
+                timestampRange.added(cachedData.getTimestamp());
+                telemetryCache.invalidate(deviceId);
+                return true;
+            }
+            if (result.spilled()) {
+                timestampRange.removed(result.previousTimestamp());
+            }
+            if (result.keptNewer()) {
+                return false;
+            }
+        }
+        boolean[] written = new boolean[1];
+        telemetryCache.asMap().compute(deviceId, (id, current) -> {
+            if (current != null && isOlder(cachedData.getTimestamp(), (CachedTelemetryData) current)) {
+                return current;
+            }
+            written[0] = true;
+            return cachedData;
+        });
+        if (written[0]) {
+            timestampRange.added(cachedData.getTimestamp());
+        }
+        return written[0];
+    }
+
+    private List<Long> missingIds(Iterable<Long> deviceIds, Map<Long, CachedTelemetryData> found) {
+        List<Long> missing = new ArrayList<>();
+        for (Long deviceId : deviceIds) {
+            if (!found.containsKey(deviceId)) {
+                missing.add(deviceId);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Store locally and, when enabled, in the shared Redis tier
+     */
+    private void store(Long deviceId, CachedTelemetryData cachedData, TelemetrySchema schema) {
+        storeLocal(deviceId, cachedData, schema);
+        if (redisStore != null) {
+            redisStore.put(cachedData);
+        }
+        notifyChanged(deviceId);
+    }
+
+    /**
+     * Put an entry off-heap when possible, otherwise in the Caffeine cache, keeping the timestamp
+     * range in step; the cache's removal listener takes a replaced heap entry out of the range.
+     * An entry stored off-heap drops a heap copy left by an earlier sample that did not fit its slot.
+     */
+    private void storeLocal(Long deviceId, CachedTelemetryData cachedData, TelemetrySchema schema) {
+        if (offHeapStore != null && schema != null) {
+            OffHeapTelemetryStore.WriteResult result = offHeapStore.put(deviceId, schema,
+                cachedData.getTelemetryType(), cachedData.getTimestamp(), cachedData.getTelemetryData());
+            if (result.stored()) {
+                timestampRange.removed(result.previousTimestamp());
+                timestampRange.added(cachedData.getTimestamp());
+                telemetryCache.invalidate(deviceId);
+                return;
+            }
+            if (result.spilled()) {
+                timestampRange.removed(result.previousTimestamp());
+            }
+        }
+        timestampRange.added(cachedData.getTimestamp());
+        telemetryCache.put(deviceId, cachedData);
+    }
+
+    /**
+     * Drop the local copy of a device, e.g. after another replica updated it
+     */
+    private void evictLocal(Long deviceId) {
+        invalidations.incrementAndGet(stripe(deviceId));
+        removeLocal(deviceId);
+        notifyChanged(deviceId);
+    }
+
+    private void removeLocal(Long deviceId) {
+        if (offHeapStore != null) {
+            timestampRange.removed(offHeapStore.remove(deviceId));
+        }
+        telemetryCache.invalidate(deviceId);
+    }
+
+    private static int stripe(Long deviceId) {
+        return (int) Math.floorMod(deviceId, (long) INVALIDATION_STRIPES);
+    }
+
+    /**
+     * Register a callback for devices whose latest telemetry changed
+     */
+    public void addChangeListener(Consumer<Long> listener) {
+        changeListeners.add(listener);
+    }
+
+    private void notifyChanged(Long deviceId) {
+        changeListeners.forEach(listener -> listener.accept(deviceId));
+    }
+
+    private TelemetrySchema schemaFor(BaseTelemetryDTO telemetryDTO) {
+        if (telemetryDTO instanceof BMSTelemetryDTO) {
+            return TelemetrySchema.BMS;
+        } else if (telemetryDTO instanceof SolarArrayTelemetryDTO) {
+            return TelemetrySchema.SOLAR_ARRAY;
+        } else if (telemetryDTO instanceof EVChargerTelemetryDTO) {
+            return TelemetrySchema.EV_CHARGER;
+        }
+        return null;
+    }
+
     /**
      * Convert telemetry DTO to a map of key-value pairs
      */
@@ -128,15 +350,23 @@ public class DeviceTelemetryCacheService {
      * Clear cache for a specific device
      */
     public void clearDeviceCache(Long deviceId) {
-        telemetryCache.remove(deviceId);
+        evictLocal(deviceId);
+        if (redisStore != null) {
+            redisStore.remove(deviceId);
+        }
         logger.debug("Cleared cache for device: {}", deviceId);
     }
 
     /**
-     * Clear all cached telemetry data
+     * Clear all locally cached telemetry data; the shared Redis tier is left untouched
      */
     public void clearAllCache() {
-        telemetryCache.clear();
+        if (offHeapStore != null) {
+            for (long deviceId = 0; deviceId < offHeapStore.getCapacity(); deviceId++) {
+                timestampRange.removed(offHeapStore.remove(deviceId));
+            }
+        }
+        telemetryCache.invalidateAll();
         logger.info("Cleared all telemetry cache");
     }
 
@@ -144,17 +374,19 @@ public class DeviceTelemetryCacheService {
      * Get cache statistics
      */
     public Map<String, Object> getCacheStats() {
+        CacheStats cacheStats = telemetryCache.stats();
         Map<String, Object> stats = new HashMap<>();
-        stats.put("cachedDevices", telemetryCache.size());
-        stats.put("oldestEntry", telemetryCache.values().stream()
-            .map(CachedTelemetryData::getTimestamp)
-            .min(LocalDateTime::compareTo)
-            .orElse(null));
-        stats.put("newestEntry", telemetryCache.values().stream()
-            .map(CachedTelemetryData::getTimestamp)
-            .max(LocalDateTime::compareTo)
-            .orElse(null));
-        
+        long offHeapDevices = offHeapStore != null ? offHeapStore.getStoredDevices() : 0L;
+        stats.put("cachedDevices", telemetryCache.estimatedSize() + offHeapDevices);
+        stats.put("offHeapDevices", offHeapDevices);
+        stats.put("offHeapSpilledWrites", offHeapStore != null ? offHeapStore.getSpilledWrites() : 0L);
+        stats.put("oldestEntry", timestampRange.getOldest());
+        stats.put("newestEntry", timestampRange.getNewest());
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("evictionCount", cacheStats.evictionCount());
+
         return stats;
     }
 
@@ -3,6 +3,7 @@ package com.ecogrid.ems.device.service;
 import com.ecogrid.ems.device.dto.telemetry.BMSTelemetryDTO;
 import com.ecogrid.ems.device.dto.telemetry.BaseTelemetryDTO;
 import com.ecogrid.ems.device.dto.telemetry.EVChargerTelemetryDTO;
+import com.ecogrid.ems.device.dto.telemetry.RawTelemetryMessage;
 import com.ecogrid.ems.device.dto.telemetry.SolarArrayTelemetryDTO;
 import com.ecogrid.ems.device.entity.Device;
 import com.ecogrid.ems.device.entity.DeviceStatusCache;
@@ -17,16 +18,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service for processing device telemetry data from MQTT messages
@@ -45,6 +55,9 @@ public class DeviceTelemetryProcessor {
     private final AlertService alertService;
     private final TransactionTemplate transactionTemplate;
     private final DeviceTelemetryCacheService telemetryCacheService;
+    private final TelemetryHistoryBuffer historyBuffer;
+    private final TelemetryCompressor compressor;
+    private final TelemetryArchiveService archiveService;
 
     @Autowired
     public DeviceTelemetryProcessor(DeviceRepository deviceRepository,
@@ -54,7 +67,10 @@ public class DeviceTelemetryProcessor {
                                    ObjectMapper objectMapper,
                                    AlertService alertService,
                                    TransactionTemplate transactionTemplate,
-                                   DeviceTelemetryCacheService telemetryCacheService) {
+                                   DeviceTelemetryCacheService telemetryCacheService,
+                                   TelemetryHistoryBuffer historyBuffer,
+                                   TelemetryCompressor compressor,
+                                   TelemetryArchiveService archiveService) {
         this.deviceRepository = deviceRepository;
         this.telemetryRepository = telemetryRepository;
         this.statusCacheRepository = statusCacheRepository;
@@ -63,115 +79,254 @@ public class DeviceTelemetryProcessor {
         this.alertService = alertService;
         this.transactionTemplate = transactionTemplate;
         this.telemetryCacheService = telemetryCacheService;
+        this.historyBuffer = historyBuffer;
+        this.compressor = compressor;
+        this.archiveService = archiveService;
     }
 
     /**
      * Process telemetry message from MQTT
      * Topic format: ecogrid/sites/{siteId}/devices/{deviceId}/telemetry/{dataType}
+     * receivedAt is the MQTT arrival time (epoch millis), which is earlier than now for spooled messages.
+     * Failures to store or publish the sample propagate, rolling it back, so the caller can spool it.
+     * Samples within the device type's compression policies are published and cached but not stored.
      */
-    public void processTelemetryMessage(String topic, String payload) {
-        try {
-            logger.info("🔄 Processing telemetry message from topic: {}", topic);
-            logger.info("📝 Payload: {}", payload);
-            
-            // Parse topic metadata
-            TopicMetadata metadata = parseTopicMetadata(topic);
-            if (metadata == null) {
-                logger.warn("❌ Invalid topic format: {}", topic);
-                return;
-            }
-            logger.info("✅ Parsed topic - Site: {}, Device Serial: {}, Data Type: {}", 
-                metadata.getSiteId(), metadata.getDeviceSerial(), metadata.getDataType());
+    public void processTelemetryMessage(String topic, String payload, long receivedAt) {
+        logger.info("🔄 Processing telemetry message from topic: {}", topic);
+        logger.info("📝 Payload: {}", payload);
+        
+        // Parse topic metadata
+        TopicMetadata metadata = parseTopicMetadata(topic);
+        if (metadata == null) {
+            logger.warn("❌ Invalid topic format: {}", topic);
+            return;
+        }
+        logger.info("✅ Parsed topic - Site: {}, Device Serial: {}, Data Type: {}", 
+            metadata.getSiteId(), metadata.getDeviceSerial(), metadata.getDataType());
+
+        // Find device by serial number
+        Optional<Device> deviceOpt = deviceRepository.findBySerialNumber(metadata.getDeviceSerial());
+        if (deviceOpt.isEmpty()) {
+            logger.warn("❌ Device not found with serial number: {}", metadata.getDeviceSerial());
+            return;
+        }
 
-            // Find device by serial number
-            Optional<Device> deviceOpt = deviceRepository.findBySerialNumber(metadata.getDeviceSerial());
-            if (deviceOpt.isEmpty()) {
-                logger.warn("❌ Device not found with serial number: {}", metadata.getDeviceSerial());
-                return;
-            }
+        Device device = deviceOpt.get();
+        logger.info("✅ Found device: {} (Type: {})", device.getSerialNumber(), device.getDeviceType().getName());
 
-            Device device = deviceOpt.get();
-            logger.info("✅ Found device: {} (Type: {})", device.getSerialNumber(), device.getDeviceType().getName());
-            
-            if (!isDeviceActive(device)) {
-                logger.warn("⚠️ Device {} is not active, skipping telemetry", device.getSerialNumber());
-                return;
-            }
+        processDeviceTelemetry(device, payload, receivedAt);
+    }
 
-            // Parse telemetry based on device type
-            logger.info("🔍 Attempting to parse telemetry for device type: {}", device.getDeviceType().getName());
-            BaseTelemetryDTO telemetryDTO = parseTelemetryByDeviceType(device.getDeviceType(), payload);
-            if (telemetryDTO == null) {
-                logger.warn("❌ Failed to parse telemetry for device type: {}", device.getDeviceType().getName());
-                return;
+    /**
+     * Process one sample of a device that has already been looked up, exactly as for an MQTT message
+     * @return whether the sample was stored, only published, or not processed at all
+     */
+    public ProcessingOutcome processDeviceTelemetry(Device device, String payload, long receivedAt) {
+        PreparedTelemetry prepared = prepareTelemetry(device, payload, receivedAt);
+        if (prepared == null) {
+            return ProcessingOutcome.UNREADABLE;
+        }
+        DeviceTelemetry savedTelemetry = prepared.telemetry();
+        boolean stored = compressor.shouldStore(device, savedTelemetry.getTimestamp(), savedTelemetry.getData());
+        if (stored) {
+            savedTelemetry = telemetryRepository.save(savedTelemetry);
+            archiveService.markLateSamples(List.of(savedTelemetry), LocalDateTime.now());
+            logger.info("✅ Saved telemetry with ID: {} for device: {} at timestamp: {}", 
+                savedTelemetry.getId(), savedTelemetry.getDevice().getSerialNumber(), savedTelemetry.getTimestamp());
+            logger.info("💾 Saved telemetry data: {}", savedTelemetry.getData());
+        } else {
+            logger.debug("Telemetry for device {} is within its compression policies, not stored", device.getSerialNumber());
+        }
+
+        afterSave(device, prepared.dto(), savedTelemetry, receivedAt);
+
+        // Update device status cache in separate transaction (fixed @MapsId issue)
+        updateDeviceStatusCache(device, prepared.dto());
+
+        logger.info("🎉 Successfully processed telemetry for device: {}", device.getSerialNumber());
+        return stored ? ProcessingOutcome.STORED : ProcessingOutcome.COMPRESSED;
+    }
+
+    /**
+     * Process a batch of telemetry messages in one transaction, in order. Devices are looked up with one
+     * query and the samples saved together; each device's status cache is updated once, from its latest
+     * sample. Messages with an invalid topic, an unknown or inactive device or an unreadable payload are
+     * skipped, and samples within their compression policies are not stored, as in processTelemetryMessage.
+     * Samples are inserted with one JDBC batch. Failures to store propagate and roll back the whole batch;
+     * publishing, caching, history and alert checks only run once the batch has committed, so a batch that
+     * is rolled back and redelivered does not publish its samples twice.
+     *
+     * @return how many samples were stored
+     */
+    public int processTelemetryBatch(List<RawTelemetryMessage> messages) {
+        Map<String, String> serialsByTopic = new HashMap<>();
+        for (RawTelemetryMessage message : messages) {
+            if (!serialsByTopic.containsKey(message.topic())) {
+                serialsByTopic.put(message.topic(), deviceSerialForTopic(message.topic()));
             }
-            logger.info("✅ Successfully parsed telemetry DTO");
+        }
+        Map<String, Device> devicesBySerial = new HashMap<>();
+        List<String> serials = serialsByTopic.values().stream().filter(Objects::nonNull).distinct().toList();
+        if (!serials.isEmpty()) {
+            deviceRepository.findWithTypeBySerialNumberIn(serials)
+                .forEach(device -> devicesBySerial.put(device.getSerialNumber(), device));
+        }
 
-            // Set device ID and timestamp if not provided
-            // telemetryDTO.setDeviceId(device.getId());
-            if (telemetryDTO.getTimestamp() == null) {
-                telemetryDTO.setTimestamp(LocalDateTime.now());
+        List<Device> devices = new ArrayList<>(messages.size());
+        List<PreparedTelemetry> batch = new ArrayList<>(messages.size());
+        List<Long> receivedAt = new ArrayList<>(messages.size());
+        for (RawTelemetryMessage message : messages) {
+            String serial = serialsByTopic.get(message.topic());
+            Device device = serial != null ? devicesBySerial.get(serial) : null;
+            if (device == null) {
+                logger.warn("Skipping telemetry from {}: invalid topic or unknown device", message.topic());
+                continue;
+            }
+            PreparedTelemetry prepared = prepareTelemetry(device, message.payload(), message.receivedAt());
+            if (prepared != null) {
+                devices.add(device);
+                batch.add(prepared);
+                receivedAt.add(message.receivedAt());
             }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
 
-            // Store raw telemetry - use raw payload for generic telemetry to preserve sensor data
-            logger.info("💾 Creating and saving telemetry entity...");
-            DeviceTelemetry telemetry;
-            
-            // Check if this is a generic telemetry DTO (anonymous class) - if so, use raw payload
-            if (telemetryDTO.getClass().getName().contains("$")) {
-                logger.info("🔧 Using raw payload for generic telemetry to preserve sensor data");
-                telemetry = createTelemetryEntityFromPayload(device, payload, telemetryDTO.getTimestamp());
-            } else {
-                logger.info("🎯 Using typed telemetry DTO");
-                telemetry = createTelemetryEntity(device, telemetryDTO);
+        List<DeviceTelemetry> toStore = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            DeviceTelemetry telemetry = batch.get(i).telemetry();
+            if (compressor.shouldStore(devices.get(i), telemetry.getTimestamp(), telemetry.getData())) {
+                toStore.add(telemetry);
             }
-            logger.info("📊 Telemetry entity created with device ID: {} and timestamp: {}", telemetry.getDevice().getId(), telemetry.getTimestamp());
-            DeviceTelemetry savedTelemetry = telemetryRepository.save(telemetry);
-            logger.info("✅ Saved telemetry with ID: {} for device: {} at timestamp: {}", 
-                savedTelemetry.getId(), savedTelemetry.getDevice().getSerialNumber(), savedTelemetry.getTimestamp());
-            logger.info("💾 Saved telemetry data: {}", savedTelemetry.getData());
-            logger.info("💾 Saved telemetry voltage: {}, current: {}", 
-                savedTelemetry.getData() != null ? savedTelemetry.getData().get("voltage") : "NULL_DATA",
-                savedTelemetry.getData() != null ? savedTelemetry.getData().get("current") : "NULL_DATA");
-            
-            // Cache the latest telemetry data for quick access
-            logger.info("🗂️ Caching latest telemetry for device: {}", device.getSerialNumber());
-            telemetryCacheService.cacheLatestTelemetryFromEntity(device.getId(), savedTelemetry);
-            
-            // Verify telemetry was saved by retrieving records for this device  
-            List<DeviceTelemetry> deviceTelemetryRecords = telemetryRepository.findByDeviceSerialNumberOrderByTimestampDesc(device.getSerialNumber());
-            logger.info("📊 Total telemetry records for device {}: {}", device.getSerialNumber(), deviceTelemetryRecords.size());
-            
-            // Debug the retrieved records
-            if (!deviceTelemetryRecords.isEmpty()) {
-                DeviceTelemetry firstRecord = deviceTelemetryRecords.get(0);
-                logger.info("🔍 First retrieved record ID: {}, data: {}", firstRecord.getId(), firstRecord.getData());
-                if (firstRecord.getData() != null) {
-                    logger.info("🔍 First record voltage: {}, current: {}", 
-                        firstRecord.getData().get("voltage"), firstRecord.getData().get("current"));
-                }
+        }
+        if (!toStore.isEmpty()) {
+            telemetryRepository.insertAll(toStore);
+            archiveService.markLateSamples(toStore, LocalDateTime.now());
+        }
+        Map<Device, BaseTelemetryDTO> latestByDevice = new LinkedHashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            latestByDevice.put(devices.get(i), batch.get(i).dto());
+        }
+        latestByDevice.forEach(this::updateDeviceStatusCache);
+        runAfterCommit(() -> {
+            for (int i = 0; i < batch.size(); i++) {
+                afterBatchCommit(devices.get(i), batch.get(i), receivedAt.get(i));
             }
+        });
+        logger.debug("Stored {} of a batch of {} telemetry samples for {} devices",
+            toStore.size(), batch.size(), latestByDevice.size());
+        return toStore.size();
+    }
 
-            // Publish to Kafka for real-time processing (should not affect transaction)
-            publishToKafka(device, telemetryDTO);
+    /**
+     * Parse a device's payload into its DTO and the entity to store, or null when the device is inactive or
+     * the payload cannot be parsed. Samples without a timestamp are stamped with their arrival time, so a
+     * spooled or replayed message keeps the time it was received rather than the time it was processed.
+     */
+    private PreparedTelemetry prepareTelemetry(Device device, String payload, long receivedAt) {
+        if (!isDeviceActive(device)) {
+            logger.warn("⚠️ Device {} is not active, skipping telemetry", device.getSerialNumber());
+            return null;
+        }
 
-            // Update device status cache in separate transaction (fixed @MapsId issue)
-            updateDeviceStatusCache(device, telemetryDTO);
+        // Parse telemetry based on device type
+        logger.info("🔍 Attempting to parse telemetry for device type: {}", device.getDeviceType().getName());
+        BaseTelemetryDTO telemetryDTO = parseTelemetryByDeviceType(device.getDeviceType(), payload);
+        if (telemetryDTO == null) {
+            logger.warn("❌ Failed to parse telemetry for device type: {}", device.getDeviceType().getName());
+            return null;
+        }
+        logger.info("✅ Successfully parsed telemetry DTO");
 
-            // Check for alert conditions in separate transaction
-            checkAlertConditionsInSeparateTransaction(device, telemetryDTO);
+        // Set device ID and timestamp if not provided
+        // telemetryDTO.setDeviceId(device.getId());
+        if (telemetryDTO.getTimestamp() == null) {
+            telemetryDTO.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(receivedAt), ZoneId.systemDefault()));
+        }
 
-            logger.info("🎉 Successfully processed telemetry for device: {}", device.getSerialNumber());
+        // Store raw telemetry - use raw payload for generic telemetry to preserve sensor data
+        logger.info("💾 Creating and saving telemetry entity...");
+        DeviceTelemetry telemetry;
+        
+        // Check if this is a generic telemetry DTO (anonymous class) - if so, use raw payload
+        if (telemetryDTO.getClass().getName().contains("$")) {
+            logger.info("🔧 Using raw payload for generic telemetry to preserve sensor data");
+            telemetry = createTelemetryEntityFromPayload(device, payload, telemetryDTO.getTimestamp());
+        } else {
+            logger.info("🎯 Using typed telemetry DTO");
+            telemetry = createTelemetryEntity(device, telemetryDTO);
+        }
+        logger.info("📊 Telemetry entity created with device ID: {} and timestamp: {}", telemetry.getDevice().getId(), telemetry.getTimestamp());
+        return new PreparedTelemetry(telemetryDTO, telemetry);
+    }
 
-        } catch (Exception e) {
-            logger.error("Error processing telemetry message from topic: " + topic, e);
+    /**
+     * Publish, cache and check alerts for a sample once it has been saved, or left out of storage by the
+     * compressor
+     */
+    private void afterSave(Device device, BaseTelemetryDTO telemetryDTO, DeviceTelemetry savedTelemetry, long receivedAt) {
+        // Publish to Kafka for real-time processing; a failed send rolls the sample back before any
+        // in-memory state sees it, so a replay from the spool does not record it twice
+        publishToKafka(device, telemetryDTO, receivedAt);
+        updateLiveState(device, telemetryDTO, savedTelemetry);
+    }
+
+    /**
+     * afterSave for a sample of a committed batch. The sample is stored already, so a failed send is logged
+     * instead of thrown: the consumer would redeliver the batch and store it a second time.
+     */
+    private void afterBatchCommit(Device device, PreparedTelemetry prepared, long receivedAt) {
+        try {
+            publishToKafka(device, prepared.dto(), receivedAt);
+        } catch (RuntimeException e) {
+            logger.error("Failed to publish stored telemetry of device {}", device.getSerialNumber(), e);
+        }
+        try {
+            updateLiveState(device, prepared.dto(), prepared.telemetry());
+        } catch (RuntimeException e) {
+            logger.error("Failed to cache stored telemetry of device {}", device.getSerialNumber(), e);
         }
     }
 
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void updateLiveState(Device device, BaseTelemetryDTO telemetryDTO, DeviceTelemetry savedTelemetry) {
+        // Cache the latest telemetry data for quick access
+        logger.info("🗂️ Caching latest telemetry for device: {}", device.getSerialNumber());
+        telemetryCacheService.cacheLatestTelemetryFromEntity(device.getId(), savedTelemetry);
+
+        // Keep recent history in memory for dashboard backfill on subscribe
+        historyBuffer.record(device.getSite().getId(), device.getId(), device.getDeviceType().getName(),
+            savedTelemetry.getTimestamp(), savedTelemetry.getData());
+
+        // Check for alert conditions in separate transaction
+        checkAlertConditionsInSeparateTransaction(device, telemetryDTO);
+    }
+
+    /**
+     * Serial number of the device an MQTT telemetry topic belongs to, or null for an invalid topic
+     */
+    static String deviceSerialForTopic(String topic) {
+        TopicMetadata metadata = parseTopicMetadata(topic);
+        return metadata != null ? metadata.getDeviceSerial() : null;
+    }
+
     /**
      * Parse MQTT topic to extract metadata
      */
-    private TopicMetadata parseTopicMetadata(String topic) {
+    private static TopicMetadata parseTopicMetadata(String topic) {
         try {
             // Topic format: ecogrid/site{N}/{deviceType}/{deviceId}
             String[] parts = topic.split("/");
@@ -279,17 +434,14 @@ public class DeviceTelemetryProcessor {
             public void setQualityIndicators(Map<String, Object> qualityIndicators) { this.qualityIndicators = qualityIndicators; }
         };
         
-        // Try to extract timestamp if present
+        // Try to extract timestamp if present; otherwise prepareTelemetry falls back to the arrival time
         if (data.containsKey("timestamp")) {
             try {
                 String timestampStr = data.get("timestamp").toString();
                 dto.setTimestamp(LocalDateTime.parse(timestampStr));
             } catch (Exception e) {
-                logger.debug("Could not parse timestamp from payload, using current time");
-                dto.setTimestamp(LocalDateTime.now());
+                logger.debug("Could not parse timestamp from payload, using arrival time");
             }
-        } else {
-            dto.setTimestamp(LocalDateTime.now());
         }
         
         logger.info("✅ Successfully created generic telemetry DTO with {} data fields", data.size());
@@ -393,20 +545,23 @@ public class DeviceTelemetryProcessor {
     }
 
     /**
-     * Publish telemetry to Kafka for real-time processing
+     * Publish telemetry to Kafka for real-time processing.
+     * ingestedAt carries the MQTT arrival time (epoch millis) so consumers can measure end-to-end latency.
      */
-    private void publishToKafka(Device device, BaseTelemetryDTO telemetryDTO) {
-        try {
-            Map<String, Object> kafkaMessage = new HashMap<>();
-            kafkaMessage.put("deviceId", device.getId());
-            kafkaMessage.put("siteId", device.getSite().getId());
-            kafkaMessage.put("deviceType", device.getDeviceType().getName());
-            kafkaMessage.put("telemetry", convertTelemetryToMap(telemetryDTO));
-            kafkaMessage.put("timestamp", telemetryDTO.getTimestamp());
-
+    private void publishToKafka(Device device, BaseTelemetryDTO telemetryDTO, long receivedAt) {
+        Map<String, Object> kafkaMessage = new HashMap<>();
+        kafkaMessage.put("deviceId", device.getId());
+        kafkaMessage.put("siteId", device.getSite().getId());
+        kafkaMessage.put("deviceType", device.getDeviceType().getName());
+        kafkaMessage.put("telemetry", convertTelemetryToMap(telemetryDTO));
+        kafkaMessage.put("timestamp", telemetryDTO.getTimestamp());
+        kafkaMessage.put("ingestedAt", receivedAt);
+
+        CompletableFuture<SendResult<String, Object>> sent =
             kafkaTemplate.send("device-telemetry", device.getId().toString(), kafkaMessage);
-        } catch (Exception e) {
-            logger.error("Error publishing telemetry to Kafka for device: " + device.getId(), e);
+        // When no broker is reachable the send fails before it returns; throw so the sample is spooled
+        if (sent.isCompletedExceptionally()) {
+            sent.join();
         }
     }
 
@@ -552,6 +707,18 @@ public class DeviceTelemetryProcessor {
             && device.getStatus() != Device.DeviceStatus.ERROR;
     }
 
+    /**
+     * What processDeviceTelemetry did with a sample: stored and published it, only published it because it
+     * was within its compression policies, or dropped it because the payload could not be read
+     */
+    public enum ProcessingOutcome {
+        STORED,
+        COMPRESSED,
+        UNREADABLE
+    }
+
+    private record PreparedTelemetry(BaseTelemetryDTO dto, DeviceTelemetry telemetry) {}
+
     /**
      * Inner class for topic metadata
      */
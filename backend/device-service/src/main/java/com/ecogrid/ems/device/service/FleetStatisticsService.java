@@ -0,0 +1,301 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.repository.DeviceRepository;
+import com.ecogrid.ems.device.repository.SiteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Fleet-wide device and site counts kept in memory for the statistics endpoints.
+ *
+ * The device and site services report each committed create, update, delete and status change as a
+ * delta. A periodic reconciliation recounts everything from the database in one snapshot, replaces the
+ * counters and records the drift it found, e.g. from writes that bypass the services. Deltas committed
+ * while a recount runs are replayed on top of it as ReloadableState describes.
+ */
+@Service
+public class FleetStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FleetStatisticsService.class);
+
+    private final DeviceRepository deviceRepository;
+    private final SiteRepository siteRepository;
+    private final ReloadableState<FleetCounts> fleetCounts;
+
+    // Only touched by the callbacks of fleetCounts, which hold its lock
+    private Reconciliation deviceReconciliation = Reconciliation.NONE;
+    private Reconciliation siteReconciliation = Reconciliation.NONE;
+
+    private volatile DeviceService.DeviceStatistics deviceStatistics;
+    private volatile SiteService.SiteStatistics siteStatistics;
+
+    public FleetStatisticsService(DeviceRepository deviceRepository, SiteRepository siteRepository,
+                                  JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.deviceRepository = deviceRepository;
+        this.siteRepository = siteRepository;
+        this.fleetCounts = new ReloadableState<>(jdbcTemplate, transactionManager, this::publish);
+    }
+
+    public DeviceService.DeviceStatistics getDeviceStatistics() {
+        DeviceService.DeviceStatistics statistics = deviceStatistics;
+        if (statistics == null) {
+            reconcile();
+            statistics = requireInitialized(deviceStatistics);
+        }
+        return statistics;
+    }
+
+    public SiteService.SiteStatistics getSiteStatistics() {
+        SiteService.SiteStatistics statistics = siteStatistics;
+        if (statistics == null) {
+            reconcile();
+            statistics = requireInitialized(siteStatistics);
+        }
+        return statistics;
+    }
+
+    /**
+     * Count a device change once the surrounding transaction commits
+     * @param before state before the change, null for a created device
+     * @param after state after the change, null for a deleted device
+     */
+    public void deviceChanged(DeviceState before, DeviceState after) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        fleetCounts.applyAfterCommit(counts -> {
+            if (before != null) {
+                counts.addDevice(before, -1);
+            }
+            if (after != null) {
+                counts.addDevice(after, 1);
+            }
+        });
+    }
+
+    /**
+     * Count devices created in bulk once the surrounding transaction commits
+     */
+    public void devicesCreated(List<DeviceState> created) {
+        if (created.isEmpty()) {
+            return;
+        }
+        fleetCounts.applyAfterCommit(counts -> created.forEach(state -> counts.addDevice(state, 1)));
+    }
+
+    /**
+     * Count a site change once the surrounding transaction commits
+     * @param before state before the change, null for a created site
+     * @param after state after the change, null for a deleted site
+     */
+    public void siteChanged(SiteState before, SiteState after) {
+        if (Objects.equals(before, after)) {
+            return;
+        }
+        fleetCounts.applyAfterCommit(counts -> {
+            if (before != null) {
+                counts.addSite(before, -1);
+            }
+            if (after != null) {
+                counts.addSite(after, 1);
+            }
+        });
+    }
+
+    /**
+     * Recount from the database and replace the counters, recording any drift
+     */
+    @Scheduled(fixedDelayString = "${app.statistics.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        try {
+            fleetCounts.reload(this::recount, (counted, recounted) -> {
+                Map<String, Number> deviceDrift = counted == null ? Map.of() : counted.deviceDrift(recounted);
+                Map<String, Number> siteDrift = counted == null ? Map.of() : counted.siteDrift(recounted);
+                if (!deviceDrift.isEmpty()) {
+                    logger.warn("Corrected device statistics drift: {}", deviceDrift);
+                }
+                if (!siteDrift.isEmpty()) {
+                    logger.warn("Corrected site statistics drift: {}", siteDrift);
+                }
+                Instant now = Instant.now();
+                deviceReconciliation = deviceReconciliation.next(now, deviceDrift);
+                siteReconciliation = siteReconciliation.next(now, siteDrift);
+            });
+        } catch (DataAccessException e) {
+            logger.warn("Fleet statistics reconciliation failed: {}", e.getMostSpecificCause().getMessage());
+        }
+    }
+
+    private FleetCounts recount() {
+        FleetCounts recounted = new FleetCounts();
+        for (DeviceRepository.StatusCount row : deviceRepository.countGroupedByStatus()) {
+            recounted.totalDevices += row.getCount();
+            if (row.getStatus() != null) {
+                recounted.devicesByStatus.put(row.getStatus(), row.getCount());
+            }
+        }
+        for (DeviceRepository.TypeCount row : deviceRepository.countGroupedByTypeName()) {
+            recounted.devicesByType.put(row.getTypeName(), row.getCount());
+        }
+        for (SiteRepository.StatusCapacity row : siteRepository.countGroupedByStatus()) {
+            recounted.totalSites += row.getCount();
+            if (row.getStatus() != null) {
+                recounted.sitesByStatus.put(row.getStatus(), row.getCount());
+            }
+            if (row.getStatus() == Site.SiteStatus.ACTIVE) {
+                recounted.activeCapacityMw = row.getCapacityMw();
+            }
+        }
+        return recounted;
+    }
+
+    // Called with the lock of fleetCounts held
+    private void publish(FleetCounts counts) {
+        deviceStatistics = counts.toDeviceStatistics(deviceReconciliation);
+        siteStatistics = counts.toSiteStatistics(siteReconciliation);
+    }
+
+    private static <T> T requireInitialized(T statistics) {
+        if (statistics == null) {
+            throw new IllegalStateException("Fleet statistics are not available yet");
+        }
+        return statistics;
+    }
+
+    /**
+     * The counted attributes of a device
+     */
+    public record DeviceState(Device.DeviceStatus status, String typeName) {
+
+        public static DeviceState of(Device device) {
+            return new DeviceState(device.getStatus(), device.getDeviceType() != null ? device.getDeviceType().getName() : null);
+        }
+    }
+
+    /**
+     * The counted attributes of a site
+     */
+    public record SiteState(Site.SiteStatus status, BigDecimal capacityMw) {
+
+        public static SiteState of(Site site) {
+            return new SiteState(site.getStatus(), site.getCapacityMw());
+        }
+    }
+
+    /**
+     * Outcome of the reconciliations so far: when the counters were last checked against the database,
+     * how many checks found them off and by how much (database minus counter) the last time they were
+     */
+    public record Reconciliation(Instant reconciledAt, long driftedReconciliations, Instant lastDriftAt,
+                                 Map<String, Number> lastDrift) {
+
+        static final Reconciliation NONE = new Reconciliation(null, 0, null, Map.of());
+
+        Reconciliation next(Instant now, Map<String, Number> drift) {
+            if (drift.isEmpty()) {
+                return new Reconciliation(now, driftedReconciliations, lastDriftAt, lastDrift);
+            }
+            return new Reconciliation(now, driftedReconciliations + 1, now, drift);
+        }
+    }
+
+    private static final class FleetCounts {
+
+        long totalDevices;
+        final Map<Device.DeviceStatus, Long> devicesByStatus = new EnumMap<>(Device.DeviceStatus.class);
+        final Map<String, Long> devicesByType = new TreeMap<>();
+        long totalSites;
+        final Map<Site.SiteStatus, Long> sitesByStatus = new EnumMap<>(Site.SiteStatus.class);
+        BigDecimal activeCapacityMw = BigDecimal.ZERO;
+
+        void addDevice(DeviceState state, long sign) {
+            totalDevices += sign;
+            if (state.status() != null) {
+                devicesByStatus.merge(state.status(), sign, Long::sum);
+            }
+            if (state.typeName() != null) {
+                devicesByType.merge(state.typeName(), sign, Long::sum);
+            }
+        }
+
+        void addSite(SiteState state, long sign) {
+            totalSites += sign;
+            if (state.status() != null) {
+                sitesByStatus.merge(state.status(), sign, Long::sum);
+            }
+            if (state.status() == Site.SiteStatus.ACTIVE && state.capacityMw() != null) {
+                activeCapacityMw = activeCapacityMw.add(sign > 0 ? state.capacityMw() : state.capacityMw().negate());
+            }
+        }
+
+        Map<String, Number> deviceDrift(FleetCounts actual) {
+            Map<String, Number> drift = new LinkedHashMap<>();
+            putDrift(drift, "total", totalDevices, actual.totalDevices);
+            for (Device.DeviceStatus status : Device.DeviceStatus.values()) {
+                putDrift(drift, "status." + status, devicesByStatus.getOrDefault(status, 0L),
+                    actual.devicesByStatus.getOrDefault(status, 0L));
+            }
+            TreeMap<String, Long> types = new TreeMap<>(devicesByType);
+            actual.devicesByType.keySet().forEach(type -> types.putIfAbsent(type, 0L));
+            types.forEach((type, count) -> putDrift(drift, "type." + type, count, actual.devicesByType.getOrDefault(type, 0L)));
+            return drift;
+        }
+
+        Map<String, Number> siteDrift(FleetCounts actual) {
+            Map<String, Number> drift = new LinkedHashMap<>();
+            putDrift(drift, "total", totalSites, actual.totalSites);
+            for (Site.SiteStatus status : Site.SiteStatus.values()) {
+                putDrift(drift, "status." + status, sitesByStatus.getOrDefault(status, 0L),
+                    actual.sitesByStatus.getOrDefault(status, 0L));
+            }
+            if (activeCapacityMw.compareTo(actual.activeCapacityMw) != 0) {
+                drift.put("activeCapacityMw", actual.activeCapacityMw.subtract(activeCapacityMw));
+            }
+            return drift;
+        }
+
+        private static void putDrift(Map<String, Number> drift, String key, long counted, long actual) {
+            if (counted != actual) {
+                drift.put(key, actual - counted);
+            }
+        }
+
+        DeviceService.DeviceStatistics toDeviceStatistics(Reconciliation reconciliation) {
+            return new DeviceService.DeviceStatistics(
+                totalDevices,
+                devicesByStatus.getOrDefault(Device.DeviceStatus.ONLINE, 0L),
+                devicesByStatus.getOrDefault(Device.DeviceStatus.OFFLINE, 0L),
+                devicesByStatus.getOrDefault(Device.DeviceStatus.MAINTENANCE, 0L),
+                devicesByStatus.getOrDefault(Device.DeviceStatus.ERROR, 0L),
+                Map.copyOf(devicesByType),
+                reconciliation);
+        }
+
+        SiteService.SiteStatistics toSiteStatistics(Reconciliation reconciliation) {
+            return new SiteService.SiteStatistics(
+                totalSites,
+                sitesByStatus.getOrDefault(Site.SiteStatus.ACTIVE, 0L),
+                sitesByStatus.getOrDefault(Site.SiteStatus.INACTIVE, 0L),
+                sitesByStatus.getOrDefault(Site.SiteStatus.MAINTENANCE, 0L),
+                sitesByStatus.getOrDefault(Site.SiteStatus.OFFLINE, 0L),
+                activeCapacityMw,
+                reconciliation);
+        }
+    }
+}
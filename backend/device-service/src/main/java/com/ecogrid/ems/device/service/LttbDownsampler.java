@@ -0,0 +1,139 @@
+package com.ecogrid.ems.device.service;
+
+import java.util.Arrays;
+
+/**
+ * Streaming Largest-Triangle-Three-Buckets downsampling of one series.
+ *
+ * Buckets are fixed time slices whose averages are known before streaming starts, so each bucket only
+ * keeps its best candidate: the point forming the largest triangle with the previously selected point
+ * and the average of the next non-empty bucket. Memory is bounded by the output size. The first and
+ * last points of the series are always kept.
+ */
+final class LttbDownsampler {
+
+    private final boolean passThrough;
+    private final double[] nextX;
+    private final double[] nextY;
+    private final long lastTimestamp;
+    private final double lastValue;
+
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+
+    private boolean anchored;
+    private double anchorX;
+    private double anchorY;
+
+    private int bucket = -1;
+    private double bestArea;
+    private long bestTimestamp;
+    private double bestX;
+    private double bestY;
+
+    private LttbDownsampler(boolean passThrough, double[] nextX, double[] nextY,
+                            long lastTimestamp, double lastValue, int capacity) {
+        this.passThrough = passThrough;
+        this.nextX = nextX;
+        this.nextY = nextY;
+        this.lastTimestamp = lastTimestamp;
+        this.lastValue = lastValue;
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+
+    /**
+     * Keeps every point; for series that already fit in the point budget
+     */
+    static LttbDownsampler passThrough(int expectedPoints) {
+        return new LttbDownsampler(true, null, null, 0, Double.NaN, Math.max(expectedPoints, 1));
+    }
+
+    /**
+     * Downsampler for a series spread over buckets with the given averages (NaN x for empty buckets)
+     * @param lastTimestamp timestamp of the series' last point, which is emitted at finish()
+     */
+    static LttbDownsampler downsampling(double[] bucketAvgX, double[] bucketAvgY,
+                                        long lastTimestamp, double lastX, double lastY) {
+        int buckets = bucketAvgX.length;
+        double[] nextX = new double[buckets];
+        double[] nextY = new double[buckets];
+        double followingX = lastX;
+        double followingY = lastY;
+        for (int b = buckets - 1; b >= 0; b--) {
+            nextX[b] = followingX;
+            nextY[b] = followingY;
+            if (!Double.isNaN(bucketAvgX[b])) {
+                followingX = bucketAvgX[b];
+                followingY = bucketAvgY[b];
+            }
+        }
+        return new LttbDownsampler(false, nextX, nextY, lastTimestamp, lastY, buckets + 2);
+    }
+
+    /**
+     * Offer the next point in time order
+     * @param bucket time bucket of the point; ignored when passing through
+     * @param x position used for the triangle areas, in the same unit as the bucket averages
+     */
+    void add(int bucket, long timestamp, double x, double y) {
+        if (passThrough || !anchored) {
+            append(timestamp, y);
+            anchored = true;
+            anchorX = x;
+            anchorY = y;
+            return;
+        }
+        if (timestamp == lastTimestamp) {
+            return;
+        }
+        if (bucket != this.bucket) {
+            flushBucket();
+            this.bucket = bucket;
+            bestArea = -1;
+        }
+        double cx = nextX[bucket];
+        double cy = nextY[bucket];
+        double area = Math.abs((anchorX - cx) * (y - anchorY) - (anchorX - x) * (cy - anchorY));
+        if (area > bestArea) {
+            bestArea = area;
+            bestTimestamp = timestamp;
+            bestX = x;
+            bestY = y;
+        }
+    }
+
+    /**
+     * Selected points in time order
+     */
+    Series finish() {
+        if (!passThrough && anchored) {
+            flushBucket();
+            append(lastTimestamp, lastValue);
+        }
+        return new Series(Arrays.copyOf(timestamps, size), Arrays.copyOf(values, size));
+    }
+
+    private void flushBucket() {
+        if (bucket < 0 || bestArea < 0) {
+            return;
+        }
+        append(bestTimestamp, bestY);
+        anchorX = bestX;
+        anchorY = bestY;
+        bestArea = -1;
+    }
+
+    private void append(long timestamp, double value) {
+        if (size == timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    record Series(long[] timestamps, double[] values) {}
+}
@@ -20,9 +20,11 @@ public class MqttMessageService {
     private static final Logger logger = LoggerFactory.getLogger(MqttMessageService.class);
 
     private final DeviceRepository deviceRepository;
+    private final FleetStatisticsService fleetStatisticsService;
 
-    public MqttMessageService(DeviceRepository deviceRepository) {
+    public MqttMessageService(DeviceRepository deviceRepository, FleetStatisticsService fleetStatisticsService) {
         this.deviceRepository = deviceRepository;
+        this.fleetStatisticsService = fleetStatisticsService;
     }
 
     /**
@@ -43,6 +45,7 @@ public class MqttMessageService {
                             // Update device status to ONLINE if it was OFFLINE
                             if (device.getStatus() == Device.DeviceStatus.OFFLINE) {
                                 deviceRepository.updateStatus(device.getId(), Device.DeviceStatus.ONLINE, LocalDateTime.now());
+                                recordStatusChange(device, Device.DeviceStatus.ONLINE);
                                 logger.info("Device {} is now ONLINE", serialNumber);
                             }
                             
@@ -71,6 +74,7 @@ public class MqttMessageService {
                     .ifPresentOrElse(
                         device -> {
                             deviceRepository.updateStatus(device.getId(), deviceStatus, LocalDateTime.now());
+                            recordStatusChange(device, deviceStatus);
                             logger.info("Updated status for device {} to {}", serialNumber, deviceStatus);
                         },
                         () -> logger.warn("Received status update for unknown device: {}", serialNumber)
@@ -117,4 +121,10 @@ public class MqttMessageService {
         }
         return null;
     }
-}
\ No newline at end of file
+
+    private void recordStatusChange(Device device, Device.DeviceStatus status) {
+        FleetStatisticsService.DeviceState previousState = FleetStatisticsService.DeviceState.of(device);
+        fleetStatisticsService.deviceChanged(previousState,
+            new FleetStatisticsService.DeviceState(status, previousState.typeName()));
+    }
+}
@@ -0,0 +1,527 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.service.DeviceTelemetryCacheService.CachedTelemetryData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Off-heap latest-value store for device telemetry.
+ *
+ * Every device ID owns a fixed-size slot in one flat buffer, 512 bytes by default. The first 128 bytes
+ * hold a seqlock version, the epoch-millis timestamp, the schema code, a bitmask of present fields, up to
+ * {@link TelemetrySchema#MAX_FIELDS} doubles in the order of its {@link TelemetrySchema}, the telemetry
+ * type as a position among the schema's type names and one byte per enumerated status of the schema.
+ * The rest of the slot holds whatever else the sample carries - module temperature and alarm lists,
+ * charger details, keys outside the schema, a status value or telemetry type the schema does not list -
+ * as length-prefixed {@link TelemetryExtras} bytes.
+ *
+ * Writers claim a slot by CAS-ing the version to odd and publish by releasing it to the next even value;
+ * readers retry when the version moved, so neither side takes a lock. Nothing of a stored sample lives on
+ * the heap: when backed by a file the buffer is memory-mapped and a reopened store restores every sample
+ * in full. A sample whose extras do not fit its slot clears the slot instead and is reported as spilled,
+ * for the caller to keep elsewhere.
+ */
+public class OffHeapTelemetryStore implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapTelemetryStore.class);
+
+    private static final long MAGIC = 0x454D5354454C4D31L; // "EMSTELM1"
+    private static final int LAYOUT_VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    static final int DEFAULT_SLOT_SIZE = 512;
+
+    private static final int VERSION_OFFSET = 0;
+    private static final int TIMESTAMP_OFFSET = 8;
+    private static final int SCHEMA_OFFSET = 16;
+    private static final int MASK_OFFSET = 20;
+    private static final int VALUES_OFFSET = 24;
+    private static final int TYPE_OFFSET = 120;
+    private static final int STATUS_OFFSET = 124;
+    private static final int EXTRAS_LENGTH_OFFSET = 128;
+    private static final int EXTRAS_OFFSET = 132;
+    static final int MIN_SLOT_SIZE = 136;
+    // Type code of a telemetry type the schema does not list; it is spelled out in the extras
+    private static final int TYPE_IN_EXTRAS = -1;
+    private static final byte[] NO_EXTRAS = new byte[0];
+    private static final int MAX_WRITE_ATTEMPTS = 64;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final ByteBuffer buffer;
+    private final FileChannel channel;
+    private final int capacity;
+    private final int slotSize;
+    private final AtomicLong storedDevices = new AtomicLong();
+    private final AtomicLong spilledWrites = new AtomicLong();
+
+    private OffHeapTelemetryStore(ByteBuffer buffer, FileChannel channel, int capacity, int slotSize) {
+        this.buffer = buffer;
+        this.channel = channel;
+        this.capacity = capacity;
+        this.slotSize = slotSize;
+    }
+
+    /**
+     * Process-local store in a direct buffer with slots of the default size
+     */
+    public static OffHeapTelemetryStore inMemory(int capacity) {
+        return inMemory(capacity, DEFAULT_SLOT_SIZE);
+    }
+
+    /**
+     * Process-local store in a direct buffer
+     * @param slotSize bytes per device, a multiple of 8 of at least {@value #MIN_SLOT_SIZE}
+     */
+    public static OffHeapTelemetryStore inMemory(int capacity, int slotSize) {
+        checkCapacity(capacity, slotSize);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HEADER_SIZE + capacity * slotSize).order(ByteOrder.nativeOrder());
+        OffHeapTelemetryStore store = new OffHeapTelemetryStore(buffer, null, capacity, slotSize);
+        store.writeHeader();
+        return store;
+    }
+
+    /**
+     * Store memory-mapped onto a file with slots of the default size
+     */
+    public static OffHeapTelemetryStore mapped(Path file, int capacity) throws IOException {
+        return mapped(file, capacity, DEFAULT_SLOT_SIZE);
+    }
+
+    /**
+     * Store memory-mapped onto a file; existing contents are kept when the layout matches
+     * @param slotSize bytes per device, a multiple of 8 of at least {@value #MIN_SLOT_SIZE}
+     */
+    public static OffHeapTelemetryStore mapped(Path file, int capacity, int slotSize) throws IOException {
+        checkCapacity(capacity, slotSize);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = HEADER_SIZE + (long) capacity * slotSize;
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        buffer.order(ByteOrder.nativeOrder());
+
+        OffHeapTelemetryStore store = new OffHeapTelemetryStore(buffer, channel, capacity, slotSize);
+        if (store.headerMatches()) {
+            store.recoverSlots();
+            logger.info("Opened off-heap telemetry store {} with {} devices", file, store.storedDevices.get());
+        } else {
+            store.reset();
+            logger.info("Initialized off-heap telemetry store {} for {} devices", file, capacity);
+        }
+        return store;
+    }
+
+    /**
+     * Whether the device ID has a slot in this store
+     */
+    public boolean supports(Long deviceId) {
+        return deviceId != null && deviceId >= 0 && deviceId < capacity;
+    }
+
+    /**
+     * Write the latest values of a device; fields missing from data are stored as absent.
+     * The write is rejected for devices outside the store or when the slot stays contended, and spilled
+     * when the sample does not fit the slot.
+     */
+    public WriteResult put(Long deviceId, TelemetrySchema schema, String telemetryType, LocalDateTime timestamp,
+                           Map<String, Object> data) {
+        return write(deviceId, schema, telemetryType, timestamp, data, false);
+    }
+
+    /**
+     * Like put, but a stored value newer than timestamp is kept; the check and the write are one claim of the slot
+     */
+    public WriteResult putIfNotOlder(Long deviceId, TelemetrySchema schema, String telemetryType,
+                                     LocalDateTime timestamp, Map<String, Object> data) {
+        return write(deviceId, schema, telemetryType, timestamp, data, true);
+    }
+
+    private WriteResult write(Long deviceId, TelemetrySchema schema, String telemetryType, LocalDateTime timestamp,
+                              Map<String, Object> data, boolean keepNewer) {
+        if (!supports(deviceId) || schema == null || timestamp == null) {
+            return WriteResult.REJECTED;
+        }
+        int slot = slotOffset(deviceId);
+        EncodedSample sample = encode(schema, telemetryType, data);
+
+        for (int attempt = 0; attempt < MAX_WRITE_ATTEMPTS; attempt++) {
+            long version = (long) LONGS.getAcquire(buffer, slot + VERSION_OFFSET);
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (!LONGS.compareAndSet(buffer, slot + VERSION_OFFSET, version, version + 1)) {
+                continue;
+            }
+
+            int previousSchema = (int) INTS.get(buffer, slot + SCHEMA_OFFSET);
+            long previousTimestamp = (long) LONGS.get(buffer, slot + TIMESTAMP_OFFSET);
+            if (keepNewer && previousSchema != 0 && previousTimestamp > toEpochMillis(timestamp)) {
+                LONGS.setRelease(buffer, slot + VERSION_OFFSET, version + 2);
+                return WriteResult.kept(toLocalDateTime(previousTimestamp));
+            }
+
+            if (sample == null) {
+                INTS.set(buffer, slot + SCHEMA_OFFSET, 0);
+                INTS.set(buffer, slot + MASK_OFFSET, 0);
+                LONGS.setRelease(buffer, slot + VERSION_OFFSET, version + 2);
+                spilledWrites.incrementAndGet();
+                if (previousSchema == 0) {
+                    return WriteResult.spilled(null);
+                }
+                storedDevices.decrementAndGet();
+                return WriteResult.spilled(toLocalDateTime(previousTimestamp));
+            }
+
+            for (int i = 0; i < sample.values().length; i++) {
+                LONGS.set(buffer, slot + VALUES_OFFSET + i * 8, sample.values()[i]);
+            }
+            LONGS.set(buffer, slot + TIMESTAMP_OFFSET, toEpochMillis(timestamp));
+            INTS.set(buffer, slot + SCHEMA_OFFSET, schema.code());
+            INTS.set(buffer, slot + MASK_OFFSET, sample.mask());
+            INTS.set(buffer, slot + TYPE_OFFSET, sample.typeCode());
+            INTS.set(buffer, slot + STATUS_OFFSET, sample.statuses());
+            INTS.set(buffer, slot + EXTRAS_LENGTH_OFFSET, sample.extras().length);
+            buffer.put(slot + EXTRAS_OFFSET, sample.extras());
+
+            LONGS.setRelease(buffer, slot + VERSION_OFFSET, version + 2);
+
+            if (previousSchema == 0) {
+                storedDevices.incrementAndGet();
+                return WriteResult.INSERTED;
+            }
+            return new WriteResult(true, toLocalDateTime(previousTimestamp), false);
+        }
+
+        logger.warn("Gave up writing off-heap telemetry for device {} after {} attempts", deviceId, MAX_WRITE_ATTEMPTS);
+        return WriteResult.REJECTED;
+    }
+
+    /**
+     * Read the latest values of a device, or null when nothing is stored
+     */
+    public CachedTelemetryData get(Long deviceId) {
+        if (!supports(deviceId)) {
+            return null;
+        }
+        int slot = slotOffset(deviceId);
+        long[] values = new long[TelemetrySchema.MAX_FIELDS];
+
+        while (true) {
+            long version = (long) LONGS.getAcquire(buffer, slot + VERSION_OFFSET);
+            if ((version & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            int schemaCode = (int) INTS.get(buffer, slot + SCHEMA_OFFSET);
+            long timestamp = (long) LONGS.get(buffer, slot + TIMESTAMP_OFFSET);
+            int mask = (int) INTS.get(buffer, slot + MASK_OFFSET);
+            TelemetrySchema schema = TelemetrySchema.fromCode(schemaCode);
+            int fieldCount = schema != null ? schema.getFields().size() : 0;
+            for (int i = 0; i < fieldCount; i++) {
+                values[i] = (long) LONGS.get(buffer, slot + VALUES_OFFSET + i * 8);
+            }
+            int typeCode = (int) INTS.get(buffer, slot + TYPE_OFFSET);
+            int statuses = (int) INTS.get(buffer, slot + STATUS_OFFSET);
+            int extrasLength = (int) INTS.get(buffer, slot + EXTRAS_LENGTH_OFFSET);
+            // A torn read can see any length; the version check below discards it
+            byte[] extras = schema != null && extrasLength > 0 && extrasLength <= extrasCapacity()
+                ? new byte[extrasLength] : NO_EXTRAS;
+            buffer.get(slot + EXTRAS_OFFSET, extras);
+
+            VarHandle.acquireFence();
+            if ((long) LONGS.getAcquire(buffer, slot + VERSION_OFFSET) != version) {
+                continue;
+            }
+            if (schema == null) {
+                return null;
+            }
+            return toCachedData(deviceId, schema, timestamp, mask, values, typeCode, statuses, extras);
+        }
+    }
+
+    /**
+     * Read several devices; devices without a stored value are left out
+     */
+    public Map<Long, CachedTelemetryData> getAll(Iterable<Long> deviceIds) {
+        Map<Long, CachedTelemetryData> result = new HashMap<>();
+        for (Long deviceId : deviceIds) {
+            CachedTelemetryData data = get(deviceId);
+            if (data != null) {
+                result.put(deviceId, data);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Clear a device's slot; returns its timestamp, or null when it was empty
+     */
+    public LocalDateTime remove(Long deviceId) {
+        if (!supports(deviceId)) {
+            return null;
+        }
+        int slot = slotOffset(deviceId);
+        while (true) {
+            long version = (long) LONGS.getAcquire(buffer, slot + VERSION_OFFSET);
+            if ((version & 1) != 0 || !LONGS.compareAndSet(buffer, slot + VERSION_OFFSET, version, version + 1)) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int previousSchema = (int) INTS.get(buffer, slot + SCHEMA_OFFSET);
+            long previousTimestamp = (long) LONGS.get(buffer, slot + TIMESTAMP_OFFSET);
+            INTS.set(buffer, slot + SCHEMA_OFFSET, 0);
+            INTS.set(buffer, slot + MASK_OFFSET, 0);
+            LONGS.setRelease(buffer, slot + VERSION_OFFSET, version + 2);
+
+            if (previousSchema == 0) {
+                return null;
+            }
+            storedDevices.decrementAndGet();
+            return toLocalDateTime(previousTimestamp);
+        }
+    }
+
+    /**
+     * Visit the timestamp of every stored device, e.g. to seed statistics after a restart
+     */
+    public void forEachTimestamp(Consumer<LocalDateTime> consumer) {
+        for (long deviceId = 0; deviceId < capacity; deviceId++) {
+            int slot = slotOffset(deviceId);
+            if ((int) INTS.getAcquire(buffer, slot + SCHEMA_OFFSET) != 0) {
+                consumer.accept(toLocalDateTime((long) LONGS.getAcquire(buffer, slot + TIMESTAMP_OFFSET)));
+            }
+        }
+    }
+
+    public long getStoredDevices() {
+        return storedDevices.get();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Writes that cleared a slot because the sample did not fit it
+     */
+    public long getSpilledWrites() {
+        return spilledWrites.get();
+    }
+
+    /**
+     * Flush a file-backed store to disk
+     */
+    public void force() {
+        if (buffer instanceof MappedByteBuffer mapped) {
+            mapped.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private CachedTelemetryData toCachedData(Long deviceId, TelemetrySchema schema, long timestamp, int mask,
+                                             long[] values, int typeCode, int statuses, byte[] extras) {
+        List<TelemetrySchema.Field> fields = schema.getFields();
+        Map<String, Object> data = new HashMap<>(fields.size() * 2);
+        String telemetryType = schema.telemetryTypeOf(typeCode);
+        if (extras.length > 0) {
+            try {
+                TelemetryExtras.Decoded decoded = TelemetryExtras.decode(extras);
+                data.putAll(decoded.values());
+                if (decoded.telemetryType() != null) {
+                    telemetryType = decoded.telemetryType();
+                }
+            } catch (IllegalArgumentException e) {
+                logger.warn("Dropped unreadable off-heap telemetry extras of device {}", deviceId);
+            }
+        }
+        List<TelemetrySchema.Status> schemaStatuses = schema.getStatuses();
+        for (int i = 0; i < schemaStatuses.size(); i++) {
+            Object value = schemaStatuses.get(i).valueOf((statuses >>> (i * 8)) & 0xFF);
+            if (value != null) {
+                data.put(schemaStatuses.get(i).name(), value);
+            }
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            if ((mask & (1 << i)) == 0) {
+                continue;
+            }
+            double value = Double.longBitsToDouble(values[i]);
+            data.put(fields.get(i).name(), fields.get(i).integral() ? (Object) (long) value : (Object) value);
+        }
+        return new CachedTelemetryData(deviceId, toLocalDateTime(timestamp), data,
+            telemetryType != null ? telemetryType : schema.getTelemetryType());
+    }
+
+    /**
+     * Split a sample into the slot's fixed fields and its extras, or null when the extras do not fit
+     */
+    private EncodedSample encode(TelemetrySchema schema, String telemetryType, Map<String, Object> data) {
+        Map<String, Object> rest = data != null ? new HashMap<>(data) : new HashMap<>();
+
+        List<TelemetrySchema.Field> fields = schema.getFields();
+        long[] values = new long[fields.size()];
+        int mask = 0;
+        for (int i = 0; i < fields.size(); i++) {
+            double number = Double.NaN;
+            if (rest.get(fields.get(i).name()) instanceof Number n) {
+                number = n.doubleValue();
+                rest.remove(fields.get(i).name());
+            }
+            if (!Double.isNaN(number)) {
+                mask |= 1 << i;
+            }
+            values[i] = Double.doubleToRawLongBits(number);
+        }
+
+        List<TelemetrySchema.Status> schemaStatuses = schema.getStatuses();
+        int statuses = 0;
+        for (int i = 0; i < schemaStatuses.size(); i++) {
+            TelemetrySchema.Status status = schemaStatuses.get(i);
+            int code = status.codeOf(rest.get(status.name()));
+            if (code != 0) {
+                statuses |= code << (i * 8);
+                rest.remove(status.name());
+            }
+        }
+
+        int typeCode = telemetryType != null ? schema.telemetryTypeCode(telemetryType) : 0;
+        if (typeCode < 0) {
+            typeCode = TYPE_IN_EXTRAS;
+        }
+        byte[] extras = NO_EXTRAS;
+        if (!rest.isEmpty() || typeCode == TYPE_IN_EXTRAS) {
+            extras = TelemetryExtras.encode(typeCode == TYPE_IN_EXTRAS ? telemetryType : null, rest);
+            if (extras == null || extras.length > extrasCapacity()) {
+                return null;
+            }
+        }
+        return new EncodedSample(values, mask, typeCode, statuses, extras);
+    }
+
+    private int extrasCapacity() {
+        return slotSize - EXTRAS_OFFSET;
+    }
+
+    private void reset() {
+        for (int offset = 0; offset < buffer.capacity(); offset += 8) {
+            LONGS.set(buffer, offset, 0L);
+        }
+        writeHeader();
+        storedDevices.set(0);
+    }
+
+    private void writeHeader() {
+        LONGS.set(buffer, 0, MAGIC);
+        INTS.set(buffer, 8, LAYOUT_VERSION);
+        INTS.set(buffer, 12, slotSize);
+        LONGS.set(buffer, 16, (long) capacity);
+    }
+
+    private boolean headerMatches() {
+        return (long) LONGS.get(buffer, 0) == MAGIC
+            && (int) INTS.get(buffer, 8) == LAYOUT_VERSION
+            && (int) INTS.get(buffer, 12) == slotSize
+            && (long) LONGS.get(buffer, 16) == capacity;
+    }
+
+    /**
+     * Count stored devices and release slots left mid-write by a crash
+     */
+    private void recoverSlots() {
+        long count = 0;
+        for (int i = 0; i < capacity; i++) {
+            int slot = slotOffset(i);
+            long version = (long) LONGS.get(buffer, slot + VERSION_OFFSET);
+            if ((version & 1) != 0) {
+                INTS.set(buffer, slot + SCHEMA_OFFSET, 0);
+                LONGS.set(buffer, slot + VERSION_OFFSET, version + 1);
+            } else if ((int) INTS.get(buffer, slot + SCHEMA_OFFSET) != 0) {
+                count++;
+            }
+        }
+        storedDevices.set(count);
+    }
+
+    private int slotOffset(long deviceId) {
+        return HEADER_SIZE + (int) deviceId * slotSize;
+    }
+
+    private static void checkCapacity(int capacity, int slotSize) {
+        if (slotSize < MIN_SLOT_SIZE || slotSize % 8 != 0) {
+            throw new IllegalArgumentException("Off-heap telemetry slot size must be a multiple of 8 of at least "
+                + MIN_SLOT_SIZE + " bytes");
+        }
+        if (capacity <= 0 || (long) capacity * slotSize + HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Off-heap telemetry capacity must be between 1 and "
+                + ((Integer.MAX_VALUE - HEADER_SIZE) / slotSize) + " devices");
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE);
+    }
+
+    /**
+     * A sample as laid out in a slot: raw double bits, present-field mask, type code, status codes and extras
+     */
+    private record EncodedSample(long[] values, int mask, int typeCode, int statuses, byte[] extras) {
+    }
+
+    /**
+     * Outcome of a put: whether it was stored and the timestamp it replaced, if any; a put that kept a
+     * newer value is not stored and carries that value's timestamp, and a spilled put is not stored and
+     * carries the timestamp of the value it cleared
+     */
+    public record WriteResult(boolean stored, LocalDateTime previousTimestamp, boolean spilled) {
+        static final WriteResult REJECTED = new WriteResult(false, null, false);
+        static final WriteResult INSERTED = new WriteResult(true, null, false);
+
+        static WriteResult kept(LocalDateTime newerTimestamp) {
+            return new WriteResult(false, newerTimestamp, false);
+        }
+
+        static WriteResult spilled(LocalDateTime clearedTimestamp) {
+            return new WriteResult(false, clearedTimestamp, true);
+        }
+
+        public boolean keptNewer() {
+            return !stored && !spilled && previousTimestamp != null;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.ecogrid.ems.device.service;
+
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * MQTT-to-Kafka bridge of the Kafka-first ingestion mode.
+ *
+ * Only the topic is checked: the payload goes to the raw telemetry topic undecoded, keyed by device serial
+ * number so every device's messages share a partition and stay in arrival order, with the MQTT topic and
+ * arrival time as record headers. Decoding, storing, status caching and alerting happen in
+ * {@link RawTelemetryConsumer}, so the MQTT callback only waits for the record to be handed to the
+ * producer.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.telemetry.ingestion", name = "mode", havingValue = "kafka")
+public class RawTelemetryBridge {
+
+    private static final Logger logger = LoggerFactory.getLogger(RawTelemetryBridge.class);
+
+    static final String TOPIC_HEADER = "mqtt-topic";
+    static final String RECEIVED_AT_HEADER = "received-at";
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final String rawTopic;
+
+    @Autowired
+    public RawTelemetryBridge(ProducerFactory<String, Object> producerFactory,
+                              @Value("${app.telemetry.ingestion.raw-topic:telemetry-raw}") String rawTopic) {
+        this(new KafkaTemplate<>(producerFactory,
+            Map.of(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class)), rawTopic);
+    }
+
+    RawTelemetryBridge(KafkaTemplate<String, Object> kafkaTemplate, String rawTopic) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.rawTopic = rawTopic;
+    }
+
+    /**
+     * Hand a message to the producer. Returns null without sending when the topic is not a device telemetry
+     * topic; throws when the send fails before it returns, because no broker is reachable.
+     */
+    public CompletableFuture<SendResult<String, Object>> publish(String topic, String payload, long receivedAt) {
+        String deviceSerial = DeviceTelemetryProcessor.deviceSerialForTopic(topic);
+        if (deviceSerial == null) {
+            logger.warn("Dropping telemetry from {}: not a device telemetry topic", topic);
+            return null;
+        }
+        ProducerRecord<String, Object> record = new ProducerRecord<>(rawTopic, deviceSerial,
+            payload.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(TOPIC_HEADER, topic.getBytes(StandardCharsets.UTF_8));
+        record.headers().add(RECEIVED_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(0, receivedAt).array());
+
+        CompletableFuture<SendResult<String, Object>> sent = kafkaTemplate.send(record);
+        if (sent.isCompletedExceptionally()) {
+            sent.join();
+        }
+        return sent;
+    }
+
+    @PreDestroy
+    public void close() {
+        kafkaTemplate.destroy();
+    }
+}
@@ -0,0 +1,85 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.telemetry.RawTelemetryMessage;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores telemetry from the raw telemetry topic in batches, for the Kafka-first ingestion mode.
+ *
+ * Each poll is processed as one batch in one transaction. A batch that fails because the database or Kafka
+ * is unavailable goes back to the container, whose error handler retries it after a back-off without
+ * committing offsets, so the topic itself holds the backlog and nothing is lost. Any other failure is
+ * retried one message at a time, so a bad sample is skipped without losing the rest of its batch.
+ * Delivery is at least once: a batch stored just before a crash is stored again after it.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.telemetry.ingestion", name = "mode", havingValue = "kafka")
+public class RawTelemetryConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RawTelemetryConsumer.class);
+
+    private final DeviceTelemetryProcessor telemetryProcessor;
+
+    public RawTelemetryConsumer(DeviceTelemetryProcessor telemetryProcessor) {
+        this.telemetryProcessor = telemetryProcessor;
+    }
+
+    @KafkaListener(id = "raw-telemetry-ingest",
+                   topics = "${app.telemetry.ingestion.raw-topic:telemetry-raw}",
+                   groupId = "${app.telemetry.ingestion.consumer.group-id:device-telemetry-ingest}",
+                   concurrency = "${app.telemetry.ingestion.consumer.concurrency:3}",
+                   containerFactory = "rawTelemetryListenerContainerFactory")
+    public void consume(List<ConsumerRecord<String, byte[]>> records) {
+        List<RawTelemetryMessage> messages = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            Header topic = record.headers().lastHeader(RawTelemetryBridge.TOPIC_HEADER);
+            if (topic == null || record.value() == null) {
+                logger.warn("Skipping raw telemetry record at {}-{}@{} without an MQTT topic or payload",
+                    record.topic(), record.partition(), record.offset());
+                continue;
+            }
+            messages.add(new RawTelemetryMessage(new String(topic.value(), StandardCharsets.UTF_8),
+                new String(record.value(), StandardCharsets.UTF_8), receivedAt(record)));
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        try {
+            telemetryProcessor.processTelemetryBatch(messages);
+        } catch (RuntimeException e) {
+            if (TelemetryIngestionService.isDownstreamFailure(e)) {
+                throw e;
+            }
+            logger.warn("Telemetry batch of {} messages failed, storing them one by one: {}", messages.size(), e.getMessage());
+            for (RawTelemetryMessage message : messages) {
+                try {
+                    telemetryProcessor.processTelemetryMessage(message.topic(), message.payload(), message.receivedAt());
+                } catch (RuntimeException single) {
+                    if (TelemetryIngestionService.isDownstreamFailure(single)) {
+                        throw single;
+                    }
+                    logger.error("Error processing telemetry message from topic: " + message.topic(), single);
+                }
+            }
+        }
+    }
+
+    private static long receivedAt(ConsumerRecord<String, byte[]> record) {
+        Header receivedAt = record.headers().lastHeader(RawTelemetryBridge.RECEIVED_AT_HEADER);
+        return receivedAt != null && receivedAt.value().length == Long.BYTES
+            ? ByteBuffer.wrap(receivedAt.value()).getLong()
+            : record.timestamp();
+    }
+}
@@ -40,6 +40,7 @@ public class RealTimeAggregationService {
     private final SimpMessagingTemplate messagingTemplate;
     private final KafkaTemplate<String, Object> kafkaTemplate;
     private final WebSocketDeltaService deltaService;
+    private final SiteDeltaStreamService deltaStreamService;
 
     @Autowired
     public RealTimeAggregationService(DeviceStatusCacheRepository statusCacheRepository,
@@ -47,13 +48,15 @@ public class RealTimeAggregationService {
                                      SiteRepository siteRepository,
                                      SimpMessagingTemplate messagingTemplate,
                                      KafkaTemplate<String, Object> kafkaTemplate,
-                                     WebSocketDeltaService deltaService) {
+                                     WebSocketDeltaService deltaService,
+                                     SiteDeltaStreamService deltaStreamService) {
         this.statusCacheRepository = statusCacheRepository;
         this.deviceRepository = deviceRepository;
         this.siteRepository = siteRepository;
         this.messagingTemplate = messagingTemplate;
         this.kafkaTemplate = kafkaTemplate;
         this.deltaService = deltaService;
+        this.deltaStreamService = deltaStreamService;
     }
 
     /**
@@ -385,6 +388,8 @@ public class RealTimeAggregationService {
             if (delta != null) {
                 // Send to site-specific WebSocket channel
                 messagingTemplate.convertAndSend("/topic/sites/" + siteId + "/dashboard", delta);
+                // Same delta feeds the SSE stream
+                deltaStreamService.publish(siteId, delta);
                 logger.debug("Published WebSocket delta update for site: {} with type: {}", 
                     siteId, delta.getType());
             } else {
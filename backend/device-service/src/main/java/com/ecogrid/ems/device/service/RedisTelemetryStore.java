@@ -0,0 +1,164 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.service.DeviceTelemetryCacheService.CachedTelemetryData;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Shared Redis tier for the latest telemetry of each device.
+ *
+ * Every replica writes the latest value with SET and announces it on a pub/sub channel in the same
+ * pipeline; the other replicas drop their near-cache entry for that device when the message arrives.
+ * Reads for a whole site fetch all local misses in one pipelined round trip.
+ */
+@Service
+@ConditionalOnProperty(prefix = "app.telemetry.redis", name = "enabled", havingValue = "true")
+public class RedisTelemetryStore implements MessageListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisTelemetryStore.class);
+
+    public static final String KEY_PREFIX = "ems:telemetry:latest:";
+    public static final String INVALIDATION_CHANNEL = "ems:telemetry:invalidate";
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final String replicaId = UUID.randomUUID().toString();
+    private final List<Consumer<Long>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    public RedisTelemetryStore(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                               @Value("${app.telemetry.redis.ttl:24h}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Store the latest value and tell the other replicas to drop their copy
+     */
+    public void put(CachedTelemetryData data) {
+        try {
+            String key = KEY_PREFIX + data.getDeviceId();
+            String value = serialize(data);
+            String invalidation = replicaId + ":" + data.getDeviceId();
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                stringConnection.pSetEx(key, ttl.toMillis(), value);
+                stringConnection.publish(INVALIDATION_CHANNEL, invalidation);
+                return null;
+            });
+        } catch (JsonProcessingException | DataAccessException e) {
+            logger.error("Failed to write telemetry of device {} to Redis", data.getDeviceId(), e);
+        }
+    }
+
+    /**
+     * Fetch several devices in one pipelined round trip; missing devices are left out
+     */
+    public Map<Long, CachedTelemetryData> getAll(List<Long> deviceIds) {
+        Map<Long, CachedTelemetryData> result = new HashMap<>();
+        if (deviceIds.isEmpty()) {
+            return result;
+        }
+        try {
+            List<Object> values = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (Long deviceId : deviceIds) {
+                    stringConnection.get(KEY_PREFIX + deviceId);
+                }
+                return null;
+            });
+            for (int i = 0; i < deviceIds.size(); i++) {
+                Object value = values.get(i);
+                if (value instanceof String json) {
+                    result.put(deviceIds.get(i), deserialize(deviceIds.get(i), json));
+                }
+            }
+        } catch (JsonProcessingException | DataAccessException e) {
+            logger.error("Failed to read telemetry of {} devices from Redis", deviceIds.size(), e);
+        }
+        return result;
+    }
+
+    /**
+     * Remove a device from the shared tier and every replica's near-cache
+     */
+    public void remove(Long deviceId) {
+        try {
+            redisTemplate.delete(KEY_PREFIX + deviceId);
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, replicaId + ":" + deviceId);
+        } catch (DataAccessException e) {
+            logger.error("Failed to remove telemetry of device {} from Redis", deviceId, e);
+        }
+    }
+
+    /**
+     * Register a callback for devices updated by other replicas
+     */
+    public void addInvalidationListener(Consumer<Long> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator < 0 || body.substring(0, separator).equals(replicaId)) {
+            return;
+        }
+        try {
+            Long deviceId = Long.parseLong(body.substring(separator + 1));
+            invalidationListeners.forEach(listener -> listener.accept(deviceId));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed telemetry invalidation: {}", body);
+        }
+    }
+
+    public String getReplicaId() {
+        return replicaId;
+    }
+
+    private String serialize(CachedTelemetryData data) throws JsonProcessingException {
+        Map<String, Object> value = new HashMap<>();
+        value.put("timestamp", data.getTimestamp() != null ? data.getTimestamp().toString() : null);
+        value.put("telemetryType", data.getTelemetryType());
+        value.put("telemetryData", data.getTelemetryData());
+        return objectMapper.writeValueAsString(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private CachedTelemetryData deserialize(Long deviceId, String json) throws JsonProcessingException {
+        Map<String, Object> value = objectMapper.readValue(json, MAP_TYPE);
+        Object timestamp = value.get("timestamp");
+        return new CachedTelemetryData(
+            deviceId,
+            timestamp != null ? LocalDateTime.parse(timestamp.toString()) : null,
+            (Map<String, Object>) value.get("telemetryData"),
+            (String) value.get("telemetryType")
+        );
+    }
+}
@@ -0,0 +1,164 @@
+package com.ecogrid.ems.device.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * In-memory state a service keeps current from the changes it commits and reloads from the database now
+ * and then, to catch writes that bypass it (FleetStatisticsService, SiteSpatialIndexService).
+ *
+ * Changes are applied once their transaction commits. A reload reads in one REPEATABLE READ snapshot on the
+ * primary; changes committed while it reads are replayed on top of what it loaded, except those whose
+ * transaction the snapshot already sees, which would otherwise be applied twice.
+ */
+final class ReloadableState<S> {
+
+    private static final String CURRENT_TRANSACTION_ID = "SELECT pg_current_xact_id()::text::bigint";
+    private static final String CURRENT_SNAPSHOT = "SELECT pg_current_snapshot()::text";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate reloadTransaction;
+    private final Consumer<S> onChange;
+
+    private final Object lock = new Object();
+    private final Object reloadLock = new Object();
+
+    // Guarded by lock; null until the first reload
+    private S state;
+    // Guarded by lock; changes committed while a reload is reading the database
+    private List<PendingChange<S>> pendingChanges;
+
+    /**
+     * @param onChange called with the state, under the lock, after every change and reload
+     */
+    ReloadableState(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, Consumer<S> onChange) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.onChange = onChange;
+        this.reloadTransaction = new TransactionTemplate(transactionManager);
+        // One snapshot for the whole reload; not read-only, so it is taken on the primary, where the changes
+        // were committed, rather than on a replica (ReplicaRoutingDataSource)
+        reloadTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    /**
+     * Apply a change once the surrounding transaction commits, or right away outside of one
+     */
+    void applyAfterCommit(Consumer<S> change) {
+        boolean inTransaction = TransactionSynchronizationManager.isSynchronizationActive();
+        // Tells a running reload whether its snapshot already includes this change
+        Long transactionId = inTransaction ? jdbcTemplate.queryForObject(CURRENT_TRANSACTION_ID, Long.class) : null;
+        Runnable apply = () -> {
+            synchronized (lock) {
+                if (pendingChanges != null) {
+                    pendingChanges.add(new PendingChange<>(transactionId, change));
+                }
+                if (state != null) {
+                    change.accept(state);
+                    onChange.accept(state);
+                }
+            }
+        };
+        if (inTransaction) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    /**
+     * Load the state from the database and replace the current one
+     * @param loader reads the state inside the reload transaction
+     * @param beforeReplace given the current state (null before the first reload) and the reloaded one, under
+     *                      the lock, right before the reloaded one replaces it
+     * @return the reloaded state
+     * @throws org.springframework.dao.DataAccessException when the database cannot be read; the state is kept
+     */
+    S reload(Supplier<S> loader, BiConsumer<S, S> beforeReplace) {
+        synchronized (reloadLock) {
+            synchronized (lock) {
+                pendingChanges = new ArrayList<>();
+            }
+            Reload<S> reload;
+            try {
+                reload = reloadTransaction.execute(status -> {
+                    // The first statement fixes the snapshot every read below sees
+                    TransactionSnapshot snapshot = TransactionSnapshot.parse(
+                        jdbcTemplate.queryForObject(CURRENT_SNAPSHOT, String.class));
+                    return new Reload<>(loader.get(), snapshot);
+                });
+            } catch (RuntimeException e) {
+                synchronized (lock) {
+                    pendingChanges = null;
+                }
+                throw e;
+            }
+
+            synchronized (lock) {
+                S loaded = reload.state();
+                for (PendingChange<S> pending : pendingChanges) {
+                    if (!reload.snapshot().sees(pending.transactionId())) {
+                        pending.change().accept(loaded);
+                    }
+                }
+                pendingChanges = null;
+                beforeReplace.accept(state, loaded);
+                state = loaded;
+                onChange.accept(state);
+                return loaded;
+            }
+        }
+    }
+
+    private record PendingChange<S>(Long transactionId, Consumer<S> change) {}
+
+    private record Reload<S>(S state, TransactionSnapshot snapshot) {}
+
+    /**
+     * A PostgreSQL snapshot as printed by pg_current_snapshot(): xmin:xmax:xip_list
+     */
+    record TransactionSnapshot(long xmin, long xmax, Set<Long> inProgress) {
+
+        static final TransactionSnapshot NONE = new TransactionSnapshot(0, 0, Set.of());
+
+        static TransactionSnapshot parse(String snapshot) {
+            if (snapshot == null) {
+                return NONE;
+            }
+            String[] parts = snapshot.split(":", -1);
+            Set<Long> inProgress = new HashSet<>();
+            if (parts.length > 2 && !parts[2].isEmpty()) {
+                for (String xid : parts[2].split(",")) {
+                    inProgress.add(Long.parseLong(xid));
+                }
+            }
+            return new TransactionSnapshot(Long.parseLong(parts[0]), Long.parseLong(parts[1]), inProgress);
+        }
+
+        /**
+         * Whether the changes of a committed transaction are visible in this snapshot; unknown ids are not
+         */
+        boolean sees(Long transactionId) {
+            if (transactionId == null) {
+                return false;
+            }
+            return transactionId < xmin || (transactionId < xmax && !inProgress.contains(transactionId));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.ecogrid.ems.device.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Distinct words of device names with a trigram index over them, for correcting misspelt search terms.
+ *
+ * Similarity is the trigram Jaccard index pg_trgm uses: each word is padded with two spaces in front and
+ * one behind, and two words are as similar as the share of trigrams they have in common. The vocabulary
+ * holds words, not devices, so it stays small however many devices share a naming scheme.
+ */
+final class SearchVocabulary {
+
+    static final SearchVocabulary EMPTY = new SearchVocabulary(List.of());
+
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final int[] NO_WORDS = new int[0];
+
+    private final Set<String> words;
+    private final String[] wordList;
+    private final int[] trigramCounts;
+    private final Map<String, int[]> wordsByTrigram = new HashMap<>();
+
+    SearchVocabulary(Collection<String> words) {
+        this.words = new HashSet<>(words);
+        this.wordList = this.words.toArray(String[]::new);
+        this.trigramCounts = new int[wordList.length];
+        Map<String, List<Integer>> postings = new HashMap<>();
+        for (int i = 0; i < wordList.length; i++) {
+            Set<String> trigrams = trigrams(wordList[i]);
+            trigramCounts[i] = trigrams.size();
+            for (String trigram : trigrams) {
+                postings.computeIfAbsent(trigram, key -> new ArrayList<>()).add(i);
+            }
+        }
+        postings.forEach((trigram, indexes) ->
+            wordsByTrigram.put(trigram, indexes.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    int size() {
+        return wordList.length;
+    }
+
+    /**
+     * The phrase with every unknown word replaced by its most similar known word, or null when no word
+     * changes. Separators are kept; words without a letter or shorter than three characters are never
+     * corrected.
+     */
+    String correct(String phrase, double threshold) {
+        Matcher matcher = WORD.matcher(phrase.toLowerCase(Locale.ROOT));
+        StringBuilder corrected = new StringBuilder();
+        boolean changed = false;
+        while (matcher.find()) {
+            String term = matcher.group();
+            String replacement = term;
+            if (term.length() >= 3 && term.chars().anyMatch(Character::isLetter) && !words.contains(term)) {
+                String closest = closest(term, threshold);
+                if (closest != null) {
+                    replacement = closest;
+                    changed = true;
+                }
+            }
+            matcher.appendReplacement(corrected, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(corrected);
+        return changed ? corrected.toString() : null;
+    }
+
+    private String closest(String term, double threshold) {
+        Set<String> termTrigrams = trigrams(term);
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String trigram : termTrigrams) {
+            for (int index : wordsByTrigram.getOrDefault(trigram, NO_WORDS)) {
+                shared.merge(index, 1, Integer::sum);
+            }
+        }
+        String best = null;
+        double bestSimilarity = 0;
+        for (Map.Entry<Integer, Integer> candidate : shared.entrySet()) {
+            String word = wordList[candidate.getKey()];
+            int common = candidate.getValue();
+            double similarity = (double) common / (termTrigrams.size() + trigramCounts[candidate.getKey()] - common);
+            if (similarity >= threshold && (similarity > bestSimilarity
+                    || similarity == bestSimilarity && word.compareTo(best) < 0)) {
+                best = word;
+                bestSimilarity = similarity;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Lower-cased words of a name or query, split on anything that is not a letter or digit
+     */
+    static List<String> words(String text) {
+        return WORD.matcher(text.toLowerCase(Locale.ROOT)).results().map(MatchResult::group).toList();
+    }
+
+    static Set<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        Set<String> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            trigrams.add(padded.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+}
@@ -0,0 +1,152 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.shared.dto.websocket.EMSWebSocketDelta;
+import com.ecogrid.ems.shared.dto.websocket.EMSWebSocketMessage;
+import com.ecogrid.ems.shared.service.WebSocketDeltaService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sequenced site delta streams for Server-Sent Events consumers.
+ *
+ * Every delta published to the site dashboard topic is serialized once, numbered with a per-site
+ * sequence and kept in a bounded replay ring. Connections share the serialized events, so each one
+ * only holds its position in the ring and a small pending buffer. A client reconnecting with
+ * Last-Event-ID resumes from the ring; if it fell further behind than the ring reaches, it gets a
+ * full snapshot of the cached site state first.
+ */
+@Service
+public class SiteDeltaStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteDeltaStreamService.class);
+
+    public static final String SNAPSHOT_EVENT = "SNAPSHOT";
+
+    private final WebSocketDeltaService deltaService;
+    private final ObjectMapper objectMapper;
+    private final int ringSize;
+    private final int maxPendingEvents;
+    private final Duration heartbeatInterval;
+
+    private final Map<Long, SiteStream> streams = new ConcurrentHashMap<>();
+
+    public SiteDeltaStreamService(WebSocketDeltaService deltaService,
+                                  ObjectMapper objectMapper,
+                                  @Value("${app.sse.ring-size:256}") int ringSize,
+                                  @Value("${app.sse.max-pending-events:64}") int maxPendingEvents,
+                                  @Value("${app.sse.heartbeat-seconds:15}") long heartbeatSeconds) {
+        this.deltaService = deltaService;
+        this.objectMapper = objectMapper;
+        this.ringSize = ringSize;
+        this.maxPendingEvents = maxPendingEvents;
+        this.heartbeatInterval = Duration.ofSeconds(heartbeatSeconds);
+    }
+
+    /**
+     * Append a delta to the site's stream and push it to connected clients
+     */
+    public void publish(Long siteId, EMSWebSocketDelta delta) {
+        try {
+            String data = objectMapper.writeValueAsString(delta);
+            streams.computeIfAbsent(siteId, id -> new SiteStream(ringSize))
+                .publish(delta.getType() != null ? delta.getType().name() : null, data);
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize delta for SSE stream of site {}", siteId, e);
+        }
+    }
+
+    /**
+     * Stream of site events after lastEventId, or from now on (after a snapshot) when it is null.
+     * A client that cannot keep up is disconnected and resumes with Last-Event-ID.
+     */
+    public Flux<ServerSentEvent<String>> stream(Long siteId, Long lastEventId) {
+        SiteStream site = streams.computeIfAbsent(siteId, id -> new SiteStream(ringSize));
+
+        Flux<ServerSentEvent<String>> events = Flux.defer(() -> {
+            long current = site.currentSequence();
+            boolean resumable = lastEventId != null
+                && lastEventId <= current
+                && lastEventId >= current - ringSize;
+            long after = resumable ? lastEventId : current;
+
+            Flux<ServerSentEvent<String>> deltas = site.sink.asFlux()
+                .filter(event -> event.sequence() > after)
+                .map(SequencedEvent::toServerSentEvent);
+
+            return resumable ? deltas : snapshot(siteId, current).concatWith(deltas);
+        }).onBackpressureBuffer(maxPendingEvents);
+
+        Flux<ServerSentEvent<String>> heartbeats = Flux.interval(heartbeatInterval)
+            .map(tick -> ServerSentEvent.<String>builder().comment("keepalive").build());
+
+        return Flux.merge(events, heartbeats);
+    }
+
+    /**
+     * Latest sequence number of a site, 0 when nothing has been published
+     */
+    public long getCurrentSequence(Long siteId) {
+        SiteStream site = streams.get(siteId);
+        return site != null ? site.currentSequence() : 0L;
+    }
+
+    private Flux<ServerSentEvent<String>> snapshot(Long siteId, long sequence) {
+        EMSWebSocketMessage state = deltaService.getCachedState(siteId.toString());
+        if (state == null) {
+            return Flux.empty();
+        }
+        try {
+            return Flux.just(ServerSentEvent.<String>builder()
+                .id(Long.toString(sequence))
+                .event(SNAPSHOT_EVENT)
+                .data(objectMapper.writeValueAsString(state))
+                .build());
+        } catch (JsonProcessingException e) {
+            logger.error("Failed to serialize snapshot for SSE stream of site {}", siteId, e);
+            return Flux.empty();
+        }
+    }
+
+    /**
+     * Per-site sequence counter and replay ring
+     */
+    private static class SiteStream {
+        private final Sinks.Many<SequencedEvent> sink;
+        private long sequence;
+
+        SiteStream(int ringSize) {
+            this.sink = Sinks.many().replay().limit(ringSize);
+        }
+
+        synchronized void publish(String eventType, String data) {
+            sequence++;
+            sink.emitNext(new SequencedEvent(sequence, eventType, data), Sinks.EmitFailureHandler.FAIL_FAST);
+        }
+
+        synchronized long currentSequence() {
+            return sequence;
+        }
+    }
+
+    private record SequencedEvent(long sequence, String eventType, String data) {
+
+        ServerSentEvent<String> toServerSentEvent() {
+            return ServerSentEvent.<String>builder()
+                .id(Long.toString(sequence))
+                .event(eventType)
+                .data(data)
+                .build();
+        }
+    }
+}
@@ -51,8 +51,8 @@ public class SiteOverviewService {
 
         Site site = siteOpt.get();
         
-        // Get all devices for the site
-        List<Device> devices = deviceRepository.findBySiteId(siteId);
+        // Get all devices for the site, fetching device types up front
+        List<Device> devices = deviceRepository.findBySiteIdWithDeviceType(siteId);
         logger.info("Found {} devices for site: {}", devices.size(), site.getName());
 
         // Get device IDs for telemetry lookup
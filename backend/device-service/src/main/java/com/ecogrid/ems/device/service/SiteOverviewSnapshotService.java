@@ -0,0 +1,213 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.site.SiteDeviceDTO;
+import com.ecogrid.ems.device.dto.site.SiteOverviewDTO;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versioned, pre-serialized site overview snapshots.
+ *
+ * Each site has a version that is bumped whenever telemetry of one of its devices, its device list
+ * or the site itself changes. A snapshot is rebuilt on the next request after a bump (or once it is
+ * older than the max age, since the alerting count depends on the clock); between changes every
+ * poll is served from the same bytes and ETag. The ETag is a hash of the content, leaving out the
+ * build time, so a rebuild that changes nothing keeps the previous bytes and ETag and clients keep
+ * getting 304s.
+ */
+@Service
+public class SiteOverviewSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteOverviewSnapshotService.class);
+
+    private final SiteOverviewService siteOverviewService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.overview.snapshot-max-age:30s}")
+    private Duration maxAge;
+
+    private final Map<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Map<Long, OverviewSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<Long, Object> buildLocks = new ConcurrentHashMap<>();
+    // Device to site, for devices of sites that currently have a snapshot
+    private final Map<Long, Long> deviceSites = new ConcurrentHashMap<>();
+
+    public SiteOverviewSnapshotService(SiteOverviewService siteOverviewService,
+                                       DeviceTelemetryCacheService telemetryCacheService,
+                                       ObjectMapper objectMapper) {
+        this.siteOverviewService = siteOverviewService;
+        this.objectMapper = objectMapper;
+        telemetryCacheService.addChangeListener(this::onTelemetryChanged);
+    }
+
+    /**
+     * Current snapshot for a site, rebuilding it only if the site changed since the last build
+     */
+    public Optional<OverviewSnapshot> getSnapshot(Long siteId) {
+        OverviewSnapshot snapshot = snapshots.get(siteId);
+        if (isCurrent(siteId, snapshot)) {
+            return Optional.of(snapshot);
+        }
+        synchronized (buildLocks.computeIfAbsent(siteId, id -> new Object())) {
+            snapshot = snapshots.get(siteId);
+            if (isCurrent(siteId, snapshot)) {
+                return Optional.of(snapshot);
+            }
+            return build(siteId);
+        }
+    }
+
+    /**
+     * Mark a site's snapshot as stale. Inside a transaction this happens after commit, so a
+     * concurrent rebuild cannot pick up the new version with the old data.
+     */
+    public void invalidateSite(Long siteId) {
+        afterCommit(() -> versionOf(siteId).incrementAndGet());
+    }
+
+    /**
+     * Drop everything held for a deleted site
+     */
+    public void removeSite(Long siteId) {
+        afterCommit(() -> dropSite(siteId));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void dropSite(Long siteId) {
+        versionOf(siteId).incrementAndGet();
+        OverviewSnapshot removed = snapshots.remove(siteId);
+        if (removed != null) {
+            removed.overview().getDevices().forEach(device -> deviceSites.remove(device.getId(), siteId));
+        }
+    }
+
+    private void onTelemetryChanged(Long deviceId) {
+        Long siteId = deviceSites.get(deviceId);
+        if (siteId != null) {
+            versionOf(siteId).incrementAndGet();
+        }
+    }
+
+    private Optional<OverviewSnapshot> build(Long siteId) {
+        // Read the version first so a change during the build leaves the result stale
+        long version = versionOf(siteId).get();
+        Optional<SiteOverviewDTO> overview = siteOverviewService.getSiteOverview(siteId);
+        if (overview.isEmpty()) {
+            dropSite(siteId);
+            return Optional.empty();
+        }
+
+        OverviewSnapshot previous = snapshots.get(siteId);
+        String etag = contentEtag(siteId, overview.get());
+        if (previous != null && previous.etag().equals(etag)) {
+            OverviewSnapshot refreshed = new OverviewSnapshot(version, etag, previous.body(), previous.overview(),
+                Instant.now());
+            snapshots.put(siteId, refreshed);
+            logger.debug("Overview of site {} unchanged at version {}", siteId, version);
+            return Optional.of(refreshed);
+        }
+        byte[] body = serialize(siteId, overview.get());
+
+        if (previous != null) {
+            previous.overview().getDevices().forEach(device -> deviceSites.remove(device.getId(), siteId));
+        }
+        for (SiteDeviceDTO device : overview.get().getDevices()) {
+            deviceSites.put(device.getId(), siteId);
+        }
+
+        OverviewSnapshot snapshot = new OverviewSnapshot(version, etag, body, overview.get(), Instant.now());
+        snapshots.put(siteId, snapshot);
+        logger.debug("Rebuilt overview snapshot for site {} at version {} ({} bytes)", siteId, version, body.length);
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * Strong ETag over everything but lastUpdated, which is the build time
+     */
+    private String contentEtag(Long siteId, SiteOverviewDTO overview) {
+        LocalDateTime lastUpdated = overview.getLastUpdated();
+        overview.setLastUpdated(null);
+        byte[] content;
+        try {
+            content = serialize(siteId, overview);
+        } finally {
+            overview.setLastUpdated(lastUpdated);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return "\"" + siteId + "-" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private byte[] serialize(Long siteId, SiteOverviewDTO overview) {
+        try {
+            return objectMapper.writeValueAsBytes(overview);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize overview of site " + siteId, e);
+        }
+    }
+
+    private boolean isCurrent(Long siteId, OverviewSnapshot snapshot) {
+        return snapshot != null
+            && snapshot.version() == versionOf(siteId).get()
+            && snapshot.builtAt().plus(maxAge).isAfter(Instant.now());
+    }
+
+    private AtomicLong versionOf(Long siteId) {
+        return versions.computeIfAbsent(siteId, id -> new AtomicLong());
+    }
+
+    /**
+     * An overview serialized once and shared by every request until the site changes
+     */
+    public record OverviewSnapshot(long version, String etag, byte[] body, SiteOverviewDTO overview,
+                                   Instant builtAt) {
+
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -4,18 +4,26 @@ import com.ecogrid.ems.device.dto.SiteRequest;
 import com.ecogrid.ems.device.dto.SiteResponse;
 import com.ecogrid.ems.device.entity.Site;
 import com.ecogrid.ems.device.repository.DeviceRepository;
+import com.ecogrid.ems.device.repository.DeviceRepository.SiteDeviceCount;
+import com.ecogrid.ems.device.repository.KeysetSeek;
 import com.ecogrid.ems.device.repository.SiteRepository;
+import com.ecogrid.ems.device.repository.SiteRepositoryCustom;
+import com.ecogrid.ems.shared.dto.pagination.CursorPage;
+import com.ecogrid.ems.shared.dto.pagination.PageCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -29,10 +37,18 @@ public class SiteService {
 
     private final SiteRepository siteRepository;
     private final DeviceRepository deviceRepository;
+    private final SiteOverviewSnapshotService overviewSnapshotService;
+    private final FleetStatisticsService fleetStatisticsService;
+    private final SiteSpatialIndexService spatialIndexService;
 
-    public SiteService(SiteRepository siteRepository, DeviceRepository deviceRepository) {
+    public SiteService(SiteRepository siteRepository, DeviceRepository deviceRepository,
+                       SiteOverviewSnapshotService overviewSnapshotService, FleetStatisticsService fleetStatisticsService,
+                       SiteSpatialIndexService spatialIndexService) {
         this.siteRepository = siteRepository;
         this.deviceRepository = deviceRepository;
+        this.overviewSnapshotService = overviewSnapshotService;
+        this.fleetStatisticsService = fleetStatisticsService;
+        this.spatialIndexService = spatialIndexService;
     }
 
     /**
@@ -66,6 +82,8 @@ public class SiteService {
         }
 
         Site savedSite = siteRepository.save(site);
+        fleetStatisticsService.siteChanged(null, FleetStatisticsService.SiteState.of(savedSite));
+        spatialIndexService.siteChanged(savedSite);
         logger.info("Created new site: {} (ID: {})", savedSite.getName(), savedSite.getId());
 
         return mapToSiteResponse(savedSite);
@@ -95,11 +113,28 @@ public class SiteService {
     @Transactional(readOnly = true)
     public Page<SiteResponse> getAllSites(Pageable pageable) {
         Page<Site> sitePage = siteRepository.findAll(pageable);
-        List<SiteResponse> siteResponses = sitePage.getContent().stream()
-                .map(this::mapToSiteResponse)
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(siteResponses, pageable, sitePage.getTotalElements());
+        return new PageImpl<>(toSiteResponses(sitePage.getContent()), pageable, sitePage.getTotalElements());
+    }
+
+    /**
+     * Get the page of sites after a cursor (the first page when after is null), optionally filtered by name
+     *
+     * @throws IllegalArgumentException for an unsupported sort key or a cursor issued for another sort
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<SiteResponse> getSitesAfter(String searchTerm, String sortBy, boolean descending,
+                                                  String after, int size, boolean includeTotal) {
+        KeysetSeek.Key key = KeysetSeek.key(sortBy, SiteRepositoryCustom.KEYSET_SORT_KEYS);
+        KeysetSeek.Row cursor = after == null || after.isBlank() ? null
+            : key.rowAt(PageCursor.decode(after), descending);
+
+        List<KeysetSeek.Row> rows = siteRepository.seekSites(searchTerm, key, descending, cursor, size + 1);
+        Map<Long, SiteResponse> sites = toSiteResponses(siteRepository.findAllById(
+                rows.stream().limit(size).map(KeysetSeek.Row::id).toList()))
+            .stream().collect(Collectors.toMap(SiteResponse::id, Function.identity()));
+        Long total = !includeTotal ? null
+            : searchTerm == null ? siteRepository.count() : siteRepository.countByNameSearch(searchTerm);
+        return CursorPage.of(rows, size, row -> key.cursorAt(row, descending), row -> sites.get(row.id()), total);
     }
 
     /**
@@ -108,11 +143,7 @@ public class SiteService {
     @Transactional(readOnly = true)
     public Page<SiteResponse> searchSitesByName(String searchTerm, Pageable pageable) {
         Page<Site> sitePage = siteRepository.searchByName(searchTerm, pageable);
-        List<SiteResponse> siteResponses = sitePage.getContent().stream()
-                .map(this::mapToSiteResponse)
-                .collect(Collectors.toList());
-        
-        return new PageImpl<>(siteResponses, pageable, sitePage.getTotalElements());
+        return new PageImpl<>(toSiteResponses(sitePage.getContent()), pageable, sitePage.getTotalElements());
     }
 
     /**
@@ -120,9 +151,7 @@ public class SiteService {
      */
     @Transactional(readOnly = true)
     public List<SiteResponse> getSitesByStatus(Site.SiteStatus status) {
-        return siteRepository.findByStatus(status).stream()
-                .map(this::mapToSiteResponse)
-                .collect(Collectors.toList());
+        return toSiteResponses(siteRepository.findByStatus(status));
     }
 
     /**
@@ -137,6 +166,8 @@ public class SiteService {
             throw new IllegalArgumentException("Site with name '" + request.name() + "' already exists");
         }
 
+        FleetStatisticsService.SiteState previousState = FleetStatisticsService.SiteState.of(site);
+
         // Update site fields
         site.setName(request.name());
         site.setDescription(request.description());
@@ -159,6 +190,9 @@ public class SiteService {
         }
 
         Site updatedSite = siteRepository.save(site);
+        overviewSnapshotService.invalidateSite(siteId);
+        fleetStatisticsService.siteChanged(previousState, FleetStatisticsService.SiteState.of(updatedSite));
+        spatialIndexService.siteChanged(updatedSite);
         logger.info("Updated site: {} (ID: {})", updatedSite.getName(), updatedSite.getId());
 
         return mapToSiteResponse(updatedSite);
@@ -178,6 +212,9 @@ public class SiteService {
         }
 
         siteRepository.delete(site);
+        overviewSnapshotService.removeSite(siteId);
+        fleetStatisticsService.siteChanged(FleetStatisticsService.SiteState.of(site), null);
+        spatialIndexService.siteDeleted(siteId);
         logger.info("Deleted site: {} (ID: {})", site.getName(), site.getId());
     }
 
@@ -192,24 +229,34 @@ public class SiteService {
     /**
      * Get site statistics
      */
-    @Transactional(readOnly = true)
+    // Served from in-memory counters, so no transaction (and no connection) is needed
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public SiteStatistics getSiteStatistics() {
-        long totalSites = siteRepository.count();
-        long activeSites = siteRepository.countByStatus(Site.SiteStatus.ACTIVE);
-        long inactiveSites = siteRepository.countByStatus(Site.SiteStatus.INACTIVE);
-        long maintenanceSites = siteRepository.countByStatus(Site.SiteStatus.MAINTENANCE);
-        long offlineSites = siteRepository.countByStatus(Site.SiteStatus.OFFLINE);
-        BigDecimal totalCapacity = getTotalActiveCapacity();
-
-        return new SiteStatistics(totalSites, activeSites, inactiveSites, maintenanceSites, offlineSites, totalCapacity);
+        return fleetStatisticsService.getSiteStatistics();
+    }
+
+    /**
+     * Map sites to SiteResponse DTOs with the device counts of all of them from one grouped query
+     */
+    private List<SiteResponse> toSiteResponses(List<Site> sites) {
+        if (sites.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Long> deviceCounts = deviceRepository.countBySiteIds(sites.stream().map(Site::getId).toList()).stream()
+                .collect(Collectors.toMap(SiteDeviceCount::getSiteId, SiteDeviceCount::getDeviceCount));
+        return sites.stream()
+                .map(site -> mapToSiteResponse(site, deviceCounts.getOrDefault(site.getId(), 0L)))
+                .collect(Collectors.toList());
     }
 
     /**
      * Map Site entity to SiteResponse DTO
      */
     private SiteResponse mapToSiteResponse(Site site) {
-        long deviceCount = deviceRepository.countBySiteId(site.getId());
-        
+        return mapToSiteResponse(site, deviceRepository.countBySiteId(site.getId()));
+    }
+
+    private SiteResponse mapToSiteResponse(Site site, long deviceCount) {
         return new SiteResponse(
                 site.getId(),
                 site.getName(),
@@ -238,6 +285,7 @@ public class SiteService {
             long inactiveSites,
             long maintenanceSites,
             long offlineSites,
-            BigDecimal totalCapacity
+            BigDecimal totalCapacity,
+            FleetStatisticsService.Reconciliation reconciliation
     ) {}
 }
\ No newline at end of file
@@ -0,0 +1,356 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.site.NearbySite;
+import com.ecogrid.ems.device.dto.site.SiteLocation;
+import com.ecogrid.ems.device.dto.site.SiteTile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Immutable grid of site locations for map queries.
+ *
+ * Sites are bucketed into cells of a fixed number of degrees, so a bounding box only looks at the cells
+ * it overlaps; boxes spanning more cells than are occupied scan the occupied cells instead. Each cell also
+ * carries the totals of its sites, so tile clusters add up whole cells wherever a cell falls inside one
+ * tile. Boxes with minLng greater than maxLng cross the antimeridian. Distances are great-circle distances
+ * on a spherical earth.
+ */
+final class SiteSpatialIndex {
+
+    static final double EARTH_RADIUS_KM = 6371.0088;
+
+    // Cells per side of the blocks the nearest-site search ranks before looking at single cells
+    private static final int BLOCK_CELLS = 16;
+
+    private static final Comparator<NearbySite> BY_DISTANCE =
+        Comparator.comparingDouble(NearbySite::distanceKm).thenComparing(nearby -> nearby.site().id());
+
+    private final double cellDegrees;
+    private final int rows;
+    private final int columns;
+    private final Map<Integer, Cell> cells = new HashMap<>();
+    private final List<Block> blocks = new ArrayList<>();
+
+    SiteSpatialIndex(Collection<SiteLocation> sites, double cellDegrees) {
+        this.cellDegrees = cellDegrees;
+        this.rows = (int) Math.ceil(180 / cellDegrees);
+        this.columns = (int) Math.ceil(360 / cellDegrees);
+        Map<Integer, List<SiteLocation>> grouped = new HashMap<>();
+        for (SiteLocation site : sites) {
+            grouped.computeIfAbsent(row(site.locationLat()) * columns + column(site.locationLng()),
+                key -> new ArrayList<>()).add(site);
+        }
+        grouped.forEach((key, cellSites) -> cells.put(key, new Cell(key / columns, key % columns, cellSites)));
+        Map<Integer, List<Cell>> cellsByBlock = new HashMap<>();
+        cells.forEach((key, cell) -> cellsByBlock.computeIfAbsent(
+            key / columns / BLOCK_CELLS * columns + key % columns / BLOCK_CELLS, block -> new ArrayList<>()).add(cell));
+        cellsByBlock.values().forEach(blockCells -> blocks.add(new Block(blockCells)));
+    }
+
+    /**
+     * Sites inside the bounding box, edges included
+     */
+    List<SiteLocation> within(double minLat, double maxLat, double minLng, double maxLng) {
+        List<SiteLocation> sites = new ArrayList<>();
+        Box box = new Box(minLat, maxLat, minLng, maxLng);
+        forEachCell(box, cell -> cell.forEachInside(box, sites::add));
+        return sites;
+    }
+
+    /**
+     * Up to limit sites within radiusKm of the point, nearest first
+     */
+    List<NearbySite> withinRadius(double lat, double lng, double radiusKm, int limit) {
+        double angle = radiusKm / EARTH_RADIUS_KM;
+        double deltaLat = Math.toDegrees(angle);
+        double minLat = lat - deltaLat;
+        double maxLat = lat + deltaLat;
+        double minLng = -180;
+        double maxLng = 180;
+        // Unless the circle contains a pole, its longitudes are bounded by the meridians tangent to it
+        if (minLat > -90 && maxLat < 90) {
+            double deltaLng = Math.toDegrees(Math.asin(Math.sin(angle) / Math.cos(Math.toRadians(lat))));
+            minLng = wrapLongitude(lng - deltaLng);
+            maxLng = wrapLongitude(lng + deltaLng);
+        }
+
+        List<NearbySite> found = new ArrayList<>();
+        Box box = new Box(Math.max(minLat, -90), Math.min(maxLat, 90), minLng, maxLng);
+        forEachCell(box, cell -> cell.forEachInside(box, site -> {
+            double distance = distanceKm(lat, lng, site.locationLat(), site.locationLng());
+            if (distance <= radiusKm) {
+                found.add(new NearbySite(site, distance));
+            }
+        }));
+        found.sort(BY_DISTANCE);
+        return found.size() > limit ? List.copyOf(found.subList(0, limit)) : found;
+    }
+
+    /**
+     * The k sites nearest to the point, nearest first
+     */
+    List<NearbySite> nearest(double lat, double lng, int k) {
+        // Visit blocks and cells closest-first; once the next is further away than the k-th site found, no
+        // site in it or anything after it can take its place
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(Math.max(1, blocks.size()),
+            Comparator.comparingDouble(Candidate::distanceKm));
+        for (Block block : blocks) {
+            queue.add(new Candidate(block, null, block.bounds.distanceKm(lat, lng)));
+        }
+        PriorityQueue<NearbySite> nearest = new PriorityQueue<>(k + 1, BY_DISTANCE.reversed());
+        while (!queue.isEmpty()) {
+            Candidate next = queue.poll();
+            if (nearest.size() == k && next.distanceKm() > nearest.peek().distanceKm()) {
+                break;
+            }
+            if (next.cell() == null) {
+                for (Cell cell : next.block().cells) {
+                    queue.add(new Candidate(null, cell, cell.bounds.distanceKm(lat, lng)));
+                }
+                continue;
+            }
+            for (SiteLocation site : next.cell().sites) {
+                nearest.add(new NearbySite(site, distanceKm(lat, lng, site.locationLat(), site.locationLng())));
+                if (nearest.size() > k) {
+                    nearest.poll();
+                }
+            }
+        }
+        List<NearbySite> result = new ArrayList<>(nearest);
+        result.sort(BY_DISTANCE);
+        return result;
+    }
+
+    /**
+     * Site count, summed capacity and centroid of every web map tile at the zoom level holding sites in the
+     * bounding box
+     */
+    List<SiteTile> tiles(int zoom, double minLat, double maxLat, double minLng, double maxLng) {
+        int tilesPerSide = 1 << zoom;
+        Map<Long, TileAggregate> aggregates = new HashMap<>();
+        Box box = new Box(minLat, maxLat, minLng, maxLng);
+        forEachCell(box, cell -> {
+            int x = tileX(cell.bounds.minLng(), tilesPerSide);
+            int y = tileY(cell.bounds.maxLat(), tilesPerSide);
+            if (box.contains(cell.bounds) && x == tileX(cell.bounds.maxLng(), tilesPerSide)
+                    && y == tileY(cell.bounds.minLat(), tilesPerSide)) {
+                aggregates.computeIfAbsent((long) x * tilesPerSide + y, key -> new TileAggregate(x, y)).add(cell);
+                return;
+            }
+            cell.forEachInside(box, site -> {
+                int siteX = tileX(site.locationLng(), tilesPerSide);
+                int siteY = tileY(site.locationLat(), tilesPerSide);
+                aggregates.computeIfAbsent((long) siteX * tilesPerSide + siteY, key -> new TileAggregate(siteX, siteY))
+                    .add(site);
+            });
+        });
+        return aggregates.values().stream()
+            .sorted(Comparator.comparingInt((TileAggregate tile) -> tile.x).thenComparingInt(tile -> tile.y))
+            .map(tile -> tile.toTile(zoom))
+            .toList();
+    }
+
+    private void forEachCell(Box box, Consumer<Cell> action) {
+        int[][] columnRanges = box.crossesAntimeridian()
+            ? new int[][]{{column(box.minLng), columns - 1}, {0, column(box.maxLng)}}
+            : new int[][]{{column(box.minLng), column(box.maxLng)}};
+        int firstRow = row(box.minLat);
+        int lastRow = row(box.maxLat);
+        long cellCount = 0;
+        for (int[] range : columnRanges) {
+            cellCount += (long) (lastRow - firstRow + 1) * (range[1] - range[0] + 1);
+        }
+
+        if (cellCount > cells.size()) {
+            cells.values().forEach(action);
+            return;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int[] range : columnRanges) {
+                for (int column = range[0]; column <= range[1]; column++) {
+                    Cell cell = cells.get(row * columns + column);
+                    if (cell != null) {
+                        action.accept(cell);
+                    }
+                }
+            }
+        }
+    }
+
+    private int row(double lat) {
+        return Math.min(rows - 1, (int) Math.floor((lat + 90) / cellDegrees));
+    }
+
+    private int column(double lng) {
+        return Math.min(columns - 1, (int) Math.floor((lng + 180) / cellDegrees));
+    }
+
+    static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double deltaLat = Math.toRadians(lat2 - lat1);
+        double deltaLng = Math.toRadians(lng2 - lng1);
+        double a = Math.pow(Math.sin(deltaLat / 2), 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.pow(Math.sin(deltaLng / 2), 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    static int tileX(double lng, int tilesPerSide) {
+        return Math.min(tilesPerSide - 1, (int) Math.floor((lng + 180) / 360 * tilesPerSide));
+    }
+
+    static int tileY(double lat, int tilesPerSide) {
+        double radians = Math.toRadians(lat);
+        double y = (1 - Math.log(Math.tan(radians) + 1 / Math.cos(radians)) / Math.PI) / 2 * tilesPerSide;
+        // Web Mercator stops short of the poles; sites beyond it belong to the edge tiles
+        return Math.max(0, Math.min(tilesPerSide - 1, (int) Math.floor(y)));
+    }
+
+    private static double wrapLongitude(double lng) {
+        return lng < -180 ? lng + 360 : lng > 180 ? lng - 360 : lng;
+    }
+
+    private record Box(double minLat, double maxLat, double minLng, double maxLng) {
+
+        boolean crossesAntimeridian() {
+            return minLng > maxLng;
+        }
+
+        boolean contains(double lat, double lng) {
+            boolean inLng = crossesAntimeridian() ? lng >= minLng || lng <= maxLng : lng >= minLng && lng <= maxLng;
+            return inLng && lat >= minLat && lat <= maxLat;
+        }
+
+        boolean contains(Bounds bounds) {
+            return contains(bounds.minLat(), bounds.minLng()) && contains(bounds.maxLat(), bounds.maxLng())
+                && (!crossesAntimeridian() || bounds.minLng() >= minLng || bounds.maxLng() <= maxLng);
+        }
+    }
+
+    /**
+     * Extent of a cell or block; never crosses the antimeridian
+     */
+    private record Bounds(double minLat, double maxLat, double minLng, double maxLng) {
+
+        /**
+         * Great-circle distance from the point to the nearest point inside
+         */
+        double distanceKm(double lat, double lng) {
+            if (lng >= minLng && lng <= maxLng) {
+                return lat < minLat ? Math.toRadians(minLat - lat) * EARTH_RADIUS_KM
+                    : lat > maxLat ? Math.toRadians(lat - maxLat) * EARTH_RADIUS_KM : 0;
+            }
+            // Along any parallel distance grows with the longitude difference, so the nearest point lies on
+            // the nearer of the two meridian edges
+            double toWest = longitudeDifference(lng, minLng);
+            double toEast = longitudeDifference(lng, maxLng);
+            double edgeLng = toWest <= toEast ? minLng : maxLng;
+            double deltaLng = Math.min(toWest, toEast);
+            double nearest = Math.min(SiteSpatialIndex.distanceKm(lat, lng, minLat, edgeLng),
+                SiteSpatialIndex.distanceKm(lat, lng, maxLat, edgeLng));
+            if (deltaLng < 90) {
+                // Closest point of the whole meridian to the point
+                double closestLat = Math.toDegrees(Math.atan(Math.tan(Math.toRadians(lat)) / Math.cos(Math.toRadians(deltaLng))));
+                if (closestLat > minLat && closestLat < maxLat) {
+                    nearest = Math.min(nearest, SiteSpatialIndex.distanceKm(lat, lng, closestLat, edgeLng));
+                }
+            }
+            return nearest;
+        }
+
+        private static double longitudeDifference(double a, double b) {
+            double difference = Math.abs(a - b) % 360;
+            return difference > 180 ? 360 - difference : difference;
+        }
+    }
+
+    /**
+     * A block (cell null) or a cell waiting in the nearest-site search
+     */
+    private record Candidate(Block block, Cell cell, double distanceKm) {}
+
+    private final class Cell {
+
+        private final Bounds bounds;
+        private final SiteLocation[] sites;
+        private double capacityMw;
+        private double latSum;
+        private double lngSum;
+
+        Cell(int row, int column, List<SiteLocation> cellSites) {
+            double minLat = row * cellDegrees - 90;
+            double minLng = column * cellDegrees - 180;
+            this.bounds = new Bounds(minLat, Math.min(90, minLat + cellDegrees), minLng, Math.min(180, minLng + cellDegrees));
+            this.sites = cellSites.toArray(SiteLocation[]::new);
+            for (SiteLocation site : sites) {
+                capacityMw += site.capacityMw() != null ? site.capacityMw() : 0;
+                latSum += site.locationLat();
+                lngSum += site.locationLng();
+            }
+        }
+
+        void forEachInside(Box box, Consumer<SiteLocation> action) {
+            boolean allInside = box.contains(bounds);
+            for (SiteLocation site : sites) {
+                if (allInside || box.contains(site.locationLat(), site.locationLng())) {
+                    action.accept(site);
+                }
+            }
+        }
+    }
+
+    private static final class Block {
+
+        private final Bounds bounds;
+        private final List<Cell> cells;
+
+        Block(List<Cell> cells) {
+            this.cells = cells;
+            this.bounds = new Bounds(
+                cells.stream().mapToDouble(cell -> cell.bounds.minLat()).min().orElseThrow(),
+                cells.stream().mapToDouble(cell -> cell.bounds.maxLat()).max().orElseThrow(),
+                cells.stream().mapToDouble(cell -> cell.bounds.minLng()).min().orElseThrow(),
+                cells.stream().mapToDouble(cell -> cell.bounds.maxLng()).max().orElseThrow());
+        }
+    }
+
+    private static final class TileAggregate {
+
+        private final int x;
+        private final int y;
+        private int siteCount;
+        private double capacityMw;
+        private double latSum;
+        private double lngSum;
+
+        TileAggregate(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        void add(SiteLocation site) {
+            siteCount++;
+            capacityMw += site.capacityMw() != null ? site.capacityMw() : 0;
+            latSum += site.locationLat();
+            lngSum += site.locationLng();
+        }
+
+        void add(Cell cell) {
+            siteCount += cell.sites.length;
+            capacityMw += cell.capacityMw;
+            latSum += cell.latSum;
+            lngSum += cell.lngSum;
+        }
+
+        SiteTile toTile(int zoom) {
+            // Capacities have three decimals in the database
+            return new SiteTile(zoom, x, y, siteCount, Math.round(capacityMw * 1000) / 1000.0,
+                latSum / siteCount, lngSum / siteCount);
+        }
+    }
+}
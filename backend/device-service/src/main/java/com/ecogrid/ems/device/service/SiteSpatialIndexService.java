@@ -0,0 +1,209 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.site.NearbySite;
+import com.ecogrid.ems.device.dto.site.SiteLocation;
+import com.ecogrid.ems.device.dto.site.SiteTile;
+import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.repository.SiteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounding-box, radius, nearest-site and map tile queries over site locations, served from memory.
+ *
+ * The site service reports each committed create, update and delete, and the index is rebuilt with the
+ * change; sites change rarely, so rebuilding beats the bookkeeping of a mutable index and keeps readers
+ * lock-free. A periodic reload from the database catches writes that bypass the service; changes committed
+ * while it reads are replayed on top of it as ReloadableState describes.
+ */
+@Service
+public class SiteSpatialIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SiteSpatialIndexService.class);
+
+    static final int MAX_TILE_ZOOM = 22;
+
+    private final SiteRepository siteRepository;
+    private final ReloadableState<Map<Long, SiteLocation>> siteLocations;
+
+    @Value("${app.sites.spatial.cell-degrees:0.5}")
+    private double cellDegrees;
+
+    @Value("${app.sites.spatial.max-results:5000}")
+    private int maxResults;
+
+    private volatile SiteSpatialIndex index;
+
+    public SiteSpatialIndexService(SiteRepository siteRepository, JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager) {
+        this.siteRepository = siteRepository;
+        this.siteLocations = new ReloadableState<>(jdbcTemplate, transactionManager, this::rebuild);
+    }
+
+    /**
+     * Sites inside the bounding box, at most max-results of them; minLng greater than maxLng crosses the
+     * antimeridian
+     *
+     * @throws IllegalArgumentException for coordinates out of range
+     */
+    public AreaSites findInArea(double minLat, double maxLat, double minLng, double maxLng) {
+        validateArea(minLat, maxLat, minLng, maxLng);
+        List<SiteLocation> sites = index().within(minLat, maxLat, minLng, maxLng);
+        return new AreaSites(sites.size() > maxResults ? List.copyOf(sites.subList(0, maxResults)) : sites, sites.size());
+    }
+
+    /**
+     * Sites within radiusKm of the point, nearest first
+     *
+     * @throws IllegalArgumentException for coordinates out of range or a radius that is not positive
+     */
+    public List<NearbySite> findWithinRadius(double lat, double lng, double radiusKm, int limit) {
+        validatePoint(lat, lng);
+        if (!(radiusKm > 0)) {
+            throw new IllegalArgumentException("radiusKm must be positive");
+        }
+        return index().withinRadius(lat, lng, radiusKm, validateLimit(limit));
+    }
+
+    /**
+     * The k sites nearest to the point, nearest first
+     *
+     * @throws IllegalArgumentException for coordinates out of range
+     */
+    public List<NearbySite> findNearest(double lat, double lng, int k) {
+        validatePoint(lat, lng);
+        return index().nearest(lat, lng, validateLimit(k));
+    }
+
+    /**
+     * Site clusters per web map tile at the zoom level, for the tiles covering the bounding box
+     *
+     * @throws IllegalArgumentException for coordinates or a zoom level out of range
+     */
+    public List<SiteTile> getTiles(int zoom, double minLat, double maxLat, double minLng, double maxLng) {
+        validateArea(minLat, maxLat, minLng, maxLng);
+        if (zoom < 0 || zoom > MAX_TILE_ZOOM) {
+            throw new IllegalArgumentException("zoom must be between 0 and " + MAX_TILE_ZOOM);
+        }
+        return index().tiles(zoom, minLat, maxLat, minLng, maxLng);
+    }
+
+    /**
+     * Index a created or updated site once the surrounding transaction commits
+     */
+    public void siteChanged(Site site) {
+        Long siteId = site.getId();
+        SiteLocation location = toLocation(site);
+        siteLocations.applyAfterCommit(locations -> {
+            if (location != null) {
+                locations.put(siteId, location);
+            } else {
+                locations.remove(siteId);
+            }
+        });
+    }
+
+    /**
+     * Drop a deleted site once the surrounding transaction commits
+     */
+    public void siteDeleted(Long siteId) {
+        siteLocations.applyAfterCommit(locations -> locations.remove(siteId));
+    }
+
+    /**
+     * Reload all site locations from the database and rebuild the index
+     */
+    @Scheduled(fixedDelayString = "${app.sites.spatial.reload-interval-ms:300000}")
+    public void reload() {
+        Map<Long, SiteLocation> loaded;
+        try {
+            loaded = siteLocations.reload(this::loadLocations, (indexed, reloaded) -> {});
+        } catch (DataAccessException e) {
+            logger.warn("Site spatial index reload failed: {}", e.getMostSpecificCause().getMessage());
+            return;
+        }
+        logger.debug("Indexed {} site locations", loaded.size());
+    }
+
+    private Map<Long, SiteLocation> loadLocations() {
+        Map<Long, SiteLocation> loaded = new HashMap<>();
+        siteRepository.findAllLocations().forEach(row ->
+            loaded.put(row.getId(), new SiteLocation(row.getId(), row.getName(), statusName(row.getStatus()),
+                row.getLocationLat().doubleValue(), row.getLocationLng().doubleValue(),
+                toDouble(row.getCapacityMw()))));
+        return loaded;
+    }
+
+    private SiteSpatialIndex index() {
+        SiteSpatialIndex current = index;
+        if (current == null) {
+            reload();
+            current = index;
+            if (current == null) {
+                throw new IllegalStateException("Site locations are not available yet");
+            }
+        }
+        return current;
+    }
+
+    // Called with the lock of siteLocations held
+    private void rebuild(Map<Long, SiteLocation> locations) {
+        index = new SiteSpatialIndex(locations.values(), cellDegrees);
+    }
+
+    private void validateArea(double minLat, double maxLat, double minLng, double maxLng) {
+        validatePoint(minLat, minLng);
+        validatePoint(maxLat, maxLng);
+        if (minLat > maxLat) {
+            throw new IllegalArgumentException("minLat must not be greater than maxLat");
+        }
+    }
+
+    private static void validatePoint(double lat, double lng) {
+        if (!(lat >= -90 && lat <= 90)) {
+            throw new IllegalArgumentException("Latitude must be between -90 and 90");
+        }
+        if (!(lng >= -180 && lng <= 180)) {
+            throw new IllegalArgumentException("Longitude must be between -180 and 180");
+        }
+    }
+
+    private int validateLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return Math.min(limit, maxResults);
+    }
+
+    private static SiteLocation toLocation(Site site) {
+        if (site.getLocationLat() == null || site.getLocationLng() == null) {
+            return null;
+        }
+        return new SiteLocation(site.getId(), site.getName(), statusName(site.getStatus()),
+            site.getLocationLat().doubleValue(), site.getLocationLng().doubleValue(), toDouble(site.getCapacityMw()));
+    }
+
+    private static String statusName(Site.SiteStatus status) {
+        return status != null ? status.name() : null;
+    }
+
+    private static Double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : null;
+    }
+
+    /**
+     * Sites found in an area, and how many there were before capping them at max-results
+     */
+    public record AreaSites(List<SiteLocation> sites, int total) {}
+}
@@ -0,0 +1,461 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.entity.DeviceTelemetry;
+import com.ecogrid.ems.device.repository.TelemetryArchiveBlockRepository;
+import com.ecogrid.ems.device.repository.TelemetryArchiveBlockRepository.ArchiveSize;
+import com.ecogrid.ems.device.service.TelemetryBlockCodec.DecodedBlock;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Archives closed device-hours of device_telemetry into compressed per-device blocks.
+ *
+ * Each hourly run encodes every hour that closed since the last archived one (TelemetryBlockCodec) into
+ * telemetry_archive_blocks, one transaction per hour, so an hour is either fully archived or not at all.
+ * Raw rows stay until their daily partition is dropped; range queries read archived hours from the blocks,
+ * which are several times smaller and much faster to scan, and keep them long after the raw rows are gone.
+ * Hours that receive imported history after they were archived are re-encoded by rearchiveDevice; live
+ * samples of hours that already closed mark their device-hour (markLateSamples), and each run re-encodes
+ * the marked hours that are archived.
+ */
+@Service
+public class TelemetryArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryArchiveService.class);
+
+    static final Duration BLOCK_LENGTH = Duration.ofHours(1);
+
+    // Only one replica archives a given hour; the others skip it
+    private static final long ARCHIVE_LOCK_KEY = 0x7465_6c65_6172_6368L;
+
+    private static final String HOUR_QUERY =
+        "SELECT t.device_id, t.timestamp, " +
+        DeviceTelemetry.HOT_FIELDS.stream().map(field -> "t." + field.column()).collect(Collectors.joining(", ")) +
+        ", t.data::text AS data, pg_column_size(t.*) AS row_bytes FROM device_telemetry t " +
+        "WHERE t.timestamp >= ? AND t.timestamp < ? ORDER BY t.device_id, t.timestamp";
+
+    private static final String DEVICE_RANGE_QUERY =
+        "SELECT t.device_id, t.timestamp, " +
+        DeviceTelemetry.HOT_FIELDS.stream().map(field -> "t." + field.column()).collect(Collectors.joining(", ")) +
+        ", t.data::text AS data, pg_column_size(t.*) AS row_bytes FROM device_telemetry t " +
+        "WHERE t.device_id = ? AND t.timestamp >= ? AND t.timestamp < ? ORDER BY t.device_id, t.timestamp";
+
+    private static final String INSERT_BLOCK =
+        "INSERT INTO telemetry_archive_blocks (device_id, block_start, sample_count, raw_bytes, payload, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, now()) ON CONFLICT (device_id, block_start) DO NOTHING";
+
+    private static final String UPSERT_BLOCK =
+        "INSERT INTO telemetry_archive_blocks (device_id, block_start, sample_count, raw_bytes, payload, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, now()) ON CONFLICT (device_id, block_start) DO UPDATE SET " +
+        "sample_count = EXCLUDED.sample_count, raw_bytes = EXCLUDED.raw_bytes, payload = EXCLUDED.payload, " +
+        "created_at = EXCLUDED.created_at";
+
+    private static final String MARK_DIRTY_HOUR =
+        "INSERT INTO telemetry_archive_dirty_hours (device_id, block_start, marked_at) VALUES (?, ?, now()) " +
+        "ON CONFLICT (device_id, block_start) DO UPDATE SET marked_at = EXCLUDED.marked_at";
+
+    private static final String DIRTY_HOURS_QUERY =
+        "SELECT device_id, block_start FROM telemetry_archive_dirty_hours ORDER BY block_start LIMIT ?";
+
+    private static final String CLEAR_DIRTY_HOUR =
+        "DELETE FROM telemetry_archive_dirty_hours WHERE device_id = ? AND block_start = ?";
+
+    private static final String BLOCKS_QUERY =
+        "SELECT payload FROM telemetry_archive_blocks " +
+        "WHERE device_id = ? AND block_start >= ? AND block_start < ? ORDER BY block_start";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TelemetryArchiveBlockRepository blockRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.telemetry.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.telemetry.archive.grace-period:10m}")
+    private Duration gracePeriod;
+
+    @Value("${app.telemetry.archive.max-hours-per-run:48}")
+    private int maxHoursPerRun;
+
+    @Value("${app.telemetry.archive.max-dirty-hours-per-run:1000}")
+    private int maxDirtyHoursPerRun;
+
+    @Value("${app.telemetry.archive.retention-days:365}")
+    private int retentionDays;
+
+    @Value("${app.telemetry.archive.fetch-size:5000}")
+    private int fetchSize;
+
+    @Value("${app.telemetry.archive.batch-size:100}")
+    private int batchSize;
+
+    public TelemetryArchiveService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                   TelemetryArchiveBlockRepository blockRepository, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.blockRepository = blockRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Hourly run: archive closed hours and drop blocks past the archive retention
+     */
+    @Scheduled(cron = "${app.telemetry.archive.cron:0 10 * * * *}")
+    public void archiveClosedHours() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int hours = archivePending(now);
+            int rearchived = rearchiveDirtyHours();
+            int expired = transactionTemplate.execute(status ->
+                blockRepository.deleteByBlockStartBefore(now.minusDays(retentionDays)));
+            if (hours > 0 || rearchived > 0 || expired > 0) {
+                ArchiveSize size = blockRepository.getArchiveSize();
+                logger.info("Archived {} telemetry hours, re-archived {} late device-hours, dropped {} expired " +
+                        "blocks; archive holds {} blocks, {} raw bytes in {} bytes", hours, rearchived, expired,
+                    size.getBlocks(), size.getRawBytes(), size.getCompressedBytes());
+            }
+        } catch (DataAccessException e) {
+            logger.error("Telemetry archiving failed", e);
+        }
+    }
+
+    /**
+     * Archive every closed hour after the newest archived one, oldest first
+     * @return number of hours archived
+     */
+    public int archivePending(LocalDateTime now) {
+        LocalDateTime closedUntil = now.minus(gracePeriod).truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime next = nextHourToArchive(getArchivedUntil());
+        int hours = 0;
+        while (next != null && next.isBefore(closedUntil) && hours < maxHoursPerRun) {
+            if (!archiveHour(next)) {
+                break;
+            }
+            hours++;
+            next = nextHourToArchive(next.plus(BLOCK_LENGTH));
+        }
+        return hours;
+    }
+
+    /**
+     * End of the archived history: hours before it are served from blocks.
+     * Null when nothing is archived yet.
+     */
+    public LocalDateTime getArchivedUntil() {
+        LocalDateTime latest = blockRepository.findLatestBlockStart();
+        return latest != null ? latest.plus(BLOCK_LENGTH) : null;
+    }
+
+    /**
+     * Re-encode the archived hours of a device overlapping [from, to] from its raw rows, for telemetry
+     * imported after those hours were archived; hours not archived yet are left to the hourly run. Runs in
+     * the caller's transaction, after the archiver of any other replica.
+     * @return number of blocks written
+     */
+    public int rearchiveDevice(Long deviceId, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime archivedUntil = getArchivedUntil();
+        if (archivedUntil == null) {
+            return 0;
+        }
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = to.truncatedTo(ChronoUnit.HOURS).plus(BLOCK_LENGTH);
+        if (end.isAfter(archivedUntil)) {
+            end = archivedUntil;
+        }
+        if (!start.isBefore(end)) {
+            return 0;
+        }
+
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + ARCHIVE_LOCK_KEY + ")");
+        BlockArchiver archiver = new BlockArchiver(UPSERT_BLOCK);
+        LocalDateTime rangeEnd = end;
+        PreparedStatementCreator statementCreator = connection -> {
+            PreparedStatement statement = connection.prepareStatement(DEVICE_RANGE_QUERY);
+            statement.setFetchSize(fetchSize);
+            statement.setLong(1, deviceId);
+            statement.setTimestamp(2, Timestamp.valueOf(start));
+            statement.setTimestamp(3, Timestamp.valueOf(rangeEnd));
+            return statement;
+        };
+        jdbcTemplate.query(statementCreator, archiver);
+        archiver.finish();
+        logger.debug("Re-archived {} telemetry hours of device {} from {}", archiver.blocks, deviceId, start);
+        return archiver.blocks;
+    }
+
+    /**
+     * Mark the device-hours of stored samples whose hour has already ended, in the caller's transaction, so
+     * the next run re-encodes them if they were archived without these rows. Marking bumps an existing mark,
+     * which makes a concurrent rearchiveDirtyHours wait for this transaction before it reads the hour.
+     */
+    public void markLateSamples(List<DeviceTelemetry> stored, LocalDateTime now) {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime currentHour = now.truncatedTo(ChronoUnit.HOURS);
+        Set<DirtyHour> hours = new LinkedHashSet<>();
+        for (DeviceTelemetry telemetry : stored) {
+            if (telemetry.getTimestamp().isBefore(currentHour)) {
+                hours.add(new DirtyHour(telemetry.getDevice().getId(), telemetry.getTimestamp().truncatedTo(ChronoUnit.HOURS)));
+            }
+        }
+        if (!hours.isEmpty()) {
+            jdbcTemplate.batchUpdate(MARK_DIRTY_HOUR, hours.stream()
+                .map(hour -> new Object[] {hour.deviceId(), Timestamp.valueOf(hour.blockStart())}).toList());
+        }
+    }
+
+    /**
+     * Re-encode the marked device-hours that are archived, one transaction each, and clear their marks; marks
+     * of hours not archived yet are just cleared, as archiving them will pick up their rows
+     * @return number of device-hours re-encoded
+     */
+    int rearchiveDirtyHours() {
+        List<DirtyHour> dirty = jdbcTemplate.query(DIRTY_HOURS_QUERY, (rs, rowNum) ->
+            new DirtyHour(rs.getLong("device_id"), rs.getTimestamp("block_start").toLocalDateTime()), maxDirtyHoursPerRun);
+        LocalDateTime archivedUntil = getArchivedUntil();
+        int rearchived = 0;
+        for (DirtyHour hour : dirty) {
+            Integer blocks = transactionTemplate.execute(status -> {
+                jdbcTemplate.update(CLEAR_DIRTY_HOUR, hour.deviceId(), Timestamp.valueOf(hour.blockStart()));
+                return archivedUntil != null && hour.blockStart().isBefore(archivedUntil)
+                    ? rearchiveDevice(hour.deviceId(), hour.blockStart(), hour.blockStart()) : 0;
+            });
+            if (blocks != null && blocks > 0) {
+                rearchived++;
+            }
+        }
+        return rearchived;
+    }
+
+    private record DirtyHour(Long deviceId, LocalDateTime blockStart) {}
+
+    /**
+     * Decoded blocks of a device overlapping [from, to), in time order; one block is held at a time
+     */
+    public void forEachBlock(Long deviceId, LocalDateTime from, LocalDateTime to, Consumer<DecodedBlock> consumer) {
+        PreparedStatementCreator statementCreator = connection -> {
+            PreparedStatement statement = connection.prepareStatement(BLOCKS_QUERY);
+            statement.setFetchSize(16);
+            statement.setLong(1, deviceId);
+            statement.setTimestamp(2, Timestamp.valueOf(from.truncatedTo(ChronoUnit.HOURS)));
+            statement.setTimestamp(3, Timestamp.valueOf(to));
+            return statement;
+        };
+        jdbcTemplate.query(statementCreator, (ResultSet rs) -> {
+            consumer.accept(TelemetryBlockCodec.decode(rs.getBytes("payload")));
+        });
+    }
+
+    /**
+     * Block timestamps are the epoch millis of the LocalDateTime read as UTC, so they convert both ways exactly
+     */
+    static long toBlockMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime fromBlockMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000,
+            ZoneOffset.UTC);
+    }
+
+    /**
+     * First hour at or after the given one that has rows; hours without any telemetry are skipped
+     */
+    private LocalDateTime nextHourToArchive(LocalDateTime after) {
+        LocalDateTime oldest = after == null
+            ? jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM device_telemetry", LocalDateTime.class)
+            : jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM device_telemetry WHERE timestamp >= ?",
+                LocalDateTime.class, Timestamp.valueOf(after));
+        return oldest != null ? oldest.truncatedTo(ChronoUnit.HOURS) : null;
+    }
+
+    /**
+     * Encode all rows of one hour in a single transaction
+     * @return false when another replica is archiving right now
+     */
+    boolean archiveHour(LocalDateTime hourStart) {
+        Boolean archived = transactionTemplate.execute(status -> {
+            Boolean locked = jdbcTemplate.queryForObject(
+                "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, ARCHIVE_LOCK_KEY);
+            if (!Boolean.TRUE.equals(locked)) {
+                return false;
+            }
+            BlockArchiver archiver = new BlockArchiver(INSERT_BLOCK);
+            PreparedStatementCreator statementCreator = connection -> {
+                PreparedStatement statement = connection.prepareStatement(HOUR_QUERY);
+                statement.setFetchSize(fetchSize);
+                statement.setTimestamp(1, Timestamp.valueOf(hourStart));
+                statement.setTimestamp(2, Timestamp.valueOf(hourStart.plus(BLOCK_LENGTH)));
+                return statement;
+            };
+            jdbcTemplate.query(statementCreator, archiver);
+            archiver.finish();
+            logger.debug("Archived telemetry hour {}: {} blocks", hourStart, archiver.blocks);
+            return true;
+        });
+        return Boolean.TRUE.equals(archived);
+    }
+
+    /**
+     * Numeric readings of a row: typed columns first, then numeric top-level values of the jsonb overflow
+     */
+    private void readValues(ResultSet rs, BlockBuilder block) throws SQLException {
+        for (DeviceTelemetry.HotField field : DeviceTelemetry.HOT_FIELDS) {
+            double value = rs.getDouble(field.column());
+            if (!rs.wasNull()) {
+                block.set(field.key(), value);
+            }
+        }
+        String data = rs.getString("data");
+        if (data == null || data.length() <= 2) {
+            return;
+        }
+        try {
+            Iterator<Map.Entry<String, JsonNode>> fields = objectMapper.readTree(data).fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> entry = fields.next();
+                if (entry.getValue().isNumber() && !block.has(entry.getKey())) {
+                    block.set(entry.getKey(), entry.getValue().doubleValue());
+                }
+            }
+        } catch (JsonProcessingException e) {
+            logger.warn("Skipping unreadable telemetry data while archiving: {}", e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Consumes rows ordered by device and time, writing a block whenever the device or the hour changes
+     */
+    private final class BlockArchiver implements RowCallbackHandler {
+
+        private final String insertSql;
+        private final List<Object[]> batch = new ArrayList<>();
+        private BlockBuilder current;
+        private LocalDateTime currentHour;
+        private int blocks;
+
+        BlockArchiver(String insertSql) {
+            this.insertSql = insertSql;
+        }
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long deviceId = rs.getLong("device_id");
+            LocalDateTime timestamp = rs.getObject("timestamp", LocalDateTime.class);
+            LocalDateTime hour = timestamp.truncatedTo(ChronoUnit.HOURS);
+            if (current == null || current.deviceId != deviceId || !hour.equals(currentHour)) {
+                flushBlock();
+                current = new BlockBuilder(deviceId);
+                currentHour = hour;
+            }
+            current.startSample(toBlockMillis(timestamp), rs.getLong("row_bytes"));
+            readValues(rs, current);
+        }
+
+        void finish() {
+            flushBlock();
+            writeBatch();
+        }
+
+        private void flushBlock() {
+            if (current == null || current.count == 0) {
+                return;
+            }
+            batch.add(new Object[] {current.deviceId, Timestamp.valueOf(currentHour), current.count, current.rawBytes,
+                current.encode()});
+            blocks++;
+            if (batch.size() >= batchSize) {
+                writeBatch();
+            }
+        }
+
+        private void writeBatch() {
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(insertSql, batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Samples of one device-hour as parallel columns; a field first seen mid-block is NaN before that
+     */
+    static final class BlockBuilder {
+
+        private final long deviceId;
+        private final Map<String, double[]> fields = new LinkedHashMap<>();
+        private long[] timestamps = new long[256];
+        private int count;
+        private long rawBytes;
+
+        BlockBuilder(long deviceId) {
+            this.deviceId = deviceId;
+        }
+
+        void startSample(long timestamp, long rowBytes) {
+            if (count == timestamps.length) {
+                int capacity = count * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                fields.replaceAll((name, values) -> grow(values, capacity));
+            }
+            timestamps[count++] = timestamp;
+            rawBytes += rowBytes;
+        }
+
+        boolean has(String field) {
+            double[] values = fields.get(field);
+            return values != null && !Double.isNaN(values[count - 1]);
+        }
+
+        void set(String field, double value) {
+            fields.computeIfAbsent(field, name -> grow(new double[0], timestamps.length))[count - 1] = value;
+        }
+
+        byte[] encode() {
+            return TelemetryBlockCodec.encode(timestamps, count, fields.keySet().toArray(String[]::new),
+                fields.values().toArray(double[][]::new));
+        }
+
+        private static double[] grow(double[] values, int capacity) {
+            double[] grown = Arrays.copyOf(values, capacity);
+            Arrays.fill(grown, values.length, capacity, Double.NaN);
+            return grown;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.ecogrid.ems.device.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Base64;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends a one-off history backfill frame to a client that just subscribed to a site's live topics.
+ *
+ * The frame goes straight to the subscribing session on its own subscription, so other subscribers
+ * of the topic never see it. The body is the gzip-compressed backfill JSON, base64 encoded so it
+ * survives SockJS text transports; it is marked with the message-type and content-encoding headers.
+ */
+@Service
+public class TelemetryBackfillService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryBackfillService.class);
+
+    public static final String MESSAGE_TYPE_HEADER = "message-type";
+    public static final String CONTENT_ENCODING_HEADER = "content-encoding";
+    public static final String BACKFILL_MESSAGE_TYPE = "backfill";
+    public static final String BACKFILL_CONTENT_ENCODING = "gzip+base64";
+
+    private static final Pattern SITE_DESTINATION = Pattern.compile(
+        "^/topic/(?:telemetry/(\\d+)|sites/(\\d+)/dashboard)$");
+
+    private final TelemetryHistoryBuffer historyBuffer;
+    private final MessageChannel clientOutboundChannel;
+
+    public TelemetryBackfillService(TelemetryHistoryBuffer historyBuffer,
+                                    @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel) {
+        this.historyBuffer = historyBuffer;
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    /**
+     * Send the site's recent history if the destination is a telemetry or dashboard topic
+     */
+    public void sendBackfill(String sessionId, String subscriptionId, String destination) {
+        Long siteId = parseSiteId(destination);
+        if (siteId == null || sessionId == null || subscriptionId == null) {
+            return;
+        }
+
+        byte[] frame = historyBuffer.buildBackfillFrame(siteId);
+        if (frame == null) {
+            return;
+        }
+
+        SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headerAccessor.setSessionId(sessionId);
+        headerAccessor.setSubscriptionId(subscriptionId);
+        headerAccessor.setDestination(destination);
+        headerAccessor.setContentType(MimeTypeUtils.TEXT_PLAIN);
+        headerAccessor.setNativeHeader(MESSAGE_TYPE_HEADER, BACKFILL_MESSAGE_TYPE);
+        headerAccessor.setNativeHeader(CONTENT_ENCODING_HEADER, BACKFILL_CONTENT_ENCODING);
+        headerAccessor.setLeaveMutable(true);
+
+        byte[] body = Base64.getEncoder().encode(frame);
+        clientOutboundChannel.send(MessageBuilder.createMessage(body, headerAccessor.getMessageHeaders()));
+        logger.debug("Sent {} byte backfill frame for site {} to session {}", body.length, siteId, sessionId);
+    }
+
+    private Long parseSiteId(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        Matcher matcher = SITE_DESTINATION.matcher(destination);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return Long.parseLong(matcher.group(1) != null ? matcher.group(1) : matcher.group(2));
+    }
+}
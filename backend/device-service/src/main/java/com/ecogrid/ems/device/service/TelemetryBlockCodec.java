@@ -0,0 +1,308 @@
+package com.ecogrid.ems.device.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Gorilla-style encoding of one device's numeric telemetry for a time block.
+ *
+ * Layout: a byte header (version, sample count, field names), then a bit stream with the timestamps as
+ * delta-of-deltas and, per field, the values XOR-ed with their predecessor. Regular sampling costs about
+ * one bit per timestamp, and slowly changing values only store the bits that changed. Absent values are
+ * NaN on both sides; fields present in every sample skip the per-sample presence bit.
+ */
+final class TelemetryBlockCodec {
+
+    private static final int VERSION = 1;
+
+    private TelemetryBlockCodec() {
+    }
+
+    /**
+     * @param timestamps epoch millis in non-decreasing order
+     * @param values one array per field, aligned with timestamps; NaN where the field is absent
+     */
+    static byte[] encode(long[] timestamps, int count, String[] fields, double[][] values) {
+        BitWriter out = new BitWriter(count * (1 + fields.length * 4) + 64);
+        out.writeByte(VERSION);
+        out.writeVarint(count);
+        out.writeVarint(fields.length);
+        for (String field : fields) {
+            byte[] name = field.getBytes(StandardCharsets.UTF_8);
+            out.writeVarint(name.length);
+            for (byte b : name) {
+                out.writeByte(b);
+            }
+        }
+        writeTimestamps(out, timestamps, count);
+        for (double[] series : values) {
+            writeValues(out, series, count);
+        }
+        return out.toByteArray();
+    }
+
+    static DecodedBlock decode(byte[] payload) {
+        BitReader in = new BitReader(payload);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported telemetry block version " + version);
+        }
+        int count = in.readVarint();
+        String[] fields = new String[in.readVarint()];
+        for (int f = 0; f < fields.length; f++) {
+            byte[] name = new byte[in.readVarint()];
+            for (int i = 0; i < name.length; i++) {
+                name[i] = (byte) in.readByte();
+            }
+            fields[f] = new String(name, StandardCharsets.UTF_8);
+        }
+        long[] timestamps = readTimestamps(in, count);
+        double[][] values = new double[fields.length][];
+        for (int f = 0; f < fields.length; f++) {
+            values[f] = readValues(in, count);
+        }
+        return new DecodedBlock(timestamps, fields, values);
+    }
+
+    private static void writeTimestamps(BitWriter out, long[] timestamps, int count) {
+        if (count == 0) {
+            return;
+        }
+        out.writeBits(timestamps[0], 64);
+        if (count == 1) {
+            return;
+        }
+        long previousDelta = timestamps[1] - timestamps[0];
+        out.writeBits(previousDelta, 64);
+        for (int i = 2; i < count; i++) {
+            long delta = timestamps[i] - timestamps[i - 1];
+            long deltaOfDelta = delta - previousDelta;
+            previousDelta = delta;
+            if (deltaOfDelta == 0) {
+                out.writeBit(false);
+            } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+                out.writeBits(0b10, 2);
+                out.writeBits(deltaOfDelta + 63, 7);
+            } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+                out.writeBits(0b110, 3);
+                out.writeBits(deltaOfDelta + 255, 9);
+            } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+                out.writeBits(0b1110, 4);
+                out.writeBits(deltaOfDelta + 2047, 12);
+            } else {
+                out.writeBits(0b1111, 4);
+                out.writeBits(deltaOfDelta, 64);
+            }
+        }
+    }
+
+    private static long[] readTimestamps(BitReader in, int count) {
+        long[] timestamps = new long[count];
+        if (count == 0) {
+            return timestamps;
+        }
+        timestamps[0] = in.readBits(64);
+        if (count == 1) {
+            return timestamps;
+        }
+        long delta = in.readBits(64);
+        timestamps[1] = timestamps[0] + delta;
+        for (int i = 2; i < count; i++) {
+            long deltaOfDelta;
+            if (!in.readBit()) {
+                deltaOfDelta = 0;
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.readBits(7) - 63;
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.readBits(9) - 255;
+            } else if (!in.readBit()) {
+                deltaOfDelta = in.readBits(12) - 2047;
+            } else {
+                deltaOfDelta = in.readBits(64);
+            }
+            delta += deltaOfDelta;
+            timestamps[i] = timestamps[i - 1] + delta;
+        }
+        return timestamps;
+    }
+
+    private static void writeValues(BitWriter out, double[] series, int count) {
+        boolean dense = true;
+        for (int i = 0; i < count && dense; i++) {
+            dense = !Double.isNaN(series[i]);
+        }
+        out.writeBit(dense);
+
+        boolean first = true;
+        long previous = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 0; i < count; i++) {
+            boolean present = !Double.isNaN(series[i]);
+            if (!dense) {
+                out.writeBit(present);
+            }
+            if (!present) {
+                continue;
+            }
+            long bits = Double.doubleToRawLongBits(series[i]);
+            if (first) {
+                out.writeBits(bits, 64);
+                first = false;
+                previous = bits;
+                continue;
+            }
+            long xor = bits ^ previous;
+            previous = bits;
+            if (xor == 0) {
+                out.writeBit(false);
+                continue;
+            }
+            out.writeBit(true);
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+            if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                // Fits in the previous window of meaningful bits
+                out.writeBit(false);
+                out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.writeBit(true);
+                out.writeBits(leading, 5);
+                out.writeBits(meaningful - 1, 6);
+                out.writeBits(xor >>> trailing, meaningful);
+                previousLeading = leading;
+                previousTrailing = trailing;
+            }
+        }
+    }
+
+    private static double[] readValues(BitReader in, int count) {
+        double[] series = new double[count];
+        boolean dense = in.readBit();
+        boolean first = true;
+        long previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (!dense && !in.readBit()) {
+                series[i] = Double.NaN;
+                continue;
+            }
+            if (first) {
+                previous = in.readBits(64);
+                first = false;
+            } else if (in.readBit()) {
+                if (in.readBit()) {
+                    leading = (int) in.readBits(5);
+                    int meaningful = (int) in.readBits(6) + 1;
+                    trailing = 64 - leading - meaningful;
+                }
+                previous ^= in.readBits(64 - leading - trailing) << trailing;
+            }
+            series[i] = Double.longBitsToDouble(previous);
+        }
+        return series;
+    }
+
+    /**
+     * Decoded block: shared timestamps and one value array per field (NaN where absent)
+     */
+    record DecodedBlock(long[] timestamps, String[] fields, double[][] values) {
+
+        int fieldIndex(String field) {
+            return Arrays.asList(fields).indexOf(field);
+        }
+    }
+
+    private static final class BitWriter {
+
+        private final ByteArrayOutputStream bytes;
+        private int current;
+        private int used;
+
+        BitWriter(int expectedBytes) {
+            this.bytes = new ByteArrayOutputStream(Math.max(expectedBytes / 8, 64));
+        }
+
+        void writeBit(boolean bit) {
+            current = (current << 1) | (bit ? 1 : 0);
+            if (++used == 8) {
+                bytes.write(current);
+                current = 0;
+                used = 0;
+            }
+        }
+
+        void writeBits(long value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                writeBit(((value >>> i) & 1) != 0);
+            }
+        }
+
+        void writeByte(int value) {
+            writeBits(value & 0xFF, 8);
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        byte[] toByteArray() {
+            if (used > 0) {
+                bytes.write(current << (8 - used));
+                current = 0;
+                used = 0;
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    private static final class BitReader {
+
+        private final byte[] bytes;
+        private long position;
+
+        BitReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        boolean readBit() {
+            int index = (int) (position >>> 3);
+            if (index >= bytes.length) {
+                throw new IllegalArgumentException("Truncated telemetry block");
+            }
+            int bit = (bytes[index] >>> (7 - (int) (position & 7))) & 1;
+            position++;
+            return bit != 0;
+        }
+
+        long readBits(int count) {
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                value = (value << 1) | (readBit() ? 1 : 0);
+            }
+            return value;
+        }
+
+        int readByte() {
+            return (int) readBits(8);
+        }
+
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
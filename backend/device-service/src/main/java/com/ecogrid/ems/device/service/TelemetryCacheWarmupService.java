@@ -0,0 +1,257 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.entity.DeviceTelemetry;
+import com.ecogrid.ems.device.service.DeviceTelemetryCacheService.CachedTelemetryData;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Fills the latest-value telemetry cache after a restart.
+ *
+ * Streams device_status_cache through a server-side cursor, falling back to the newest
+ * device_telemetry row for devices without a snapshot, and hands fixed-size chunks to a small
+ * worker pool. Progress is exposed for the readiness health check so traffic only arrives once
+ * the cache is warm.
+ */
+@Service
+public class TelemetryCacheWarmupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryCacheWarmupService.class);
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    // Typed hot columns folded back over the jsonb overflow, as DeviceTelemetry.getData() does
+    private static final String TELEMETRY_DATA = "(jsonb_strip_nulls(jsonb_build_object(" +
+        DeviceTelemetry.HOT_FIELDS.stream()
+            .map(field -> "'" + field.key() + "', t." + field.column())
+            .collect(Collectors.joining(", ")) +
+        ")) || t.data)";
+
+    static final String WARMUP_QUERY =
+        "SELECT dsc.device_id, dt.name AS device_type, " +
+        "       CASE WHEN dsc.current_data IS NULL THEN latest.timestamp ELSE dsc.last_seen END AS last_seen, " +
+        "       COALESCE(dsc.current_data, latest.data)::text AS data " +
+        "FROM device_status_cache dsc " +
+        "JOIN devices d ON d.id = dsc.device_id " +
+        "JOIN device_types dt ON dt.id = d.device_type_id " +
+        "LEFT JOIN LATERAL (" +
+        "    SELECT t.timestamp, " + TELEMETRY_DATA + " AS data FROM device_telemetry t " +
+        "    WHERE t.device_id = dsc.device_id AND dsc.current_data IS NULL " +
+        "    ORDER BY t.timestamp DESC LIMIT 1" +
+        ") latest ON TRUE " +
+        "WHERE COALESCE(dsc.current_data, latest.data) IS NOT NULL";
+
+    private static final RowMapper<WarmupRow> ROW_MAPPER = (rs, rowNum) -> new WarmupRow(
+        rs.getLong("device_id"),
+        rs.getString("device_type"),
+        rs.getObject("last_seen", LocalDateTime.class),
+        rs.getString("data"));
+
+    public enum State { PENDING, RUNNING, COMPLETED, FAILED, DISABLED }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DeviceTelemetryCacheService cacheService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.telemetry.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.telemetry.warmup.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.telemetry.warmup.parallelism:4}")
+    private int parallelism;
+
+    @Value("${app.telemetry.warmup.fetch-size:1000}")
+    private int fetchSize;
+
+    private volatile State state = State.PENDING;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String failure;
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong devicesWarmed = new AtomicLong();
+
+    public TelemetryCacheWarmupService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                       DeviceTelemetryCacheService cacheService, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // PostgreSQL only honours the fetch size inside a transaction
+        this.transactionTemplate.setReadOnly(true);
+        this.cacheService = cacheService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Start the warm-up in the background once the application is up
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            state = State.DISABLED;
+            logger.info("Telemetry cache warm-up is disabled");
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "telemetry-cache-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stream the persisted latest values into the cache, blocking until every chunk is applied
+     */
+    public void warmUp() {
+        state = State.RUNNING;
+        startedAt = Instant.now();
+        logger.info("Starting telemetry cache warm-up (chunk size {}, parallelism {})", chunkSize, parallelism);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "telemetry-cache-warmup-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Bounds the rows held in memory while the cursor runs ahead of the workers
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        AtomicReference<Throwable> workerFailure = new AtomicReference<>();
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<WarmupRow> rows = jdbcTemplate.queryForStream(this::prepareWarmupQuery, ROW_MAPPER)) {
+                    List<WarmupRow> chunk = new ArrayList<>(chunkSize);
+                    rows.forEach(row -> {
+                        rowsRead.incrementAndGet();
+                        chunk.add(row);
+                        if (chunk.size() >= chunkSize) {
+                            submit(workers, inFlight, List.copyOf(chunk), workerFailure);
+                            chunk.clear();
+                        }
+                    });
+                    if (!chunk.isEmpty()) {
+                        submit(workers, inFlight, List.copyOf(chunk), workerFailure);
+                    }
+                }
+            });
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+            if (workerFailure.get() != null) {
+                throw new IllegalStateException("Warm-up chunk failed", workerFailure.get());
+            }
+            state = State.COMPLETED;
+            logger.info("Telemetry cache warm-up completed: {} rows read, {} devices warmed in {} ms",
+                rowsRead.get(), devicesWarmed.get(), getElapsed().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } catch (RuntimeException e) {
+            fail(e);
+        } finally {
+            workers.shutdownNow();
+            finishedAt = Instant.now();
+        }
+    }
+
+    private PreparedStatement prepareWarmupQuery(Connection connection) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(WARMUP_QUERY);
+        statement.setFetchSize(fetchSize);
+        return statement;
+    }
+
+    private void submit(ExecutorService workers, Semaphore inFlight, List<WarmupRow> chunk,
+                        AtomicReference<Throwable> workerFailure) {
+        inFlight.acquireUninterruptibly();
+        workers.execute(() -> {
+            try {
+                devicesWarmed.addAndGet(cacheService.warmLatestTelemetry(toCachedData(chunk)));
+            } catch (RuntimeException e) {
+                workerFailure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private List<CachedTelemetryData> toCachedData(List<WarmupRow> chunk) {
+        List<CachedTelemetryData> entries = new ArrayList<>(chunk.size());
+        for (WarmupRow row : chunk) {
+            try {
+                Map<String, Object> data = objectMapper.readValue(row.data(), MAP_TYPE);
+                // Status snapshots are serialized DTOs that repeat these alongside the readings
+                data.remove("deviceId");
+                data.remove("timestamp");
+                entries.add(new CachedTelemetryData(row.deviceId(), row.timestamp(), data, row.deviceType()));
+            } catch (JsonProcessingException e) {
+                logger.warn("Skipping unreadable telemetry snapshot for device {}", row.deviceId(), e);
+            }
+        }
+        return entries;
+    }
+
+    private void fail(Exception e) {
+        // A cold cache is still usable, so a failed warm-up does not hold back readiness
+        failure = e.getMessage();
+        state = State.FAILED;
+        logger.error("Telemetry cache warm-up failed after {} rows", rowsRead.get(), e);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isWarm() {
+        return state == State.COMPLETED || state == State.FAILED || state == State.DISABLED;
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getDevicesWarmed() {
+        return devicesWarmed.get();
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public Duration getElapsed() {
+        if (startedAt == null) {
+            return Duration.ZERO;
+        }
+        return Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now());
+    }
+
+    record WarmupRow(long deviceId, String deviceType, LocalDateTime timestamp, String data) {}
+}
@@ -0,0 +1,282 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.entity.Device;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which telemetry samples are stored in device_telemetry, per device and per field.
+ *
+ * Each numeric field of a device type's {@link TelemetrySchema} has a policy: an absolute or percent deadband
+ * around the last stored value, or a swinging-door corridor that follows a steady trend from the last stored
+ * point. A sample is stored when any field leaves its deadband or corridor, when any other value such as a
+ * status or alarm list changes, or when max-interval has passed since the last stored sample, so an idle
+ * device still leaves a heartbeat row. Fields without a policy, and devices without a schema, are stored on
+ * every change. Per-module, per-string and per-charger detail lists do not trigger a store on their own: they
+ * follow the aggregate fields and are stored along with them.
+ *
+ * Only storage is filtered: the latest-value cache, history buffer, Kafka and WebSocket see every sample.
+ * The decision is O(1) per sample over a few primitive arrays per device. Samples are stored as they arrive,
+ * so a sample that breaks the swinging-door corridor is stored itself rather than the one before it.
+ */
+@Service
+public class TelemetryCompressor {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryCompressor.class);
+
+    /** Values that change with every sample and are not telemetry */
+    private static final Set<String> IGNORED_KEYS = Set.of("timestamp", "deviceId");
+
+    private final boolean enabled;
+    private final long maxIntervalMillis;
+    private final Map<TelemetrySchema, FieldPolicy[]> policies = new EnumMap<>(TelemetrySchema.class);
+    private final Map<Long, DeviceState> states = new ConcurrentHashMap<>();
+    private final AtomicLong storedSamples = new AtomicLong();
+    private final AtomicLong suppressedSamples = new AtomicLong();
+
+    public TelemetryCompressor(@Value("${app.telemetry.compression.enabled:false}") boolean enabled,
+                               @Value("${app.telemetry.compression.max-interval:15m}") Duration maxInterval,
+                               @Value("${app.telemetry.compression.policies.bms:}") String bmsPolicies,
+                               @Value("${app.telemetry.compression.policies.solar-array:}") String solarArrayPolicies,
+                               @Value("${app.telemetry.compression.policies.ev-charger:}") String evChargerPolicies) {
+        this.enabled = enabled;
+        this.maxIntervalMillis = maxInterval.toMillis();
+        policies.put(TelemetrySchema.BMS, parsePolicies(TelemetrySchema.BMS, bmsPolicies));
+        policies.put(TelemetrySchema.SOLAR_ARRAY, parsePolicies(TelemetrySchema.SOLAR_ARRAY, solarArrayPolicies));
+        policies.put(TelemetrySchema.EV_CHARGER, parsePolicies(TelemetrySchema.EV_CHARGER, evChargerPolicies));
+        if (enabled) {
+            logger.info("Telemetry compression enabled with a {} heartbeat", maxInterval);
+        }
+    }
+
+    /**
+     * Whether a device's sample should be stored. Samples must be offered in order per device; a stored
+     * sample becomes the reference for the next ones, unless the current transaction rolls back.
+     */
+    public boolean shouldStore(Device device, LocalDateTime timestamp, Map<String, Object> data) {
+        if (!enabled || device.getId() == null) {
+            return true;
+        }
+        TelemetrySchema schema = TelemetrySchema.fromDeviceType(device.getDeviceType().getName());
+        FieldPolicy[] fieldPolicies = schema != null ? policies.get(schema) : null;
+        if (fieldPolicies == null) {
+            return true;
+        }
+
+        List<TelemetrySchema.Field> fields = schema.getFields();
+        double[] values = new double[fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = numericValue(data.get(fields.get(i).name()));
+        }
+        int otherValuesHash = otherValuesHash(schema, data);
+        long time = timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        DeviceState state = states.computeIfAbsent(device.getId(), id -> new DeviceState(values.length));
+        boolean store;
+        synchronized (state) {
+            store = state.offer(fieldPolicies, values, otherValuesHash, time, maxIntervalMillis);
+        }
+        if (store) {
+            storedSamples.incrementAndGet();
+            forgetOnRollback(device.getId());
+        } else {
+            suppressedSamples.incrementAndGet();
+        }
+        return store;
+    }
+
+    /**
+     * Drop a device's reference sample, so its next sample is stored
+     */
+    public void forget(Long deviceId) {
+        states.remove(deviceId);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getStoredSamples() {
+        return storedSamples.get();
+    }
+
+    public long getSuppressedSamples() {
+        return suppressedSamples.get();
+    }
+
+    /**
+     * A stored sample that is rolled back never reached the table, so it cannot be the reference for later
+     * samples; a replay of it must be stored again
+     */
+    private void forgetOnRollback(Long deviceId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    forget(deviceId);
+                }
+            }
+        });
+    }
+
+    private static double numericValue(Object value) {
+        return value instanceof Number number ? number.doubleValue() : Double.NaN;
+    }
+
+    private static int otherValuesHash(TelemetrySchema schema, Map<String, Object> data) {
+        int hash = 0;
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            if (!IGNORED_KEYS.contains(entry.getKey()) && !isSchemaField(schema, entry.getKey())
+                    && !isDetailList(entry.getValue())) {
+                hash += entry.hashCode();
+            }
+        }
+        return hash;
+    }
+
+    private static boolean isDetailList(Object value) {
+        return value instanceof Collection<?> list
+            && list.stream().anyMatch(element -> element instanceof Number || element instanceof Map);
+    }
+
+    private static boolean isSchemaField(TelemetrySchema schema, String key) {
+        for (TelemetrySchema.Field field : schema.getFields()) {
+            if (field.name().equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse "field:kind:tolerance" entries separated by commas, kind being abs, pct or swing
+     */
+    static FieldPolicy[] parsePolicies(TelemetrySchema schema, String spec) {
+        List<TelemetrySchema.Field> fields = schema.getFields();
+        FieldPolicy[] result = new FieldPolicy[fields.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = FieldPolicy.EXACT;
+        }
+        if (spec == null || spec.isBlank()) {
+            return result;
+        }
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid " + schema + " compression policy '" + entry.trim()
+                    + "', expected field:kind:tolerance");
+            }
+            int index = -1;
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i).name().equals(parts[0])) {
+                    index = i;
+                }
+            }
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown " + schema + " telemetry field: " + parts[0]);
+            }
+            double tolerance = Double.parseDouble(parts[2]);
+            if (tolerance < 0) {
+                throw new IllegalArgumentException("Negative compression tolerance for " + schema + "." + parts[0]);
+            }
+            result[index] = new FieldPolicy(Kind.fromCode(parts[1]), tolerance);
+        }
+        return result;
+    }
+
+    enum Kind {
+        ABSOLUTE, PERCENT, SWINGING_DOOR;
+
+        static Kind fromCode(String code) {
+            switch (code) {
+                case "abs":
+                    return ABSOLUTE;
+                case "pct":
+                    return PERCENT;
+                case "swing":
+                    return SWINGING_DOOR;
+                default:
+                    throw new IllegalArgumentException("Unknown compression kind '" + code + "', expected abs, pct or swing");
+            }
+        }
+    }
+
+    record FieldPolicy(Kind kind, double tolerance) {
+        static final FieldPolicy EXACT = new FieldPolicy(Kind.ABSOLUTE, 0);
+    }
+
+    /**
+     * The last stored sample of a device and, per swinging-door field, the narrowest corridor of slopes
+     * from it seen since
+     */
+    private static final class DeviceState {
+        private final double[] stored;
+        private final double[] minUpperSlope;
+        private final double[] maxLowerSlope;
+        private long storedAt;
+        private int storedOtherValuesHash;
+        private boolean empty = true;
+
+        DeviceState(int fieldCount) {
+            stored = new double[fieldCount];
+            minUpperSlope = new double[fieldCount];
+            maxLowerSlope = new double[fieldCount];
+        }
+
+        boolean offer(FieldPolicy[] policies, double[] values, int otherValuesHash, long time, long maxIntervalMillis) {
+            long elapsed = time - storedAt;
+            boolean store = empty || elapsed <= 0 || elapsed >= maxIntervalMillis
+                || otherValuesHash != storedOtherValuesHash;
+            for (int i = 0; i < values.length && !store; i++) {
+                store = exceeds(policies[i], i, values[i], elapsed);
+            }
+            if (store) {
+                System.arraycopy(values, 0, stored, 0, values.length);
+                Arrays.fill(minUpperSlope, Double.POSITIVE_INFINITY);
+                Arrays.fill(maxLowerSlope, Double.NEGATIVE_INFINITY);
+                storedAt = time;
+                storedOtherValuesHash = otherValuesHash;
+                empty = false;
+            }
+            return store;
+        }
+
+        private boolean exceeds(FieldPolicy policy, int field, double value, long elapsed) {
+            double reference = stored[field];
+            if (Double.isNaN(value) || Double.isNaN(reference)) {
+                return Double.isNaN(value) != Double.isNaN(reference);
+            }
+            switch (policy.kind()) {
+                case PERCENT:
+                    return Math.abs(value - reference) > Math.abs(reference) * policy.tolerance() / 100;
+                case SWINGING_DOOR:
+                    // Narrow the corridor of lines from the stored point that pass within tolerance of every
+                    // sample since; the trend is broken once no such line is left
+                    minUpperSlope[field] = Math.min(minUpperSlope[field], (value + policy.tolerance() - reference) / elapsed);
+                    maxLowerSlope[field] = Math.max(maxLowerSlope[field], (value - policy.tolerance() - reference) / elapsed);
+                    return maxLowerSlope[field] > minUpperSlope[field];
+                default:
+                    return Math.abs(value - reference) > policy.tolerance();
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.entity.DeviceTelemetry;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Raw telemetry export of a site as CSV or NDJSON.
+ *
+ * Rows go straight from a forward-only JDBC cursor to the response stream without building entities, so
+ * heap use does not depend on the size of the export. The range is read one window at a time, each in its
+ * own short read-only transaction, which keeps sorts small and avoids holding one snapshot for hours.
+ */
+@Service
+public class TelemetryExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryExportService.class);
+
+    private static final List<DeviceTelemetry.HotField> COLUMNS = DeviceTelemetry.HOT_FIELDS;
+
+    // Always with seconds, unlike LocalDateTime.toString(), and with the stored microseconds when there are any
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = new DateTimeFormatterBuilder()
+        .appendPattern("uuuu-MM-dd'T'HH:mm:ss")
+        .appendFraction(ChronoField.NANO_OF_SECOND, 0, 6, true)
+        .toFormatter();
+
+    private static final String SITE_DEVICES_QUERY =
+        "SELECT d.id, d.serial_number, dt.name AS device_type FROM devices d " +
+        "JOIN device_types dt ON dt.id = d.device_type_id WHERE d.site_id = ?";
+
+    private static final String EXPORT_QUERY =
+        "SELECT t.timestamp, t.device_id, " +
+        COLUMNS.stream().map(column -> "t." + column.column()).collect(Collectors.joining(", ")) +
+        ", t.data::text AS data FROM device_telemetry t " +
+        "WHERE t.device_id = ANY(?) AND t.timestamp >= ? AND t.timestamp < ? " +
+        "ORDER BY t.timestamp, t.device_id";
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    @Value("${app.telemetry.export.fetch-size:5000}")
+    private int fetchSize;
+
+    @Value("${app.telemetry.export.window:1d}")
+    private Duration window;
+
+    @Value("${app.telemetry.export.max-range:400d}")
+    private Duration maxRange;
+
+    @Value("${app.telemetry.export.timeout:30m}")
+    private Duration timeout;
+
+    public TelemetryExportService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * How long one export may stream before its request times out
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Reject ranges that cannot be exported; call before committing the response
+     */
+    public void validateRange(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        if (Duration.between(from, to).compareTo(maxRange) > 0) {
+            throw new IllegalArgumentException("Export range must not exceed " + maxRange.toDays() + " days");
+        }
+    }
+
+    /**
+     * Write all telemetry of the site's devices in [from, to), ordered by timestamp
+     * @return number of rows written
+     */
+    public long export(Long siteId, LocalDateTime from, LocalDateTime to, Format format, boolean gzip,
+                       OutputStream out) throws IOException {
+        Map<Long, SiteDevice> devices = siteDevices(siteId);
+        OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+        RowWriter writer = format == Format.CSV
+            ? new CsvRowWriter(new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 64 * 1024))
+            : new NdjsonRowWriter(jsonFactory.createGenerator(target));
+
+        long rows = 0;
+        try {
+            writer.writeHeader();
+            if (!devices.isEmpty()) {
+                Long[] deviceIds = devices.keySet().toArray(Long[]::new);
+                for (LocalDateTime start = from; start.isBefore(to); start = start.plus(window)) {
+                    LocalDateTime end = start.plus(window).isBefore(to) ? start.plus(window) : to;
+                    rows += exportWindow(deviceIds, devices, start, end, writer);
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            writer.close();
+        }
+        logger.info("Exported {} telemetry rows of site {} ({} to {}, {})", rows, siteId, from, to, format);
+        return rows;
+    }
+
+    private Map<Long, SiteDevice> siteDevices(Long siteId) {
+        Map<Long, SiteDevice> devices = new HashMap<>();
+        jdbcTemplate.query(SITE_DEVICES_QUERY, (ResultSet rs) -> {
+            devices.put(rs.getLong("id"), new SiteDevice(rs.getString("serial_number"), rs.getString("device_type")));
+        }, siteId);
+        return devices;
+    }
+
+    private long exportWindow(Long[] deviceIds, Map<Long, SiteDevice> devices, LocalDateTime start,
+                              LocalDateTime end, RowWriter writer) {
+        long[] rows = {0};
+        PreparedStatementCreator statementCreator = connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                EXPORT_QUERY, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            Array ids = connection.createArrayOf("bigint", deviceIds);
+            statement.setArray(1, ids);
+            statement.setTimestamp(2, Timestamp.valueOf(start));
+            statement.setTimestamp(3, Timestamp.valueOf(end));
+            return statement;
+        };
+        RowCallbackHandler handler = rs -> {
+            try {
+                writer.writeRow(rs, devices.get(rs.getLong("device_id")));
+            } catch (IOException e) {
+                // Client went away; abort the query
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        };
+        readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(statementCreator, handler));
+        return rows[0];
+    }
+
+    private static String formatTimestamp(ResultSet rs) throws SQLException {
+        return rs.getObject("timestamp", LocalDateTime.class).format(TIMESTAMP_FORMAT);
+    }
+
+    private record SiteDevice(String serialNumber, String deviceType) {}
+
+    private interface RowWriter {
+
+        void writeHeader() throws IOException;
+
+        void writeRow(ResultSet rs, SiteDevice device) throws SQLException, IOException;
+
+        void close() throws IOException;
+    }
+
+    /**
+     * One column per typed reading, the jsonb overflow as a quoted JSON cell
+     */
+    private static final class CsvRowWriter implements RowWriter {
+
+        private final Writer out;
+
+        CsvRowWriter(Writer out) {
+            this.out = out;
+        }
+
+        @Override
+        public void writeHeader() throws IOException {
+            out.write("timestamp,device_id,serial_number,device_type");
+            for (DeviceTelemetry.HotField column : COLUMNS) {
+                out.write(',');
+                out.write(column.column());
+            }
+            out.write(",data\n");
+        }
+
+        @Override
+        public void writeRow(ResultSet rs, SiteDevice device) throws SQLException, IOException {
+            out.write(formatTimestamp(rs));
+            out.write(',');
+            out.write(Long.toString(rs.getLong("device_id")));
+            out.write(',');
+            writeText(device.serialNumber());
+            out.write(',');
+            writeText(device.deviceType());
+            for (DeviceTelemetry.HotField column : COLUMNS) {
+                out.write(',');
+                String value = rs.getString(column.column());
+                if (value != null) {
+                    out.write(value);
+                }
+            }
+            out.write(',');
+            writeText(rs.getString("data"));
+            out.write('\n');
+        }
+
+        private void writeText(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * One JSON object per line; typed readings as top-level fields, the jsonb overflow under "data"
+     */
+    private static final class NdjsonRowWriter implements RowWriter {
+
+        private final JsonGenerator json;
+
+        NdjsonRowWriter(JsonGenerator json) {
+            this.json = json;
+            json.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void writeHeader() {
+        }
+
+        @Override
+        public void writeRow(ResultSet rs, SiteDevice device) throws SQLException, IOException {
+            json.writeStartObject();
+            json.writeStringField("timestamp", formatTimestamp(rs));
+            json.writeNumberField("deviceId", rs.getLong("device_id"));
+            json.writeStringField("serialNumber", device.serialNumber());
+            json.writeStringField("deviceType", device.deviceType());
+            for (DeviceTelemetry.HotField column : COLUMNS) {
+                Object value = rs.getObject(column.column());
+                if (value instanceof Integer integer) {
+                    json.writeNumberField(column.key(), integer);
+                } else if (value instanceof Double number) {
+                    json.writeNumberField(column.key(), number);
+                }
+            }
+            json.writeFieldName("data");
+            json.writeRawValue(rs.getString("data"));
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            json.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.ecogrid.ems.device.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of the part of a telemetry sample an off-heap slot has no fixed place for: lists,
+ * nested objects, strings and flags outside the schema's statuses, keys outside the schema and a telemetry
+ * type the schema does not know. Values are what a JSON payload maps to: null, booleans, ints, longs,
+ * doubles, big numbers, strings, lists and maps with string keys; they decode to the same types.
+ */
+final class TelemetryExtras {
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int DOUBLE = 5;
+    private static final int BIG_INTEGER = 6;
+    private static final int BIG_DECIMAL = 7;
+    private static final int STRING = 8;
+    private static final int LIST = 9;
+    private static final int MAP = 10;
+
+    private static final int MAX_COUNT = 0xFFFF;
+
+    private TelemetryExtras() {
+    }
+
+    /**
+     * Encode the values, and the telemetry type unless it is null
+     * @return the bytes, or null when a value has no encoding
+     */
+    static byte[] encode(String telemetryType, Map<String, ?> values) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeBoolean(telemetryType != null);
+            if (telemetryType != null) {
+                out.writeUTF(telemetryType);
+            }
+            return writeMap(out, values) ? bytes.toByteArray() : null;
+        } catch (IOException e) {
+            // Strings longer than 64 KB
+            return null;
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the bytes were not written by encode
+     */
+    static Decoded decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            String telemetryType = in.readBoolean() ? in.readUTF() : null;
+            return new Decoded(telemetryType, readMap(in));
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Malformed telemetry extras", e);
+        }
+    }
+
+    private static boolean writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+        if (map.size() > MAX_COUNT) {
+            return false;
+        }
+        out.writeShort(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!(entry.getKey() instanceof String key)) {
+                return false;
+            }
+            out.writeUTF(key);
+            if (!writeValue(out, entry.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean b) {
+            out.writeByte(b ? TRUE : FALSE);
+        } else if (value instanceof Integer i) {
+            out.writeByte(INT);
+            out.writeInt(i);
+        } else if (value instanceof Long l) {
+            out.writeByte(LONG);
+            out.writeLong(l);
+        } else if (value instanceof Double d) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(d);
+        } else if (value instanceof BigInteger b) {
+            out.writeByte(BIG_INTEGER);
+            out.writeUTF(b.toString());
+        } else if (value instanceof BigDecimal b) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeUTF(b.toString());
+        } else if (value instanceof String s) {
+            out.writeByte(STRING);
+            out.writeUTF(s);
+        } else if (value instanceof List<?> list) {
+            if (list.size() > MAX_COUNT) {
+                return false;
+            }
+            out.writeByte(LIST);
+            out.writeShort(list.size());
+            for (Object element : list) {
+                if (!writeValue(out, element)) {
+                    return false;
+                }
+            }
+        } else if (value instanceof Map<?, ?> map) {
+            out.writeByte(MAP);
+            return writeMap(out, map);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static Map<String, Object> readMap(DataInputStream in) throws IOException {
+        int size = in.readUnsignedShort();
+        Map<String, Object> map = new LinkedHashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            String key = in.readUTF();
+            map.put(key, readValue(in));
+        }
+        return map;
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case FALSE:
+                return false;
+            case TRUE:
+                return true;
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case BIG_INTEGER:
+                return new BigInteger(in.readUTF());
+            case BIG_DECIMAL:
+                return new BigDecimal(in.readUTF());
+            case STRING:
+                return in.readUTF();
+            case LIST:
+                int size = in.readUnsignedShort();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case MAP:
+                return readMap(in);
+            default:
+                throw new IOException("Unknown value tag " + tag);
+        }
+    }
+
+    /**
+     * Decoded extras: the telemetry type, null when it was not encoded, and the values
+     */
+    record Decoded(String telemetryType, Map<String, Object> values) {}
+}
@@ -0,0 +1,277 @@
+package com.ecogrid.ems.device.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact in-memory history of recent telemetry, used to backfill dashboards on subscribe.
+ *
+ * Each device keeps a ring buffer of epoch-millis timestamps and one float column per key numeric
+ * field of its device type, so the last window of samples costs a few bytes per point and serving
+ * it never touches device_telemetry. Rings start small and only grow, up to capacity, while every
+ * sample they hold is still inside the window, so a slow reporter never pays for a full ring.
+ */
+@Service
+public class TelemetryHistoryBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryHistoryBuffer.class);
+
+    private static final String[] BMS_FIELDS = {
+        "soc", "voltage", "current", "temperature", "chargeRate", "remainingCapacity"};
+    private static final String[] SOLAR_FIELDS = {
+        "currentOutput", "irradiance", "panelTemperature", "energyYield", "performanceRatio"};
+    private static final String[] EV_CHARGER_FIELDS = {
+        "powerDelivered", "activeSessions", "energyDelivered", "utilizationRate"};
+    private static final int MAX_GENERIC_FIELDS = 8;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final long windowMillis;
+    private final int capacity;
+
+    // siteId -> deviceId -> history
+    private final Map<Long, Map<Long, DeviceHistory>> sites = new ConcurrentHashMap<>();
+
+    public TelemetryHistoryBuffer(@Value("${app.telemetry.history.window-minutes:15}") long windowMinutes,
+                                  @Value("${app.telemetry.history.capacity:1024}") int capacity) {
+        this.windowMillis = windowMinutes * 60_000L;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Append a telemetry sample for a device
+     */
+    public void record(Long siteId, Long deviceId, String deviceType, LocalDateTime timestamp,
+                       Map<String, Object> data) {
+        if (siteId == null || deviceId == null || timestamp == null || data == null) {
+            return;
+        }
+        DeviceHistory history = sites.computeIfAbsent(siteId, id -> new ConcurrentHashMap<>())
+            .computeIfAbsent(deviceId, id -> new DeviceHistory(deviceId, deviceType, keyFields(deviceType, data),
+                Math.min(INITIAL_CAPACITY, capacity)));
+        history.append(toEpochMillis(timestamp), data, windowMillis, capacity);
+    }
+
+    /**
+     * Samples of every device of the site that are still inside the history window
+     */
+    public List<DeviceHistorySnapshot> snapshot(Long siteId, long nowMillis) {
+        Map<Long, DeviceHistory> devices = sites.get(siteId);
+        if (devices == null) {
+            return Collections.emptyList();
+        }
+        long cutoff = nowMillis - windowMillis;
+        List<DeviceHistorySnapshot> snapshots = new ArrayList<>(devices.size());
+        for (DeviceHistory history : devices.values()) {
+            DeviceHistorySnapshot snapshot = history.since(cutoff);
+            if (snapshot.timestamps().length > 0) {
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Ring slots currently allocated for a site's devices
+     */
+    int allocatedSlots(Long siteId) {
+        Map<Long, DeviceHistory> devices = sites.get(siteId);
+        return devices == null ? 0 : devices.values().stream().mapToInt(DeviceHistory::capacity).sum();
+    }
+
+    /**
+     * Gzip-compressed JSON backfill frame for a site, or null when there is no recent history.
+     * Series are columnar: a start time, millisecond deltas between samples, and one value array per field.
+     */
+    public byte[] buildBackfillFrame(Long siteId) {
+        List<DeviceHistorySnapshot> snapshots = snapshot(siteId, System.currentTimeMillis());
+        if (snapshots.isEmpty()) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+             JsonGenerator json = jsonFactory.createGenerator(gzip)) {
+            json.writeStartObject();
+            json.writeStringField("type", "backfill");
+            json.writeNumberField("siteId", siteId);
+            json.writeNumberField("windowMillis", windowMillis);
+            json.writeArrayFieldStart("devices");
+            for (DeviceHistorySnapshot snapshot : snapshots) {
+                writeDevice(json, snapshot);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException e) {
+            logger.error("Failed to build telemetry backfill frame for site {}", siteId, e);
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeDevice(JsonGenerator json, DeviceHistorySnapshot snapshot) throws IOException {
+        long[] timestamps = snapshot.timestamps();
+        json.writeStartObject();
+        json.writeNumberField("deviceId", snapshot.deviceId());
+        json.writeStringField("deviceType", snapshot.deviceType());
+        json.writeNumberField("start", timestamps[0]);
+
+        json.writeArrayFieldStart("deltas");
+        for (int i = 1; i < timestamps.length; i++) {
+            json.writeNumber(timestamps[i] - timestamps[i - 1]);
+        }
+        json.writeEndArray();
+
+        json.writeObjectFieldStart("series");
+        for (int f = 0; f < snapshot.fields().length; f++) {
+            json.writeArrayFieldStart(snapshot.fields()[f]);
+            for (float value : snapshot.values()[f]) {
+                if (Float.isNaN(value)) {
+                    json.writeNull();
+                } else {
+                    json.writeNumber(value);
+                }
+            }
+            json.writeEndArray();
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    /**
+     * Key fields for a device type; unknown types use the numeric fields of their first sample
+     */
+    private String[] keyFields(String deviceType, Map<String, Object> firstSample) {
+        String type = deviceType == null ? "" : deviceType.toUpperCase().replace(' ', '_');
+        switch (type) {
+            case "BMS":
+            case "BATTERY_STORAGE":
+                return BMS_FIELDS;
+            case "SOLAR":
+            case "SOLAR_ARRAY":
+            case "SOLAR_INVERTER":
+                return SOLAR_FIELDS;
+            case "EV":
+            case "EV_CHARGER":
+                return EV_CHARGER_FIELDS;
+            default:
+                return firstSample.entrySet().stream()
+                    .filter(entry -> entry.getValue() instanceof Number)
+                    .map(Map.Entry::getKey)
+                    .sorted()
+                    .limit(MAX_GENERIC_FIELDS)
+                    .toArray(String[]::new);
+        }
+    }
+
+    private long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Ring buffer of samples for one device, grown on demand up to the buffer's capacity
+     */
+    private static class DeviceHistory {
+        private final Long deviceId;
+        private final String deviceType;
+        private final String[] fields;
+        private long[] timestamps;
+        private float[][] values;
+        private int head;
+        private int size;
+
+        DeviceHistory(Long deviceId, String deviceType, String[] fields, int initialCapacity) {
+            this.deviceId = deviceId;
+            this.deviceType = deviceType;
+            this.fields = fields;
+            this.timestamps = new long[initialCapacity];
+            this.values = new float[fields.length][initialCapacity];
+        }
+
+        synchronized void append(long timestamp, Map<String, Object> data, long windowMillis, int maxCapacity) {
+            // A full ring only grows while its oldest sample is still needed for the window
+            if (size == timestamps.length && size < maxCapacity && timestamps[head] >= timestamp - windowMillis) {
+                grow(Math.min(size * 2, maxCapacity));
+            }
+            int slot = (head + size) % timestamps.length;
+            if (size == timestamps.length) {
+                head = (head + 1) % timestamps.length;
+            } else {
+                size++;
+            }
+            timestamps[slot] = timestamp;
+            for (int f = 0; f < fields.length; f++) {
+                Object value = data.get(fields[f]);
+                values[f][slot] = value instanceof Number number ? number.floatValue() : Float.NaN;
+            }
+        }
+
+        private void grow(int newCapacity) {
+            long[] grownTimestamps = new long[newCapacity];
+            float[][] grownValues = new float[fields.length][newCapacity];
+            for (int i = 0; i < size; i++) {
+                int slot = (head + i) % timestamps.length;
+                grownTimestamps[i] = timestamps[slot];
+                for (int f = 0; f < fields.length; f++) {
+                    grownValues[f][i] = values[f][slot];
+                }
+            }
+            timestamps = grownTimestamps;
+            values = grownValues;
+            head = 0;
+        }
+
+        synchronized int capacity() {
+            return timestamps.length;
+        }
+
+        synchronized DeviceHistorySnapshot since(long cutoff) {
+            int skip = 0;
+            while (skip < size && timestamps[(head + skip) % timestamps.length] < cutoff) {
+                skip++;
+            }
+            int count = size - skip;
+            long[] timestampCopy = new long[count];
+            float[][] valueCopy = new float[fields.length][count];
+            for (int i = 0; i < count; i++) {
+                int slot = (head + skip + i) % timestamps.length;
+                timestampCopy[i] = timestamps[slot];
+                for (int f = 0; f < fields.length; f++) {
+                    valueCopy[f][i] = values[f][slot];
+                }
+            }
+            return new DeviceHistorySnapshot(deviceId, deviceType, fields, timestampCopy, valueCopy);
+        }
+    }
+
+    /**
+     * Copy of a device's recent samples; values are field-major and NaN marks a missing value
+     */
+    public record DeviceHistorySnapshot(Long deviceId, String deviceType, String[] fields,
+                                        long[] timestamps, float[][] values) {
+
+        public Map<String, float[]> series() {
+            Map<String, float[]> series = new LinkedHashMap<>();
+            for (int f = 0; f < fields.length; f++) {
+                series.put(fields[f], values[f]);
+            }
+            return series;
+        }
+    }
+}
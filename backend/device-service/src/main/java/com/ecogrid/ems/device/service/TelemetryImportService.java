@@ -0,0 +1,393 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.TelemetryImportReport;
+import com.ecogrid.ems.device.dto.TelemetryImportReport.BatchStats;
+import com.ecogrid.ems.device.dto.TelemetryImportReport.SampleError;
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceStatusCache;
+import com.ecogrid.ems.device.entity.DeviceTelemetry;
+import com.ecogrid.ems.device.repository.DeviceRepository;
+import com.ecogrid.ems.device.repository.DeviceStatusCacheRepository;
+import com.ecogrid.ems.device.service.DeviceTelemetryProcessor.ProcessingOutcome;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports telemetry that a device buffered while it was offline, as NDJSON or a JSON array of samples.
+ *
+ * Samples go straight to device_telemetry with COPY, one statement per batch, in a single transaction that
+ * also skips samples already stored (so a retried upload stores nothing twice) and re-encodes the archive
+ * blocks of hours that were archived before the history arrived. None of this touches the live pipeline:
+ * stale samples raise no alerts, Kafka events or WebSocket deltas. Only a sample newer than the device's
+ * current state goes through DeviceTelemetryProcessor like an MQTT message, first, so the dashboards catch
+ * up; it is committed while the import holds the device's lock, so a retry finds it stored too. If that
+ * fails, or the pipeline's compressor skips storing it, it is stored with the history instead.
+ */
+@Service
+public class TelemetryImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryImportService.class);
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    // First key of the per-device advisory lock that serializes imports of the same device
+    private static final int IMPORT_LOCK_KEY = 0x7465_6c69;
+
+    private static final String COPY_SQL =
+        "COPY device_telemetry (device_id, timestamp, data, " +
+        DeviceTelemetry.HOT_FIELDS.stream().map(DeviceTelemetry.HotField::column).collect(Collectors.joining(", ")) +
+        ", processed_at, created_at) FROM STDIN (FORMAT csv)";
+
+    private static final String STORED_TIMESTAMPS_QUERY =
+        "SELECT timestamp FROM device_telemetry WHERE device_id = ? AND timestamp >= ? AND timestamp <= ?";
+
+    public enum Format {
+        NDJSON("application/x-ndjson"),
+        JSON("application/json");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+
+    private final DeviceRepository deviceRepository;
+    private final DeviceStatusCacheRepository statusCacheRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final TelemetryPartitionService partitionService;
+    private final TelemetryArchiveService archiveService;
+    private final DeviceTelemetryProcessor telemetryProcessor;
+
+    @Value("${app.telemetry.import.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${app.telemetry.import.max-samples:100000}")
+    private int maxSamples;
+
+    public TelemetryImportService(DeviceRepository deviceRepository, DeviceStatusCacheRepository statusCacheRepository,
+                                  JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  ObjectMapper objectMapper, TelemetryPartitionService partitionService,
+                                  TelemetryArchiveService archiveService, DeviceTelemetryProcessor telemetryProcessor) {
+        this.deviceRepository = deviceRepository;
+        this.statusCacheRepository = statusCacheRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.partitionService = partitionService;
+        this.archiveService = archiveService;
+        this.telemetryProcessor = telemetryProcessor;
+    }
+
+    /**
+     * Import the samples of a body for a device. Empty when the device does not exist; a body or device that
+     * cannot be imported at all is rejected with IllegalArgumentException, single bad samples are reported.
+     */
+    public Optional<TelemetryImportReport> importTelemetry(String serialNumber, InputStream input, Format format)
+            throws IOException {
+        long started = System.nanoTime();
+        Optional<Device> found = deviceRepository.findWithTypeBySerialNumberIn(List.of(serialNumber)).stream().findFirst();
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        Device device = found.get();
+        if (device.getStatus() == Device.DeviceStatus.DECOMMISSIONED || device.getStatus() == Device.DeviceStatus.ERROR) {
+            throw new IllegalArgumentException("Device " + serialNumber + " is " + device.getStatus() + " and takes no telemetry");
+        }
+
+        Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+        List<SampleError> errors = new ArrayList<>();
+        List<Sample> samples = format == Format.JSON ? readJsonArray(reader, errors) : readNdjson(reader, errors);
+        int received = samples.size() + errors.size();
+
+        LocalDateTime lastSeen = statusCacheRepository.findByDeviceId(device.getId())
+            .map(DeviceStatusCache::getLastSeen).orElse(null);
+        List<TelemetryPartitionService.TelemetryPartition> partitions = samples.isEmpty() ? List.of()
+            : partitionService.ensurePartitions(
+                samples.stream().map(Sample::timestamp).min(Comparator.naturalOrder()).get().toLocalDate(),
+                samples.stream().map(Sample::timestamp).max(Comparator.naturalOrder()).get().toLocalDate());
+        ImportPlan plan = plan(samples, partitions, lastSeen, errors);
+
+        ImportResult result = plan.from() == null
+            ? new ImportResult(0, List.of(), 0, false, false)
+            : transactionTemplate.execute(status -> store(device, plan));
+
+        long durationMs = (System.nanoTime() - started) / 1_000_000;
+        int stored = result.batches().stream().mapToInt(BatchStats::rows).sum() + (result.storedLive() ? 1 : 0);
+        logger.info("Imported {} of {} telemetry samples for device {} in {} ms ({} duplicates, {} rejected)",
+            stored, received, serialNumber, durationMs, result.duplicates() + plan.duplicates(), errors.size());
+        return Optional.of(new TelemetryImportReport(serialNumber, received, stored,
+            result.duplicates() + plan.duplicates(), errors.size(), result.appliedLive(), result.archiveBlocks(),
+            plan.from(), plan.to(), durationMs, result.batches(),
+            errors.stream().sorted(Comparator.comparingLong(SampleError::line)).limit(MAX_REPORTED_ERRORS).toList()));
+    }
+
+    /**
+     * Parse NDJSON, one sample object per line; blank lines are skipped
+     */
+    List<Sample> readNdjson(Reader input, List<SampleError> errors) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        List<Sample> samples = new ArrayList<>();
+        long line = 0;
+        String text;
+        while ((text = reader.readLine()) != null) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+            checkSampleLimit(samples.size() + errors.size());
+            try {
+                addSample(line, objectMapper.readTree(text), samples, errors);
+            } catch (JsonProcessingException e) {
+                errors.add(new SampleError(line, "Malformed JSON: " + e.getOriginalMessage()));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Parse a JSON array of sample objects, one element at a time
+     */
+    List<Sample> readJsonArray(Reader input, List<SampleError> errors) throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of telemetry samples");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == null) {
+                    throw new IllegalArgumentException("Unterminated JSON array");
+                }
+                checkSampleLimit(samples.size() + errors.size());
+                JsonLocation location = parser.currentTokenLocation();
+                addSample(location.getLineNr(), objectMapper.readTree(parser), samples, errors);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+        }
+        return samples;
+    }
+
+    private void addSample(long line, JsonNode node, List<Sample> samples, List<SampleError> errors)
+            throws JsonProcessingException {
+        if (node == null || !node.isObject()) {
+            errors.add(new SampleError(line, "Expected a JSON object"));
+            return;
+        }
+        JsonNode timestamp = node.get("timestamp");
+        if (timestamp == null || !timestamp.isTextual()) {
+            errors.add(new SampleError(line, "Missing timestamp"));
+            return;
+        }
+        try {
+            // device_telemetry keeps microseconds; finer digits would never match a stored sample, so they are
+            // dropped here and from the sample the live pipeline parses
+            LocalDateTime parsed = LocalDateTime.parse(timestamp.asText());
+            LocalDateTime truncated = parsed.truncatedTo(ChronoUnit.MICROS);
+            if (!truncated.equals(parsed)) {
+                ((ObjectNode) node).put("timestamp", truncated.toString());
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> data = objectMapper.treeToValue(node, Map.class);
+            samples.add(new Sample(line, truncated, data, objectMapper.writeValueAsString(node)));
+        } catch (DateTimeParseException e) {
+            errors.add(new SampleError(line, "Invalid timestamp '" + timestamp.asText() + "', expected ISO local date-time"));
+        }
+    }
+
+    /**
+     * Order samples by time, report those outside every partition, drop repeats of a timestamp within the
+     * body, and pick the newest sample for the live pipeline when it is newer than the device's last seen one
+     */
+    static ImportPlan plan(List<Sample> samples, List<TelemetryPartitionService.TelemetryPartition> partitions,
+                           LocalDateTime lastSeen, List<SampleError> errors) {
+        List<Sample> ordered = new ArrayList<>(samples.size());
+        for (Sample sample : samples) {
+            if (partitions.isEmpty() || partitions.stream().anyMatch(partition -> partition.contains(sample.timestamp()))) {
+                ordered.add(sample);
+            } else {
+                errors.add(new SampleError(sample.line(), "No telemetry partition for " + sample.timestamp() +
+                    ": older than the telemetry retention or too far ahead"));
+            }
+        }
+        ordered.sort(Comparator.comparing(Sample::timestamp));
+
+        List<Sample> history = new ArrayList<>(ordered.size());
+        int duplicates = 0;
+        for (Sample sample : ordered) {
+            if (!history.isEmpty() && history.get(history.size() - 1).timestamp().equals(sample.timestamp())) {
+                duplicates++;
+            } else {
+                history.add(sample);
+            }
+        }
+        if (history.isEmpty()) {
+            return new ImportPlan(history, null, duplicates, null, null);
+        }
+
+        LocalDateTime from = history.get(0).timestamp();
+        LocalDateTime to = history.get(history.size() - 1).timestamp();
+        Sample live = null;
+        if (lastSeen == null || to.isAfter(lastSeen)) {
+            live = history.remove(history.size() - 1);
+        }
+        return new ImportPlan(history, live, duplicates, from, to);
+    }
+
+    /**
+     * Skip samples already stored, hand the live one to the live pipeline, COPY the rest in batches and
+     * re-encode the archived hours they fall in
+     */
+    private ImportResult store(Device device, ImportPlan plan) {
+        jdbcTemplate.execute("SELECT pg_advisory_xact_lock(" + IMPORT_LOCK_KEY + ", " + (int) (long) device.getId() + ")");
+        Set<LocalDateTime> stored = new HashSet<>(jdbcTemplate.queryForList(STORED_TIMESTAMPS_QUERY,
+            LocalDateTime.class, device.getId(), Timestamp.valueOf(plan.from()), Timestamp.valueOf(plan.to())));
+
+        List<Sample> history = new ArrayList<>(plan.history());
+        ProcessingOutcome liveOutcome = null;
+        if (plan.live() != null && stored.contains(plan.live().timestamp())) {
+            // Applied by an earlier attempt; counted with the duplicates below
+            history.add(plan.live());
+        } else if (plan.live() != null) {
+            try {
+                // Commits on its own (REQUIRES_NEW) while this transaction still holds the device's lock
+                liveOutcome = telemetryProcessor.processDeviceTelemetry(device, plan.live().json(),
+                    System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                logger.warn("Newest imported sample of device {} failed in the live pipeline, storing it as history: {}",
+                    device.getSerialNumber(), e.getMessage());
+            }
+            // Imported samples bypass the storage compressor, so one the live pipeline did not store is copied
+            if (liveOutcome != ProcessingOutcome.STORED) {
+                history.add(plan.live());
+            }
+        }
+        List<Sample> fresh = history.stream().filter(sample -> !stored.contains(sample.timestamp())).toList();
+
+        String now = LocalDateTime.now().toString();
+        List<BatchStats> batches = new ArrayList<>();
+        for (int start = 0; start < fresh.size(); start += batchSize) {
+            List<Sample> batch = fresh.subList(start, Math.min(start + batchSize, fresh.size()));
+            long batchStarted = System.nanoTime();
+            StringBuilder rows = new StringBuilder(batch.size() * 256);
+            for (Sample sample : batch) {
+                appendCopyRow(rows, device.getId(), sample, now);
+            }
+            long copied = copy(rows.toString());
+            batches.add(new BatchStats((int) copied, batch.get(0).timestamp(), batch.get(batch.size() - 1).timestamp(),
+                (System.nanoTime() - batchStarted) / 1_000_000));
+        }
+
+        int archiveBlocks = fresh.isEmpty() ? 0 : archiveService.rearchiveDevice(device.getId(),
+            fresh.get(0).timestamp(), fresh.get(fresh.size() - 1).timestamp());
+        return new ImportResult(history.size() - fresh.size(), batches, archiveBlocks,
+            liveOutcome == ProcessingOutcome.STORED || liveOutcome == ProcessingOutcome.COMPRESSED,
+            liveOutcome == ProcessingOutcome.STORED);
+    }
+
+    private long copy(String rows) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(rows));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * One CSV line of COPY_SQL; readings with a typed column go to it, the rest to the jsonb column
+     */
+    void appendCopyRow(StringBuilder rows, Long deviceId, Sample sample, String now) {
+        DeviceTelemetry telemetry = new DeviceTelemetry(null, sample.timestamp(), sample.data());
+        rows.append(deviceId).append(',').append(sample.timestamp()).append(',');
+        try {
+            appendQuoted(rows, objectMapper.writeValueAsString(telemetry.getOverflowData()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize telemetry data", e);
+        }
+        for (DeviceTelemetry.HotField field : DeviceTelemetry.HOT_FIELDS) {
+            rows.append(',');
+            Number value = field.getter().apply(telemetry);
+            if (value != null) {
+                rows.append(value);
+            }
+        }
+        rows.append(',').append(now).append(',').append(now).append('\n');
+    }
+
+    private static void appendQuoted(StringBuilder rows, String value) {
+        rows.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                rows.append('"');
+            }
+            rows.append(c);
+        }
+        rows.append('"');
+    }
+
+    private void checkSampleLimit(int samples) {
+        if (samples >= maxSamples) {
+            throw new IllegalArgumentException("Import must not exceed " + maxSamples + " samples");
+        }
+    }
+
+    /**
+     * One parsed sample; json is the sample as sent, for the live pipeline
+     */
+    record Sample(long line, LocalDateTime timestamp, Map<String, Object> data, String json) {
+    }
+
+    /**
+     * Samples to store as history in time order, and the one for the live pipeline, if any
+     */
+    record ImportPlan(List<Sample> history, Sample live, int duplicates, LocalDateTime from, LocalDateTime to) {
+    }
+
+    private record ImportResult(int duplicates, List<BatchStats> batches, int archiveBlocks, boolean appliedLive,
+                                boolean storedLive) {
+    }
+}
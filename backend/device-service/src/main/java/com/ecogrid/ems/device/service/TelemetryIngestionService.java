@@ -0,0 +1,207 @@
+package com.ecogrid.ems.device.service;
+
+import org.apache.kafka.common.errors.RetriableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionSystemException;
+
+import java.net.ConnectException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Entry point for MQTT telemetry, with store-and-forward while the database or Kafka is failing.
+ *
+ * Samples go straight to the processor while nothing is spooled, or in the Kafka-first ingestion mode
+ * (app.telemetry.ingestion.mode=kafka) to the raw telemetry bridge, where Kafka is the only downstream. A sample that fails for a downstream
+ * reason is appended to the spool instead of being lost, and from then on new samples are appended behind
+ * it without touching the database, so the MQTT callback thread is not held up by connection timeouts. The
+ * replayer drains the spool in arrival order, which keeps every device's samples in order, and a circuit
+ * breaker paces its attempts while downstream keeps failing. Samples that fail for any other reason are
+ * logged and dropped as before; spooling them would only replay the same failure.
+ */
+@Service
+public class TelemetryIngestionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryIngestionService.class);
+
+    private final DeviceTelemetryProcessor telemetryProcessor;
+    private final RawTelemetryBridge rawTelemetryBridge;
+    private final TelemetrySpool spool;
+    private final CircuitBreaker circuitBreaker;
+
+    @Value("${app.telemetry.spool.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.telemetry.spool.replay-max-duration:10s}")
+    private Duration replayMaxDuration;
+
+    public TelemetryIngestionService(DeviceTelemetryProcessor telemetryProcessor,
+                                     ObjectProvider<RawTelemetryBridge> rawTelemetryBridge,
+                                     ObjectProvider<TelemetrySpool> spool,
+                                     @Value("${app.telemetry.spool.breaker.failure-threshold:3}") int failureThreshold,
+                                     @Value("${app.telemetry.spool.breaker.open-duration:10s}") Duration openDuration) {
+        this.telemetryProcessor = telemetryProcessor;
+        this.rawTelemetryBridge = rawTelemetryBridge.getIfAvailable();
+        this.spool = spool.getIfAvailable();
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+    }
+
+    /**
+     * Store a telemetry message now, or spool it when downstream is failing or older messages are still
+     * spooled
+     */
+    public void ingest(String topic, String payload) {
+        long receivedAt = System.currentTimeMillis();
+        if (spool == null) {
+            try {
+                send(topic, payload, receivedAt);
+            } catch (RuntimeException e) {
+                logger.error("Error processing telemetry message from topic: " + topic, e);
+            }
+            return;
+        }
+
+        if (!spool.isEmpty() || !circuitBreaker.allowRequest()) {
+            spool.append(topic, payload, receivedAt);
+            return;
+        }
+        if (!process(topic, payload, receivedAt)) {
+            spool.append(topic, payload, receivedAt);
+        }
+    }
+
+    /**
+     * Drain the spool in batches while the breaker lets calls through, for at most replay-max-duration per
+     * run. The first call after the breaker's open period is the probe that closes it again.
+     */
+    @Scheduled(fixedDelayString = "${app.telemetry.spool.replay-interval-ms:1000}")
+    public void replay() {
+        if (spool == null) {
+            return;
+        }
+        long deadline = System.nanoTime() + replayMaxDuration.toNanos();
+        long replayed = 0;
+        boolean failed = false;
+        while (!failed && !spool.isEmpty() && System.nanoTime() < deadline && circuitBreaker.allowRequest()) {
+            TelemetrySpool.Batch batch = spool.read(batchSize);
+            List<TelemetrySpool.Entry> entries = batch.entries();
+            int done = 0;
+            while (done < entries.size()) {
+                TelemetrySpool.Entry entry = entries.get(done);
+                if (!process(entry.topic(), entry.payload(), entry.receivedAt())) {
+                    failed = true;
+                    break;
+                }
+                done++;
+            }
+            spool.acknowledge(batch, done);
+            replayed += done;
+        }
+        spool.flush();
+        if (replayed > 0) {
+            logger.info("Replayed {} spooled telemetry messages, {} still spooled", replayed, spool.getPendingMessages());
+        }
+    }
+
+    /**
+     * Process one message; false when it failed because downstream is unavailable, in which case it must be
+     * kept for later
+     */
+    private boolean process(String topic, String payload, long receivedAt) {
+        try {
+            send(topic, payload, receivedAt);
+        } catch (RuntimeException e) {
+            if (isDownstreamFailure(e)) {
+                circuitBreaker.recordFailure();
+                logger.warn("Telemetry from {} spooled, downstream unavailable ({}): {}",
+                    topic, circuitBreaker.getState(), e.getMessage());
+                return false;
+            }
+            logger.error("Error processing telemetry message from topic: " + topic, e);
+        }
+        circuitBreaker.recordSuccess();
+        return true;
+    }
+
+    private void send(String topic, String payload, long receivedAt) {
+        if (rawTelemetryBridge == null) {
+            telemetryProcessor.processTelemetryMessage(topic, payload, receivedAt);
+            return;
+        }
+        CompletableFuture<?> sent = rawTelemetryBridge.publish(topic, payload, receivedAt);
+        if (sent != null) {
+            sent.whenComplete((result, e) -> {
+                if (e != null) {
+                    deliveryFailed(topic, payload, receivedAt, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * A raw telemetry record the producer gave up on after the send returned; spooled out of order rather
+     * than lost
+     */
+    private void deliveryFailed(String topic, String payload, long receivedAt, Throwable e) {
+        if (spool == null || !isDownstreamFailure(e)) {
+            logger.error("Failed to publish raw telemetry from topic: " + topic, e);
+            return;
+        }
+        circuitBreaker.recordFailure();
+        logger.warn("Raw telemetry from {} spooled, Kafka delivery failed: {}", topic, e.getMessage());
+        spool.append(topic, payload, receivedAt);
+    }
+
+    /**
+     * Whether the exception, or one of its causes, says the database or Kafka could not be reached or timed
+     * out, as opposed to something wrong with the message itself
+     */
+    static boolean isDownstreamFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof CannotCreateTransactionException
+                    || cause instanceof TransactionSystemException
+                    || cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException
+                    || cause instanceof ConnectException
+                    || cause instanceof RetriableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isSpoolEnabled() {
+        return spool != null;
+    }
+
+    public CircuitBreaker.State getBreakerState() {
+        return circuitBreaker.getState();
+    }
+
+    public long getSpooledMessages() {
+        return spool != null ? spool.getPendingMessages() : 0;
+    }
+
+    public long getDroppedMessages() {
+        return spool != null ? spool.getDroppedMessages() : 0;
+    }
+
+    public long getSpoolSizeOnDisk() {
+        return spool != null ? spool.getSizeOnDisk() : 0;
+    }
+}
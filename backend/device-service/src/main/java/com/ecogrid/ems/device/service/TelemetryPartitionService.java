@@ -0,0 +1,294 @@
+package com.ecogrid.ems.device.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Owns the daily range partitions of device_telemetry.
+ *
+ * The partitioned parent is set up before Hibernate starts (see TelemetryPartitionConfig).
+ * Partitions cover every day retention keeps and a few days ahead, and retention drops whole daily
+ * partitions instead of deleting their rows, so expiring them causes no row-level WAL or vacuum work.
+ * A late or skewed timestamp outside those days lands in the DEFAULT partition rather than failing the
+ * insert: its rows move into the day's partition when one is created, and are deleted row by row past
+ * retention, which only costs WAL for the few rows that ended up there.
+ */
+@Service
+public class TelemetryPartitionService implements InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetryPartitionService.class);
+
+    static final String PARENT_TABLE = "device_telemetry";
+    static final String DEFAULT_PARTITION = PARENT_TABLE + "_default";
+    private static final String SCHEMA_SCRIPT = "db/device-telemetry-partitioning.sql";
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final Pattern BOUNDS = Pattern.compile("FROM \\((.+?)\\) TO \\((.+?)\\)");
+
+    // How long a drop waits for its lock before giving up until the next run; see dropPartition
+    private static final String DROP_LOCK_TIMEOUT = "5s";
+
+    private static final String LIST_PARTITIONS =
+        "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound " +
+        "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+        "WHERE i.inhparent = '" + PARENT_TABLE + "'::regclass " +
+        "AND pg_get_expr(c.relpartbound, c.oid) <> 'DEFAULT' " +
+        "ORDER BY c.relname";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.telemetry.partitions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.telemetry.partitions.days-ahead:7}")
+    private int daysAhead;
+
+    @Value("${app.telemetry.partitions.retention-days:7}")
+    private int retentionDays;
+
+    public TelemetryPartitionService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            logger.info("Telemetry partition management is disabled");
+            return;
+        }
+        ensurePartitionedTable();
+        createRetainedPartitions(LocalDate.now());
+    }
+
+    /**
+     * Daily maintenance: create missing and upcoming partitions and drop those past retention
+     */
+    @Scheduled(cron = "${app.telemetry.partitions.maintenance-cron:0 5 0 * * *}")
+    public void maintainPartitions() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        try {
+            createRetainedPartitions(today);
+            dropExpiredPartitions(today);
+        } catch (DataAccessException e) {
+            logger.error("Telemetry partition maintenance failed", e);
+        }
+    }
+
+    /**
+     * Create the partitioned parent table, converting an unpartitioned table if needed
+     */
+    public void ensurePartitionedTable() {
+        try {
+            String script = StreamUtils.copyToString(
+                new ClassPathResource(SCHEMA_SCRIPT).getInputStream(), StandardCharsets.UTF_8);
+            jdbcTemplate.execute(script);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + SCHEMA_SCRIPT, e);
+        }
+    }
+
+    /**
+     * Create one partition per day from today until days-ahead, skipping days that are already covered
+     * @return names of the partitions created
+     */
+    public List<String> createUpcomingPartitions(LocalDate today) {
+        return createPartitions(today, today.plusDays(daysAhead));
+    }
+
+    /**
+     * Create a partition for every day retention keeps, including days the service was down, and the upcoming ones
+     * @return names of the partitions created
+     */
+    public List<String> createRetainedPartitions(LocalDate today) {
+        return createPartitions(today.minusDays(retentionDays), today.plusDays(daysAhead));
+    }
+
+    /**
+     * Create the missing partitions of [first, last] that retention would keep, for telemetry imported into
+     * days the service did not run on
+     * @return the partitions after creating them
+     */
+    public List<TelemetryPartition> ensurePartitions(LocalDate first, LocalDate last) {
+        if (enabled) {
+            LocalDate today = LocalDate.now();
+            LocalDate oldest = today.minusDays(retentionDays);
+            LocalDate newest = today.plusDays(daysAhead);
+            createPartitions(first.isBefore(oldest) ? oldest : first, last.isAfter(newest) ? newest : last);
+        }
+        return listPartitions();
+    }
+
+    private List<String> createPartitions(LocalDate first, LocalDate last) {
+        List<TelemetryPartition> existing = listPartitions();
+        List<String> created = new ArrayList<>();
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            LocalDateTime from = day.atStartOfDay();
+            LocalDateTime to = from.plusDays(1);
+            if (existing.stream().anyMatch(partition -> partition.overlaps(from, to))) {
+                continue;
+            }
+            String name = PARENT_TABLE + "_p" + day.format(PARTITION_SUFFIX);
+            String bounds = " FOR VALUES FROM ('" + from.format(BOUND_FORMAT) + "') TO ('" + to.format(BOUND_FORMAT) + "')";
+            if (defaultPartitionHasRows(from, to)) {
+                createFromDefaultPartition(name, bounds, from, to);
+            } else {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + PARENT_TABLE + bounds);
+            }
+            created.add(name);
+        }
+        if (!created.isEmpty()) {
+            logger.info("Created telemetry partitions: {}", created);
+        }
+        return created;
+    }
+
+    private boolean defaultPartitionHasRows(LocalDateTime from, LocalDateTime to) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+            "SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION + " WHERE timestamp >= ? AND timestamp < ?)",
+            Boolean.class, Timestamp.valueOf(from), Timestamp.valueOf(to)));
+    }
+
+    /**
+     * A new partition cannot be created over rows of the DEFAULT partition, so build it as a plain table,
+     * move the rows over and attach it, all in one transaction
+     */
+    private void createFromDefaultPartition(String name, String bounds, LocalDateTime from, LocalDateTime to) {
+        String range = "timestamp >= '" + from.format(BOUND_FORMAT) + "' AND timestamp < '" + to.format(BOUND_FORMAT) + "'";
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE " + name + " (LIKE " + PARENT_TABLE + " INCLUDING DEFAULTS)");
+                statement.execute("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION + " WHERE " + range +
+                    " RETURNING *) INSERT INTO " + name + " SELECT * FROM moved");
+                statement.execute("ALTER TABLE " + PARENT_TABLE + " ATTACH PARTITION " + name + bounds);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+        logger.info("Moved telemetry rows of {} from the default partition into {}", from.toLocalDate(), name);
+    }
+
+    /**
+     * Drop every partition whose whole range is older than the retention period, and delete the rows of
+     * the default partition that are
+     * @return names of the partitions dropped
+     */
+    public List<String> dropExpiredPartitions(LocalDate today) {
+        LocalDateTime cutoff = today.minusDays(retentionDays).atStartOfDay();
+        List<String> dropped = new ArrayList<>();
+        for (TelemetryPartition partition : listPartitions()) {
+            if (partition.to() == null || partition.to().isAfter(cutoff)) {
+                continue;
+            }
+            try {
+                dropPartition(partition.name());
+                dropped.add(partition.name());
+            } catch (DataAccessException e) {
+                logger.warn("Could not drop telemetry partition {}, retrying on the next run: {}",
+                    partition.name(), e.getMostSpecificCause().getMessage());
+            }
+        }
+        if (!dropped.isEmpty()) {
+            logger.info("Dropped telemetry partitions older than {}: {}", cutoff, dropped);
+        }
+        int deleted = jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE timestamp < ?",
+            Timestamp.valueOf(cutoff));
+        if (deleted > 0) {
+            logger.info("Deleted {} telemetry rows older than {} from the default partition", deleted, cutoff);
+        }
+        return dropped;
+    }
+
+    /**
+     * DETACH ... CONCURRENTLY is refused while a DEFAULT partition exists, so the partition is dropped
+     * directly. That takes an ACCESS EXCLUSIVE lock on the parent for a moment; the lock timeout keeps a
+     * drop stuck behind a long-running query from queueing ingestion behind it.
+     */
+    private void dropPartition(String name) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LOCAL lock_timeout = '" + DROP_LOCK_TIMEOUT + "'");
+                statement.execute("DROP TABLE " + name);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Current partitions with their bounds; a null bound stands for MINVALUE/MAXVALUE
+     */
+    public List<TelemetryPartition> listPartitions() {
+        return jdbcTemplate.query(LIST_PARTITIONS, (rs, rowNum) -> parsePartition(rs.getString("relname"), rs.getString("bound")));
+    }
+
+    static TelemetryPartition parsePartition(String name, String bound) {
+        Matcher matcher = BOUNDS.matcher(bound);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Unexpected bound for partition " + name + ": " + bound);
+        }
+        return new TelemetryPartition(name, parseBound(matcher.group(1)), parseBound(matcher.group(2)));
+    }
+
+    private static LocalDateTime parseBound(String value) {
+        if (value.equals("MINVALUE") || value.equals("MAXVALUE")) {
+            return null;
+        }
+        // e.g. '2024-01-01 00:00:00', or with an offset suffix for timestamptz columns
+        return LocalDateTime.parse(value.substring(1, 20), BOUND_FORMAT);
+    }
+
+    /**
+     * A partition covering [from, to)
+     */
+    public record TelemetryPartition(String name, LocalDateTime from, LocalDateTime to) {
+
+        boolean overlaps(LocalDateTime start, LocalDateTime end) {
+            return (from == null || from.isBefore(end)) && (to == null || to.isAfter(start));
+        }
+
+        public boolean contains(LocalDateTime timestamp) {
+            return (from == null || !from.isAfter(timestamp)) && (to == null || to.isAfter(timestamp));
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceTelemetry;
+import com.ecogrid.ems.device.repository.DeviceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Telemetry history of a device for charts, downsampled with Largest-Triangle-Three-Buckets.
+ *
+ * A first aggregate query computes per-bucket averages of each field; a second query streams the raw rows
+ * through a forward-only cursor, and each field keeps at most one candidate per bucket. Neither the rows
+ * nor the entities of the range are ever held in memory, so a week of 1 Hz data costs the same as an hour.
+ * Hours already archived (TelemetryArchiveService) are read from their compressed blocks instead of rows;
+ * samples that arrive late for an archived hour show up once the next archive run has re-encoded it.
+ */
+@Service
+public class TelemetryRangeService {
+
+    private static final Pattern FIELD_NAME = Pattern.compile("[A-Za-z][A-Za-z0-9_]{0,63}");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DeviceRepository deviceRepository;
+    private final TelemetryArchiveService archiveService;
+
+    @Value("${app.telemetry.range.max-points:5000}")
+    private int maxPointsLimit;
+
+    @Value("${app.telemetry.range.max-fields:16}")
+    private int maxFields;
+
+    @Value("${app.telemetry.range.fetch-size:1000}")
+    private int fetchSize;
+
+    public TelemetryRangeService(JdbcTemplate jdbcTemplate, DeviceRepository deviceRepository,
+                                 TelemetryArchiveService archiveService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.deviceRepository = deviceRepository;
+        this.archiveService = archiveService;
+    }
+
+    /**
+     * Downsampled series of a device over [from, to), at most maxPoints per field
+     * @param fields numeric telemetry fields; null or empty for the key fields of the device type
+     * @return empty when the device does not exist
+     */
+    @Transactional(readOnly = true)
+    public Optional<TelemetryRange> getTelemetryRange(Long deviceId, LocalDateTime from, LocalDateTime to,
+                                                      List<String> fields, int maxPoints) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        if (maxPoints < 3 || maxPoints > maxPointsLimit) {
+            throw new IllegalArgumentException("maxPoints must be between 3 and " + maxPointsLimit);
+        }
+        Optional<Device> device = deviceRepository.findById(deviceId);
+        if (device.isEmpty()) {
+            return Optional.empty();
+        }
+
+        boolean explicitFields = fields != null && !fields.isEmpty();
+        List<String> fieldNames = explicitFields
+            ? validateFields(fields)
+            : defaultFields(device.get().getDeviceType() != null ? device.get().getDeviceType().getName() : null);
+        // Archived hours come from blocks, the rest from device_telemetry rows
+        LocalDateTime archivedUntil = archiveService.getArchivedUntil();
+        LocalDateTime rawFrom = archivedUntil == null || !archivedUntil.isAfter(from) ? from
+            : archivedUntil.isBefore(to) ? archivedUntil : to;
+        RangeQuery query = new RangeQuery(deviceId, from, rawFrom, to, fieldNames, maxPoints - 2);
+
+        FieldStats[] stats = new FieldStats[fieldNames.size()];
+        for (int f = 0; f < stats.length; f++) {
+            stats[f] = new FieldStats(query.buckets());
+        }
+        if (query.hasArchivedPart()) {
+            forEachArchivedPoint(query, (field, bucket, timestamp, x, value) -> stats[field].add(bucket, timestamp, x, value));
+        }
+        if (query.hasRawPart()) {
+            queryBucketStats(query, stats);
+        }
+
+        LttbDownsampler[] samplers = new LttbDownsampler[fieldNames.size()];
+        for (int f = 0; f < samplers.length; f++) {
+            samplers[f] = stats[f].samples <= maxPoints
+                ? LttbDownsampler.passThrough((int) stats[f].samples)
+                : downsamplerFor(query, f, stats[f]);
+        }
+        if (query.hasArchivedPart()) {
+            forEachArchivedPoint(query, (field, bucket, timestamp, x, value) -> samplers[field].add(bucket, timestamp, x, value));
+        }
+        if (query.hasRawPart()) {
+            streamRows(query, samplers);
+        }
+
+        List<TelemetrySeries> series = new ArrayList<>();
+        for (int f = 0; f < samplers.length; f++) {
+            if (stats[f].samples == 0 && !explicitFields) {
+                continue;
+            }
+            LttbDownsampler.Series points = samplers[f].finish();
+            series.add(new TelemetrySeries(fieldNames.get(f), stats[f].samples, points.timestamps(), points.values()));
+        }
+        return Optional.of(new TelemetryRange(deviceId, from, to, maxPoints, series));
+    }
+
+    private List<String> validateFields(List<String> fields) {
+        List<String> names = fields.stream()
+            .flatMap(field -> Arrays.stream(field.split(",")))
+            .map(String::trim)
+            .filter(field -> !field.isEmpty())
+            .collect(Collectors.toCollection(LinkedHashSet::new))
+            .stream().toList();
+        if (names.size() > maxFields) {
+            throw new IllegalArgumentException("At most " + maxFields + " fields can be requested");
+        }
+        for (String name : names) {
+            if (!FIELD_NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("Invalid telemetry field: " + name);
+            }
+        }
+        return names;
+    }
+
+    private List<String> defaultFields(String deviceType) {
+        TelemetrySchema schema = TelemetrySchema.fromDeviceType(deviceType);
+        if (schema != null) {
+            return schema.getFields().stream().map(TelemetrySchema.Field::name).toList();
+        }
+        return DeviceTelemetry.HOT_FIELDS.stream().map(DeviceTelemetry.HotField::key).toList();
+    }
+
+    /**
+     * Add per-bucket counts and sums of the raw part, one row per non-empty bucket
+     */
+    private void queryBucketStats(RangeQuery query, FieldStats[] stats) {
+        String aggregates = IntStream.range(0, stats.length)
+            .mapToObj(f -> "COUNT(f" + f + "), SUM(f" + f + "), SUM(x) FILTER (WHERE f" + f + " IS NOT NULL)")
+            .collect(Collectors.joining(", "));
+        String sql = "SELECT bucket, " + aggregates + " FROM (" + query.rowsSql() + ") r GROUP BY bucket";
+
+        jdbcTemplate.query(sql, (ResultSet rs) -> {
+            int bucket = rs.getInt(1);
+            for (int f = 0; f < stats.length; f++) {
+                long count = rs.getLong(2 + f * 3);
+                if (count > 0) {
+                    stats[f].addBucket(bucket, count, rs.getDouble(4 + f * 3), rs.getDouble(3 + f * 3));
+                    stats[f].rawSamples += count;
+                }
+            }
+        }, query.parameters());
+    }
+
+    /**
+     * Downsampler for a field, anchored on the field's last sample in the range
+     */
+    private LttbDownsampler downsamplerFor(RangeQuery query, int field, FieldStats stats) {
+        if (stats.rawSamples == 0) {
+            return LttbDownsampler.downsampling(stats.averageX(), stats.averageY(),
+                stats.lastTimestamp, stats.lastX, stats.lastY);
+        }
+        String sql = "SELECT timestamp, x, f" + field + " FROM (" + query.rowsSql() + ") r " +
+            "WHERE f" + field + " IS NOT NULL ORDER BY timestamp DESC LIMIT 1";
+        return jdbcTemplate.query(sql, rs -> {
+            rs.next();
+            return LttbDownsampler.downsampling(stats.averageX(), stats.averageY(),
+                toEpochMillis(rs.getObject(1, LocalDateTime.class)), rs.getDouble(2), rs.getDouble(3));
+        }, query.parameters());
+    }
+
+    /**
+     * Points of the archived part in time order, decoded one block at a time
+     */
+    private void forEachArchivedPoint(RangeQuery query, PointConsumer consumer) {
+        long fromMillis = TelemetryArchiveService.toBlockMillis(query.from());
+        long endMillis = TelemetryArchiveService.toBlockMillis(query.rawFrom());
+        double width = query.bucketWidthMillis();
+        archiveService.forEachBlock(query.deviceId(), query.from(), query.rawFrom(), block -> {
+            int[] indexes = query.fields().stream().mapToInt(block::fieldIndex).toArray();
+            long[] timestamps = block.timestamps();
+            for (int i = 0; i < timestamps.length; i++) {
+                if (timestamps[i] < fromMillis || timestamps[i] >= endMillis) {
+                    continue;
+                }
+                double x = timestamps[i] - fromMillis;
+                int bucket = (int) Math.min(Math.floor(x / width), query.buckets() - 1);
+                long timestamp = toEpochMillis(TelemetryArchiveService.fromBlockMillis(timestamps[i]));
+                for (int f = 0; f < indexes.length; f++) {
+                    if (indexes[f] >= 0 && !Double.isNaN(block.values()[indexes[f]][i])) {
+                        consumer.accept(f, bucket, timestamp, x, block.values()[indexes[f]][i]);
+                    }
+                }
+            }
+        });
+    }
+
+    private void streamRows(RangeQuery query, LttbDownsampler[] samplers) {
+        PreparedStatementCreator statementCreator = connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                query.rowsSql() + " ORDER BY timestamp", ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            Object[] parameters = query.parameters();
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            return statement;
+        };
+        jdbcTemplate.query(statementCreator, (ResultSet rs) -> {
+            long timestamp = toEpochMillis(rs.getObject("timestamp", LocalDateTime.class));
+            int bucket = rs.getInt("bucket");
+            double x = rs.getDouble("x");
+            for (int f = 0; f < samplers.length; f++) {
+                double value = rs.getDouble("f" + f);
+                if (!rs.wasNull()) {
+                    samplers[f].add(bucket, timestamp, x, value);
+                }
+            }
+        });
+    }
+
+    private static long toEpochMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * SQL expression reading a numeric field: typed column first, then the jsonb overflow
+     * (rows written before the field got its own column only have it in jsonb)
+     */
+    static String fieldExpression(String field) {
+        String json = "CASE WHEN jsonb_typeof(t.data -> '" + field + "') = 'number' " +
+            "THEN (t.data ->> '" + field + "')::float8 END";
+        return DeviceTelemetry.HOT_FIELDS.stream()
+            .filter(hotField -> hotField.key().equals(field))
+            .findFirst()
+            .map(hotField -> "COALESCE(t." + hotField.column() + "::float8, " + json + ")")
+            .orElse(json);
+    }
+
+    /**
+     * Range [from, to) split at rawFrom: [from, rawFrom) is archived, [rawFrom, to) is read from rows.
+     * Offsets (x) and buckets are always relative to from.
+     */
+    private record RangeQuery(Long deviceId, LocalDateTime from, LocalDateTime rawFrom, LocalDateTime to,
+                              List<String> fields, int buckets) {
+
+        boolean hasArchivedPart() {
+            return rawFrom.isAfter(from);
+        }
+
+        boolean hasRawPart() {
+            return rawFrom.isBefore(to);
+        }
+
+        double bucketWidthMillis() {
+            return (double) Duration.between(from, to).toMillis() / buckets;
+        }
+
+        /**
+         * Rows of the raw part with their time offset x (ms since from), bucket and field values f0..fn
+         */
+        String rowsSql() {
+            StringBuilder sql = new StringBuilder("SELECT t.timestamp, o.x, ")
+                .append("LEAST(FLOOR(o.x / ?), ").append(buckets - 1)
+                .append(")::int AS bucket");
+            for (int f = 0; f < fields.size(); f++) {
+                sql.append(", ").append(fieldExpression(fields.get(f))).append(" AS f").append(f);
+            }
+            return sql.append(" FROM device_telemetry t ")
+                .append("CROSS JOIN LATERAL (SELECT EXTRACT(EPOCH FROM t.timestamp - CAST(? AS timestamp))::float8 * 1000 AS x) o ")
+                .append("WHERE t.device_id = ? AND t.timestamp >= ? AND t.timestamp < ?")
+                .toString();
+        }
+
+        Object[] parameters() {
+            return new Object[] {
+                bucketWidthMillis(), Timestamp.valueOf(from), deviceId, Timestamp.valueOf(rawFrom), Timestamp.valueOf(to)};
+        }
+    }
+
+    @FunctionalInterface
+    private interface PointConsumer {
+        void accept(int field, int bucket, long timestamp, double x, double value);
+    }
+
+    /**
+     * Sample count, per-bucket sums and last point of one field, merged from archive and rows
+     */
+    private static final class FieldStats {
+
+        private final long[] bucketCount;
+        private final double[] sumX;
+        private final double[] sumY;
+        private long samples;
+        private long rawSamples;
+        private long lastTimestamp;
+        private double lastX;
+        private double lastY;
+
+        FieldStats(int buckets) {
+            this.bucketCount = new long[buckets];
+            this.sumX = new double[buckets];
+            this.sumY = new double[buckets];
+        }
+
+        void add(int bucket, long timestamp, double x, double y) {
+            addBucket(bucket, 1, x, y);
+            lastTimestamp = timestamp;
+            lastX = x;
+            lastY = y;
+        }
+
+        void addBucket(int bucket, long count, double x, double y) {
+            bucketCount[bucket] += count;
+            sumX[bucket] += x;
+            sumY[bucket] += y;
+            samples += count;
+        }
+
+        double[] averageX() {
+            return average(sumX);
+        }
+
+        double[] averageY() {
+            return average(sumY);
+        }
+
+        private double[] average(double[] sums) {
+            double[] averages = new double[sums.length];
+            for (int b = 0; b < sums.length; b++) {
+                averages[b] = bucketCount[b] > 0 ? sums[b] / bucketCount[b] : Double.NaN;
+            }
+            return averages;
+        }
+    }
+
+    /**
+     * Downsampled range of a device
+     */
+    public record TelemetryRange(Long deviceId, LocalDateTime from, LocalDateTime to, int maxPoints,
+                                 List<TelemetrySeries> series) {}
+
+    /**
+     * One field: raw sample count in the range and the selected points as parallel columns (epoch millis, value)
+     */
+    public record TelemetrySeries(String field, long samples, long[] timestamps, double[] values) {}
+}
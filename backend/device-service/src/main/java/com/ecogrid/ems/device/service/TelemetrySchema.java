@@ -0,0 +1,141 @@
+package com.ecogrid.ems.device.service;
+
+import java.util.List;
+
+/**
+ * Fixed telemetry schema per device type, used by the off-heap latest-value store: the numeric fields,
+ * the status fields with an enumerated set of values, and the telemetry type names devices of the type
+ * report. Positions in all three lists are part of the on-disk layout: only append, never reorder.
+ */
+public enum TelemetrySchema {
+
+    BMS(List.of("BMS", "Battery Storage", "BATTERY_STORAGE"), List.of(
+        field("soc"), field("remainingCapacity"), field("nominalCapacity"), field("chargeRate"),
+        field("voltage"), field("current"), field("temperature"), field("efficiency"),
+        integral("cycleCount"), field("power")),
+        List.of(status("healthStatus", "EXCELLENT", "GOOD", "FAIR", "POOR"))),
+
+    SOLAR_ARRAY(List.of("SOLAR_ARRAY", "Solar Array", "SOLAR_INVERTER", "Solar Inverter"), List.of(
+        field("currentOutput"), field("energyYield"), field("energyYieldTotal"), field("panelTemperature"),
+        field("irradiance"), field("ambientTemperature"), field("windSpeed"), field("inverterEfficiency"),
+        field("systemEfficiency"), field("performanceRatio"), field("power")),
+        List.of(status("inverterStatus", "ONLINE", "OFFLINE", "FAULT"))),
+
+    EV_CHARGER(List.of("EV_CHARGER", "EV Charger"), List.of(
+        integral("activeSessions"), integral("totalSessions"), field("powerDelivered"),
+        field("energyDelivered"), field("revenue"), field("avgSessionDuration"), field("utilizationRate"),
+        integral("faults"), field("uptime"), field("power")),
+        List.of(status("paymentSystemStatus", "ONLINE", "OFFLINE"), status("networkConnectivity", true, false)));
+
+    public static final int MAX_FIELDS = 12;
+    public static final int MAX_STATUSES = 4;
+
+    private final List<String> telemetryTypes;
+    private final List<Field> fields;
+    private final List<Status> statuses;
+
+    TelemetrySchema(List<String> telemetryTypes, List<Field> fields, List<Status> statuses) {
+        this.telemetryTypes = telemetryTypes;
+        this.fields = fields;
+        this.statuses = statuses;
+    }
+
+    /**
+     * Schema for a device type name, or null when the type has no fixed schema
+     */
+    public static TelemetrySchema fromDeviceType(String deviceType) {
+        if (deviceType == null) {
+            return null;
+        }
+        switch (deviceType.toUpperCase().replace(' ', '_')) {
+            case "BMS":
+            case "BATTERY_STORAGE":
+                return BMS;
+            case "SOLAR_ARRAY":
+            case "SOLAR_INVERTER":
+                return SOLAR_ARRAY;
+            case "EV_CHARGER":
+                return EV_CHARGER;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Stable non-zero code stored in the off-heap slot; 0 marks an empty slot
+     */
+    public int code() {
+        return ordinal() + 1;
+    }
+
+    public static TelemetrySchema fromCode(int code) {
+        TelemetrySchema[] values = values();
+        return code >= 1 && code <= values.length ? values[code - 1] : null;
+    }
+
+    /**
+     * The telemetry type the schema is named after
+     */
+    public String getTelemetryType() {
+        return telemetryTypes.get(0);
+    }
+
+    /**
+     * Position of a telemetry type name among those of the schema, 0 for its own; -1 when it is not one of them
+     */
+    public int telemetryTypeCode(String telemetryType) {
+        return telemetryTypes.indexOf(telemetryType);
+    }
+
+    /**
+     * Telemetry type name at a position returned by telemetryTypeCode, or null for an unknown position
+     */
+    public String telemetryTypeOf(int code) {
+        return code >= 0 && code < telemetryTypes.size() ? telemetryTypes.get(code) : null;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    public List<Status> getStatuses() {
+        return statuses;
+    }
+
+    private static Field field(String name) {
+        return new Field(name, false);
+    }
+
+    private static Field integral(String name) {
+        return new Field(name, true);
+    }
+
+    private static Status status(String name, Object... values) {
+        return new Status(name, List.of(values));
+    }
+
+    /**
+     * A numeric field; integral fields are read back as longs
+     */
+    public record Field(String name, boolean integral) {}
+
+    /**
+     * A field that takes one of a few values, strings or booleans as they arrive in the JSON payload
+     */
+    public record Status(String name, List<Object> values) {
+
+        /**
+         * Non-zero code of a value, or 0 when the value is not one of the enumerated ones
+         */
+        public int codeOf(Object value) {
+            return value != null ? values.indexOf(value) + 1 : 0;
+        }
+
+        /**
+         * Value of a non-zero code, or null for an unknown code
+         */
+        public Object valueOf(int code) {
+            return code >= 1 && code <= values.size() ? values.get(code - 1) : null;
+        }
+    }
+}
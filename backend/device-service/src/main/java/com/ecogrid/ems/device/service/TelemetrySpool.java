@@ -0,0 +1,380 @@
+package com.ecogrid.ems.device.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only spool of telemetry messages on disk, for holding samples while downstream is unavailable.
+ *
+ * Messages go into fixed-size, memory-mapped segment files, so appending is a memory copy that survives a
+ * process crash. Each segment has a 64-byte header that records how far it has been read, followed by
+ * records of a length, a CRC32C and the body; the length is written last, so a record cut short by a crash
+ * reads as the end of the segment. Reading returns messages in the order they were appended and they stay
+ * in the spool until acknowledged. The number of segments is capped: when a new one would exceed the cap,
+ * the oldest is deleted with whatever was still unread in it.
+ */
+public class TelemetrySpool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetrySpool.class);
+
+    private static final long MAGIC = 0x454D5353504F4F4CL; // "EMSSPOOL"
+    private static final int LAYOUT_VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    static final int MIN_SEGMENT_SIZE = 4096;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int SEGMENT_SIZE_OFFSET = 12;
+    private static final int READ_OFFSET_OFFSET = 16;
+
+    // Length and CRC in front of each record body; the body is receivedAt, the topic length, topic and payload
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int BODY_FIXED_SIZE = 12;
+    private static final String SEGMENT_SUFFIX = ".spool";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    // Oldest first; appends go to the last one
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private long nextSegmentId = 1;
+    private long pendingMessages;
+    private long droppedMessages;
+    private boolean dirty;
+
+    private TelemetrySpool(Path directory, int segmentSize, int maxSegments) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+    }
+
+    /**
+     * Open the spool in the directory, recovering unread messages of an earlier run. Disk usage stays within
+     * maxSize, rounded down to whole segments and never below two of them.
+     */
+    public static TelemetrySpool open(Path directory, int segmentSize, long maxSize) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Spool segment size must be at least " + MIN_SEGMENT_SIZE + " bytes");
+        }
+        Files.createDirectories(directory);
+        int maxSegments = (int) Math.max(2, Math.min(Integer.MAX_VALUE, maxSize / segmentSize));
+        TelemetrySpool spool = new TelemetrySpool(directory, segmentSize, maxSegments);
+        spool.recover();
+        return spool;
+    }
+
+    /**
+     * Append a message; false when it cannot be spooled because it is larger than a segment or the disk
+     * write failed
+     */
+    public synchronized boolean append(String topic, String payload, long receivedAt) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = BODY_FIXED_SIZE + topicBytes.length + payloadBytes.length;
+        int recordLength = RECORD_HEADER_SIZE + bodyLength;
+        if (recordLength > segmentSize - HEADER_SIZE) {
+            logger.warn("Telemetry message of {} bytes from {} is larger than a spool segment and was dropped",
+                recordLength, topic);
+            droppedMessages++;
+            return false;
+        }
+
+        Segment segment = segments.peekLast();
+        try {
+            if (segment == null || segment.writeOffset + recordLength > segmentSize) {
+                segment = startSegment();
+            }
+        } catch (IOException e) {
+            logger.error("Could not create a telemetry spool segment in {}", directory, e);
+            droppedMessages++;
+            return false;
+        }
+
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = segment.writeOffset;
+        int end = offset + recordLength;
+        // Zero the next length first so the segment never reads past this record
+        if (end + 4 <= segmentSize) {
+            buffer.putInt(end, 0);
+        }
+        int body = offset + RECORD_HEADER_SIZE;
+        buffer.putLong(body, receivedAt);
+        buffer.putInt(body + 8, topicBytes.length);
+        buffer.put(body + BODY_FIXED_SIZE, topicBytes);
+        buffer.put(body + BODY_FIXED_SIZE + topicBytes.length, payloadBytes);
+        buffer.putInt(offset + 4, checksum(buffer, body, bodyLength));
+        buffer.putInt(offset, bodyLength);
+
+        segment.writeOffset = end;
+        segment.records++;
+        pendingMessages++;
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * Up to max of the oldest unacknowledged messages, in the order they were appended
+     */
+    public synchronized Batch read(int max) {
+        Batch batch = new Batch();
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext() && batch.entries.size() < max) {
+            Segment segment = iterator.next();
+            int offset = segment.readOffset;
+            int record = segment.readRecords;
+            while (record < segment.records && batch.entries.size() < max) {
+                int bodyLength = segment.buffer.getInt(offset);
+                batch.add(decode(segment.buffer, offset + RECORD_HEADER_SIZE, bodyLength), segment,
+                    offset + RECORD_HEADER_SIZE + bodyLength, record + 1);
+                offset += RECORD_HEADER_SIZE + bodyLength;
+                record++;
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Remove the first count messages of a batch from the spool; messages already dropped to stay within
+     * the size cap are skipped
+     */
+    public synchronized void acknowledge(Batch batch, int count) {
+        int last = Math.min(count, batch.entries.size()) - 1;
+        if (last < 0) {
+            return;
+        }
+        Segment target = batch.segments.get(last);
+        if (!segments.contains(target) || batch.recordEnds.get(last) <= target.readRecords) {
+            return;
+        }
+        while (segments.peekFirst() != target) {
+            Segment consumed = segments.pollFirst();
+            pendingMessages -= consumed.records - consumed.readRecords;
+            delete(consumed);
+        }
+        pendingMessages -= batch.recordEnds.get(last) - target.readRecords;
+        target.readOffset = batch.offsetEnds.get(last);
+        target.readRecords = batch.recordEnds.get(last);
+        target.buffer.putInt(READ_OFFSET_OFFSET, target.readOffset);
+        dirty = true;
+
+        if (target.readRecords == target.records && segments.size() > 1) {
+            segments.pollFirst();
+            delete(target);
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingMessages == 0;
+    }
+
+    public synchronized long getPendingMessages() {
+        return pendingMessages;
+    }
+
+    /**
+     * Messages lost because they did not fit, could not be written or were deleted to stay within the cap
+     */
+    public synchronized long getDroppedMessages() {
+        return droppedMessages;
+    }
+
+    public synchronized long getSizeOnDisk() {
+        return (long) segments.size() * segmentSize;
+    }
+
+    /**
+     * Write appended messages and read positions through to disk
+     */
+    public synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        segments.forEach(segment -> segment.buffer.force());
+        dirty = false;
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        segments.clear();
+    }
+
+    private Segment startSegment() throws IOException {
+        long id = nextSegmentId++;
+        Path file = directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        buffer.putLong(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, LAYOUT_VERSION);
+        buffer.putInt(SEGMENT_SIZE_OFFSET, segmentSize);
+        buffer.putInt(READ_OFFSET_OFFSET, HEADER_SIZE);
+
+        Segment segment = new Segment(id, file, buffer);
+        segments.addLast(segment);
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.pollFirst();
+            long lost = oldest.records - oldest.readRecords;
+            pendingMessages -= lost;
+            droppedMessages += lost;
+            delete(oldest);
+            logger.warn("Telemetry spool reached its size cap of {} segments; dropped {} unsent messages",
+                maxSegments, lost);
+        }
+        return segment;
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+        }
+        for (Path file : files) {
+            Segment segment = openSegment(file);
+            if (segment == null) {
+                logger.warn("Ignoring unreadable telemetry spool segment {}", file);
+                continue;
+            }
+            nextSegmentId = Math.max(nextSegmentId, segment.id + 1);
+            if (segment.readRecords == segment.records && !file.equals(files.get(files.size() - 1))) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            segments.addLast(segment);
+            pendingMessages += segment.records - segment.readRecords;
+        }
+        if (pendingMessages > 0) {
+            logger.info("Recovered {} spooled telemetry messages from {}", pendingMessages, directory);
+        }
+    }
+
+    private Segment openSegment(Path file) throws IOException {
+        long id;
+        try {
+            String name = file.getFileName().toString();
+            id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (Files.size(file) != segmentSize) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        if (buffer.getLong(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != LAYOUT_VERSION
+                || buffer.getInt(SEGMENT_SIZE_OFFSET) != segmentSize) {
+            return null;
+        }
+
+        Segment segment = new Segment(id, file, buffer);
+        int readOffset = buffer.getInt(READ_OFFSET_OFFSET);
+        int offset = HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= segmentSize) {
+            int bodyLength = buffer.getInt(offset);
+            if (bodyLength < BODY_FIXED_SIZE || offset + RECORD_HEADER_SIZE + bodyLength > segmentSize
+                    || buffer.getInt(offset + 4) != checksum(buffer, offset + RECORD_HEADER_SIZE, bodyLength)) {
+                break;
+            }
+            if (offset < readOffset) {
+                segment.readRecords++;
+                segment.readOffset = offset + RECORD_HEADER_SIZE + bodyLength;
+            }
+            offset += RECORD_HEADER_SIZE + bodyLength;
+            segment.records++;
+        }
+        segment.writeOffset = offset;
+        return segment;
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            logger.warn("Could not delete telemetry spool segment {}: {}", segment.file, e.getMessage());
+        }
+    }
+
+    private static Entry decode(ByteBuffer buffer, int body, int bodyLength) {
+        long receivedAt = buffer.getLong(body);
+        int topicLength = buffer.getInt(body + 8);
+        byte[] topic = new byte[topicLength];
+        byte[] payload = new byte[bodyLength - BODY_FIXED_SIZE - topicLength];
+        buffer.get(body + BODY_FIXED_SIZE, topic);
+        buffer.get(body + BODY_FIXED_SIZE + topicLength, payload);
+        return new Entry(new String(topic, StandardCharsets.UTF_8), new String(payload, StandardCharsets.UTF_8),
+            receivedAt);
+    }
+
+    private static int checksum(ByteBuffer buffer, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int readOffset = HEADER_SIZE;
+        private int readRecords;
+        private int writeOffset = HEADER_SIZE;
+        private int records;
+
+        private Segment(long id, Path file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+
+    /**
+     * A spooled telemetry message and when it originally arrived (epoch millis)
+     */
+    public record Entry(String topic, String payload, long receivedAt) {}
+
+    /**
+     * Messages returned by {@link #read}, with the spool positions needed to acknowledge them
+     */
+    public static final class Batch {
+        private final List<Entry> entries = new ArrayList<>();
+        private final List<Segment> segments = new ArrayList<>();
+        private final List<Integer> offsetEnds = new ArrayList<>();
+        private final List<Integer> recordEnds = new ArrayList<>();
+
+        private void add(Entry entry, Segment segment, int offsetEnd, int recordEnd) {
+            entries.add(entry);
+            segments.add(segment);
+            offsetEnds.add(offsetEnd);
+            recordEnds.add(recordEnd);
+        }
+
+        public List<Entry> entries() {
+            return Collections.unmodifiableList(entries);
+        }
+
+        public boolean isEmpty() {
+            return entries.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.ecogrid.ems.device.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Indexed registry of raw telemetry WebSocket subscriptions.
+ *
+ * Plain subscribers of /topic/telemetry/{siteId} are only counted so the publisher can skip the
+ * broadcast when nobody listens. Filtered subscribers use /user/queue/telemetry/{siteId}/{subscriptionId},
+ * ending in their own STOMP subscription ID so each has a queue of its own even when a session holds
+ * several on one site, and may pass the STOMP headers deviceIds, deviceTypes, fields and maxRate
+ * (messages per second per device).
+ * They are indexed by site and device ID, so a telemetry record only visits the subscriptions
+ * that can actually match it.
+ */
+@Service
+public class TelemetrySubscriptionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelemetrySubscriptionRegistry.class);
+
+    public static final String TOPIC_DESTINATION_PREFIX = "/topic/telemetry/";
+    public static final String FILTERED_QUEUE_PREFIX = "/queue/telemetry/";
+    public static final String FILTERED_DESTINATION_PREFIX = "/user" + FILTERED_QUEUE_PREFIX;
+
+    public static final String DEVICE_IDS_HEADER = "deviceIds";
+    public static final String DEVICE_TYPES_HEADER = "deviceTypes";
+    public static final String FIELDS_HEADER = "fields";
+    public static final String MAX_RATE_HEADER = "maxRate";
+
+    private final Map<Long, SiteIndex> sites = new ConcurrentHashMap<>();
+
+    // sessionId -> subscriptionId -> registration, used for unsubscribe and disconnect
+    private final Map<String, Map<String, Registration>> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Register a STOMP subscription if it targets one of the telemetry destinations
+     */
+    public void register(String sessionId, String subscriptionId, String destination,
+                         Map<String, String> headers) {
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+
+        Registration registration;
+        if (destination.startsWith(TOPIC_DESTINATION_PREFIX)) {
+            Long siteId = parseSiteId(destination.substring(TOPIC_DESTINATION_PREFIX.length()));
+            if (siteId == null) {
+                return;
+            }
+            siteIndex(siteId).topicSubscribers.incrementAndGet();
+            registration = new Registration(siteId, null);
+        } else if (destination.startsWith(FILTERED_DESTINATION_PREFIX)) {
+            String[] path = destination.substring(FILTERED_DESTINATION_PREFIX.length()).split("/", -1);
+            if (path.length != 2 || !path[1].equals(subscriptionId)) {
+                logger.warn("Ignoring telemetry subscription {} of session {}: {} does not end in /{siteId}/{}",
+                    subscriptionId, sessionId, destination, subscriptionId);
+                return;
+            }
+            Long siteId = parseSiteId(path[0]);
+            if (siteId == null) {
+                return;
+            }
+            TelemetrySubscription subscription = new TelemetrySubscription(
+                sessionId,
+                subscriptionId,
+                siteId,
+                parseDeviceIds(headers.get(DEVICE_IDS_HEADER)),
+                parseUpperCaseSet(headers.get(DEVICE_TYPES_HEADER)),
+                parseList(headers.get(FIELDS_HEADER)),
+                parseMinIntervalNanos(headers.get(MAX_RATE_HEADER))
+            );
+            siteIndex(siteId).add(subscription);
+            registration = new Registration(siteId, subscription);
+        } else {
+            return;
+        }
+
+        Registration previous = sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+            .put(subscriptionId, registration);
+        if (previous != null) {
+            release(previous);
+        }
+        logger.debug("Registered telemetry subscription {} for session {} on {}", subscriptionId, sessionId, destination);
+    }
+
+    /**
+     * Remove a single subscription
+     */
+    public void unregister(String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null) {
+            return;
+        }
+        Map<String, Registration> subscriptions = sessions.get(sessionId);
+        if (subscriptions == null) {
+            return;
+        }
+        Registration registration = subscriptions.remove(subscriptionId);
+        if (registration != null) {
+            release(registration);
+        }
+    }
+
+    /**
+     * Remove every subscription held by a session
+     */
+    public void unregisterSession(String sessionId) {
+        if (sessionId == null) {
+            return;
+        }
+        Map<String, Registration> subscriptions = sessions.remove(sessionId);
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    /**
+     * Whether anyone is subscribed to the unfiltered /topic/telemetry/{siteId} stream
+     */
+    public boolean hasTopicSubscribers(Long siteId) {
+        SiteIndex index = sites.get(siteId);
+        return index != null && index.topicSubscribers.get() > 0;
+    }
+
+    /**
+     * Find filtered subscriptions interested in a record from the given device
+     */
+    public List<TelemetrySubscription> findMatching(Long siteId, Long deviceId, String deviceType) {
+        SiteIndex index = sites.get(siteId);
+        if (index == null) {
+            return Collections.emptyList();
+        }
+
+        List<TelemetrySubscription> matches = new ArrayList<>();
+        if (deviceId != null) {
+            Set<TelemetrySubscription> byDevice = index.byDevice.get(deviceId);
+            if (byDevice != null) {
+                collectByType(byDevice, deviceType, matches);
+            }
+        }
+        collectByType(index.anyDevice, deviceType, matches);
+        return matches;
+    }
+
+    /**
+     * Number of live filtered subscriptions, for diagnostics
+     */
+    public int getFilteredSubscriptionCount() {
+        return sites.values().stream().mapToInt(SiteIndex::size).sum();
+    }
+
+    private void collectByType(Set<TelemetrySubscription> candidates, String deviceType,
+                               List<TelemetrySubscription> matches) {
+        for (TelemetrySubscription subscription : candidates) {
+            if (subscription.matchesType(deviceType)) {
+                matches.add(subscription);
+            }
+        }
+    }
+
+    private void release(Registration registration) {
+        SiteIndex index = sites.get(registration.siteId);
+        if (index == null) {
+            return;
+        }
+        if (registration.subscription == null) {
+            index.topicSubscribers.decrementAndGet();
+        } else {
+            index.remove(registration.subscription);
+        }
+    }
+
+    private SiteIndex siteIndex(Long siteId) {
+        return sites.computeIfAbsent(siteId, id -> new SiteIndex());
+    }
+
+    private Long parseSiteId(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            logger.debug("Ignoring telemetry subscription with non-numeric site: {}", value);
+            return null;
+        }
+    }
+
+    private Set<Long> parseDeviceIds(String value) {
+        Set<Long> deviceIds = new HashSet<>();
+        for (String token : parseList(value)) {
+            try {
+                deviceIds.add(Long.parseLong(token));
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring invalid device ID in telemetry subscription: {}", token);
+            }
+        }
+        return Set.copyOf(deviceIds);
+    }
+
+    private Set<String> parseUpperCaseSet(String value) {
+        return parseList(value).stream()
+            .map(String::toUpperCase)
+            .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private List<String> parseList(String value) {
+        if (value == null || value.isBlank()) {
+            return Collections.emptyList();
+        }
+        return Arrays.stream(value.split(","))
+            .map(String::trim)
+            .filter(token -> !token.isEmpty())
+            .distinct()
+            .collect(Collectors.toUnmodifiableList());
+    }
+
+    private long parseMinIntervalNanos(String value) {
+        if (value == null || value.isBlank()) {
+            return 0L;
+        }
+        try {
+            double maxRate = Double.parseDouble(value.trim());
+            return maxRate > 0 ? (long) (1_000_000_000L / maxRate) : 0L;
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring invalid maxRate in telemetry subscription: {}", value);
+            return 0L;
+        }
+    }
+
+    /**
+     * Per-site index of filtered subscriptions
+     */
+    private static class SiteIndex {
+        private final Map<Long, Set<TelemetrySubscription>> byDevice = new ConcurrentHashMap<>();
+        private final Set<TelemetrySubscription> anyDevice = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger topicSubscribers = new AtomicInteger();
+
+        void add(TelemetrySubscription subscription) {
+            if (subscription.getDeviceIds().isEmpty()) {
+                anyDevice.add(subscription);
+                return;
+            }
+            for (Long deviceId : subscription.getDeviceIds()) {
+                byDevice.computeIfAbsent(deviceId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+            }
+        }
+
+        void remove(TelemetrySubscription subscription) {
+            if (subscription.getDeviceIds().isEmpty()) {
+                anyDevice.remove(subscription);
+                return;
+            }
+            for (Long deviceId : subscription.getDeviceIds()) {
+                byDevice.computeIfPresent(deviceId, (id, subscriptions) -> {
+                    subscriptions.remove(subscription);
+                    return subscriptions.isEmpty() ? null : subscriptions;
+                });
+            }
+        }
+
+        int size() {
+            Set<TelemetrySubscription> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+            distinct.addAll(anyDevice);
+            byDevice.values().forEach(distinct::addAll);
+            return distinct.size();
+        }
+    }
+
+    private record Registration(Long siteId, TelemetrySubscription subscription) {}
+
+    /**
+     * A filtered telemetry subscription with its per-device rate limiter state
+     */
+    public static class TelemetrySubscription {
+        private final String sessionId;
+        private final String subscriptionId;
+        private final Long siteId;
+        private final Set<Long> deviceIds;
+        private final Set<String> deviceTypes;
+        private final List<String> fields;
+        private final long minIntervalNanos;
+        private final Map<Long, Long> lastSentNanos = new ConcurrentHashMap<>();
+
+        public TelemetrySubscription(String sessionId, String subscriptionId, Long siteId,
+                                     Set<Long> deviceIds, Set<String> deviceTypes,
+                                     List<String> fields, long minIntervalNanos) {
+            this.sessionId = sessionId;
+            this.subscriptionId = subscriptionId;
+            this.siteId = siteId;
+            this.deviceIds = deviceIds;
+            this.deviceTypes = deviceTypes;
+            this.fields = fields;
+            this.minIntervalNanos = minIntervalNanos;
+        }
+
+        public boolean matchesType(String deviceType) {
+            return deviceTypes.isEmpty() || (deviceType != null && deviceTypes.contains(deviceType.toUpperCase()));
+        }
+
+        /**
+         * Claim a send slot for the device; returns false while the device is over its max rate
+         */
+        public boolean tryAcquire(Long deviceId, long nowNanos) {
+            if (minIntervalNanos <= 0 || deviceId == null) {
+                return true;
+            }
+            boolean[] acquired = new boolean[1];
+            lastSentNanos.compute(deviceId, (id, last) -> {
+                if (last == null || nowNanos - last >= minIntervalNanos) {
+                    acquired[0] = true;
+                    return nowNanos;
+                }
+                return last;
+            });
+            return acquired[0];
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public String getSubscriptionId() {
+            return subscriptionId;
+        }
+
+        /**
+         * The session's queue for this subscription, without the /user prefix
+         */
+        public String getQueue() {
+            return FILTERED_QUEUE_PREFIX + siteId + "/" + subscriptionId;
+        }
+
+        public Long getSiteId() {
+            return siteId;
+        }
+
+        public Set<Long> getDeviceIds() {
+            return deviceIds;
+        }
+
+        public Set<String> getDeviceTypes() {
+            return deviceTypes;
+        }
+
+        public List<String> getFields() {
+            return fields;
+        }
+
+        public long getMinIntervalNanos() {
+            return minIntervalNanos;
+        }
+    }
+}
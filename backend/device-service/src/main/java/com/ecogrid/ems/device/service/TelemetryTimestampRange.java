@@ -0,0 +1,58 @@
+package com.ecogrid.ems.device.service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Incrementally maintained oldest/newest timestamp of the cached telemetry entries.
+ *
+ * Entries are counted per epoch second, so memory grows with the cache's time span rather than with
+ * the number of devices, and min/max are read from the ends of the map instead of scanning the cache.
+ */
+public class TelemetryTimestampRange {
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final ConcurrentSkipListMap<Long, Long> countsBySecond = new ConcurrentSkipListMap<>();
+
+    /**
+     * Record an entry that entered the cache
+     */
+    public void added(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return;
+        }
+        countsBySecond.merge(toEpochSecond(timestamp), 1L, Long::sum);
+    }
+
+    /**
+     * Record an entry that left the cache (replaced, evicted, expired or removed)
+     */
+    public void removed(LocalDateTime timestamp) {
+        if (timestamp == null) {
+            return;
+        }
+        countsBySecond.computeIfPresent(toEpochSecond(timestamp), (second, count) -> count > 1 ? count - 1 : null);
+    }
+
+    public LocalDateTime getOldest() {
+        Map.Entry<Long, Long> first = countsBySecond.firstEntry();
+        return first != null ? toLocalDateTime(first.getKey()) : null;
+    }
+
+    public LocalDateTime getNewest() {
+        Map.Entry<Long, Long> last = countsBySecond.lastEntry();
+        return last != null ? toLocalDateTime(last.getKey()) : null;
+    }
+
+    private long toEpochSecond(LocalDateTime timestamp) {
+        return timestamp.atZone(ZONE).toEpochSecond();
+    }
+
+    private LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), ZONE);
+    }
+}
@@ -1,35 +1,114 @@
 package com.ecogrid.ems.device.service;
 
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 @Service
 public class TelemetryWebSocketPublisher {
     private static final Logger logger = LoggerFactory.getLogger(TelemetryWebSocketPublisher.class);
+
     private final SimpMessagingTemplate messagingTemplate;
+    private final TelemetrySubscriptionRegistry subscriptionRegistry;
 
     @Autowired
-    public TelemetryWebSocketPublisher(SimpMessagingTemplate messagingTemplate) {
+    public TelemetryWebSocketPublisher(SimpMessagingTemplate messagingTemplate,
+                                       TelemetrySubscriptionRegistry subscriptionRegistry) {
         this.messagingTemplate = messagingTemplate;
+        this.subscriptionRegistry = subscriptionRegistry;
     }
 
     /**
-     * Listen to device-telemetry topic and publish to WebSocket clients
+     * Listen to device-telemetry topic and publish to WebSocket clients.
+     * Unfiltered subscribers get the record as-is; filtered subscribers only get
+     * matching devices, projected to their fields and throttled to their max rate.
      */
     @KafkaListener(topics = "device-telemetry", groupId = "device-telemetry-ws")
     public void handleTelemetryMessage(Map<String, Object> message) {
-        Integer siteId = (Integer) message.get("siteId");
+        Long siteId = toLong(message.get("siteId"));
+        if (siteId == null) {
+            logger.debug("[WS-PUBLISH] Skipping telemetry record without siteId");
+            return;
+        }
+
         try {
-            logger.info("[WS-PUBLISH] Publishing to WebSocket topic: /topic/telemetry");
-            messagingTemplate.convertAndSend("/topic/telemetry/" + siteId, message);
+            if (subscriptionRegistry.hasTopicSubscribers(siteId)) {
+                logger.debug("[WS-PUBLISH] Publishing to WebSocket topic: /topic/telemetry/{}", siteId);
+                messagingTemplate.convertAndSend(TelemetrySubscriptionRegistry.TOPIC_DESTINATION_PREFIX + siteId, message);
+            }
+            publishFiltered(siteId, message);
         } catch (Exception e) {
             logger.error("[WS-PUBLISH] Error publishing to WebSocket topic /topic/telemetry: {}", e.getMessage(), e);
         }
     }
+
+    private void publishFiltered(Long siteId, Map<String, Object> message) {
+        Long deviceId = toLong(message.get("deviceId"));
+        String deviceType = (String) message.get("deviceType");
+
+        List<TelemetrySubscriptionRegistry.TelemetrySubscription> matches =
+            subscriptionRegistry.findMatching(siteId, deviceId, deviceType);
+        if (matches.isEmpty()) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        // Subscribers asking for the same fields share one projected payload
+        Map<List<String>, Map<String, Object>> projections = new HashMap<>();
+        for (TelemetrySubscriptionRegistry.TelemetrySubscription subscription : matches) {
+            if (!subscription.tryAcquire(deviceId, now)) {
+                continue;
+            }
+            Map<String, Object> payload = projections.computeIfAbsent(
+                subscription.getFields(), fields -> project(message, fields));
+            messagingTemplate.convertAndSendToUser(
+                subscription.getSessionId(),
+                subscription.getQueue(),
+                payload,
+                sessionHeaders(subscription.getSessionId()));
+        }
+    }
+
+    /**
+     * Keep the envelope and only the requested telemetry fields
+     */
+    private Map<String, Object> project(Map<String, Object> message, List<String> fields) {
+        if (fields.isEmpty()) {
+            return message;
+        }
+        Map<String, Object> projected = new HashMap<>(message);
+        Object telemetry = message.get("telemetry");
+        if (telemetry instanceof Map<?, ?> telemetryData) {
+            Map<String, Object> selected = new HashMap<>();
+            for (String field : fields) {
+                Object value = telemetryData.get(field);
+                if (value != null) {
+                    selected.put(field, value);
+                }
+            }
+            projected.put("telemetry", selected);
+        }
+        return projected;
+    }
+
+    private MessageHeaders sessionHeaders(String sessionId) {
+        SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headerAccessor.setSessionId(sessionId);
+        headerAccessor.setLeaveMutable(true);
+        return headerAccessor.getMessageHeaders();
+    }
+
+    private Long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
 }
@@ -0,0 +1,87 @@
+-- Turns device_telemetry into a table range-partitioned by day on "timestamp".
+-- Runs before the Hibernate schema update and is safe to run on every start:
+--   * no table yet: create the partitioned parent
+--   * plain table from an older release: keep its rows as one partition covering everything up to tomorrow
+--   * already partitioned: only add missing columns and indexes
+-- Daily partitions themselves are created and dropped by TelemetryPartitionService. Rows for a day without a
+-- partition land in device_telemetry_default instead of failing; the service moves them into the day's partition
+-- when it creates one and deletes them once they are past retention.
+DO $$
+DECLARE
+    v_kind "char";
+    v_next_id bigint;
+    v_upper timestamp;
+    v_constraint name;
+BEGIN
+    SELECT c.relkind INTO v_kind
+      FROM pg_class c
+     WHERE c.relname = 'device_telemetry'
+       AND c.relnamespace = current_schema()::regnamespace;
+
+    IF v_kind IS NULL THEN
+        CREATE SEQUENCE IF NOT EXISTS device_telemetry_id_seq;
+        CREATE TABLE device_telemetry (
+            id bigint NOT NULL DEFAULT nextval('device_telemetry_id_seq'),
+            device_id bigint NOT NULL,
+            timestamp timestamp(6) NOT NULL,
+            data jsonb NOT NULL,
+            quality_indicators jsonb,
+            processed_at timestamp(6),
+            created_at timestamp(6) NOT NULL,
+            PRIMARY KEY (id, timestamp)
+        ) PARTITION BY RANGE (timestamp);
+    ELSIF v_kind <> 'p' THEN
+        LOCK TABLE device_telemetry IN ACCESS EXCLUSIVE MODE;
+        SELECT COALESCE(MAX(id), 0) + 1,
+               date_trunc('day', GREATEST(LOCALTIMESTAMP, COALESCE(MAX(timestamp)::timestamp, LOCALTIMESTAMP))) + INTERVAL '1 day'
+          INTO v_next_id, v_upper
+          FROM device_telemetry;
+
+        ALTER TABLE device_telemetry RENAME TO device_telemetry_legacy;
+        ALTER INDEX IF EXISTS idx_telemetry_device_timestamp RENAME TO idx_telemetry_legacy_device_timestamp;
+        ALTER INDEX IF EXISTS idx_telemetry_timestamp RENAME TO idx_telemetry_legacy_timestamp;
+
+        -- The parent's (id, timestamp) key replaces the old primary key on attach
+        FOR v_constraint IN
+            SELECT conname FROM pg_constraint
+             WHERE conrelid = 'device_telemetry_legacy'::regclass AND contype = 'p'
+        LOOP
+            EXECUTE format('ALTER TABLE device_telemetry_legacy DROP CONSTRAINT %I', v_constraint);
+        END LOOP;
+
+        -- Partitions cannot carry their own identity column; ids continue from one shared sequence
+        ALTER TABLE device_telemetry_legacy ALTER COLUMN id DROP IDENTITY IF EXISTS;
+        ALTER TABLE device_telemetry_legacy ALTER COLUMN id DROP DEFAULT;
+        DROP SEQUENCE IF EXISTS device_telemetry_id_seq;
+        EXECUTE format('CREATE SEQUENCE device_telemetry_id_seq START %s', v_next_id);
+
+        CREATE TABLE device_telemetry (LIKE device_telemetry_legacy INCLUDING DEFAULTS)
+            PARTITION BY RANGE (timestamp);
+        ALTER TABLE device_telemetry ALTER COLUMN id SET DEFAULT nextval('device_telemetry_id_seq');
+        ALTER TABLE device_telemetry ADD PRIMARY KEY (id, timestamp);
+        EXECUTE format('ALTER TABLE device_telemetry ATTACH PARTITION device_telemetry_legacy FOR VALUES FROM (MINVALUE) TO (%L)', v_upper);
+    END IF;
+
+    -- Typed hot columns (DeviceTelemetry.HOT_FIELDS); other readings stay in the jsonb data column
+    ALTER TABLE device_telemetry
+        ADD COLUMN IF NOT EXISTS soc double precision,
+        ADD COLUMN IF NOT EXISTS voltage double precision,
+        ADD COLUMN IF NOT EXISTS current double precision,
+        ADD COLUMN IF NOT EXISTS temperature double precision,
+        ADD COLUMN IF NOT EXISTS power double precision,
+        ADD COLUMN IF NOT EXISTS charge_rate double precision,
+        ADD COLUMN IF NOT EXISTS current_output double precision,
+        ADD COLUMN IF NOT EXISTS energy_yield double precision,
+        ADD COLUMN IF NOT EXISTS irradiance double precision,
+        ADD COLUMN IF NOT EXISTS panel_temperature double precision,
+        ADD COLUMN IF NOT EXISTS power_delivered double precision,
+        ADD COLUMN IF NOT EXISTS energy_delivered double precision,
+        ADD COLUMN IF NOT EXISTS active_sessions integer;
+
+    CREATE TABLE IF NOT EXISTS device_telemetry_default PARTITION OF device_telemetry DEFAULT;
+
+    ALTER SEQUENCE device_telemetry_id_seq OWNED BY device_telemetry.id;
+    CREATE INDEX IF NOT EXISTS idx_telemetry_device_timestamp ON device_telemetry (device_id, timestamp DESC);
+    CREATE INDEX IF NOT EXISTS idx_telemetry_timestamp ON device_telemetry (timestamp DESC);
+END
+$$;
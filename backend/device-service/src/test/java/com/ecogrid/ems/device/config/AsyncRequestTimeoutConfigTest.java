@@ -0,0 +1,47 @@
+package com.ecogrid.ems.device.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.async.StandardServletAsyncWebRequest;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for AsyncRequestTimeoutConfig
+ */
+class AsyncRequestTimeoutConfigTest {
+
+    private final AsyncRequestTimeoutConfig.RequestTimeoutInterceptor interceptor =
+        new AsyncRequestTimeoutConfig.RequestTimeoutInterceptor();
+
+    @Test
+    void beforeConcurrentHandling_ShouldApplyTheTimeoutTheHandlerSet() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        request.setAttribute(AsyncRequestTimeoutConfig.TIMEOUT_ATTRIBUTE, Duration.ofMinutes(30));
+        StandardServletAsyncWebRequest asyncRequest = new StandardServletAsyncWebRequest(request, new MockHttpServletResponse());
+        asyncRequest.setTimeout(30_000L);
+
+        interceptor.beforeConcurrentHandling(asyncRequest, () -> null);
+        asyncRequest.startAsync();
+
+        assertThat(((MockAsyncContext) request.getAsyncContext()).getTimeout()).isEqualTo(1_800_000L);
+    }
+
+    @Test
+    void beforeConcurrentHandling_ShouldKeepTheDefaultTimeoutOfOtherRequests() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAsyncSupported(true);
+        StandardServletAsyncWebRequest asyncRequest = new StandardServletAsyncWebRequest(request, new MockHttpServletResponse());
+        asyncRequest.setTimeout(30_000L);
+
+        interceptor.beforeConcurrentHandling(asyncRequest, () -> null);
+        asyncRequest.startAsync();
+
+        assertThat(((MockAsyncContext) request.getAsyncContext()).getTimeout()).isEqualTo(30_000L);
+    }
+}
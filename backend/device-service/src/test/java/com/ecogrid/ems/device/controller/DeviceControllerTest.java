@@ -1,9 +1,17 @@
 package com.ecogrid.ems.device.controller;
 
+import com.ecogrid.ems.device.dto.BulkProvisioningReport;
 import com.ecogrid.ems.device.dto.DeviceRequest;
 import com.ecogrid.ems.device.dto.DeviceResponse;
+import com.ecogrid.ems.device.dto.DeviceSearchResponse;
+import com.ecogrid.ems.device.dto.TelemetryImportReport;
 import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.service.DeviceProvisioningService;
 import com.ecogrid.ems.device.service.DeviceService;
+import com.ecogrid.ems.device.service.MqttConnectionService;
+import com.ecogrid.ems.device.service.TelemetryImportService;
+import com.ecogrid.ems.device.service.TelemetryRangeService;
+import com.ecogrid.ems.shared.dto.pagination.CursorPage;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -39,6 +47,18 @@ class DeviceControllerTest {
     @MockBean
     private DeviceService deviceService;
 
+    @MockBean
+    private MqttConnectionService mqttConnectionService;
+
+    @MockBean
+    private TelemetryRangeService telemetryRangeService;
+
+    @MockBean
+    private DeviceProvisioningService provisioningService;
+
+    @MockBean
+    private TelemetryImportService telemetryImportService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -237,6 +257,38 @@ class DeviceControllerTest {
         verify(deviceService).getAllDevices(any(PageRequest.class));
     }
 
+    @Test
+    void getAllDevices_WithAfter_ShouldReturnCursorPage() throws Exception {
+        // Arrange
+        CursorPage<DeviceResponse> cursorPage = new CursorPage<>(List.of(deviceResponse), 1, true, "next-token", null);
+        when(deviceService.getDevicesAfter(null, "name", false, "", 1, false)).thenReturn(cursorPage);
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/devices")
+                        .param("after", "")
+                        .param("size", "1")
+                        .param("sortBy", "name"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(1))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.nextCursor").value("next-token"))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+
+        verify(deviceService, never()).getAllDevices(any());
+    }
+
+    @Test
+    void getAllDevices_WithInvalidCursor_ShouldReturnBadRequest() throws Exception {
+        // Arrange
+        when(deviceService.getDevicesAfter(any(), anyString(), anyBoolean(), eq("garbage"), anyInt(), anyBoolean()))
+                .thenThrow(new IllegalArgumentException("Invalid page cursor"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/devices").param("after", "garbage"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid page cursor"));
+    }
+
     @Test
     void getDevicesBySite_ExistingSite_ShouldReturnDevices() throws Exception {
         // Arrange
@@ -355,6 +407,138 @@ class DeviceControllerTest {
         verify(deviceService).getDevicesByStatus(Device.DeviceStatus.ONLINE);
     }
 
+    @Test
+    void getTelemetryRange_ShouldReturnDownsampledSeries() throws Exception {
+        // Arrange
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 1, 2, 0, 0);
+        TelemetryRangeService.TelemetryRange range = new TelemetryRangeService.TelemetryRange(1L, from, to, 100,
+                List.of(new TelemetryRangeService.TelemetrySeries("soc", 86400,
+                        new long[] {1704067200000L, 1704153599000L}, new double[] {80.0, 75.5})));
+        when(telemetryRangeService.getTelemetryRange(1L, from, to, List.of("soc"), 100))
+                .thenReturn(Optional.of(range));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/devices/1/telemetry")
+                        .param("from", "2024-01-01T00:00:00")
+                        .param("to", "2024-01-02T00:00:00")
+                        .param("fields", "soc")
+                        .param("maxPoints", "100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.series[0].field").value("soc"))
+                .andExpect(jsonPath("$.series[0].samples").value(86400))
+                .andExpect(jsonPath("$.series[0].values[1]").value(75.5));
+    }
+
+    @Test
+    void getTelemetryRange_InvalidRange_ShouldReturnBadRequest() throws Exception {
+        // Arrange
+        when(telemetryRangeService.getTelemetryRange(eq(1L), any(), any(), any(), anyInt()))
+                .thenThrow(new IllegalArgumentException("'from' must be before 'to'"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/devices/1/telemetry")
+                        .param("from", "2024-01-02T00:00:00")
+                        .param("to", "2024-01-01T00:00:00"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("'from' must be before 'to'"));
+    }
+
+    @Test
+    void createDevicesInBulk_ShouldPickFormatFromContentTypeAndReturnReport() throws Exception {
+        // Arrange
+        BulkProvisioningReport report = new BulkProvisioningReport(2, 1, 1, 12, List.of(
+                BulkProvisioningReport.RowResult.rejected(3, "DEV-002", "Invalid device type: FOO")));
+        when(provisioningService.provision(any(), eq(DeviceProvisioningService.Format.CSV), eq(true)))
+                .thenReturn(report);
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/devices/bulk")
+                        .param("errorsOnly", "true")
+                        .contentType("text/csv")
+                        .content("serialNumber,name\nDEV-001,Battery\nDEV-002,Charger\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.results[0].line").value(3))
+                .andExpect(jsonPath("$.results[0].status").value("REJECTED"))
+                .andExpect(jsonPath("$.results[0].deviceId").doesNotExist());
+    }
+
+    @Test
+    void createDevicesInBulk_UnreadableFile_ShouldReturnBadRequest() throws Exception {
+        // Arrange
+        when(provisioningService.provision(any(), eq(DeviceProvisioningService.Format.NDJSON), eq(false)))
+                .thenThrow(new IllegalArgumentException("Import must not exceed 10 devices"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/devices/bulk")
+                        .contentType("application/x-ndjson")
+                        .content("{}\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Import must not exceed 10 devices"));
+    }
+
+    @Test
+    void importTelemetry_ShouldPickFormatFromContentTypeAndReturnReport() throws Exception {
+        // Arrange
+        LocalDateTime from = LocalDateTime.of(2026, 3, 1, 10, 0);
+        TelemetryImportReport report = new TelemetryImportReport("DEV-001", 3, 1, 1, 1, true, 1, from,
+                from.plusMinutes(1), 20, List.of(new TelemetryImportReport.BatchStats(1, from, from, 5)),
+                List.of(new TelemetryImportReport.SampleError(3, "Missing timestamp")));
+        when(telemetryImportService.importTelemetry(eq("DEV-001"), any(), eq(TelemetryImportService.Format.JSON)))
+                .thenReturn(Optional.of(report));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/devices/DEV-001/telemetry:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.stored").value(1))
+                .andExpect(jsonPath("$.appliedLive").value(true))
+                .andExpect(jsonPath("$.batches[0].rows").value(1))
+                .andExpect(jsonPath("$.errors[0].line").value(3));
+    }
+
+    @Test
+    void importTelemetry_UnknownDevice_ShouldReturnNotFound() throws Exception {
+        // Arrange
+        when(telemetryImportService.importTelemetry(eq("NOPE"), any(), eq(TelemetryImportService.Format.NDJSON)))
+                .thenReturn(Optional.empty());
+
+        // Act & Assert
+        mockMvc.perform(post("/api/v1/devices/NOPE/telemetry:batch")
+                        .contentType("application/x-ndjson")
+                        .content("{}\n"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void searchDevices_ShouldCapLimitAndReturnCorrectedQuery() throws Exception {
+        // Arrange
+        when(deviceService.searchDevices("batery", 100))
+                .thenReturn(new DeviceSearchResponse("batery", "battery", List.of(deviceResponse)));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/devices/search")
+                        .param("q", "batery")
+                        .param("limit", "500"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.correctedQuery").value("battery"))
+                .andExpect(jsonPath("$.devices[0].serialNumber").value(deviceResponse.serialNumber()));
+    }
+
+    @Test
+    void searchDevices_BlankQuery_ShouldReturnBadRequest() throws Exception {
+        // Arrange
+        when(deviceService.searchDevices(" ", 20))
+                .thenThrow(new IllegalArgumentException("Search query must not be blank"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/devices/search").param("q", " "))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Search query must not be blank"));
+    }
+
     // TODO: Fix test after DeviceType refactoring from enum to entity
     // @Test
     // void getDevicesByType_ShouldReturnDevicesOfSpecificType() throws Exception {
@@ -0,0 +1,70 @@
+package com.ecogrid.ems.device.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Unit tests for DeviceTelemetry
+ */
+class DeviceTelemetryTest {
+
+    @Test
+    void setData_ShouldMoveNumericHotFieldsToTypedColumns() {
+        Map<String, Object> data = new HashMap<>();
+        data.put("soc", new BigDecimal("81.5"));
+        data.put("voltage", 402.1);
+        data.put("activeSessions", 3);
+        data.put("healthStatus", "GOOD");
+        data.put("moduleTemperatures", List.of(24.1, 25.3));
+
+        DeviceTelemetry telemetry = new DeviceTelemetry(new Device(), LocalDateTime.now(), data);
+
+        assertThat(telemetry.getSoc()).isEqualTo(81.5);
+        assertThat(telemetry.getVoltage()).isEqualTo(402.1);
+        assertThat(telemetry.getActiveSessions()).isEqualTo(3);
+        assertThat(telemetry.getOverflowData()).containsOnlyKeys("healthStatus", "moduleTemperatures");
+    }
+
+    @Test
+    void setData_ShouldKeepNonNumericValuesOfHotKeysInOverflow() {
+        DeviceTelemetry telemetry = new DeviceTelemetry(new Device(), LocalDateTime.now(), Map.of("power", "n/a"));
+
+        assertThat(telemetry.getPower()).isNull();
+        assertThat(telemetry.getOverflowData()).containsExactly(entry("power", "n/a"));
+    }
+
+    @Test
+    void setData_ShouldClearTypedColumnsMissingFromNewData() {
+        DeviceTelemetry telemetry = new DeviceTelemetry(new Device(), LocalDateTime.now(), Map.of("power", 5.0));
+
+        telemetry.setData(Map.of("irradiance", 640));
+
+        assertThat(telemetry.getPower()).isNull();
+        assertThat(telemetry.getIrradiance()).isEqualTo(640.0);
+    }
+
+    @Test
+    void getData_ShouldMergeTypedColumnsWithOverflow() {
+        DeviceTelemetry telemetry = new DeviceTelemetry(new Device(), LocalDateTime.now(),
+            Map.of("currentOutput", 12.5, "inverterStatus", "ONLINE"));
+
+        assertThat(telemetry.getData()).containsOnly(entry("currentOutput", 12.5), entry("inverterStatus", "ONLINE"));
+    }
+
+    @Test
+    void getData_ShouldStillReadRowsWrittenBeforeTypedColumns() {
+        // Older rows keep their readings in jsonb only
+        DeviceTelemetry telemetry = new DeviceTelemetry();
+        telemetry.getOverflowData().put("soc", 70.0);
+
+        assertThat(telemetry.getData()).containsOnly(entry("soc", 70.0));
+    }
+}
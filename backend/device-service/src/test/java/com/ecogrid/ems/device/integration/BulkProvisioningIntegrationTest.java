@@ -0,0 +1,152 @@
+package com.ecogrid.ems.device.integration;
+
+import com.ecogrid.ems.device.config.DeviceServiceConfig;
+import com.ecogrid.ems.device.dto.BulkProvisioningReport;
+import com.ecogrid.ems.device.dto.BulkProvisioningReport.RowStatus;
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceType;
+import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.event.DeviceCreatedEvent;
+import com.ecogrid.ems.device.service.DeviceEventService;
+import com.ecogrid.ems.device.service.DeviceProvisioningService;
+import com.ecogrid.ems.device.service.FleetStatisticsService;
+import com.ecogrid.ems.device.service.SiteOverviewSnapshotService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Bulk device import against a real PostgreSQL, with a batch size small enough that the file spans
+ * several INSERT statements
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "app.provisioning.batch-size=2"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DeviceProvisioningService.class, DeviceServiceConfig.class})
+@ImportAutoConfiguration({JacksonAutoConfiguration.class, ValidationAutoConfiguration.class})
+@Testcontainers(disabledWithoutDocker = true)
+class BulkProvisioningIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("ems_test")
+            .withUsername("ems_user")
+            .withPassword("ems_password");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @MockBean
+    private DeviceEventService deviceEventService;
+
+    @MockBean
+    private SiteOverviewSnapshotService overviewSnapshotService;
+
+    @MockBean
+    private FleetStatisticsService fleetStatisticsService;
+
+    @Autowired
+    private DeviceProvisioningService provisioningService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Site site;
+
+    @BeforeEach
+    void setUp() {
+        DeviceType bms = new DeviceType();
+        bms.setName("BMS");
+        bms.setCategory("TEST");
+        entityManager.persist(bms);
+        site = new Site();
+        site.setName("Bulk Site");
+        entityManager.persist(site);
+
+        Device existing = new Device();
+        existing.setSerialNumber("BMS-TAKEN");
+        existing.setName("Existing");
+        existing.setModel("M1");
+        existing.setManufacturer("EcoGrid");
+        existing.setDeviceType(bms);
+        existing.setSite(site);
+        entityManager.persist(existing);
+        entityManager.flush();
+    }
+
+    @Test
+    void provision_ShouldInsertValidRowsWithAttributesAndReportTheRest() throws Exception {
+        String ndjson = device("BMS-1", "\"status\":\"online\",\"configuration\":{\"mode\":\"auto\",\"interval\":\"5s\"}") +
+            device("BMS-2", "\"ratedPowerKw\":12.5,\"installationDate\":\"2024-03-01T10:00:00\",\"metadata\":{\"rack\":\"R1\"}") +
+            device("BMS-TAKEN", "") +
+            device("BMS-3", "\"mqttTopic\":\"custom/topic\"");
+
+        BulkProvisioningReport report = provisioningService.provision(
+            new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), DeviceProvisioningService.Format.NDJSON, false);
+
+        assertThat(report.totalRows()).isEqualTo(4);
+        assertThat(report.created()).isEqualTo(3);
+        assertThat(report.results()).extracting(BulkProvisioningReport.RowResult::status)
+            .containsExactly(RowStatus.CREATED, RowStatus.CREATED, RowStatus.REJECTED, RowStatus.CREATED);
+        assertThat(report.results().get(2).error()).isEqualTo("Device with serial number 'BMS-TAKEN' already exists");
+
+        Map<String, Object> second = jdbcTemplate.queryForMap(
+            "SELECT id, status, rated_power_kw, installation_date, mqtt_topic, created_at FROM devices WHERE serial_number = 'BMS-2'");
+        assertThat(second.get("id")).isEqualTo(report.results().get(1).deviceId());
+        assertThat(second.get("status")).isEqualTo("OFFLINE");
+        assertThat(second.get("rated_power_kw").toString()).isEqualTo("12.500");
+        assertThat(second.get("installation_date").toString()).startsWith("2024-03-01 10:00");
+        assertThat(second.get("mqtt_topic")).isEqualTo("sites/" + site.getId() + "/devices/BMS-2/telemetry");
+        assertThat(second.get("created_at")).isNotNull();
+        assertThat(jdbcTemplate.queryForObject("SELECT mqtt_topic FROM devices WHERE serial_number = 'BMS-3'", String.class))
+            .isEqualTo("custom/topic");
+        assertThat(jdbcTemplate.queryForList(
+            "SELECT config_key || '=' || config_value FROM device_configuration c JOIN devices d ON d.id = c.device_id " +
+            "WHERE d.serial_number = 'BMS-1' ORDER BY 1", String.class)).containsExactly("interval=5s", "mode=auto");
+        assertThat(jdbcTemplate.queryForObject("SELECT count(*) FROM device_metadata", Long.class)).isEqualTo(1);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<DeviceCreatedEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(deviceEventService).publishDeviceCreatedEvents(events.capture());
+        assertThat(events.getValue()).extracting(DeviceCreatedEvent::serialNumber).containsExactly("BMS-1", "BMS-2", "BMS-3");
+        assertThat(events.getValue().get(0).status()).isEqualTo("ONLINE");
+        verify(overviewSnapshotService).invalidateSite(site.getId());
+    }
+
+    private String device(String serialNumber, String extra) {
+        return "{\"serialNumber\":\"" + serialNumber + "\",\"name\":\"Rack\",\"deviceType\":\"bms\",\"model\":\"M1\"," +
+            "\"manufacturer\":\"EcoGrid\",\"siteId\":" + site.getId() + (extra.isEmpty() ? "" : "," + extra) + "}\n";
+    }
+}
@@ -0,0 +1,119 @@
+package com.ecogrid.ems.device.integration;
+
+import com.ecogrid.ems.device.config.DeviceServiceConfig;
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceType;
+import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.service.DeviceSearchService;
+import com.ecogrid.ems.device.service.DeviceSearchService.SearchHits;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Device search queries against a real PostgreSQL
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DeviceSearchService.class, DeviceServiceConfig.class})
+@Testcontainers(disabledWithoutDocker = true)
+class DeviceSearchIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("ems_test")
+            .withUsername("ems_user")
+            .withPassword("ems_password");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private DeviceSearchService searchService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private final Map<String, Long> ids = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        DeviceType bms = new DeviceType();
+        bms.setName("BMS");
+        bms.setCategory("TEST");
+        entityManager.persist(bms);
+        Site site = new Site();
+        site.setName("Search Site");
+        entityManager.persist(site);
+
+        device(bms, site, "INV-0042", "Harbor Inverter 2");
+        device(bms, site, "BMS-0001", "Harbor Battery 1");
+        device(bms, site, "BMS-0002", "North Battery 100%");
+        device(bms, site, "EVC-0007", "Depot Charger");
+        entityManager.flush();
+        searchService.refreshVocabulary();
+    }
+
+    @Test
+    void search_ShouldRankPrefixMatchesBeforeInfixMatches() {
+        SearchHits hits = searchService.search("  HARBOR ", 10);
+
+        assertThat(hits.ids()).containsExactly(ids.get("BMS-0001"), ids.get("INV-0042"));
+        assertThat(hits.correctedQuery()).isNull();
+
+        // Infix matches come back unordered
+        assertThat(searchService.search("battery", 10).ids())
+            .containsExactlyInAnyOrder(ids.get("BMS-0001"), ids.get("BMS-0002"));
+        assertThat(searchService.search("bms-", 10).ids())
+            .containsExactly(ids.get("BMS-0001"), ids.get("BMS-0002"));
+        assertThat(searchService.search("0042", 10).ids()).containsExactly(ids.get("INV-0042"));
+        assertThat(searchService.search("battery", 1).ids()).hasSize(1);
+    }
+
+    @Test
+    void search_ShouldMatchLikeWildcardsLiterally() {
+        assertThat(searchService.search("100%", 10).ids()).containsExactly(ids.get("BMS-0002"));
+        assertThat(searchService.search("bms_", 10).ids()).isEmpty();
+    }
+
+    @Test
+    void search_ShouldCorrectMisspeltQueriesThatMatchNothing() {
+        SearchHits hits = searchService.search("harbr inverterr", 10);
+
+        assertThat(hits.correctedQuery()).isEqualTo("harbor inverter");
+        assertThat(hits.ids()).containsExactly(ids.get("INV-0042"));
+        assertThat(searchService.search("qwxz", 10).ids()).isEmpty();
+        assertThatThrownBy(() -> searchService.search(" ", 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void device(DeviceType type, Site site, String serialNumber, String name) {
+        Device device = new Device();
+        device.setSerialNumber(serialNumber);
+        device.setName(name);
+        device.setModel("M1");
+        device.setManufacturer("EcoGrid");
+        device.setDeviceType(type);
+        device.setSite(site);
+        entityManager.persist(device);
+        ids.put(serialNumber, device.getId());
+    }
+}
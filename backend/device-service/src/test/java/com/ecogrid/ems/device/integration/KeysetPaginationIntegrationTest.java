@@ -0,0 +1,179 @@
+package com.ecogrid.ems.device.integration;
+
+import com.ecogrid.ems.device.config.DeviceServiceConfig;
+import com.ecogrid.ems.device.dto.DeviceResponse;
+import com.ecogrid.ems.device.dto.SiteResponse;
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceType;
+import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.service.DeviceEventService;
+import com.ecogrid.ems.device.service.DeviceSearchService;
+import com.ecogrid.ems.device.service.DeviceService;
+import com.ecogrid.ems.device.service.FleetStatisticsService;
+import com.ecogrid.ems.device.service.SiteOverviewSnapshotService;
+import com.ecogrid.ems.device.service.SiteService;
+import com.ecogrid.ems.device.service.SiteSpatialIndexService;
+import com.ecogrid.ems.shared.dto.pagination.CursorPage;
+import com.ecogrid.ems.shared.dto.pagination.PageCursor;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Cursor pages of devices and sites against a real PostgreSQL: walking every page must visit each row
+ * exactly once in sort order, including runs of equal sort values that straddle a page boundary
+ */
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DeviceService.class, SiteService.class, DeviceServiceConfig.class})
+@Testcontainers(disabledWithoutDocker = true)
+class KeysetPaginationIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("ems_test")
+            .withUsername("ems_user")
+            .withPassword("ems_password");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @MockBean
+    private DeviceEventService deviceEventService;
+
+    @MockBean
+    private SiteOverviewSnapshotService overviewSnapshotService;
+
+    @MockBean
+    private FleetStatisticsService fleetStatisticsService;
+
+    @MockBean
+    private DeviceSearchService deviceSearchService;
+
+    @MockBean
+    private SiteSpatialIndexService spatialIndexService;
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private SiteService siteService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @BeforeEach
+    void setUp() {
+        DeviceType bms = new DeviceType();
+        bms.setName("BMS");
+        bms.setCategory("TEST");
+        entityManager.persist(bms);
+        for (int s = 0; s < 7; s++) {
+            Site site = new Site();
+            site.setName("Site " + s);
+            entityManager.persist(site);
+            for (int d = 0; d < 4; d++) {
+                Device device = new Device();
+                device.setSerialNumber("DEV-" + s + "-" + d);
+                // Only four distinct names, so pages split runs of equal names
+                device.setName("Device " + d);
+                device.setModel("M1");
+                device.setManufacturer("EcoGrid");
+                device.setDeviceType(bms);
+                device.setSite(site);
+                entityManager.persist(device);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void getDevicesAfter_ShouldVisitEveryDeviceOnceInNameOrder() {
+        List<DeviceResponse> visited = walkDevices(null, "name", false, 5);
+
+        assertThat(visited).hasSize(28);
+        assertThat(visited).extracting(DeviceResponse::id).doesNotHaveDuplicates();
+        assertThat(visited).isSortedAccordingTo(Comparator.comparing(DeviceResponse::name)
+                .thenComparing(DeviceResponse::id));
+    }
+
+    @Test
+    void getDevicesAfter_ShouldWalkDescendingWithSearchFilter() {
+        List<DeviceResponse> visited = walkDevices("device 2", "createdAt", true, 3);
+
+        assertThat(visited).hasSize(7).allSatisfy(device -> assertThat(device.name()).isEqualTo("Device 2"));
+        assertThat(visited).extracting(DeviceResponse::id).doesNotHaveDuplicates();
+        assertThat(visited).isSortedAccordingTo(Comparator.comparing(DeviceResponse::createdAt)
+                .thenComparing(DeviceResponse::id).reversed());
+    }
+
+    @Test
+    void getDevicesAfter_ShouldCountOnlyWhenAsked() {
+        assertThat(deviceService.getDevicesAfter(null, "id", false, null, 5, false).totalElements()).isNull();
+        assertThat(deviceService.getDevicesAfter(null, "id", false, null, 5, true).totalElements()).isEqualTo(28);
+    }
+
+    @Test
+    void getDevicesAfter_ShouldRejectCursorOfAnotherSortOrUnsupportedKey() {
+        String nameCursor = deviceService.getDevicesAfter(null, "name", false, null, 5, false).nextCursor();
+
+        assertThatThrownBy(() -> deviceService.getDevicesAfter(null, "name", true, nameCursor, 5, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> deviceService.getDevicesAfter(null, "siteName", false, null, 5, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        String badValue = new PageCursor("createdAt", false, "not-a-time", 1).encode();
+        assertThatThrownBy(() -> deviceService.getDevicesAfter(null, "createdAt", false, badValue, 5, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void getSitesAfter_ShouldVisitEverySiteOnceInNameOrder() {
+        List<SiteResponse> visited = new ArrayList<>();
+        String after = null;
+        do {
+            CursorPage<SiteResponse> page = siteService.getSitesAfter(null, "name", false, after, 2, false);
+            visited.addAll(page.content());
+            after = page.nextCursor();
+        } while (after != null);
+
+        assertThat(visited).hasSize(7);
+        assertThat(visited).extracting(SiteResponse::id).doesNotHaveDuplicates();
+        assertThat(visited).isSortedAccordingTo(Comparator.comparing(SiteResponse::name)
+                .thenComparing(SiteResponse::id));
+        assertThat(visited).allSatisfy(site -> assertThat(site.deviceCount()).isEqualTo(4L));
+    }
+
+    private List<DeviceResponse> walkDevices(String search, String sortBy, boolean descending, int size) {
+        List<DeviceResponse> visited = new ArrayList<>();
+        String after = null;
+        do {
+            CursorPage<DeviceResponse> page = deviceService.getDevicesAfter(search, sortBy, descending, after, size, false);
+            assertThat(page.content()).hasSizeLessThanOrEqualTo(size);
+            visited.addAll(page.content());
+            after = page.nextCursor();
+        } while (after != null);
+        return visited;
+    }
+}
@@ -0,0 +1,190 @@
+package com.ecogrid.ems.device.integration;
+
+import com.ecogrid.ems.device.config.DeviceServiceConfig;
+import com.ecogrid.ems.device.dto.DeviceResponse;
+import com.ecogrid.ems.device.dto.SiteResponse;
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceType;
+import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.service.DeviceEventService;
+import com.ecogrid.ems.device.service.DeviceSearchService;
+import com.ecogrid.ems.device.service.DeviceService;
+import com.ecogrid.ems.device.service.FleetStatisticsService;
+import com.ecogrid.ems.device.service.SiteOverviewSnapshotService;
+import com.ecogrid.ems.device.service.SiteService;
+import com.ecogrid.ems.device.service.SiteSpatialIndexService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Device and site listings against a real PostgreSQL, counting JDBC statements with Hibernate statistics:
+ * a page costs the same number of statements whether it holds 5 rows or 60
+ */
+@DataJpaTest(properties = {
+    "spring.jpa.hibernate.ddl-auto=create-drop",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({DeviceService.class, SiteService.class, DeviceServiceConfig.class})
+@Testcontainers(disabledWithoutDocker = true)
+class ListingQueryCountIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("ems_test")
+            .withUsername("ems_user")
+            .withPassword("ems_password");
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @MockBean
+    private DeviceEventService deviceEventService;
+
+    @MockBean
+    private SiteOverviewSnapshotService overviewSnapshotService;
+
+    @MockBean
+    private FleetStatisticsService fleetStatisticsService;
+
+    @MockBean
+    private DeviceSearchService deviceSearchService;
+
+    @MockBean
+    private SiteSpatialIndexService spatialIndexService;
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private SiteService siteService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Site firstSite;
+
+    @BeforeEach
+    void setUp() {
+        DeviceType bms = deviceType("BMS");
+        DeviceType inverter = deviceType("SOLAR_ARRAY");
+        for (int s = 0; s < 12; s++) {
+            Site site = new Site();
+            site.setName("Site " + s);
+            entityManager.persist(site);
+            if (s == 0) {
+                firstSite = site;
+            }
+            for (int d = 0; d < 5; d++) {
+                Device device = new Device();
+                device.setSerialNumber("DEV-" + s + "-" + d);
+                device.setName("Device " + s + "-" + d);
+                device.setModel("M1");
+                device.setManufacturer("EcoGrid");
+                device.setDeviceType(d % 2 == 0 ? bms : inverter);
+                device.setSite(site);
+                device.setConfiguration(new HashMap<>(Map.of("interval", "5s", "mode", "auto")));
+                device.setMetadata(new HashMap<>(Map.of("rack", "R" + d)));
+                entityManager.persist(device);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void getAllDevices_ShouldUseConstantStatementCountPerPage() {
+        long smallPage = statementsFor(() -> deviceService.getAllDevices(PageRequest.of(0, 5)));
+        entityManager.clear();
+        long largePage = statementsFor(() -> deviceService.getAllDevices(PageRequest.of(0, 60)));
+
+        // Page, count, configuration and metadata
+        assertThat(smallPage).isEqualTo(4);
+        assertThat(largePage).isEqualTo(smallPage);
+    }
+
+    @Test
+    void getAllDevices_ShouldMapTypeSiteAndAttributes() {
+        Page<DeviceResponse> page = deviceService.getAllDevices(PageRequest.of(0, 60));
+
+        assertThat(page.getTotalElements()).isEqualTo(60);
+        DeviceResponse device = page.getContent().stream()
+                .filter(response -> response.serialNumber().equals("DEV-0-1"))
+                .findFirst().orElseThrow();
+        assertThat(device.deviceType()).isEqualTo("SOLAR_ARRAY");
+        assertThat(device.siteName()).isEqualTo("Site 0");
+        assertThat(device.configuration()).containsEntry("interval", "5s").containsEntry("mode", "auto");
+        assertThat(device.metadata()).containsExactly(Map.entry("rack", "R1"));
+    }
+
+    @Test
+    void getDevicesBySite_ShouldUseConstantStatementCount() {
+        AtomicReference<List<DeviceResponse>> devices = new AtomicReference<>();
+
+        long statements = statementsFor(() -> devices.set(deviceService.getDevicesBySite(firstSite.getId())));
+
+        assertThat(devices.get()).hasSize(5);
+        assertThat(statements).isEqualTo(3);
+    }
+
+    @Test
+    void getAllSites_ShouldCountDevicesWithOneGroupedQuery() {
+        AtomicReference<Page<SiteResponse>> sites = new AtomicReference<>();
+
+        long smallPage = statementsFor(() -> siteService.getAllSites(PageRequest.of(0, 2)));
+        entityManager.clear();
+        long largePage = statementsFor(() -> sites.set(siteService.getAllSites(PageRequest.of(0, 12))));
+
+        // Page, count and grouped device counts
+        assertThat(smallPage).isEqualTo(3);
+        assertThat(largePage).isEqualTo(smallPage);
+        assertThat(sites.get().getContent()).hasSize(12).allSatisfy(site -> assertThat(site.deviceCount()).isEqualTo(5));
+    }
+
+    private long statementsFor(Runnable listing) {
+        statistics.clear();
+        listing.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private DeviceType deviceType(String name) {
+        DeviceType deviceType = new DeviceType();
+        deviceType.setName(name);
+        deviceType.setCategory("TEST");
+        entityManager.persist(deviceType);
+        return deviceType;
+    }
+}
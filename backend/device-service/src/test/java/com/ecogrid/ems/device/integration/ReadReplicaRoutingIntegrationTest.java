@@ -0,0 +1,142 @@
+package com.ecogrid.ems.device.integration;
+
+import com.ecogrid.ems.shared.config.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Read/write routing against two PostgreSQL containers standing in for a primary and a replica;
+ * each holds a different marker row so the query result shows which one served it
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class ReadReplicaRoutingIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("ems_test")
+            .withUsername("ems_user")
+            .withPassword("ems_password");
+
+    @Container
+    static PostgreSQLContainer<?> replica = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("ems_test")
+            .withUsername("ems_user")
+            .withPassword("ems_password");
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    @BeforeAll
+    static void createMarkers() {
+        for (PostgreSQLContainer<?> container : List.of(primary, replica)) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(pool(container.getJdbcUrl(), "setup"));
+            jdbcTemplate.execute("CREATE TABLE route_marker (name text)");
+            jdbcTemplate.update("INSERT INTO route_marker VALUES (?)", container == primary ? "primary" : "replica");
+            ((HikariDataSource) jdbcTemplate.getDataSource()).close();
+        }
+    }
+
+    @AfterEach
+    void closePools() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldGoToReplicaAndEverythingElseToPrimary() {
+        Routing routing = routing(Map.of("replica-1", replica.getJdbcUrl()));
+
+        assertThat(routing.readOnlyMarker()).isEqualTo("replica");
+        assertThat(routing.readWriteMarker()).isEqualTo("primary");
+        assertThat(routing.marker()).isEqualTo("primary");
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldSkipUnreachableReplicas() {
+        Map<String, String> replicas = new LinkedHashMap<>();
+        replicas.put("replica-1", "jdbc:postgresql://localhost:1/ems_test");
+        replicas.put("replica-2", replica.getJdbcUrl());
+        Routing routing = routing(replicas);
+
+        assertThat(routing.dataSource.getHealthyReplicas()).containsExactly("replica-2");
+        for (int i = 0; i < 4; i++) {
+            assertThat(routing.readOnlyMarker()).isEqualTo("replica");
+        }
+    }
+
+    @Test
+    void readOnlyTransactions_ShouldFallBackToPrimaryWhenReplicaLags() {
+        // A negative lag budget makes even a fully caught-up replica too far behind
+        Routing routing = routing(Map.of("replica-1", replica.getJdbcUrl()), Duration.ofSeconds(-1));
+
+        assertThat(routing.dataSource.getHealthyReplicas()).isEmpty();
+        assertThat(routing.readOnlyMarker()).isEqualTo("primary");
+    }
+
+    private Routing routing(Map<String, String> replicaUrls) {
+        return routing(replicaUrls, Duration.ofSeconds(5));
+    }
+
+    private Routing routing(Map<String, String> replicaUrls, Duration maxLag) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        replicaUrls.forEach((name, url) -> replicas.put(name, track(pool(url, name))));
+        ReplicaRoutingDataSource routingDataSource =
+            new ReplicaRoutingDataSource(track(pool(primary.getJdbcUrl(), "primary")), replicas, maxLag);
+        routingDataSource.afterPropertiesSet();
+
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return new Routing(routingDataSource, new JdbcTemplate(dataSource), readOnly,
+            new TransactionTemplate(transactionManager));
+    }
+
+    private HikariDataSource track(HikariDataSource pool) {
+        pools.add(pool);
+        return pool;
+    }
+
+    private static HikariDataSource pool(String url, String name) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setUsername("ems_user");
+        pool.setPassword("ems_password");
+        pool.setMaximumPoolSize(2);
+        pool.setConnectionTimeout(1000);
+        return pool;
+    }
+
+    private record Routing(ReplicaRoutingDataSource dataSource, JdbcTemplate jdbcTemplate,
+                           TransactionTemplate readOnly, TransactionTemplate readWrite) {
+
+        String marker() {
+            return jdbcTemplate.queryForObject("SELECT name FROM route_marker", String.class);
+        }
+
+        String readOnlyMarker() {
+            return readOnly.execute(status -> marker());
+        }
+
+        String readWriteMarker() {
+            return readWrite.execute(status -> marker());
+        }
+    }
+}
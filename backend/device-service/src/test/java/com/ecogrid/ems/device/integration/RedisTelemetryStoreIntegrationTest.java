@@ -0,0 +1,140 @@
+package com.ecogrid.ems.device.integration;
+
+import com.ecogrid.ems.device.config.CacheConfig;
+import com.ecogrid.ems.device.dto.telemetry.BMSTelemetryDTO;
+import com.ecogrid.ems.device.service.DeviceTelemetryCacheService;
+import com.ecogrid.ems.device.service.OffHeapTelemetryStore;
+import com.ecogrid.ems.device.service.RedisTelemetryStore;
+import com.ecogrid.ems.device.service.TelemetryTimestampRange;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Two cache service replicas sharing one Redis: writes in one replica are readable in the other
+ * and invalidate its near-cache
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class RedisTelemetryStoreIntegrationTest {
+
+    @Container
+    static GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    private DeviceTelemetryCacheService replicaA;
+    private DeviceTelemetryCacheService replicaB;
+
+    @BeforeEach
+    void setUp() {
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(
+            new RedisStandaloneConfiguration(redis.getHost(), redis.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        resources.add(connectionFactory::destroy);
+
+        StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        redisTemplate.getConnectionFactory().getConnection().serverCommands().flushAll();
+
+        replicaA = replica(connectionFactory, redisTemplate);
+        replicaB = replica(connectionFactory, redisTemplate);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            resources.get(i).close();
+        }
+        resources.clear();
+    }
+
+    @Test
+    void writeInOneReplica_ShouldBeReadableInAnother() {
+        replicaA.cacheLatestTelemetry(1L, bms(LocalDateTime.of(2024, 1, 1, 10, 0), "55.0"));
+
+        DeviceTelemetryCacheService.CachedTelemetryData cached = replicaB.getLatestTelemetry(1L);
+
+        assertThat(cached).isNotNull();
+        assertThat(cached.getTimestamp()).isEqualTo(LocalDateTime.of(2024, 1, 1, 10, 0));
+        assertThat(((Number) cached.getTelemetryData().get("soc")).doubleValue()).isEqualTo(55.0);
+    }
+
+    @Test
+    void writeInOneReplica_ShouldInvalidateOtherReplicasNearCache() {
+        replicaA.cacheLatestTelemetry(1L, bms(LocalDateTime.of(2024, 1, 1, 10, 0), "55.0"));
+        assertThat(replicaB.getLatestTelemetry(1L).getTimestamp()).isEqualTo(LocalDateTime.of(2024, 1, 1, 10, 0));
+
+        replicaA.cacheLatestTelemetry(1L, bms(LocalDateTime.of(2024, 1, 1, 10, 5), "60.0"));
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+            assertThat(replicaB.getLatestTelemetry(1L).getTimestamp())
+                .isEqualTo(LocalDateTime.of(2024, 1, 1, 10, 5)));
+    }
+
+    @Test
+    void clearDeviceCache_ShouldRemoveDeviceForAllReplicas() {
+        replicaA.cacheLatestTelemetry(1L, bms(LocalDateTime.of(2024, 1, 1, 10, 0), "55.0"));
+        assertThat(replicaB.getLatestTelemetry(1L)).isNotNull();
+
+        replicaA.clearDeviceCache(1L);
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+            assertThat(replicaB.getLatestTelemetry(1L)).isNull());
+    }
+
+    private DeviceTelemetryCacheService replica(LettuceConnectionFactory connectionFactory,
+                                                StringRedisTemplate redisTemplate) {
+        CacheConfig cacheConfig = new CacheConfig();
+        ReflectionTestUtils.setField(cacheConfig, "deviceTelemetryMaxSize", 100L);
+        ReflectionTestUtils.setField(cacheConfig, "deviceTelemetryExpireAfterWrite", Duration.ofHours(1));
+        ReflectionTestUtils.setField(cacheConfig, "deviceStatusMaxSize", 10L);
+        ReflectionTestUtils.setField(cacheConfig, "deviceStatusExpireAfterWrite", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cacheConfig, "siteOverviewMaxSize", 10L);
+        ReflectionTestUtils.setField(cacheConfig, "siteOverviewExpireAfterWrite", Duration.ofMinutes(1));
+        TelemetryTimestampRange timestampRange = cacheConfig.telemetryTimestampRange();
+        CacheManager cacheManager = cacheConfig.cacheManager(timestampRange);
+
+        RedisTelemetryStore store = new RedisTelemetryStore(redisTemplate, objectMapper, Duration.ofMinutes(5));
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(store, new ChannelTopic(RedisTelemetryStore.INVALIDATION_CHANNEL));
+        container.afterPropertiesSet();
+        container.start();
+        resources.add(container::destroy);
+
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("redisTelemetryStore", store);
+        return new DeviceTelemetryCacheService(objectMapper, cacheManager, timestampRange,
+            beanFactory.getBeanProvider(OffHeapTelemetryStore.class),
+            beanFactory.getBeanProvider(RedisTelemetryStore.class));
+    }
+
+    private BMSTelemetryDTO bms(LocalDateTime timestamp, String soc) {
+        BMSTelemetryDTO dto = new BMSTelemetryDTO();
+        dto.setTimestamp(timestamp);
+        dto.setSoc(new BigDecimal(soc));
+        return dto;
+    }
+}
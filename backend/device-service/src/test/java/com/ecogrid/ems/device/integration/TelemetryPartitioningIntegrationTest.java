@@ -0,0 +1,142 @@
+package com.ecogrid.ems.device.integration;
+
+import com.ecogrid.ems.device.service.TelemetryPartitionService;
+import com.ecogrid.ems.device.service.TelemetryPartitionService.TelemetryPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Partitioned device_telemetry against a real PostgreSQL: schema conversion, partition pruning
+ * (checked with EXPLAIN) and partition-drop retention
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class TelemetryPartitioningIntegrationTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("ems_test")
+            .withUsername("ems_user")
+            .withPassword("ems_password");
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final LocalDate today = LocalDate.now();
+
+    private JdbcTemplate jdbcTemplate;
+    private TelemetryPartitionService partitionService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+            postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword()));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS device_telemetry CASCADE");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS device_telemetry_legacy CASCADE");
+        jdbcTemplate.execute("DROP SEQUENCE IF EXISTS device_telemetry_id_seq");
+
+        partitionService = new TelemetryPartitionService(jdbcTemplate);
+        ReflectionTestUtils.setField(partitionService, "enabled", true);
+        ReflectionTestUtils.setField(partitionService, "daysAhead", 2);
+        ReflectionTestUtils.setField(partitionService, "retentionDays", 7);
+    }
+
+    @Test
+    void rangeQuery_ShouldOnlyScanMatchingDailyPartition() {
+        partitionService.afterPropertiesSet();
+        insert(today.atTime(10, 0));
+        insert(today.plusDays(1).atTime(10, 0));
+
+        List<String> plan = jdbcTemplate.queryForList(
+            "EXPLAIN SELECT * FROM device_telemetry WHERE device_id = ? AND timestamp >= ? AND timestamp < ?",
+            String.class, 1L, Timestamp.valueOf(today.atStartOfDay()), Timestamp.valueOf(today.plusDays(1).atStartOfDay()));
+
+        String planText = String.join("\n", plan);
+        assertThat(planText).contains(partitionName(today));
+        assertThat(planText).doesNotContain(partitionName(today.plusDays(1)), partitionName(today.plusDays(2)));
+    }
+
+    @Test
+    void ensurePartitionedTable_ShouldConvertExistingTableKeepingRowsAndIds() {
+        // Shape of the table Hibernate created before partitioning
+        jdbcTemplate.execute("CREATE TABLE device_telemetry (id bigint GENERATED BY DEFAULT AS IDENTITY, " +
+            "created_at timestamp(6) NOT NULL, data jsonb NOT NULL, device_id bigint NOT NULL, " +
+            "processed_at timestamp(6), quality_indicators jsonb, timestamp timestamp(6) NOT NULL, PRIMARY KEY (id))");
+        jdbcTemplate.execute("CREATE INDEX idx_telemetry_device_timestamp ON device_telemetry (device_id, timestamp DESC)");
+        insert(today.minusDays(3).atTime(8, 0));
+        insert(today.atTime(8, 0));
+
+        partitionService.afterPropertiesSet();
+        // Running again on every start is a no-op
+        partitionService.afterPropertiesSet();
+        insert(today.plusDays(1).atTime(8, 0));
+
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT relkind::text FROM pg_class WHERE relname = 'device_telemetry'", String.class)).isEqualTo("p");
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM device_telemetry ORDER BY id", Long.class))
+            .containsExactly(1L, 2L, 3L);
+        assertThat(partitionService.listPartitions()).extracting(TelemetryPartition::name)
+            .containsExactly("device_telemetry_legacy", partitionName(today.plusDays(1)), partitionName(today.plusDays(2)));
+    }
+
+    @Test
+    void dropExpiredPartitions_ShouldDropOnlyPartitionsPastRetention() {
+        partitionService.ensurePartitionedTable();
+        partitionService.createUpcomingPartitions(today.minusDays(9));
+        partitionService.createUpcomingPartitions(today);
+        insert(today.minusDays(9).atTime(12, 0));
+        insert(today.atTime(12, 0));
+
+        List<String> dropped = partitionService.dropExpiredPartitions(today);
+
+        assertThat(dropped).containsExactlyInAnyOrder(
+            partitionName(today.minusDays(9)), partitionName(today.minusDays(8)));
+        assertThat(partitionService.listPartitions()).extracting(TelemetryPartition::name)
+            .contains(partitionName(today.minusDays(7)), partitionName(today))
+            .doesNotContain(dropped.toArray(String[]::new));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM device_telemetry", Long.class)).isEqualTo(1L);
+    }
+
+    @Test
+    void insertOutsideDailyPartitions_ShouldLandInDefaultPartitionUntilMovedOrExpired() {
+        partitionService.afterPropertiesSet();
+        insert(today.plusDays(5).atTime(9, 0));
+        insert(today.minusDays(30).atTime(9, 0));
+        assertThat(countRows("device_telemetry_default")).isEqualTo(2L);
+
+        ReflectionTestUtils.setField(partitionService, "daysAhead", 5);
+        partitionService.maintainPartitions();
+
+        assertThat(countRows("device_telemetry_default")).isZero();
+        assertThat(countRows(partitionName(today.plusDays(5)))).isEqualTo(1L);
+        assertThat(countRows("device_telemetry")).isEqualTo(1L);
+        assertThat(partitionService.listPartitions()).extracting(TelemetryPartition::name)
+            .contains(partitionName(today.minusDays(7)), partitionName(today.plusDays(5)))
+            .doesNotContain("device_telemetry_default");
+    }
+
+    private long countRows(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private void insert(LocalDateTime timestamp) {
+        jdbcTemplate.update("INSERT INTO device_telemetry (device_id, timestamp, data, created_at) " +
+            "VALUES (1, ?, '{\"power\": 1.0}'::jsonb, now())", Timestamp.valueOf(timestamp));
+    }
+
+    private String partitionName(LocalDate day) {
+        return "device_telemetry_p" + day.format(SUFFIX);
+    }
+}
@@ -0,0 +1,136 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.entity.DeviceType;
+import com.ecogrid.ems.device.repository.DeviceTypeRepository;
+import com.ecogrid.ems.device.service.DeviceProvisioningService.ImportRow;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for DeviceProvisioningService
+ */
+class DeviceProvisioningServiceTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private DeviceTypeRepository deviceTypeRepository;
+    private DeviceProvisioningService provisioningService;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        deviceTypeRepository = mock(DeviceTypeRepository.class);
+        provisioningService = new DeviceProvisioningService(jdbcTemplate, mock(PlatformTransactionManager.class),
+            deviceTypeRepository, Validation.buildDefaultValidatorFactory().getValidator(),
+            new ObjectMapper().registerModule(new JavaTimeModule()), mock(SiteOverviewSnapshotService.class),
+            mock(FleetStatisticsService.class), mock(DeviceEventService.class));
+        ReflectionTestUtils.setField(provisioningService, "batchSize", 100);
+        ReflectionTestUtils.setField(provisioningService, "maxRows", 3);
+    }
+
+    @Test
+    void readCsv_ShouldHandleQuotedCellsAndAttributeColumns() throws Exception {
+        String csv = "serialNumber,name,deviceType,siteId,installationDate,configuration.mode,metadata.note\r\n" +
+            "BMS-1,\"Rack \"\"A\"\", row 1\",bms,7,2024-03-01T10:00:00,auto,\"two\nlines\"\r\n" +
+            "\r\n" +
+            "BMS-2,Rack B,bms,7,,,\n";
+
+        List<ImportRow> rows = provisioningService.readCsv(new StringReader(csv));
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0).line).isEqualTo(2);
+        assertThat(rows.get(0).request.name()).isEqualTo("Rack \"A\", row 1");
+        assertThat(rows.get(0).request.installationDate()).isEqualTo(LocalDateTime.of(2024, 3, 1, 10, 0));
+        assertThat(rows.get(0).request.configuration()).containsExactly(Map.entry("mode", "auto"));
+        assertThat(rows.get(0).request.metadata()).containsEntry("note", "two\nlines");
+        assertThat(rows.get(1).line).isEqualTo(5);
+        assertThat(rows.get(1).request.installationDate()).isNull();
+        assertThat(rows.get(1).request.configuration()).isEmpty();
+    }
+
+    @Test
+    void readCsv_ShouldRejectUnknownColumnsAndReportBadRows() throws Exception {
+        assertThatThrownBy(() -> provisioningService.readCsv(new StringReader("serialNumber,colour\nX,red\n")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Unknown CSV column: 'colour'");
+
+        List<ImportRow> rows = provisioningService.readCsv(new StringReader(
+            "serialNumber,siteId\nA,1,extra\nB,seven\n"));
+
+        assertThat(rows).extracting(row -> row.error).allSatisfy(error -> assertThat(error).isNotNull());
+        assertThat(rows.get(0).error).isEqualTo("Expected 2 columns but found 3");
+        assertThat(rows.get(1).error).startsWith("Invalid value:");
+    }
+
+    @Test
+    void readNdjson_ShouldReportMalformedLinesAndEnforceRowLimit() throws Exception {
+        List<ImportRow> rows = provisioningService.readNdjson(new StringReader(
+            "{\"serialNumber\":\"A\"}\n\n{\"serialNumber\":\n null\n"));
+
+        assertThat(rows).hasSize(3);
+        assertThat(rows.get(0).request.serialNumber()).isEqualTo("A");
+        assertThat(rows.get(1).line).isEqualTo(3);
+        assertThat(rows.get(1).error).startsWith("Malformed JSON:");
+        assertThat(rows.get(2).error).isEqualTo("Expected a JSON object");
+
+        assertThatThrownBy(() -> provisioningService.readNdjson(new StringReader("{}\n{}\n{}\n{}\n")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Import must not exceed 3 devices");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void validate_ShouldRejectRowsWithOneLookupPerCheck() throws Exception {
+        ReflectionTestUtils.setField(provisioningService, "maxRows", 100);
+        DeviceType bms = new DeviceType();
+        bms.setName("BMS");
+        when(deviceTypeRepository.findAll()).thenReturn(List.of(bms));
+        // Taken serials, then existing sites
+        when(jdbcTemplate.query(anyString(), any(PreparedStatementSetter.class), any(RowMapper.class)))
+            .thenReturn(List.of("TAKEN"))
+            .thenReturn(List.of(7L));
+        String header = "serialNumber,name,deviceType,model,manufacturer,siteId,status\n";
+        String csv = header +
+            "OK-1,Rack,bms,M1,EcoGrid,7,online\n" +
+            "OK-1,Rack,bms,M1,EcoGrid,7,\n" +
+            "TAKEN,Rack,bms,M1,EcoGrid,7,\n" +
+            "NOSITE,Rack,bms,M1,EcoGrid,8,\n" +
+            "NOTYPE,Rack,wind,M1,EcoGrid,7,\n" +
+            "BADSTATUS,Rack,bms,M1,EcoGrid,7,sleeping\n" +
+            "INVALID,,bms,,EcoGrid,7,\n";
+        List<ImportRow> rows = provisioningService.readCsv(new StringReader(csv));
+
+        List<ImportRow> accepted = provisioningService.validate(rows);
+
+        assertThat(accepted).extracting(row -> row.request.serialNumber()).containsExactly("OK-1");
+        assertThat(accepted.get(0).deviceType).isSameAs(bms);
+        assertThat(accepted.get(0).status.name()).isEqualTo("ONLINE");
+        assertThat(rows).extracting(row -> row.error).containsExactly(
+            null,
+            "Duplicate serial number 'OK-1' (first on line 2)",
+            "Device with serial number 'TAKEN' already exists",
+            "Site not found with ID: 8",
+            "Invalid device type: wind",
+            "Invalid device status: sleeping",
+            "Device name is required; Model is required");
+    }
+}
@@ -0,0 +1,245 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.config.CacheConfig;
+import com.ecogrid.ems.device.dto.telemetry.BMSTelemetryDTO;
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceTelemetry;
+import com.ecogrid.ems.device.entity.DeviceType;
+import com.ecogrid.ems.device.entity.Site;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for DeviceTelemetryCacheService
+ */
+class DeviceTelemetryCacheServiceTest {
+
+    private DeviceTelemetryCacheService cacheService;
+    private CacheManager cacheManager;
+    private TelemetryTimestampRange timestampRange;
+
+    @BeforeEach
+    void setUp() {
+        CacheConfig cacheConfig = new CacheConfig();
+        ReflectionTestUtils.setField(cacheConfig, "deviceTelemetryMaxSize", 2L);
+        ReflectionTestUtils.setField(cacheConfig, "deviceTelemetryExpireAfterWrite", Duration.ofHours(1));
+        ReflectionTestUtils.setField(cacheConfig, "deviceStatusMaxSize", 10L);
+        ReflectionTestUtils.setField(cacheConfig, "deviceStatusExpireAfterWrite", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cacheConfig, "siteOverviewMaxSize", 10L);
+        ReflectionTestUtils.setField(cacheConfig, "siteOverviewExpireAfterWrite", Duration.ofMinutes(1));
+
+        timestampRange = cacheConfig.telemetryTimestampRange();
+        cacheManager = cacheConfig.cacheManager(timestampRange);
+        cacheService = new DeviceTelemetryCacheService(new ObjectMapper().findAndRegisterModules(),
+            cacheManager, timestampRange, new DefaultListableBeanFactory().getBeanProvider(OffHeapTelemetryStore.class),
+            new DefaultListableBeanFactory().getBeanProvider(RedisTelemetryStore.class));
+    }
+
+    @Test
+    void getLatestTelemetryForDevices_ShouldReturnCachedEntriesAndRecordStats() {
+        cacheService.cacheLatestTelemetry(1L, bms(LocalDateTime.of(2024, 1, 1, 10, 0)));
+
+        Map<Long, DeviceTelemetryCacheService.CachedTelemetryData> result =
+            cacheService.getLatestTelemetryForDevices(List.of(1L, 2L));
+
+        assertThat(result).containsOnlyKeys(1L);
+        assertThat(result.get(1L).getTelemetryData()).containsKey("soc");
+        Map<String, Object> stats = cacheService.getCacheStats();
+        assertThat(stats).containsEntry("hitCount", 1L).containsEntry("missCount", 1L);
+    }
+
+    @Test
+    void cacheStats_ShouldTrackTimestampRangeAcrossReplacementAndClear() {
+        cacheService.cacheLatestTelemetry(1L, bms(LocalDateTime.of(2024, 1, 1, 10, 0)));
+        cacheService.cacheLatestTelemetry(2L, bms(LocalDateTime.of(2024, 1, 1, 11, 0)));
+        assertThat(cacheService.getCacheStats())
+            .containsEntry("oldestEntry", LocalDateTime.of(2024, 1, 1, 10, 0))
+            .containsEntry("newestEntry", LocalDateTime.of(2024, 1, 1, 11, 0));
+
+        // Replacing device 1 drops its old timestamp from the range
+        cacheService.cacheLatestTelemetry(1L, bms(LocalDateTime.of(2024, 1, 1, 12, 0)));
+        assertThat(cacheService.getCacheStats())
+            .containsEntry("oldestEntry", LocalDateTime.of(2024, 1, 1, 11, 0))
+            .containsEntry("newestEntry", LocalDateTime.of(2024, 1, 1, 12, 0));
+
+        cacheService.clearAllCache();
+        assertThat(cacheService.getCacheStats())
+            .containsEntry("oldestEntry", null)
+            .containsEntry("newestEntry", null);
+    }
+
+    @Test
+    void offHeapStore_ShouldServeSchemaDevicesAndFallBackToHeapForOthers() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("offHeapTelemetryStore", OffHeapTelemetryStore.inMemory(16));
+        DeviceTelemetryCacheService offHeapService = new DeviceTelemetryCacheService(
+            new ObjectMapper().findAndRegisterModules(), cacheManager, timestampRange,
+            beanFactory.getBeanProvider(OffHeapTelemetryStore.class),
+            beanFactory.getBeanProvider(RedisTelemetryStore.class));
+
+        offHeapService.cacheLatestTelemetry(1L, bms(LocalDateTime.of(2024, 1, 1, 10, 0)));
+        offHeapService.cacheLatestTelemetry(100L, bms(LocalDateTime.of(2024, 1, 1, 11, 0)));
+
+        Map<Long, DeviceTelemetryCacheService.CachedTelemetryData> result =
+            offHeapService.getLatestTelemetryForDevices(List.of(1L, 100L));
+
+        assertThat(result.get(1L).getTelemetryType()).isEqualTo("BMSTelemetryDTO");
+        assertThat(result.get(1L).getTelemetryData()).containsEntry("soc", 55.0);
+        assertThat(result.get(100L).getTelemetryType()).isEqualTo("BMSTelemetryDTO");
+        assertThat(offHeapService.getCacheStats())
+            .containsEntry("offHeapDevices", 1L)
+            .containsEntry("cachedDevices", 2L)
+            .containsEntry("oldestEntry", LocalDateTime.of(2024, 1, 1, 10, 0));
+    }
+
+    @Test
+    void offHeapStore_ShouldKeepGenericFieldsOfEntityTelemetry() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("offHeapTelemetryStore", OffHeapTelemetryStore.inMemory(16));
+        DeviceTelemetryCacheService offHeapService = new DeviceTelemetryCacheService(
+            new ObjectMapper().findAndRegisterModules(), cacheManager, timestampRange,
+            beanFactory.getBeanProvider(OffHeapTelemetryStore.class),
+            beanFactory.getBeanProvider(RedisTelemetryStore.class));
+        Device device = new Device("BMS-001", "Battery", new DeviceType("BMS", "STORAGE"), "M1", "Acme", new Site());
+        device.setId(3L);
+        Map<String, Object> data = Map.of("soc", 72.5, "energy", 340.0, "power", 12.5, "healthStatus", "GOOD");
+
+        offHeapService.cacheLatestTelemetryFromEntity(3L,
+            new DeviceTelemetry(device, LocalDateTime.of(2024, 1, 1, 10, 0), data));
+
+        DeviceTelemetryCacheService.CachedTelemetryData cached = offHeapService.getLatestTelemetry(3L);
+        assertThat(cached.getTelemetryType()).isEqualTo("BMS");
+        assertThat(cached.getTelemetryData()).isEqualTo(data);
+        assertThat(offHeapService.getCacheStats()).containsEntry("offHeapDevices", 1L);
+    }
+
+    @Test
+    void offHeapStore_ShouldKeepSamplesTooLargeForTheirSlotOnTheHeap() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("offHeapTelemetryStore",
+            OffHeapTelemetryStore.inMemory(16, OffHeapTelemetryStore.MIN_SLOT_SIZE));
+        DeviceTelemetryCacheService offHeapService = new DeviceTelemetryCacheService(
+            new ObjectMapper().findAndRegisterModules(), cacheManager, timestampRange,
+            beanFactory.getBeanProvider(OffHeapTelemetryStore.class),
+            beanFactory.getBeanProvider(RedisTelemetryStore.class));
+        Device device = new Device("BMS-001", "Battery", new DeviceType("BMS", "STORAGE"), "M1", "Acme", new Site());
+        device.setId(3L);
+        LocalDateTime first = LocalDateTime.of(2024, 1, 1, 10, 0);
+        Map<String, Object> withAlarms = Map.of("soc", 71.0, "alarms", List.of("HIGH_TEMP", "CELL_IMBALANCE"));
+
+        offHeapService.cacheLatestTelemetryFromEntity(3L,
+            new DeviceTelemetry(device, first, Map.of("soc", 72.5, "healthStatus", "GOOD")));
+        offHeapService.cacheLatestTelemetryFromEntity(3L, new DeviceTelemetry(device, first.plusMinutes(1), withAlarms));
+
+        assertThat(offHeapService.getLatestTelemetry(3L).getTelemetryData()).isEqualTo(withAlarms);
+        assertThat(offHeapService.getCacheStats())
+            .containsEntry("offHeapDevices", 0L)
+            .containsEntry("offHeapSpilledWrites", 1L)
+            .containsEntry("cachedDevices", 1L)
+            .containsEntry("oldestEntry", first.plusMinutes(1));
+
+        // A sample that fits again moves back off-heap and drops the heap copy
+        offHeapService.cacheLatestTelemetryFromEntity(3L,
+            new DeviceTelemetry(device, first.plusMinutes(2), Map.of("soc", 70.0, "healthStatus", "FAIR")));
+
+        assertThat(offHeapService.getLatestTelemetry(3L).getTelemetryData()).containsEntry("healthStatus", "FAIR");
+        assertThat(offHeapService.getCacheStats())
+            .containsEntry("offHeapDevices", 1L)
+            .containsEntry("cachedDevices", 1L)
+            .containsEntry("oldestEntry", first.plusMinutes(2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void redisReadThrough_ShouldNotKeepValueInvalidatedDuringTheRead() {
+        RedisTelemetryStore redisStore = mock(RedisTelemetryStore.class);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("redisTelemetryStore", redisStore);
+        DeviceTelemetryCacheService redisService = new DeviceTelemetryCacheService(
+            new ObjectMapper().findAndRegisterModules(), cacheManager, timestampRange,
+            beanFactory.getBeanProvider(OffHeapTelemetryStore.class),
+            beanFactory.getBeanProvider(RedisTelemetryStore.class));
+        ArgumentCaptor<Consumer<Long>> invalidationListener = ArgumentCaptor.forClass(Consumer.class);
+        verify(redisStore).addInvalidationListener(invalidationListener.capture());
+
+        DeviceTelemetryCacheService.CachedTelemetryData stale = new DeviceTelemetryCacheService.CachedTelemetryData(
+            1L, LocalDateTime.of(2024, 1, 1, 10, 0), Map.of("soc", 50.0), "BMS");
+        DeviceTelemetryCacheService.CachedTelemetryData fresh = new DeviceTelemetryCacheService.CachedTelemetryData(
+            1L, LocalDateTime.of(2024, 1, 1, 10, 1), Map.of("soc", 51.0), "BMS");
+        // Another replica's write is announced while the stale value is on its way back
+        when(redisStore.getAll(List.of(1L))).thenAnswer(invocation -> {
+            invalidationListener.getValue().accept(1L);
+            return Map.of(1L, stale);
+        }).thenReturn(Map.of(1L, fresh));
+
+        assertThat(redisService.getLatestTelemetry(1L).getTimestamp()).isEqualTo(stale.getTimestamp());
+        assertThat(redisService.getLatestTelemetry(1L).getTimestamp()).isEqualTo(fresh.getTimestamp());
+        assertThat(redisService.getLatestTelemetry(1L).getTimestamp()).isEqualTo(fresh.getTimestamp());
+        verify(redisStore, times(2)).getAll(List.of(1L));
+    }
+
+    @Test
+    void warmLatestTelemetry_ShouldKeepNewerLiveEntriesAndStayLocal() {
+        RedisTelemetryStore redisStore = mock(RedisTelemetryStore.class);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("offHeapTelemetryStore", OffHeapTelemetryStore.inMemory(16));
+        beanFactory.registerSingleton("redisTelemetryStore", redisStore);
+        DeviceTelemetryCacheService warmService = new DeviceTelemetryCacheService(
+            new ObjectMapper().findAndRegisterModules(), cacheManager, timestampRange,
+            beanFactory.getBeanProvider(OffHeapTelemetryStore.class),
+            beanFactory.getBeanProvider(RedisTelemetryStore.class));
+        when(redisStore.getAll(any())).thenReturn(Map.of());
+        LocalDateTime live = LocalDateTime.of(2024, 1, 1, 11, 0);
+        warmService.cacheLatestTelemetry(1L, bms(live));
+        warmService.cacheLatestTelemetry(100L, bms(live));
+
+        int warmed = warmService.warmLatestTelemetry(List.of(
+            warmEntry(1L, live.minusHours(1)),
+            warmEntry(100L, live.minusHours(1)),
+            warmEntry(2L, live.minusHours(2)),
+            warmEntry(200L, live.minusHours(2))));
+
+        assertThat(warmed).isEqualTo(2);
+        Map<Long, DeviceTelemetryCacheService.CachedTelemetryData> result =
+            warmService.getLatestTelemetryForDevices(List.of(1L, 100L, 2L, 200L));
+        assertThat(result.get(1L).getTimestamp()).isEqualTo(live);
+        assertThat(result.get(100L).getTimestamp()).isEqualTo(live);
+        assertThat(result.get(2L).getTelemetryData()).containsEntry("healthStatus", "GOOD");
+        assertThat(result.get(200L).getTimestamp()).isEqualTo(live.minusHours(2));
+        assertThat(warmService.getCacheStats())
+            .containsEntry("oldestEntry", live.minusHours(2))
+            .containsEntry("newestEntry", live);
+        verify(redisStore, times(2)).put(any());
+    }
+
+    private DeviceTelemetryCacheService.CachedTelemetryData warmEntry(Long deviceId, LocalDateTime timestamp) {
+        return new DeviceTelemetryCacheService.CachedTelemetryData(deviceId, timestamp,
+            Map.of("soc", 40.0, "healthStatus", "GOOD"), "BMS");
+    }
+
+    private BMSTelemetryDTO bms(LocalDateTime timestamp) {
+        BMSTelemetryDTO dto = new BMSTelemetryDTO();
+        dto.setTimestamp(timestamp);
+        dto.setSoc(new BigDecimal("55.0"));
+        return dto;
+    }
+}
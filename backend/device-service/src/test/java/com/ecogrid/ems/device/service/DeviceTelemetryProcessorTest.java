@@ -0,0 +1,193 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.telemetry.RawTelemetryMessage;
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceTelemetry;
+import com.ecogrid.ems.device.entity.DeviceType;
+import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.repository.DeviceRepository;
+import com.ecogrid.ems.device.repository.DeviceStatusCacheRepository;
+import com.ecogrid.ems.device.repository.DeviceTelemetryRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for DeviceTelemetryProcessor
+ */
+class DeviceTelemetryProcessorTest {
+
+    private DeviceRepository deviceRepository;
+    private DeviceTelemetryRepository telemetryRepository;
+    private KafkaTemplate<String, Object> kafkaTemplate;
+    private TransactionTemplate transactionTemplate;
+    private DeviceTelemetryProcessor processor;
+    private TelemetryCompressor compressor;
+    private TelemetryArchiveService archiveService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        deviceRepository = mock(DeviceRepository.class);
+        telemetryRepository = mock(DeviceTelemetryRepository.class);
+        kafkaTemplate = mock(KafkaTemplate.class);
+        transactionTemplate = mock(TransactionTemplate.class);
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        archiveService = mock(TelemetryArchiveService.class);
+        compressor = new TelemetryCompressor(true, Duration.ofMinutes(15), "soc:abs:0.5", "", "");
+        processor = new DeviceTelemetryProcessor(deviceRepository, telemetryRepository,
+            mock(DeviceStatusCacheRepository.class), kafkaTemplate, new ObjectMapper().registerModule(new JavaTimeModule()),
+            mock(AlertService.class), transactionTemplate, mock(DeviceTelemetryCacheService.class),
+            mock(TelemetryHistoryBuffer.class), compressor, archiveService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processTelemetryBatch_ShouldLookUpDevicesOnceAndSaveSamplesInOrder() {
+        Device first = device(1L, "METER-SITE1-001");
+        Device second = device(2L, "METER-SITE1-002");
+        when(deviceRepository.findWithTypeBySerialNumberIn(any())).thenReturn(List.of(first, second));
+
+        int stored = processor.processTelemetryBatch(List.of(
+            new RawTelemetryMessage("ecogrid/site1/meter/001", "{\"power\":1.5}", 1L),
+            new RawTelemetryMessage("ecogrid/site1/meter/002", "{\"power\":2.5}", 2L),
+            new RawTelemetryMessage("ecogrid/site1/meter/009", "{\"power\":9.0}", 3L),
+            new RawTelemetryMessage("legacy/telemetry/meter", "{\"power\":0.0}", 4L),
+            new RawTelemetryMessage("ecogrid/site1/meter/001", "{\"power\":3.5}", 5L)));
+
+        assertThat(stored).isEqualTo(3);
+        ArgumentCaptor<Collection<String>> serials = ArgumentCaptor.forClass(Collection.class);
+        verify(deviceRepository).findWithTypeBySerialNumberIn(serials.capture());
+        assertThat(serials.getValue()).containsExactlyInAnyOrder("METER-SITE1-001", "METER-SITE1-002", "METER-SITE1-009");
+        verify(deviceRepository, never()).findBySerialNumber(anyString());
+
+        ArgumentCaptor<List<DeviceTelemetry>> saved = ArgumentCaptor.forClass(List.class);
+        verify(telemetryRepository).insertAll(saved.capture());
+        assertThat(saved.getValue()).extracting(telemetry -> telemetry.getData().get("power"))
+            .containsExactly(1.5, 2.5, 3.5);
+        verify(kafkaTemplate, times(3)).send(anyString(), anyString(), any());
+        // An alert check per sample and one status cache update per device
+        verify(transactionTemplate, times(5)).executeWithoutResult(any());
+    }
+
+    @Test
+    void processTelemetryBatch_ShouldSkipQueryWhenNoTopicIsValid() {
+        int stored = processor.processTelemetryBatch(List.of(new RawTelemetryMessage("legacy/telemetry/x", "{}", 1L)));
+
+        assertThat(stored).isZero();
+        verify(deviceRepository, never()).findWithTypeBySerialNumberIn(any());
+        verify(telemetryRepository, never()).insertAll(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processTelemetryBatch_ShouldStoreOnlySamplesOutsideTheDeadbandButPublishAll() {
+        Device battery = device(3L, "BMS-SITE1-001", "BMS");
+        when(deviceRepository.findWithTypeBySerialNumberIn(any())).thenReturn(List.of(battery));
+
+        int stored = processor.processTelemetryBatch(List.of(
+            new RawTelemetryMessage("ecogrid/site1/bms/001", bms(80.0, "2026-01-01T00:00:00"), 1L),
+            new RawTelemetryMessage("ecogrid/site1/bms/001", bms(80.2, "2026-01-01T00:00:01"), 2L),
+            new RawTelemetryMessage("ecogrid/site1/bms/001", bms(80.3, "2026-01-01T00:00:02"), 3L),
+            new RawTelemetryMessage("ecogrid/site1/bms/001", bms(79.0, "2026-01-01T00:00:03"), 4L)));
+
+        assertThat(stored).isEqualTo(2);
+        ArgumentCaptor<List<DeviceTelemetry>> saved = ArgumentCaptor.forClass(List.class);
+        verify(telemetryRepository).insertAll(saved.capture());
+        assertThat(saved.getValue()).extracting(telemetry -> telemetry.getData().get("soc"))
+            .containsExactly(80.0, 79.0);
+        verify(archiveService).markLateSamples(eq(saved.getValue()), any());
+        verify(kafkaTemplate, times(4)).send(anyString(), anyString(), any());
+        assertThat(compressor.getSuppressedSamples()).isEqualTo(2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processTelemetryBatch_ShouldStampSamplesWithoutTimestampWithTheirArrivalTime() {
+        Device meter = device(1L, "METER-SITE1-001");
+        Device battery = device(3L, "BMS-SITE1-001", "BMS");
+        when(deviceRepository.findWithTypeBySerialNumberIn(any())).thenReturn(List.of(meter, battery));
+        LocalDateTime arrival = LocalDateTime.of(2026, 3, 1, 10, 0, 0, 250_000_000);
+        long receivedAt = arrival.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        processor.processTelemetryBatch(List.of(
+            new RawTelemetryMessage("ecogrid/site1/meter/001", "{\"power\":1.5,\"timestamp\":\"soon\"}", receivedAt),
+            new RawTelemetryMessage("ecogrid/site1/bms/001", "{\"soc\":80.0}", receivedAt + 1000)));
+
+        ArgumentCaptor<List<DeviceTelemetry>> saved = ArgumentCaptor.forClass(List.class);
+        verify(telemetryRepository).insertAll(saved.capture());
+        assertThat(saved.getValue()).extracting(DeviceTelemetry::getTimestamp)
+            .containsExactly(arrival, arrival.plusSeconds(1));
+    }
+
+    @Test
+    void processTelemetryBatch_ShouldPublishAndCacheOnlyAfterCommit() {
+        DeviceTelemetryCacheService cacheService = mock(DeviceTelemetryCacheService.class);
+        processor = new DeviceTelemetryProcessor(deviceRepository, telemetryRepository,
+            mock(DeviceStatusCacheRepository.class), kafkaTemplate, new ObjectMapper().registerModule(new JavaTimeModule()),
+            mock(AlertService.class), transactionTemplate, cacheService, mock(TelemetryHistoryBuffer.class), compressor,
+            archiveService);
+        when(deviceRepository.findWithTypeBySerialNumberIn(any()))
+            .thenReturn(List.of(device(1L, "METER-SITE1-001"), device(2L, "METER-SITE1-002")));
+        when(kafkaTemplate.send(anyString(), eq("1"), any()))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker gone")));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            processor.processTelemetryBatch(List.of(
+                new RawTelemetryMessage("ecogrid/site1/meter/001", "{\"power\":1.5}", 1L),
+                new RawTelemetryMessage("ecogrid/site1/meter/002", "{\"power\":2.5}", 2L)));
+
+            verify(telemetryRepository).insertAll(any());
+            verify(kafkaTemplate, never()).send(anyString(), anyString(), any());
+            verify(cacheService, never()).cacheLatestTelemetryFromEntity(any(), any());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(kafkaTemplate, times(2)).send(anyString(), anyString(), any());
+        verify(cacheService).cacheLatestTelemetryFromEntity(eq(1L), any());
+        verify(cacheService).cacheLatestTelemetryFromEntity(eq(2L), any());
+    }
+
+    private static String bms(double soc, String timestamp) {
+        return "{\"soc\":" + soc + ",\"timestamp\":\"" + timestamp + "\"}";
+    }
+
+    private static Device device(Long id, String serialNumber) {
+        return device(id, serialNumber, "Meter");
+    }
+
+    private static Device device(Long id, String serialNumber, String deviceType) {
+        Site site = new Site();
+        site.setId(1L);
+        Device device = new Device(serialNumber, serialNumber, new DeviceType(deviceType, "METERING"), "M1", "Acme", site);
+        device.setId(id);
+        return device;
+    }
+}
@@ -0,0 +1,188 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.repository.DeviceRepository;
+import com.ecogrid.ems.device.repository.SiteRepository;
+import com.ecogrid.ems.device.service.FleetStatisticsService.DeviceState;
+import com.ecogrid.ems.device.service.FleetStatisticsService.SiteState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for FleetStatisticsService
+ */
+class FleetStatisticsServiceTest {
+
+    private DeviceRepository deviceRepository;
+    private SiteRepository siteRepository;
+    private JdbcTemplate jdbcTemplate;
+    private FleetStatisticsService statisticsService;
+
+    @BeforeEach
+    void setUp() {
+        deviceRepository = mock(DeviceRepository.class);
+        siteRepository = mock(SiteRepository.class);
+        when(deviceRepository.countGroupedByStatus()).thenReturn(List.of(
+            statusCount(Device.DeviceStatus.ONLINE, 3), statusCount(Device.DeviceStatus.OFFLINE, 2)));
+        when(deviceRepository.countGroupedByTypeName()).thenReturn(List.of(
+            typeCount("BMS", 4), typeCount("SOLAR_ARRAY", 1), typeCount("EV_CHARGER", 0)));
+        when(siteRepository.countGroupedByStatus()).thenReturn(List.of(
+            siteCount(Site.SiteStatus.ACTIVE, 2, "12.50"), siteCount(Site.SiteStatus.MAINTENANCE, 1, "4.00")));
+        jdbcTemplate = mock(JdbcTemplate.class);
+        statisticsService = new FleetStatisticsService(deviceRepository, siteRepository, jdbcTemplate,
+            mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void getDeviceStatistics_ShouldRecountOnceAndServeFromMemory() {
+        DeviceService.DeviceStatistics statistics = statisticsService.getDeviceStatistics();
+        statisticsService.getDeviceStatistics();
+        statisticsService.getSiteStatistics();
+
+        assertThat(statistics.totalDevices()).isEqualTo(5);
+        assertThat(statistics.onlineDevices()).isEqualTo(3);
+        assertThat(statistics.offlineDevices()).isEqualTo(2);
+        assertThat(statistics.devicesByType()).containsEntry("BMS", 4L).containsEntry("EV_CHARGER", 0L);
+        assertThat(statistics.reconciliation().reconciledAt()).isNotNull();
+        verify(deviceRepository, times(1)).countGroupedByStatus();
+    }
+
+    @Test
+    void deviceChanged_ShouldApplyCreateStatusChangeAndDelete() {
+        statisticsService.getDeviceStatistics();
+
+        statisticsService.deviceChanged(null, new DeviceState(Device.DeviceStatus.OFFLINE, "EV_CHARGER"));
+        statisticsService.deviceChanged(new DeviceState(Device.DeviceStatus.OFFLINE, "BMS"),
+            new DeviceState(Device.DeviceStatus.ERROR, "BMS"));
+        statisticsService.deviceChanged(new DeviceState(Device.DeviceStatus.ONLINE, "SOLAR_ARRAY"), null);
+
+        DeviceService.DeviceStatistics statistics = statisticsService.getDeviceStatistics();
+        assertThat(statistics.totalDevices()).isEqualTo(5);
+        assertThat(statistics.onlineDevices()).isEqualTo(2);
+        assertThat(statistics.offlineDevices()).isEqualTo(2);
+        assertThat(statistics.errorDevices()).isEqualTo(1);
+        assertThat(statistics.devicesByType()).containsEntry("EV_CHARGER", 1L).containsEntry("SOLAR_ARRAY", 0L);
+    }
+
+    @Test
+    void siteChanged_ShouldTrackActiveCapacity() {
+        statisticsService.getSiteStatistics();
+
+        statisticsService.siteChanged(null, new SiteState(Site.SiteStatus.ACTIVE, new BigDecimal("3.25")));
+        statisticsService.siteChanged(new SiteState(Site.SiteStatus.MAINTENANCE, new BigDecimal("4.00")),
+            new SiteState(Site.SiteStatus.ACTIVE, new BigDecimal("4.00")));
+
+        SiteService.SiteStatistics statistics = statisticsService.getSiteStatistics();
+        assertThat(statistics.totalSites()).isEqualTo(4);
+        assertThat(statistics.activeSites()).isEqualTo(4);
+        assertThat(statistics.maintenanceSites()).isZero();
+        assertThat(statistics.totalCapacity()).isEqualByComparingTo("19.75");
+    }
+
+    @Test
+    void reconcile_ShouldCorrectAndReportDrift() {
+        statisticsService.getDeviceStatistics();
+        // A status change that bypassed the services
+        when(deviceRepository.countGroupedByStatus()).thenReturn(List.of(
+            statusCount(Device.DeviceStatus.ONLINE, 2), statusCount(Device.DeviceStatus.OFFLINE, 3)));
+
+        statisticsService.reconcile();
+
+        DeviceService.DeviceStatistics statistics = statisticsService.getDeviceStatistics();
+        assertThat(statistics.onlineDevices()).isEqualTo(2);
+        assertThat(statistics.reconciliation().driftedReconciliations()).isEqualTo(1);
+        assertThat(statistics.reconciliation().lastDrift())
+            .containsEntry("status.ONLINE", -1L)
+            .containsEntry("status.OFFLINE", 1L)
+            .doesNotContainKey("total");
+        assertThat(statisticsService.getSiteStatistics().reconciliation().driftedReconciliations()).isZero();
+    }
+
+    @Test
+    void reconcile_ShouldReplayOnlyDeltasItsSnapshotDoesNotSee() {
+        statisticsService.getDeviceStatistics();
+        // Two devices created by transactions 100 and 105 that commit while the recount reads; the recount's
+        // snapshot already sees transaction 100 but not 105, which was still in progress when it was taken
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(100L, 105L);
+        when(jdbcTemplate.queryForObject(anyString(), eq(String.class))).thenReturn("101:106:105");
+        List<TransactionSynchronization> commits;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            statisticsService.deviceChanged(null, new DeviceState(Device.DeviceStatus.ONLINE, "BMS"));
+            statisticsService.deviceChanged(null, new DeviceState(Device.DeviceStatus.ONLINE, "BMS"));
+            commits = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        when(deviceRepository.countGroupedByStatus()).thenAnswer(invocation -> {
+            commits.forEach(TransactionSynchronization::afterCommit);
+            return List.of(statusCount(Device.DeviceStatus.ONLINE, 4), statusCount(Device.DeviceStatus.OFFLINE, 2));
+        });
+        when(deviceRepository.countGroupedByTypeName()).thenReturn(List.of(
+            typeCount("BMS", 5), typeCount("SOLAR_ARRAY", 1), typeCount("EV_CHARGER", 0)));
+
+        statisticsService.reconcile();
+
+        DeviceService.DeviceStatistics statistics = statisticsService.getDeviceStatistics();
+        assertThat(statistics.totalDevices()).isEqualTo(7);
+        assertThat(statistics.onlineDevices()).isEqualTo(5);
+        assertThat(statistics.devicesByType()).containsEntry("BMS", 6L);
+        assertThat(statistics.reconciliation().driftedReconciliations()).isZero();
+    }
+
+    private static DeviceRepository.StatusCount statusCount(Device.DeviceStatus status, long count) {
+        return new DeviceRepository.StatusCount() {
+            public Device.DeviceStatus getStatus() {
+                return status;
+            }
+
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+
+    private static DeviceRepository.TypeCount typeCount(String typeName, long count) {
+        return new DeviceRepository.TypeCount() {
+            public String getTypeName() {
+                return typeName;
+            }
+
+            public long getCount() {
+                return count;
+            }
+        };
+    }
+
+    private static SiteRepository.StatusCapacity siteCount(Site.SiteStatus status, long count, String capacityMw) {
+        return new SiteRepository.StatusCapacity() {
+            public Site.SiteStatus getStatus() {
+                return status;
+            }
+
+            public long getCount() {
+                return count;
+            }
+
+            public BigDecimal getCapacityMw() {
+                return new BigDecimal(capacityMw);
+            }
+        };
+    }
+}
@@ -0,0 +1,87 @@
+package com.ecogrid.ems.device.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for LttbDownsampler
+ */
+class LttbDownsamplerTest {
+
+    @Test
+    void passThrough_ShouldKeepEveryPoint() {
+        LttbDownsampler sampler = LttbDownsampler.passThrough(2);
+        for (int i = 0; i < 5; i++) {
+            sampler.add(0, i, i, i * 10);
+        }
+
+        LttbDownsampler.Series series = sampler.finish();
+
+        assertThat(series.timestamps()).containsExactly(0, 1, 2, 3, 4);
+        assertThat(series.values()).containsExactly(0, 10, 20, 30, 40);
+    }
+
+    @Test
+    void downsampling_ShouldKeepFirstLastAndOnePointPerBucket() {
+        // 1000 points of a sine wave over 10 buckets of 100
+        int points = 1000;
+        int buckets = 10;
+        double[] y = new double[points];
+        for (int i = 0; i < points; i++) {
+            y[i] = Math.sin(i / 50.0);
+        }
+        LttbDownsampler.Series series = downsample(y, buckets);
+
+        assertThat(series.timestamps()).hasSize(buckets + 2);
+        assertThat(series.timestamps()[0]).isZero();
+        assertThat(series.timestamps()[buckets + 1]).isEqualTo(points - 1);
+        assertThat(series.timestamps()).isSorted();
+        for (int b = 0; b < buckets; b++) {
+            assertThat(series.timestamps()[b + 1] / 100).isEqualTo(b);
+        }
+    }
+
+    @Test
+    void downsampling_ShouldPreserveSpikes() {
+        double[] y = new double[1000];
+        y[437] = 100;
+        y[812] = -100;
+
+        LttbDownsampler.Series series = downsample(y, 10);
+
+        assertThat(series.values()).contains(100, -100);
+        assertThat(series.timestamps()).contains(437L, 812L);
+    }
+
+    @Test
+    void downsampling_ShouldSkipEmptyBuckets() {
+        LttbDownsampler sampler = LttbDownsampler.downsampling(
+            new double[] {0.5, Double.NaN, 4.5}, new double[] {1, Double.NaN, 1}, 5, 5, 1);
+        for (int x : new int[] {0, 1, 4, 5}) {
+            sampler.add(x / 2, x, x, 1);
+        }
+
+        LttbDownsampler.Series series = sampler.finish();
+
+        assertThat(series.timestamps()).containsExactly(0, 1, 4, 5);
+    }
+
+    private LttbDownsampler.Series downsample(double[] y, int buckets) {
+        int perBucket = y.length / buckets;
+        double[] avgX = new double[buckets];
+        double[] avgY = new double[buckets];
+        for (int b = 0; b < buckets; b++) {
+            avgX[b] = b * perBucket + (perBucket - 1) / 2.0;
+            avgY[b] = Arrays.stream(y, b * perBucket, (b + 1) * perBucket).average().orElseThrow();
+        }
+        int last = y.length - 1;
+        LttbDownsampler sampler = LttbDownsampler.downsampling(avgX, avgY, last, last, y[last]);
+        for (int i = 0; i < y.length; i++) {
+            sampler.add(i / perBucket, i, i, y[i]);
+        }
+        return sampler.finish();
+    }
+}
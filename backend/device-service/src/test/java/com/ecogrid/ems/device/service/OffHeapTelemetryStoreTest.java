@@ -0,0 +1,149 @@
+package com.ecogrid.ems.device.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for OffHeapTelemetryStore
+ */
+class OffHeapTelemetryStoreTest {
+
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 5, 1, 12, 30, 15);
+
+    @Test
+    void put_ShouldStoreSchemaFieldsAndReportReplacedTimestamp() {
+        OffHeapTelemetryStore store = OffHeapTelemetryStore.inMemory(8);
+
+        OffHeapTelemetryStore.WriteResult first = store.put(3L, TelemetrySchema.BMS, "BMS", TIMESTAMP,
+            Map.of("soc", 81.5, "cycleCount", 1200, "healthStatus", "GOOD"));
+        OffHeapTelemetryStore.WriteResult second = store.put(3L, TelemetrySchema.BMS, "BMS", TIMESTAMP.plusMinutes(1),
+            Map.of("soc", 80.0));
+
+        assertThat(first.stored()).isTrue();
+        assertThat(first.previousTimestamp()).isNull();
+        assertThat(second.previousTimestamp()).isEqualTo(TIMESTAMP);
+
+        DeviceTelemetryCacheService.CachedTelemetryData data = store.get(3L);
+        assertThat(data.getTimestamp()).isEqualTo(TIMESTAMP.plusMinutes(1));
+        assertThat(data.getTelemetryData()).containsOnlyKeys("soc").containsEntry("soc", 80.0);
+        assertThat(store.getStoredDevices()).isEqualTo(1L);
+    }
+
+    @Test
+    void put_ShouldRoundTripFieldsWithoutSlotAndTelemetryType() {
+        OffHeapTelemetryStore store = OffHeapTelemetryStore.inMemory(8);
+        Map<String, Object> data = new HashMap<>();
+        data.put("soc", 81.5);
+        data.put("voltage", "n/a");
+        data.put("energy", 1250.5);
+        data.put("healthStatus", "GOOD");
+        data.put("balancing", true);
+        data.put("alarms", List.of("HIGH_TEMP"));
+
+        store.put(2L, TelemetrySchema.BMS, "BMSTelemetryDTO", TIMESTAMP, data);
+        DeviceTelemetryCacheService.CachedTelemetryData cached = store.get(2L);
+
+        assertThat(cached.getTelemetryType()).isEqualTo("BMSTelemetryDTO");
+        assertThat(cached.getTelemetryData()).isEqualTo(data);
+
+        // A later sample without the extra fields drops them
+        store.put(2L, TelemetrySchema.BMS, "BMS", TIMESTAMP.plusMinutes(1), Map.of("soc", 80.0));
+        assertThat(store.get(2L).getTelemetryData()).containsOnlyKeys("soc");
+        assertThat(store.get(2L).getTelemetryType()).isEqualTo("BMS");
+    }
+
+    @Test
+    void putIfNotOlder_ShouldKeepNewerValue() {
+        OffHeapTelemetryStore store = OffHeapTelemetryStore.inMemory(8);
+        store.put(4L, TelemetrySchema.BMS, null, TIMESTAMP, Map.of("soc", 70.0));
+
+        OffHeapTelemetryStore.WriteResult older = store.putIfNotOlder(4L, TelemetrySchema.BMS, null,
+            TIMESTAMP.minusMinutes(1), Map.of("soc", 60.0));
+        OffHeapTelemetryStore.WriteResult same = store.putIfNotOlder(4L, TelemetrySchema.BMS, null,
+            TIMESTAMP, Map.of("soc", 70.0, "healthStatus", "GOOD"));
+
+        assertThat(older.stored()).isFalse();
+        assertThat(older.keptNewer()).isTrue();
+        assertThat(same.stored()).isTrue();
+        assertThat(store.get(4L).getTelemetryData()).containsEntry("soc", 70.0).containsEntry("healthStatus", "GOOD");
+    }
+
+    @Test
+    void put_ShouldRejectDevicesOutsideCapacity() {
+        OffHeapTelemetryStore store = OffHeapTelemetryStore.inMemory(8);
+
+        assertThat(store.put(8L, TelemetrySchema.EV_CHARGER, null, TIMESTAMP, Map.of("activeSessions", 2)).stored())
+            .isFalse();
+        assertThat(store.get(8L)).isNull();
+        assertThat(store.getAll(List.of(1L, 8L))).isEmpty();
+    }
+
+    @Test
+    void put_ShouldKeepEnumeratedStatusesAndKnownTypesInTheSlotAndSpillWhatDoesNotFit() {
+        OffHeapTelemetryStore store = OffHeapTelemetryStore.inMemory(8, OffHeapTelemetryStore.MIN_SLOT_SIZE);
+        store.put(1L, TelemetrySchema.BMS, "Battery Storage", TIMESTAMP, Map.of("soc", 60.0, "healthStatus", "GOOD"));
+        store.put(2L, TelemetrySchema.EV_CHARGER, "EV Charger", TIMESTAMP,
+            Map.of("activeSessions", 2, "paymentSystemStatus", "ONLINE", "networkConnectivity", false));
+
+        OffHeapTelemetryStore.WriteResult spilled = store.put(1L, TelemetrySchema.BMS, "BMS", TIMESTAMP.plusMinutes(1),
+            Map.of("soc", 61.0, "alarms", List.of("HIGH_TEMP")));
+
+        assertThat(store.get(2L).getTelemetryType()).isEqualTo("EV Charger");
+        assertThat(store.get(2L).getTelemetryData()).containsEntry("paymentSystemStatus", "ONLINE")
+            .containsEntry("networkConnectivity", false);
+        assertThat(spilled.stored()).isFalse();
+        assertThat(spilled.spilled()).isTrue();
+        assertThat(spilled.keptNewer()).isFalse();
+        assertThat(spilled.previousTimestamp()).isEqualTo(TIMESTAMP);
+        assertThat(store.get(1L)).isNull();
+        assertThat(store.getStoredDevices()).isEqualTo(1L);
+        assertThat(store.getSpilledWrites()).isEqualTo(1L);
+    }
+
+    @Test
+    void mappedStore_ShouldSurviveReopen(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("telemetry.dat");
+        Map<String, Object> bms = new HashMap<>();
+        bms.put("soc", 64.5);
+        bms.put("cycleCount", 1200L);
+        bms.put("healthStatus", "GOOD");
+        bms.put("moduleTemperatures", List.of(24.5, 25.0, 26.25));
+        bms.put("alarms", List.of("HIGH_TEMP"));
+        bms.put("warnings", List.of());
+        bms.put("lastMaintenance", null);
+        Map<String, Object> charger = new HashMap<>();
+        charger.put("chargerId", "CH-1");
+        charger.put("status", "CHARGING");
+        charger.put("powerOutput", 50.0);
+        try (OffHeapTelemetryStore store = OffHeapTelemetryStore.mapped(file, 16)) {
+            store.put(4L, TelemetrySchema.BMS, "BMSTelemetryDTO", TIMESTAMP, bms);
+            store.put(5L, TelemetrySchema.EV_CHARGER, null, TIMESTAMP, Map.of("activeSessions", 4, "powerDelivered", 22.5,
+                "networkConnectivity", true, "chargerData", List.of(charger)));
+            store.put(6L, TelemetrySchema.SOLAR_ARRAY, null, TIMESTAMP, Map.of("currentOutput", 640.0));
+            store.remove(6L);
+        }
+
+        try (OffHeapTelemetryStore reopened = OffHeapTelemetryStore.mapped(file, 16)) {
+            assertThat(reopened.getStoredDevices()).isEqualTo(2L);
+            DeviceTelemetryCacheService.CachedTelemetryData battery = reopened.get(4L);
+            assertThat(battery.getTelemetryType()).isEqualTo("BMSTelemetryDTO");
+            assertThat(battery.getTelemetryData()).isEqualTo(bms);
+            DeviceTelemetryCacheService.CachedTelemetryData data = reopened.get(5L);
+            assertThat(data.getTelemetryType()).isEqualTo("EV_CHARGER");
+            assertThat(data.getTelemetryData())
+                .containsEntry("activeSessions", 4L)
+                .containsEntry("powerDelivered", 22.5)
+                .containsEntry("networkConnectivity", true)
+                .containsEntry("chargerData", List.of(charger));
+            assertThat(reopened.get(6L)).isNull();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.telemetry.RawTelemetryMessage;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for RawTelemetryConsumer, fed by records as RawTelemetryBridge publishes them
+ */
+class RawTelemetryConsumerTest {
+
+    private DeviceTelemetryProcessor processor;
+    private RawTelemetryConsumer consumer;
+    private KafkaTemplate<String, Object> kafkaTemplate;
+    private RawTelemetryBridge bridge;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        processor = mock(DeviceTelemetryProcessor.class);
+        consumer = new RawTelemetryConsumer(processor);
+        kafkaTemplate = mock(KafkaTemplate.class);
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null));
+        bridge = new RawTelemetryBridge(kafkaTemplate, "telemetry-raw");
+    }
+
+    @Test
+    void publish_ShouldKeyByDeviceAndDropInvalidTopics() {
+        ProducerRecord<String, Object> record = publish("ecogrid/site2/bms/007", "{\"soc\":50}", 1234L);
+
+        assertThat(record.topic()).isEqualTo("telemetry-raw");
+        assertThat(record.key()).isEqualTo("BMS-SITE2-007");
+        assertThat(new String((byte[]) record.value(), StandardCharsets.UTF_8)).isEqualTo("{\"soc\":50}");
+        assertThat(bridge.publish("ems/site2/bms/telemetry", "{}", 1L)).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void consume_ShouldProcessRecordsAsOneBatchWithArrivalTimes() {
+        consumer.consume(List.of(
+            consumerRecord(publish("ecogrid/site1/bms/001", "{\"soc\":80}", 1000L)),
+            consumerRecord(publish("ecogrid/site1/bms/001", "{\"soc\":79}", 2000L))));
+
+        ArgumentCaptor<List<RawTelemetryMessage>> batch = ArgumentCaptor.forClass(List.class);
+        verify(processor).processTelemetryBatch(batch.capture());
+        assertThat(batch.getValue()).containsExactly(
+            new RawTelemetryMessage("ecogrid/site1/bms/001", "{\"soc\":80}", 1000L),
+            new RawTelemetryMessage("ecogrid/site1/bms/001", "{\"soc\":79}", 2000L));
+    }
+
+    @Test
+    void consume_ShouldRethrowDownstreamFailuresSoTheBatchIsRetried() {
+        doThrow(new QueryTimeoutException("timeout")).when(processor).processTelemetryBatch(anyList());
+
+        assertThatThrownBy(() -> consumer.consume(List.of(consumerRecord(publish("ecogrid/site1/bms/001", "{}", 1L)))))
+            .isInstanceOf(QueryTimeoutException.class);
+        verify(processor, never()).processTelemetryMessage(anyString(), anyString(), anyLong());
+    }
+
+    @Test
+    void consume_ShouldFallBackToSingleMessagesWhenBatchHasBadSample() {
+        doThrow(new DataIntegrityViolationException("bad")).when(processor).processTelemetryBatch(anyList());
+        doThrow(new DataIntegrityViolationException("bad")).when(processor)
+            .processTelemetryMessage(eq("ecogrid/site1/bms/001"), anyString(), anyLong());
+
+        consumer.consume(List.of(
+            consumerRecord(publish("ecogrid/site1/bms/001", "{\"soc\":-1}", 1L)),
+            consumerRecord(publish("ecogrid/site1/bms/002", "{\"soc\":70}", 2L))));
+
+        verify(processor).processTelemetryMessage("ecogrid/site1/bms/002", "{\"soc\":70}", 2L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ProducerRecord<String, Object> publish(String topic, String payload, long receivedAt) {
+        bridge.publish(topic, payload, receivedAt);
+        ArgumentCaptor<ProducerRecord<String, Object>> sent = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, atLeastOnce()).send(sent.capture());
+        return sent.getValue();
+    }
+
+    private static ConsumerRecord<String, byte[]> consumerRecord(ProducerRecord<String, Object> sent) {
+        ConsumerRecord<String, byte[]> record = new ConsumerRecord<>(sent.topic(), 0, 0L, sent.key(), (byte[]) sent.value());
+        sent.headers().forEach(header -> record.headers().add(header));
+        return record;
+    }
+}
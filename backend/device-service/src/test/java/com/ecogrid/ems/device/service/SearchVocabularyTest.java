@@ -0,0 +1,46 @@
+package com.ecogrid.ems.device.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for SearchVocabulary
+ */
+class SearchVocabularyTest {
+
+    private final SearchVocabulary vocabulary = new SearchVocabulary(List.of(
+        "battery", "batteries", "harbor", "inverter", "charger", "rack", "north"));
+
+    @Test
+    void correct_ShouldReplaceMisspeltWordsAndKeepSeparators() {
+        assertThat(vocabulary.correct("batery", 0.4)).isEqualTo("battery");
+        assertThat(vocabulary.correct("harbr-inverterr 12", 0.4)).isEqualTo("harbor-inverter 12");
+    }
+
+    @Test
+    void correct_ShouldReturnNullWhenNothingChanges() {
+        assertThat(vocabulary.correct("battery rack", 0.4)).isNull();
+        assertThat(vocabulary.correct("zzzzz", 0.4)).isNull();
+        assertThat(SearchVocabulary.EMPTY.correct("batery", 0.4)).isNull();
+    }
+
+    @Test
+    void correct_ShouldLeaveNumbersAndShortWordsAlone() {
+        assertThat(vocabulary.correct("ra 1234 batery", 0.4)).isEqualTo("ra 1234 battery");
+    }
+
+    @Test
+    void correct_ShouldRespectThreshold() {
+        assertThat(vocabulary.correct("harbr", 0.4)).isEqualTo("harbor");
+        assertThat(vocabulary.correct("harbr", 0.6)).isNull();
+    }
+
+    @Test
+    void trigrams_ShouldPadLikePgTrgm() {
+        assertThat(SearchVocabulary.trigrams("cat")).containsExactlyInAnyOrder("  c", " ca", "cat", "at ");
+        assertThat(SearchVocabulary.words("North Harbor/Rack-07")).containsExactly("north", "harbor", "rack", "07");
+    }
+}
@@ -0,0 +1,89 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.shared.dto.websocket.EMSWebSocketDelta;
+import com.ecogrid.ems.shared.dto.websocket.EMSWebSocketMessage;
+import com.ecogrid.ems.shared.service.WebSocketDeltaService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for SiteDeltaStreamService
+ */
+class SiteDeltaStreamServiceTest {
+
+    private WebSocketDeltaService deltaService;
+    private SiteDeltaStreamService streamService;
+
+    @BeforeEach
+    void setUp() {
+        deltaService = new WebSocketDeltaService();
+        streamService = new SiteDeltaStreamService(deltaService, new ObjectMapper().findAndRegisterModules(), 4, 64, 60);
+    }
+
+    @Test
+    void stream_ShouldResumeAfterLastEventId() {
+        for (int i = 0; i < 3; i++) {
+            streamService.publish(1L, delta());
+        }
+
+        List<ServerSentEvent<String>> events = streamService.stream(1L, 1L)
+            .take(2)
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+        assertThat(events).extracting(ServerSentEvent::id).containsExactly("2", "3");
+        assertThat(events.get(0).event()).isEqualTo("DELTA_UPDATE");
+        assertThat(events.get(0).data()).contains("\"siteId\":\"1\"");
+    }
+
+    @Test
+    void stream_ShouldStartWithSnapshotForNewOrStaleClients() {
+        deltaService.generateDelta("1", EMSWebSocketMessage.builder()
+            .siteId("1")
+            .timestamp(LocalDateTime.now())
+            .type(EMSWebSocketMessage.MessageType.SITE_UPDATE)
+            .build());
+        for (int i = 0; i < 6; i++) {
+            streamService.publish(1L, delta());
+        }
+
+        // Event 1 has already left the four-entry ring
+        ServerSentEvent<String> first = streamService.stream(1L, 1L)
+            .blockFirst(Duration.ofSeconds(5));
+
+        assertThat(first.event()).isEqualTo(SiteDeltaStreamService.SNAPSHOT_EVENT);
+        assertThat(first.id()).isEqualTo("6");
+        assertThat(streamService.getCurrentSequence(1L)).isEqualTo(6L);
+    }
+
+    @Test
+    void stream_ShouldDeliverLiveEventsAfterSubscribe() throws Exception {
+        streamService.publish(1L, delta());
+
+        CompletableFuture<List<ServerSentEvent<String>>> events = streamService.stream(1L, null)
+            .take(1)
+            .collectList()
+            .toFuture();
+        streamService.publish(1L, delta());
+
+        assertThat(events.get(5, TimeUnit.SECONDS)).extracting(ServerSentEvent::id).containsExactly("2");
+    }
+
+    private EMSWebSocketDelta delta() {
+        return EMSWebSocketDelta.builder()
+            .siteId("1")
+            .timestamp(LocalDateTime.now())
+            .type(EMSWebSocketDelta.MessageType.DELTA_UPDATE)
+            .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.config.CacheConfig;
+import com.ecogrid.ems.device.dto.site.SiteDeviceDTO;
+import com.ecogrid.ems.device.dto.site.SiteOverviewDTO;
+import com.ecogrid.ems.device.dto.telemetry.BMSTelemetryDTO;
+import com.ecogrid.ems.device.service.SiteOverviewSnapshotService.OverviewSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for SiteOverviewSnapshotService
+ */
+class SiteOverviewSnapshotServiceTest {
+
+    private SiteOverviewService siteOverviewService;
+    private DeviceTelemetryCacheService cacheService;
+    private SiteOverviewSnapshotService snapshotService;
+    private String description = "Original";
+
+    @BeforeEach
+    void setUp() {
+        CacheConfig cacheConfig = new CacheConfig();
+        ReflectionTestUtils.setField(cacheConfig, "deviceTelemetryMaxSize", 100L);
+        ReflectionTestUtils.setField(cacheConfig, "deviceTelemetryExpireAfterWrite", Duration.ofHours(1));
+        ReflectionTestUtils.setField(cacheConfig, "deviceStatusMaxSize", 10L);
+        ReflectionTestUtils.setField(cacheConfig, "deviceStatusExpireAfterWrite", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cacheConfig, "siteOverviewMaxSize", 10L);
+        ReflectionTestUtils.setField(cacheConfig, "siteOverviewExpireAfterWrite", Duration.ofMinutes(1));
+        TelemetryTimestampRange timestampRange = cacheConfig.telemetryTimestampRange();
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        cacheService = new DeviceTelemetryCacheService(objectMapper, cacheConfig.cacheManager(timestampRange),
+            timestampRange, beanFactory.getBeanProvider(OffHeapTelemetryStore.class),
+            beanFactory.getBeanProvider(RedisTelemetryStore.class));
+
+        siteOverviewService = mock(SiteOverviewService.class);
+        when(siteOverviewService.getSiteOverview(1L)).thenAnswer(invocation -> Optional.of(overview(1L, 10L)));
+        when(siteOverviewService.getSiteOverview(2L)).thenAnswer(invocation -> Optional.of(overview(2L, 20L)));
+        when(siteOverviewService.getSiteOverview(99L)).thenReturn(Optional.empty());
+
+        snapshotService = new SiteOverviewSnapshotService(siteOverviewService, cacheService, objectMapper);
+        ReflectionTestUtils.setField(snapshotService, "maxAge", Duration.ofMinutes(5));
+    }
+
+    @Test
+    void getSnapshot_ShouldReuseSerializedSnapshotWhileSiteIsUnchanged() {
+        OverviewSnapshot first = snapshotService.getSnapshot(1L).orElseThrow();
+        OverviewSnapshot second = snapshotService.getSnapshot(1L).orElseThrow();
+
+        assertThat(second).isSameAs(first);
+        assertThat(new String(first.body(), StandardCharsets.UTF_8)).contains("\"name\":\"Site 1\"");
+        verify(siteOverviewService, times(1)).getSiteOverview(1L);
+    }
+
+    @Test
+    void getSnapshot_ShouldRebuildOnlyAfterTelemetryOfOwnDeviceChanges() {
+        OverviewSnapshot site1 = snapshotService.getSnapshot(1L).orElseThrow();
+        OverviewSnapshot site2 = snapshotService.getSnapshot(2L).orElseThrow();
+
+        description = "Changed";
+        cacheService.cacheLatestTelemetry(10L, bms());
+
+        assertThat(snapshotService.getSnapshot(1L).orElseThrow().etag()).isNotEqualTo(site1.etag());
+        assertThat(snapshotService.getSnapshot(2L).orElseThrow()).isSameAs(site2);
+    }
+
+    @Test
+    void invalidateSite_ShouldChangeEtag() {
+        OverviewSnapshot before = snapshotService.getSnapshot(1L).orElseThrow();
+
+        description = "Changed";
+        snapshotService.invalidateSite(1L);
+
+        OverviewSnapshot after = snapshotService.getSnapshot(1L).orElseThrow();
+        assertThat(after.etag()).isNotEqualTo(before.etag());
+        assertThat(after.matches(before.etag())).isFalse();
+        assertThat(after.matches("W/" + after.etag())).isTrue();
+    }
+
+    @Test
+    void getSnapshot_ShouldKeepBodyAndEtagWhenRebuildChangesNothing() throws Exception {
+        ReflectionTestUtils.setField(snapshotService, "maxAge", Duration.ZERO);
+        OverviewSnapshot first = snapshotService.getSnapshot(1L).orElseThrow();
+        Thread.sleep(5);
+
+        OverviewSnapshot second = snapshotService.getSnapshot(1L).orElseThrow();
+
+        verify(siteOverviewService, times(2)).getSiteOverview(1L);
+        assertThat(second.etag()).isEqualTo(first.etag());
+        assertThat(second.body()).isSameAs(first.body());
+        assertThat(second.matches(first.etag())).isTrue();
+    }
+
+    @Test
+    void getSnapshot_ShouldReturnEmptyForUnknownSite() {
+        assertThat(snapshotService.getSnapshot(99L)).isEmpty();
+    }
+
+    private SiteOverviewDTO overview(Long siteId, Long deviceId) {
+        SiteDeviceDTO device = new SiteDeviceDTO();
+        device.setId(deviceId);
+        SiteOverviewDTO overview = new SiteOverviewDTO();
+        overview.setId(siteId);
+        overview.setName("Site " + siteId);
+        overview.setDescription(description);
+        overview.setLastUpdated(LocalDateTime.now());
+        overview.setDevices(List.of(device));
+        return overview;
+    }
+
+    private BMSTelemetryDTO bms() {
+        BMSTelemetryDTO dto = new BMSTelemetryDTO();
+        dto.setTimestamp(LocalDateTime.of(2024, 1, 1, 10, 0));
+        dto.setSoc(new BigDecimal("55.0"));
+        return dto;
+    }
+}
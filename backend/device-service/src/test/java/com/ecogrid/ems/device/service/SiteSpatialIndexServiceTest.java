@@ -0,0 +1,135 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.site.SiteLocation;
+import com.ecogrid.ems.device.entity.Site;
+import com.ecogrid.ems.device.repository.SiteRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for SiteSpatialIndexService
+ */
+class SiteSpatialIndexServiceTest {
+
+    private SiteRepository siteRepository;
+    private JdbcTemplate jdbcTemplate;
+    private SiteSpatialIndexService spatialIndexService;
+
+    @BeforeEach
+    void setUp() {
+        siteRepository = mock(SiteRepository.class);
+        SiteRepository.LocationRow row = mock(SiteRepository.LocationRow.class);
+        when(row.getId()).thenReturn(1L);
+        when(row.getName()).thenReturn("Harbor");
+        when(row.getStatus()).thenReturn(Site.SiteStatus.ACTIVE);
+        when(row.getLocationLat()).thenReturn(new BigDecimal("51.50720000"));
+        when(row.getLocationLng()).thenReturn(new BigDecimal("-0.12760000"));
+        when(row.getCapacityMw()).thenReturn(new BigDecimal("12.500"));
+        when(siteRepository.findAllLocations()).thenReturn(List.of(row));
+        jdbcTemplate = mock(JdbcTemplate.class);
+        spatialIndexService = new SiteSpatialIndexService(siteRepository, jdbcTemplate,
+            mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(spatialIndexService, "cellDegrees", 0.5);
+        ReflectionTestUtils.setField(spatialIndexService, "maxResults", 2);
+    }
+
+    @Test
+    void findInArea_ShouldLoadOnceAndCapResults() {
+        assertThat(spatialIndexService.findInArea(50, 52, -1, 1).sites()).extracting(SiteLocation::name)
+            .containsExactly("Harbor");
+
+        spatialIndexService.siteChanged(site(2L, "51.6", "-0.2"));
+        spatialIndexService.siteChanged(site(3L, "51.7", "-0.3"));
+        SiteSpatialIndexService.AreaSites area = spatialIndexService.findInArea(50, 52, -1, 1);
+
+        assertThat(area.sites()).hasSize(2);
+        assertThat(area.total()).isEqualTo(3);
+        verify(siteRepository, times(1)).findAllLocations();
+    }
+
+    @Test
+    void siteChanged_ShouldMoveAndDropSites() {
+        spatialIndexService.reload();
+
+        spatialIndexService.siteChanged(site(1L, "48.8566", "2.3522"));
+        assertThat(spatialIndexService.findNearest(48.85, 2.35, 5)).extracting(nearby -> nearby.site().name())
+            .containsExactly("Site 1");
+        assertThat(spatialIndexService.findInArea(50, 52, -1, 1).total()).isZero();
+
+        spatialIndexService.siteChanged(site(1L, null, null));
+        assertThat(spatialIndexService.findNearest(0, 0, 5)).isEmpty();
+
+        spatialIndexService.siteChanged(site(2L, "1", "1"));
+        spatialIndexService.siteDeleted(2L);
+        assertThat(spatialIndexService.findNearest(0, 0, 5)).isEmpty();
+    }
+
+    @Test
+    void reload_ShouldNotReplayChangesItsSnapshotAlreadySees() {
+        spatialIndexService.reload();
+        // Transaction 100 moves the site to Paris and commits while the reload reads; its snapshot already sees
+        // that and a later write, bypassing the service, that moved the site back
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(100L);
+        when(jdbcTemplate.queryForObject(anyString(), eq(String.class))).thenReturn("102:102:");
+        List<TransactionSynchronization> commits;
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            spatialIndexService.siteChanged(site(1L, "48.8566", "2.3522"));
+            commits = TransactionSynchronizationManager.getSynchronizations();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        List<SiteRepository.LocationRow> rows = siteRepository.findAllLocations();
+        when(siteRepository.findAllLocations()).thenAnswer(invocation -> {
+            commits.forEach(TransactionSynchronization::afterCommit);
+            return rows;
+        });
+
+        spatialIndexService.reload();
+
+        assertThat(spatialIndexService.findInArea(50, 52, -1, 1).sites()).extracting(SiteLocation::name)
+            .containsExactly("Harbor");
+        assertThat(spatialIndexService.findNearest(48.85, 2.35, 5)).extracting(nearby -> nearby.site().name())
+            .containsExactly("Harbor");
+    }
+
+    @Test
+    void queries_ShouldRejectInvalidArguments() {
+        assertThatThrownBy(() -> spatialIndexService.findInArea(10, 5, 0, 1))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("minLat must not be greater than maxLat");
+        assertThatThrownBy(() -> spatialIndexService.findWithinRadius(91, 0, 10, 10))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("Latitude must be between -90 and 90");
+        assertThatThrownBy(() -> spatialIndexService.findWithinRadius(0, 0, 0, 10))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("radiusKm must be positive");
+        assertThatThrownBy(() -> spatialIndexService.findNearest(0, 0, 0))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("limit must be positive");
+        assertThatThrownBy(() -> spatialIndexService.getTiles(23, -90, 90, -180, 180))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("zoom must be between 0 and 22");
+    }
+
+    private static Site site(Long id, String lat, String lng) {
+        Site site = new Site();
+        site.setId(id);
+        site.setName("Site " + id);
+        site.setLocationLat(lat != null ? new BigDecimal(lat) : null);
+        site.setLocationLng(lng != null ? new BigDecimal(lng) : null);
+        return site;
+    }
+}
@@ -0,0 +1,90 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.site.NearbySite;
+import com.ecogrid.ems.device.dto.site.SiteLocation;
+import com.ecogrid.ems.device.dto.site.SiteTile;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Unit tests for SiteSpatialIndex
+ */
+class SiteSpatialIndexTest {
+
+    private static final SiteLocation LONDON = site(1, 51.5072, -0.1276, 10.0);
+    private static final SiteLocation PARIS = site(2, 48.8566, 2.3522, 5.5);
+    private static final SiteLocation TOKYO = site(3, 35.6762, 139.6503, 2.25);
+    private static final SiteLocation SYDNEY = site(4, -33.8688, 151.2093, null);
+    private static final SiteLocation FIJI = site(5, -17.7134, 178.0650, 1.0);
+    private static final SiteLocation SAMOA = site(6, -13.7590, -172.1046, 1.0);
+
+    private final SiteSpatialIndex index = new SiteSpatialIndex(List.of(LONDON, PARIS, TOKYO, SYDNEY, FIJI, SAMOA), 0.5);
+
+    @Test
+    void within_ShouldReturnSitesInsideBoxIncludingAcrossAntimeridian() {
+        assertThat(index.within(45, 55, -5, 5)).containsExactlyInAnyOrder(LONDON, PARIS);
+        assertThat(index.within(-20, -10, 170, -170)).containsExactlyInAnyOrder(FIJI, SAMOA);
+        assertThat(index.within(-90, 90, -180, 180)).hasSize(6);
+        assertThat(index.within(0, 10, 0, 10)).isEmpty();
+    }
+
+    @Test
+    void withinRadius_ShouldReturnSitesInRangeNearestFirst() {
+        List<NearbySite> nearby = index.withinRadius(51.5, 0, 400, 10);
+
+        assertThat(nearby).extracting(NearbySite::site).containsExactly(LONDON, PARIS);
+        assertThat(nearby.get(1).distanceKm()).isCloseTo(337, within(5.0));
+        assertThat(index.withinRadius(51.5, 0, 400, 1)).extracting(NearbySite::site).containsExactly(LONDON);
+        // Circle crossing the antimeridian
+        assertThat(index.withinRadius(-16, 179.9, 1000, 10)).extracting(NearbySite::site).containsExactly(FIJI, SAMOA);
+    }
+
+    @Test
+    void nearest_ShouldMatchBruteForce() {
+        Random random = new Random(42);
+        List<SiteLocation> sites = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            sites.add(site(id, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180, 1.0));
+        }
+        SiteSpatialIndex randomIndex = new SiteSpatialIndex(sites, 0.5);
+
+        for (int query = 0; query < 50; query++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lng = random.nextDouble() * 360 - 180;
+            List<Long> expected = sites.stream()
+                .sorted(Comparator.comparingDouble((SiteLocation site) ->
+                    SiteSpatialIndex.distanceKm(lat, lng, site.locationLat(), site.locationLng())))
+                .limit(7).map(SiteLocation::id).toList();
+
+            assertThat(randomIndex.nearest(lat, lng, 7)).extracting(nearby -> nearby.site().id())
+                .containsExactlyElementsOf(expected);
+        }
+        assertThat(index.nearest(0, 0, 100)).hasSize(6);
+        assertThat(new SiteSpatialIndex(List.of(), 0.5).nearest(0, 0, 3)).isEmpty();
+    }
+
+    @Test
+    void tiles_ShouldAggregateCountCapacityAndCentroidPerTile() {
+        List<SiteTile> tiles = index.tiles(1, -60, 60, -10, 160);
+
+        assertThat(tiles).extracting(tile -> tile.x() + "/" + tile.y() + ":" + tile.siteCount())
+            .containsExactly("0/0:1", "1/0:2", "1/1:1");
+        SiteTile parisAndTokyo = tiles.get(1);
+        assertThat(parisAndTokyo.capacityMw()).isEqualTo(7.75);
+        assertThat(parisAndTokyo.centroidLat()).isCloseTo((48.8566 + 35.6762) / 2, within(1e-9));
+        assertThat(tiles.get(2).capacityMw()).isZero();
+        assertThat(index.tiles(0, -90, 90, -180, 180)).singleElement()
+            .satisfies(tile -> assertThat(tile.siteCount()).isEqualTo(6));
+    }
+
+    private static SiteLocation site(long id, double lat, double lng, Double capacityMw) {
+        return new SiteLocation(id, "Site " + id, "ACTIVE", lat, lng, capacityMw);
+    }
+}
@@ -0,0 +1,92 @@
+package com.ecogrid.ems.device.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for TelemetryBlockCodec
+ */
+class TelemetryBlockCodecTest {
+
+    private static final long HOUR_START = 1_704_067_200_000L;
+
+    @Test
+    void decode_ShouldRestoreIrregularTimestampsAndExactValues() {
+        long[] timestamps = {HOUR_START, HOUR_START + 1000, HOUR_START + 1000, HOUR_START + 2013,
+            HOUR_START + 2990, HOUR_START + 600_000, HOUR_START + 600_001, HOUR_START + 3_599_999};
+        double[] power = {12.5, 12.5, -3.25, 1e-9, 1e300, Double.MIN_VALUE, -0.0, 42};
+
+        TelemetryBlockCodec.DecodedBlock block = roundTrip(timestamps, new String[] {"power"}, power);
+
+        assertThat(block.timestamps()).containsExactly(timestamps);
+        assertThat(block.fields()).containsExactly("power");
+        for (int i = 0; i < power.length; i++) {
+            assertThat(Double.doubleToRawLongBits(block.values()[0][i])).isEqualTo(Double.doubleToRawLongBits(power[i]));
+        }
+    }
+
+    @Test
+    void decode_ShouldKeepAbsentValuesAsNaN() {
+        long[] timestamps = {HOUR_START, HOUR_START + 1000, HOUR_START + 2000, HOUR_START + 3000};
+        double[] soc = {80, 80.5, 81, 81.5};
+        double[] irradiance = {Double.NaN, 640.2, Double.NaN, 655.9};
+
+        TelemetryBlockCodec.DecodedBlock block = roundTrip(timestamps, new String[] {"soc", "irradiance"}, soc, irradiance);
+
+        assertThat(block.values()[block.fieldIndex("soc")]).containsExactly(soc);
+        assertThat(block.values()[block.fieldIndex("irradiance")]).containsExactly(irradiance);
+        assertThat(block.fieldIndex("voltage")).isEqualTo(-1);
+    }
+
+    @Test
+    void encode_ShouldCompressRegularSamplingWellBelowRowSize() {
+        // One hour of 1 Hz readings: a slow soc ramp, a stable voltage and a noisy 0.1-resolution power
+        int count = 3600;
+        long[] timestamps = new long[count];
+        double[] soc = new double[count];
+        double[] voltage = new double[count];
+        double[] power = new double[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = HOUR_START + i * 1000L;
+            soc[i] = 50 + i / 360;
+            voltage[i] = 800;
+            power[i] = Math.round(1000 * (10 + Math.sin(i / 30.0))) / 10.0;
+        }
+
+        byte[] payload = TelemetryBlockCodec.encode(timestamps, count, new String[] {"soc", "voltage", "power"},
+            new double[][] {soc, voltage, power});
+
+        // 8 bytes per timestamp and value uncompressed
+        assertThat(payload.length).isLessThan(count * 32 / 4);
+        TelemetryBlockCodec.DecodedBlock block = TelemetryBlockCodec.decode(payload);
+        assertThat(block.timestamps()).containsExactly(timestamps);
+        assertThat(block.values()[2]).containsExactly(power);
+    }
+
+    @Test
+    void decode_ShouldHandleEmptyAndSingleSampleBlocks() {
+        assertThat(roundTrip(new long[0], new String[] {"soc"}, new double[0]).timestamps()).isEmpty();
+
+        TelemetryBlockCodec.DecodedBlock single = roundTrip(new long[] {HOUR_START}, new String[] {"soc"}, new double[] {7});
+
+        assertThat(single.timestamps()).containsExactly(HOUR_START);
+        assertThat(single.values()[0]).containsExactly(7);
+    }
+
+    @Test
+    void decode_ShouldRejectTruncatedPayloads() {
+        byte[] payload = TelemetryBlockCodec.encode(new long[] {HOUR_START, HOUR_START + 1000}, 2,
+            new String[] {"soc"}, new double[][] {{1, 2}});
+
+        assertThatThrownBy(() -> TelemetryBlockCodec.decode(Arrays.copyOf(payload, 12)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private TelemetryBlockCodec.DecodedBlock roundTrip(long[] timestamps, String[] fields, double[]... values) {
+        return TelemetryBlockCodec.decode(TelemetryBlockCodec.encode(timestamps, timestamps.length, fields, values));
+    }
+}
@@ -0,0 +1,116 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.config.CacheConfig;
+import com.ecogrid.ems.device.dto.telemetry.BMSTelemetryDTO;
+import com.ecogrid.ems.device.service.TelemetryCacheWarmupService.WarmupRow;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for TelemetryCacheWarmupService
+ */
+class TelemetryCacheWarmupServiceTest {
+
+    private static final LocalDateTime SNAPSHOT_TIME = LocalDateTime.of(2024, 1, 1, 10, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private DeviceTelemetryCacheService cacheService;
+    private TelemetryCacheWarmupService warmupService;
+
+    @BeforeEach
+    void setUp() {
+        CacheConfig cacheConfig = new CacheConfig();
+        ReflectionTestUtils.setField(cacheConfig, "deviceTelemetryMaxSize", 1000L);
+        ReflectionTestUtils.setField(cacheConfig, "deviceTelemetryExpireAfterWrite", Duration.ofHours(1));
+        ReflectionTestUtils.setField(cacheConfig, "deviceStatusMaxSize", 10L);
+        ReflectionTestUtils.setField(cacheConfig, "deviceStatusExpireAfterWrite", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cacheConfig, "siteOverviewMaxSize", 10L);
+        ReflectionTestUtils.setField(cacheConfig, "siteOverviewExpireAfterWrite", Duration.ofMinutes(1));
+        TelemetryTimestampRange timestampRange = cacheConfig.telemetryTimestampRange();
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        cacheService = new DeviceTelemetryCacheService(objectMapper, cacheConfig.cacheManager(timestampRange),
+            timestampRange, beanFactory.getBeanProvider(OffHeapTelemetryStore.class),
+            beanFactory.getBeanProvider(RedisTelemetryStore.class));
+
+        jdbcTemplate = mock(JdbcTemplate.class);
+        warmupService = new TelemetryCacheWarmupService(jdbcTemplate, mock(PlatformTransactionManager.class),
+            cacheService, objectMapper);
+        ReflectionTestUtils.setField(warmupService, "chunkSize", 7);
+        ReflectionTestUtils.setField(warmupService, "parallelism", 3);
+        ReflectionTestUtils.setField(warmupService, "fetchSize", 100);
+    }
+
+    @Test
+    void warmUp_ShouldLoadAllRowsInParallelChunksAndReportWarm() {
+        stubRows(IntStream.rangeClosed(1, 50).mapToObj(id -> snapshot(id, SNAPSHOT_TIME)));
+        assertThat(warmupService.isWarm()).isFalse();
+
+        warmupService.warmUp();
+
+        assertThat(warmupService.getState()).isEqualTo(TelemetryCacheWarmupService.State.COMPLETED);
+        assertThat(warmupService.isWarm()).isTrue();
+        assertThat(warmupService.getRowsRead()).isEqualTo(50);
+        assertThat(warmupService.getDevicesWarmed()).isEqualTo(50);
+        DeviceTelemetryCacheService.CachedTelemetryData cached = cacheService.getLatestTelemetry(42L);
+        assertThat(cached.getTimestamp()).isEqualTo(SNAPSHOT_TIME);
+        assertThat(cached.getTelemetryType()).isEqualTo("BMS");
+        assertThat(cached.getTelemetryData()).containsEntry("soc", 61.5).doesNotContainKeys("deviceId", "timestamp");
+    }
+
+    @Test
+    void warmUp_ShouldNotOverwriteNewerLiveTelemetry() {
+        BMSTelemetryDTO live = new BMSTelemetryDTO();
+        live.setTimestamp(SNAPSHOT_TIME.plusMinutes(5));
+        live.setSoc(new BigDecimal("70.0"));
+        cacheService.cacheLatestTelemetry(1L, live);
+        stubRows(Stream.of(snapshot(1, SNAPSHOT_TIME), snapshot(2, SNAPSHOT_TIME)));
+
+        warmupService.warmUp();
+
+        assertThat(warmupService.getDevicesWarmed()).isEqualTo(1);
+        assertThat(cacheService.getLatestTelemetry(1L).getTimestamp()).isEqualTo(SNAPSHOT_TIME.plusMinutes(5));
+        assertThat(cacheService.getLatestTelemetry(2L).getTimestamp()).isEqualTo(SNAPSHOT_TIME);
+    }
+
+    @Test
+    void warmUp_ShouldReportFailureWithoutBlockingReadiness() {
+        when(jdbcTemplate.queryForStream(any(PreparedStatementCreator.class), any(RowMapper.class)))
+            .thenThrow(new IllegalStateException("connection refused"));
+
+        warmupService.warmUp();
+
+        assertThat(warmupService.getState()).isEqualTo(TelemetryCacheWarmupService.State.FAILED);
+        assertThat(warmupService.isWarm()).isTrue();
+        assertThat(warmupService.getFailure()).isEqualTo("connection refused");
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubRows(Stream<WarmupRow> rows) {
+        when(jdbcTemplate.queryForStream(any(PreparedStatementCreator.class), any(RowMapper.class)))
+            .thenReturn((Stream) rows);
+    }
+
+    private WarmupRow snapshot(long deviceId, LocalDateTime timestamp) {
+        return new WarmupRow(deviceId, "BMS", timestamp,
+            "{\"deviceId\":" + deviceId + ",\"timestamp\":\"" + timestamp + "\",\"soc\":61.5}");
+    }
+}
@@ -0,0 +1,107 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceType;
+import com.ecogrid.ems.device.entity.Site;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Unit tests for TelemetryCompressor
+ */
+class TelemetryCompressorTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 0, 0);
+
+    private final TelemetryCompressor compressor = new TelemetryCompressor(true, Duration.ofMinutes(15),
+        "soc:abs:0.5,voltage:pct:1,temperature:swing:0.5", "", "");
+    private final Device battery = device(1L, "BMS");
+
+    @Test
+    void shouldStore_ShouldApplyAbsoluteAndPercentDeadbands() {
+        assertThat(offer(0, Map.of("soc", 80.0, "voltage", 400.0))).isTrue();
+        assertThat(offer(1, Map.of("soc", 80.4, "voltage", 403.9))).isFalse();
+        assertThat(offer(2, Map.of("soc", 79.4, "voltage", 400.0))).isTrue();
+        assertThat(offer(3, Map.of("soc", 79.4, "voltage", 404.1))).isTrue();
+        assertThat(compressor.getStoredSamples()).isEqualTo(3);
+        assertThat(compressor.getSuppressedSamples()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldStore_ShouldFollowSteadyTrendsWithSwingingDoor() {
+        assertThat(offer(0, Map.of("temperature", 20.0))).isTrue();
+        // A steady rise of 0.1 per second stays inside the corridor however far it goes
+        for (int second = 1; second <= 60; second++) {
+            assertThat(offer(second, Map.of("temperature", 20.0 + second * 0.1))).isFalse();
+        }
+        // A plateau breaks the trend
+        assertThat(offer(90, Map.of("temperature", 26.0))).isTrue();
+    }
+
+    @Test
+    void shouldStore_ShouldStoreHeartbeatsAndChangedStatuses() {
+        assertThat(offer(0, Map.of("soc", 50.0, "healthStatus", "GOOD"))).isTrue();
+        assertThat(offer(60, Map.of("soc", 50.0, "healthStatus", "GOOD"))).isFalse();
+        assertThat(offer(120, Map.of("soc", 50.0, "healthStatus", "FAIR"))).isTrue();
+        assertThat(offer(120 + 15 * 60, Map.of("soc", 50.0, "healthStatus", "FAIR"))).isTrue();
+        // Per-module detail follows the aggregates and does not force a store
+        assertThat(offer(121 + 15 * 60, Map.of("soc", 50.0, "healthStatus", "FAIR",
+            "moduleTemperatures", List.of(21.5, 22.0)))).isFalse();
+    }
+
+    @Test
+    void shouldStore_ShouldStoreFieldsWithoutPolicyOnAnyChangeAndUnknownTypesAlways() {
+        assertThat(offer(0, Map.of("cycleCount", 100))).isTrue();
+        assertThat(offer(1, Map.of("cycleCount", 100))).isFalse();
+        assertThat(offer(2, Map.of("cycleCount", 101))).isTrue();
+
+        Device meter = device(2L, "Meter");
+        assertThat(compressor.shouldStore(meter, START, Map.of("power", 1.0))).isTrue();
+        assertThat(compressor.shouldStore(meter, START.plusSeconds(1), Map.of("power", 1.0))).isTrue();
+    }
+
+    @Test
+    void forget_ShouldStoreTheNextSample() {
+        assertThat(offer(0, Map.of("soc", 80.0))).isTrue();
+        compressor.forget(battery.getId());
+        assertThat(offer(1, Map.of("soc", 80.0))).isTrue();
+    }
+
+    @Test
+    void shouldStore_ShouldStoreEverythingWhenDisabled() {
+        TelemetryCompressor disabled = new TelemetryCompressor(false, Duration.ofMinutes(15), "soc:abs:10", "", "");
+
+        assertThat(disabled.shouldStore(battery, START, Map.of("soc", 80.0))).isTrue();
+        assertThat(disabled.shouldStore(battery, START.plusSeconds(1), Map.of("soc", 80.0))).isTrue();
+    }
+
+    @Test
+    void parsePolicies_ShouldRejectUnknownFieldsAndKinds() {
+        assertThatThrownBy(() -> TelemetryCompressor.parsePolicies(TelemetrySchema.BMS, "socx:abs:1"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("socx");
+        assertThatThrownBy(() -> TelemetryCompressor.parsePolicies(TelemetrySchema.BMS, "soc:median:1"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("median");
+        assertThatThrownBy(() -> TelemetryCompressor.parsePolicies(TelemetrySchema.BMS, "soc:1"))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private boolean offer(int second, Map<String, Object> data) {
+        return compressor.shouldStore(battery, START.plusSeconds(second), new HashMap<>(data));
+    }
+
+    private static Device device(Long id, String deviceType) {
+        Site site = new Site();
+        site.setId(1L);
+        Device device = new Device("DEV-" + id, "Device " + id, new DeviceType(deviceType, "STORAGE"), "M1", "Acme", site);
+        device.setId(id);
+        return device;
+    }
+}
@@ -0,0 +1,114 @@
+package com.ecogrid.ems.device.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for TelemetryExportService
+ */
+class TelemetryExportServiceTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private JdbcTemplate jdbcTemplate;
+    private TelemetryExportService exportService;
+    private ResultSet row;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        exportService = new TelemetryExportService(jdbcTemplate, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(exportService, "fetchSize", 100);
+        ReflectionTestUtils.setField(exportService, "window", Duration.ofDays(1));
+        ReflectionTestUtils.setField(exportService, "maxRange", Duration.ofDays(30));
+
+        ResultSet device = mock(ResultSet.class);
+        when(device.getLong("id")).thenReturn(7L);
+        when(device.getString("serial_number")).thenReturn("BMS,001");
+        when(device.getString("device_type")).thenReturn("BMS");
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(device);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(1L));
+
+        row = mock(ResultSet.class);
+        when(row.getObject("timestamp", LocalDateTime.class)).thenReturn(FROM);
+        when(row.getLong("device_id")).thenReturn(7L);
+        when(row.getString("soc")).thenReturn("81.5");
+        when(row.getObject("soc")).thenReturn(81.5);
+        when(row.getString("active_sessions")).thenReturn("2");
+        when(row.getObject("active_sessions")).thenReturn(2);
+        when(row.getString("data")).thenReturn("{\"healthStatus\": \"GOOD\"}");
+        doAnswer(invocation -> {
+            invocation.<RowCallbackHandler>getArgument(1).processRow(row);
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void export_ShouldWriteCsvWithTypedColumnsAndQuotedCells() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.export(1L, FROM, FROM.plusHours(1), TelemetryExportService.Format.CSV, false, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(rows).isEqualTo(1);
+        assertThat(lines[0]).startsWith("timestamp,device_id,serial_number,device_type,soc,").endsWith(",active_sessions,data");
+        // A whole minute keeps its seconds
+        assertThat(lines[1]).startsWith("2024-01-01T00:00:00,7,\"BMS,001\",BMS,81.5,")
+            .endsWith(",2,\"{\"\"healthStatus\"\": \"\"GOOD\"\"}\"");
+    }
+
+    @Test
+    void export_ShouldWriteGzippedNdjsonOneObjectPerLine() throws Exception {
+        when(row.getObject("timestamp", LocalDateTime.class)).thenReturn(FROM.plusSeconds(30).plusNanos(123_400_000));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(1L, FROM, FROM.plusHours(1), TelemetryExportService.Format.NDJSON, true, out);
+
+        String ndjson = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(),
+            StandardCharsets.UTF_8);
+        assertThat(ndjson).isEqualTo("{\"timestamp\":\"2024-01-01T00:00:30.1234\",\"deviceId\":7,\"serialNumber\":\"BMS,001\","
+            + "\"deviceType\":\"BMS\",\"soc\":81.5,\"activeSessions\":2,\"data\":{\"healthStatus\": \"GOOD\"}}\n");
+    }
+
+    @Test
+    void export_ShouldQueryOneWindowAtATime() throws Exception {
+        exportService.export(1L, FROM, FROM.plusDays(3).plusHours(1), TelemetryExportService.Format.CSV, false,
+            new ByteArrayOutputStream());
+
+        verify(jdbcTemplate, times(4)).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void validateRange_ShouldRejectEmptyAndTooLongRanges() {
+        assertThatThrownBy(() -> exportService.validateRange(FROM, FROM))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> exportService.validateRange(FROM, FROM.plusDays(31)))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
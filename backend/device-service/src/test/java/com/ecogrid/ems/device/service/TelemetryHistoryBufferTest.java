@@ -0,0 +1,100 @@
+package com.ecogrid.ems.device.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for TelemetryHistoryBuffer
+ */
+class TelemetryHistoryBufferTest {
+
+    private TelemetryHistoryBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new TelemetryHistoryBuffer(15, 4);
+    }
+
+    @Test
+    void record_ShouldKeepLatestSamplesUpToCapacity() {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < 6; i++) {
+            buffer.record(1L, 10L, "BMS", now.minusSeconds(6 - i), Map.of("soc", 50 + i, "voltage", 400.5));
+        }
+
+        List<TelemetryHistoryBuffer.DeviceHistorySnapshot> snapshots =
+            buffer.snapshot(1L, System.currentTimeMillis());
+
+        assertThat(snapshots).hasSize(1);
+        float[] soc = snapshots.get(0).series().get("soc");
+        assertThat(soc).containsExactly(52f, 53f, 54f, 55f);
+        assertThat(snapshots.get(0).series().get("current")).containsOnly(Float.NaN);
+    }
+
+    @Test
+    void record_ShouldGrowRingOnlyWhileSamplesAreInsideWindow() {
+        TelemetryHistoryBuffer large = new TelemetryHistoryBuffer(15, 1024);
+        LocalDateTime now = LocalDateTime.now();
+        // One sample a minute never needs more than the initial ring
+        for (int i = 0; i < 60; i++) {
+            large.record(1L, 10L, "BMS", now.minusMinutes(60 - i), Map.of("soc", i));
+        }
+        assertThat(large.allocatedSlots(1L)).isEqualTo(16);
+        assertThat(large.snapshot(1L, System.currentTimeMillis()).get(0).series().get("soc")).hasSizeBetween(14, 15);
+
+        // One a second fills the window and grows the ring, keeping every sample in order
+        for (int i = 0; i < 100; i++) {
+            large.record(2L, 20L, "BMS", now.minusSeconds(100 - i), Map.of("soc", i));
+        }
+        assertThat(large.allocatedSlots(2L)).isEqualTo(128);
+        float[] soc = large.snapshot(2L, System.currentTimeMillis()).get(0).series().get("soc");
+        assertThat(soc).hasSize(100);
+        assertThat(soc[0]).isEqualTo(0f);
+        assertThat(soc[99]).isEqualTo(99f);
+    }
+
+    @Test
+    void snapshot_ShouldDropSamplesOutsideWindow() {
+        LocalDateTime now = LocalDateTime.now();
+        buffer.record(1L, 10L, "BMS", now.minusMinutes(20), Map.of("soc", 40));
+        buffer.record(1L, 10L, "BMS", now.minusMinutes(5), Map.of("soc", 45));
+
+        List<TelemetryHistoryBuffer.DeviceHistorySnapshot> snapshots =
+            buffer.snapshot(1L, System.currentTimeMillis());
+
+        assertThat(snapshots.get(0).series().get("soc")).containsExactly(45f);
+        assertThat(buffer.snapshot(2L, System.currentTimeMillis())).isEmpty();
+    }
+
+    @Test
+    void buildBackfillFrame_ShouldProduceCompressedColumnarJson() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        buffer.record(1L, 10L, "BMS", now.minusSeconds(2), Map.of("soc", 80));
+        buffer.record(1L, 10L, "BMS", now.minusSeconds(1), Map.of("soc", 81));
+
+        byte[] frame = buffer.buildBackfillFrame(1L);
+
+        JsonNode json;
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(frame))) {
+            json = new ObjectMapper().readTree(gzip);
+        }
+        assertThat(json.get("type").asText()).isEqualTo("backfill");
+        JsonNode device = json.get("devices").get(0);
+        assertThat(device.get("deviceId").asLong()).isEqualTo(10L);
+        assertThat(device.get("deltas").get(0).asLong()).isEqualTo(1000L);
+        assertThat(device.get("series").get("soc").get(1).asDouble()).isEqualTo(81.0);
+        assertThat(device.get("series").get("voltage").get(0).isNull()).isTrue();
+
+        assertThat(buffer.buildBackfillFrame(2L)).isNull();
+    }
+}
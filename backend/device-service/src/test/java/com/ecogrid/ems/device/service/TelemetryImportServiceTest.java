@@ -0,0 +1,227 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.dto.TelemetryImportReport;
+import com.ecogrid.ems.device.dto.TelemetryImportReport.SampleError;
+import com.ecogrid.ems.device.entity.Device;
+import com.ecogrid.ems.device.entity.DeviceTelemetry;
+import com.ecogrid.ems.device.repository.DeviceRepository;
+import com.ecogrid.ems.device.repository.DeviceStatusCacheRepository;
+import com.ecogrid.ems.device.service.DeviceTelemetryProcessor.ProcessingOutcome;
+import com.ecogrid.ems.device.service.TelemetryImportService.ImportPlan;
+import com.ecogrid.ems.device.service.TelemetryImportService.Sample;
+import com.ecogrid.ems.device.service.TelemetryPartitionService.TelemetryPartition;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for TelemetryImportService
+ */
+class TelemetryImportServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 3, 1, 0, 0);
+
+    private DeviceRepository deviceRepository;
+    private JdbcTemplate jdbcTemplate;
+    private DeviceTelemetryProcessor telemetryProcessor;
+    private TelemetryImportService importService;
+    private final List<SampleError> errors = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        deviceRepository = mock(DeviceRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        telemetryProcessor = mock(DeviceTelemetryProcessor.class);
+        importService = new TelemetryImportService(deviceRepository, mock(DeviceStatusCacheRepository.class),
+            jdbcTemplate, mock(PlatformTransactionManager.class),
+            new ObjectMapper().registerModule(new JavaTimeModule()), mock(TelemetryPartitionService.class),
+            mock(TelemetryArchiveService.class), telemetryProcessor);
+        ReflectionTestUtils.setField(importService, "maxSamples", 4);
+        ReflectionTestUtils.setField(importService, "batchSize", 100);
+    }
+
+    @Test
+    void readNdjson_ShouldReportBadLinesAndKeepTheRest() throws Exception {
+        String ndjson = "{\"timestamp\":\"2026-03-01T10:00:00\",\"soc\":80.5}\n" +
+            "\n" +
+            "{\"soc\":80}\n" +
+            "{\"timestamp\":\"yesterday\"}\n" +
+            "{\"timestamp\":\"2026-03-01T10:00:01\",\n";
+
+        List<Sample> samples = importService.readNdjson(new StringReader(ndjson), errors);
+
+        assertThat(samples).extracting(Sample::line).containsExactly(1L);
+        assertThat(samples.get(0).timestamp()).isEqualTo(LocalDateTime.of(2026, 3, 1, 10, 0));
+        assertThat(samples.get(0).data()).containsEntry("soc", 80.5);
+        assertThat(errors).extracting(SampleError::line).containsExactly(3L, 4L, 5L);
+        assertThat(errors.get(0).error()).isEqualTo("Missing timestamp");
+        assertThat(errors.get(1).error()).startsWith("Invalid timestamp 'yesterday'");
+        assertThat(errors.get(2).error()).startsWith("Malformed JSON");
+    }
+
+    @Test
+    void readNdjson_ShouldTruncateTimestampsToMicroseconds() throws Exception {
+        List<Sample> samples = importService.readNdjson(
+            new StringReader("{\"timestamp\":\"2026-03-01T10:00:00.123456789\",\"soc\":80}\n"), errors);
+
+        assertThat(samples.get(0).timestamp()).isEqualTo(LocalDateTime.of(2026, 3, 1, 10, 0, 0, 123_456_000));
+        assertThat(samples.get(0).json()).contains("\"2026-03-01T10:00:00.123456\"");
+        assertThat(samples.get(0).data()).containsEntry("timestamp", "2026-03-01T10:00:00.123456");
+    }
+
+    @Test
+    void readJsonArray_ShouldReadElementsWithTheirLines() throws Exception {
+        String json = "[\n  {\"timestamp\":\"2026-03-01T10:00:00\",\"power\":1.5},\n  42,\n" +
+            "  {\"timestamp\":\"2026-03-01T10:00:01\",\"power\":1.6}\n]";
+
+        List<Sample> samples = importService.readJsonArray(new StringReader(json), errors);
+
+        assertThat(samples).extracting(Sample::line).containsExactly(2L, 4L);
+        assertThat(errors).containsExactly(new SampleError(3, "Expected a JSON object"));
+        assertThatThrownBy(() -> importService.readJsonArray(new StringReader("{\"timestamp\":1}"), errors))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("Expected a JSON array of telemetry samples");
+        assertThatThrownBy(() -> importService.readJsonArray(new StringReader("[{},{},{},{},{}]"), new ArrayList<>()))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("Import must not exceed 4 samples");
+    }
+
+    @Test
+    void plan_ShouldOrderDropRepeatsAndHandNewestSampleToLivePipeline() {
+        List<TelemetryPartition> partitions = List.of(new TelemetryPartition("p", DAY, DAY.plusDays(1)));
+
+        ImportPlan plan = TelemetryImportService.plan(List.of(
+            sample(1, DAY.plusHours(3)),
+            sample(2, DAY.plusHours(1)),
+            sample(3, DAY.plusHours(1)),
+            sample(4, DAY.minusHours(1)),
+            sample(5, DAY.plusHours(2))), partitions, DAY.plusHours(2), errors);
+
+        assertThat(plan.history()).extracting(Sample::line).containsExactly(2L, 5L);
+        assertThat(plan.live().line()).isEqualTo(1L);
+        assertThat(plan.duplicates()).isEqualTo(1);
+        assertThat(plan.from()).isEqualTo(DAY.plusHours(1));
+        assertThat(plan.to()).isEqualTo(DAY.plusHours(3));
+        assertThat(errors).extracting(SampleError::line).containsExactly(4L);
+    }
+
+    @Test
+    void plan_ShouldKeepEverythingAsHistoryWhenDeviceHasNewerState() {
+        ImportPlan plan = TelemetryImportService.plan(List.of(sample(1, DAY), sample(2, DAY.plusMinutes(1))),
+            List.of(), DAY.plusDays(1), errors);
+
+        assertThat(plan.history()).hasSize(2);
+        assertThat(plan.live()).isNull();
+        assertThat(errors).isEmpty();
+    }
+
+    @Test
+    void importTelemetry_ShouldHandLiveSampleToPipelineUnderTheDeviceLock() throws Exception {
+        Device device = device();
+        when(telemetryProcessor.processDeviceTelemetry(any(), anyString(), anyLong())).thenReturn(ProcessingOutcome.STORED);
+
+        TelemetryImportReport report = importService.importTelemetry("BMS-1", body(), TelemetryImportService.Format.NDJSON)
+            .orElseThrow();
+
+        InOrder order = inOrder(jdbcTemplate, telemetryProcessor);
+        order.verify(jdbcTemplate).execute(contains("pg_advisory_xact_lock"));
+        order.verify(jdbcTemplate).queryForList(anyString(), eq(LocalDateTime.class), any(), any(), any());
+        order.verify(telemetryProcessor).processDeviceTelemetry(eq(device), contains("2026-03-01T10:00"), anyLong());
+        assertThat(report.appliedLive()).isTrue();
+        assertThat(report.stored()).isEqualTo(1);
+    }
+
+    @Test
+    void importTelemetry_ShouldNotReapplyLiveSampleStoredByAnEarlierAttempt() throws Exception {
+        device();
+        when(jdbcTemplate.queryForList(anyString(), eq(LocalDateTime.class), any(), any(), any()))
+            .thenReturn(List.of(DAY.plusHours(10)));
+
+        TelemetryImportReport report = importService.importTelemetry("BMS-1", body(), TelemetryImportService.Format.NDJSON)
+            .orElseThrow();
+
+        verify(telemetryProcessor, never()).processDeviceTelemetry(any(), anyString(), anyLong());
+        assertThat(report.appliedLive()).isFalse();
+        assertThat(report.stored()).isZero();
+        assertThat(report.duplicates()).isEqualTo(1);
+    }
+
+    @Test
+    void importTelemetry_ShouldCopyLiveSampleTheCompressorDidNotStore() throws Exception {
+        device();
+        when(telemetryProcessor.processDeviceTelemetry(any(), anyString(), anyLong()))
+            .thenReturn(ProcessingOutcome.COMPRESSED);
+        when(jdbcTemplate.execute(any(ConnectionCallback.class))).thenReturn(1L);
+
+        TelemetryImportReport report = importService.importTelemetry("BMS-1", body(), TelemetryImportService.Format.NDJSON)
+            .orElseThrow();
+
+        assertThat(report.appliedLive()).isTrue();
+        assertThat(report.stored()).isEqualTo(1);
+        assertThat(report.batches()).extracting(TelemetryImportReport.BatchStats::rows).containsExactly(1);
+    }
+
+    @Test
+    void appendCopyRow_ShouldSplitTypedColumnsAndQuoteJson() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("timestamp", "2026-03-01T10:00:00");
+        data.put("soc", 80.5);
+        data.put("activeSessions", 2);
+        data.put("status", "say \"hi\", ok");
+        StringBuilder rows = new StringBuilder();
+
+        importService.appendCopyRow(rows, 7L, new Sample(1, DAY.plusHours(10), data, "{}"), "2026-03-02T00:00");
+
+        String row = rows.toString();
+        String json = row.substring(row.indexOf('"'), row.lastIndexOf('"') + 1);
+        String[] typedColumns = row.substring(row.lastIndexOf('"') + 2).split(",", -1);
+        assertThat(row).startsWith("7,2026-03-01T10:00,\"{").endsWith(",2026-03-02T00:00,2026-03-02T00:00\n");
+        assertThat(json).contains("\"\"status\"\":\"\"say \\\"\"hi\\\"\", ok\"\"").doesNotContain("soc");
+        assertThat(typedColumns).hasSize(DeviceTelemetry.HOT_FIELDS.size() + 2);
+        assertThat(typedColumns[0]).isEqualTo("80.5");
+        assertThat(typedColumns).contains("2");
+    }
+
+    private Device device() {
+        Device device = new Device();
+        device.setId(7L);
+        device.setSerialNumber("BMS-1");
+        device.setStatus(Device.DeviceStatus.ONLINE);
+        when(deviceRepository.findWithTypeBySerialNumberIn(List.of("BMS-1"))).thenReturn(List.of(device));
+        return device;
+    }
+
+    private static ByteArrayInputStream body() {
+        return new ByteArrayInputStream("{\"timestamp\":\"2026-03-01T10:00:00\",\"soc\":80}\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Sample sample(long line, LocalDateTime timestamp) {
+        return new Sample(line, timestamp, Map.of("timestamp", timestamp.toString()), "{}");
+    }
+}
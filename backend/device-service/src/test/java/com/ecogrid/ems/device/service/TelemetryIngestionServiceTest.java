@@ -0,0 +1,145 @@
+package com.ecogrid.ems.device.service;
+
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.KafkaException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for TelemetryIngestionService
+ */
+class TelemetryIngestionServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final DeviceTelemetryProcessor processor = mock(DeviceTelemetryProcessor.class);
+    private final List<String> stored = new ArrayList<>();
+    private boolean databaseDown;
+    private TelemetrySpool spool;
+
+    @AfterEach
+    void tearDown() {
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    @Test
+    void ingest_ShouldSpoolWhileDatabaseIsDownAndReplayInArrivalOrder() throws Exception {
+        TelemetryIngestionService service = service(2, Duration.ZERO);
+        databaseDown = true;
+
+        service.ingest("ecogrid/site1/bms/001", "{\"soc\":1}");
+        service.ingest("ecogrid/site1/bms/002", "{\"soc\":2}");
+        service.ingest("ecogrid/site1/bms/001", "{\"soc\":3}");
+        assertThat(service.getSpooledMessages()).isEqualTo(3);
+
+        service.replay();
+        assertThat(service.getSpooledMessages()).isEqualTo(3);
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        databaseDown = false;
+        service.replay();
+        service.ingest("ecogrid/site1/bms/002", "{\"soc\":4}");
+
+        assertThat(stored).containsExactly("{\"soc\":1}", "{\"soc\":2}", "{\"soc\":3}", "{\"soc\":4}");
+        assertThat(service.getSpooledMessages()).isZero();
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void ingest_ShouldSpoolWithoutCallingDownstreamWhileBreakerIsOpen() throws Exception {
+        TelemetryIngestionService service = service(1, Duration.ofHours(1));
+        databaseDown = true;
+        service.ingest("ecogrid/site1/solar/001", "{\"currentOutput\":1}");
+        databaseDown = false;
+
+        service.ingest("ecogrid/site1/solar/001", "{\"currentOutput\":2}");
+        service.replay();
+
+        assertThat(stored).isEmpty();
+        assertThat(service.getSpooledMessages()).isEqualTo(2);
+    }
+
+    @Test
+    void ingest_ShouldNotSpoolMessagesThatFailForOtherReasons() throws Exception {
+        TelemetryIngestionService service = service(1, Duration.ofHours(1));
+        doAnswer(invocation -> {
+            throw new DataIntegrityViolationException("bad sample");
+        }).when(processor).processTelemetryMessage(anyString(), anyString(), anyLong());
+
+        service.ingest("ecogrid/site1/bms/001", "{\"soc\":-1}");
+
+        assertThat(service.getSpooledMessages()).isZero();
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void isDownstreamFailure_ShouldLookThroughCauses() {
+        assertThat(TelemetryIngestionService.isDownstreamFailure(
+            new RuntimeException(new CannotCreateTransactionException("no connection")))).isTrue();
+        assertThat(TelemetryIngestionService.isDownstreamFailure(
+            new CompletionException(new TimeoutException("metadata")))).isTrue();
+        assertThat(TelemetryIngestionService.isDownstreamFailure(new IllegalStateException("bug"))).isFalse();
+    }
+
+    @Test
+    void ingest_ShouldSpoolRawTelemetryWhenKafkaIsUnreachable() throws Exception {
+        RawTelemetryBridge bridge = mock(RawTelemetryBridge.class);
+        when(bridge.publish(anyString(), anyString(), anyLong()))
+            .thenThrow(new KafkaException("Send failed", new TimeoutException("Topic telemetry-raw not present in metadata")));
+        TelemetryIngestionService service = service(1, Duration.ofHours(1), bridge);
+
+        service.ingest("ecogrid/site3/solar/002", "{\"currentOutput\":12}");
+
+        assertThat(service.getSpooledMessages()).isEqualTo(1);
+        assertThat(service.getBreakerState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(stored).isEmpty();
+    }
+
+    private TelemetryIngestionService service(int failureThreshold, Duration openDuration) throws Exception {
+        return service(failureThreshold, openDuration, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private TelemetryIngestionService service(int failureThreshold, Duration openDuration, RawTelemetryBridge bridge)
+            throws Exception {
+        spool = TelemetrySpool.open(directory, 4096, 1 << 20);
+        doAnswer(invocation -> {
+            if (databaseDown) {
+                throw new CannotCreateTransactionException("Could not open JPA EntityManager for transaction");
+            }
+            stored.add(invocation.getArgument(1));
+            return null;
+        }).when(processor).processTelemetryMessage(anyString(), anyString(), anyLong());
+
+        ObjectProvider<TelemetrySpool> spoolProvider = mock(ObjectProvider.class);
+        when(spoolProvider.getIfAvailable()).thenReturn(spool);
+        ObjectProvider<RawTelemetryBridge> bridgeProvider = mock(ObjectProvider.class);
+        when(bridgeProvider.getIfAvailable()).thenReturn(bridge);
+        TelemetryIngestionService service =
+            new TelemetryIngestionService(processor, bridgeProvider, spoolProvider, failureThreshold, openDuration);
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        ReflectionTestUtils.setField(service, "replayMaxDuration", Duration.ofSeconds(10));
+        return service;
+    }
+}
@@ -0,0 +1,34 @@
+package com.ecogrid.ems.device.service;
+
+import com.ecogrid.ems.device.service.TelemetryPartitionService.TelemetryPartition;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for TelemetryPartitionService
+ */
+class TelemetryPartitionServiceTest {
+
+    @Test
+    void parsePartition_ShouldReadDailyBounds() {
+        TelemetryPartition partition = TelemetryPartitionService.parsePartition("device_telemetry_p20240101",
+            "FOR VALUES FROM ('2024-01-01 00:00:00') TO ('2024-01-02 00:00:00')");
+
+        assertThat(partition.from()).isEqualTo(LocalDateTime.of(2024, 1, 1, 0, 0));
+        assertThat(partition.to()).isEqualTo(LocalDateTime.of(2024, 1, 2, 0, 0));
+    }
+
+    @Test
+    void parsePartition_ShouldTreatMinValueAsOpenAndIgnoreOffset() {
+        TelemetryPartition partition = TelemetryPartitionService.parsePartition("device_telemetry_legacy",
+            "FOR VALUES FROM (MINVALUE) TO ('2024-01-02 00:00:00+00')");
+
+        assertThat(partition.from()).isNull();
+        assertThat(partition.to()).isEqualTo(LocalDateTime.of(2024, 1, 2, 0, 0));
+        assertThat(partition.overlaps(LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 1, 2, 0, 0))).isTrue();
+        assertThat(partition.overlaps(LocalDateTime.of(2024, 1, 2, 0, 0), LocalDateTime.of(2024, 1, 3, 0, 0))).isFalse();
+    }
+}
@@ -0,0 +1,116 @@
+package com.ecogrid.ems.device.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for TelemetrySpool
+ */
+class TelemetrySpoolTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Test
+    void read_ShouldReturnMessagesInOrderUntilAcknowledged(@TempDir Path directory) throws Exception {
+        try (TelemetrySpool spool = TelemetrySpool.open(directory, SEGMENT_SIZE, 1 << 20)) {
+            for (int i = 0; i < 200; i++) {
+                assertThat(spool.append("ecogrid/site1/bms/00" + (i % 3), "{\"soc\":" + i + "}", 1000L + i)).isTrue();
+            }
+
+            TelemetrySpool.Batch batch = spool.read(150);
+            assertThat(batch.entries()).hasSize(150);
+            assertThat(batch.entries().get(0))
+                .isEqualTo(new TelemetrySpool.Entry("ecogrid/site1/bms/000", "{\"soc\":0}", 1000L));
+            assertThat(spool.read(10).entries().get(0).receivedAt()).isEqualTo(1000L);
+
+            spool.acknowledge(batch, 120);
+            assertThat(spool.getPendingMessages()).isEqualTo(80);
+            List<TelemetrySpool.Entry> rest = spool.read(500).entries();
+            assertThat(rest).extracting(TelemetrySpool.Entry::receivedAt)
+                .containsExactlyElementsOf(Stream.iterate(1120L, t -> t + 1).limit(80).toList());
+            assertThat(segmentFiles(directory)).hasSizeGreaterThan(1);
+
+            spool.acknowledge(spool.read(500), 80);
+            assertThat(spool.isEmpty()).isTrue();
+            assertThat(segmentFiles(directory)).hasSize(1);
+        }
+    }
+
+    @Test
+    void open_ShouldRecoverUnacknowledgedMessagesAndIgnoreTornRecord(@TempDir Path directory) throws Exception {
+        try (TelemetrySpool spool = TelemetrySpool.open(directory, SEGMENT_SIZE, 1 << 20)) {
+            for (int i = 0; i < 5; i++) {
+                spool.append("ecogrid/site2/solar/001", "{\"currentOutput\":" + i + "}", 2000L + i);
+            }
+            spool.acknowledge(spool.read(2), 2);
+        }
+        // A crash halfway through an append leaves a length whose body does not match its checksum
+        Path segment = segmentFiles(directory).get(0);
+        int end = endOfRecords(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putInt(0, 40).putInt(4, 12345), end);
+        }
+
+        try (TelemetrySpool reopened = TelemetrySpool.open(directory, SEGMENT_SIZE, 1 << 20)) {
+            assertThat(reopened.getPendingMessages()).isEqualTo(3);
+            assertThat(reopened.read(10).entries()).extracting(TelemetrySpool.Entry::receivedAt)
+                .containsExactly(2002L, 2003L, 2004L);
+
+            reopened.append("ecogrid/site2/solar/001", "{\"currentOutput\":5}", 2005L);
+            assertThat(reopened.read(10).entries()).extracting(TelemetrySpool.Entry::receivedAt)
+                .containsExactly(2002L, 2003L, 2004L, 2005L);
+        }
+    }
+
+    @Test
+    void append_ShouldDropOldestSegmentWhenCapIsReached(@TempDir Path directory) throws Exception {
+        try (TelemetrySpool spool = TelemetrySpool.open(directory, SEGMENT_SIZE, 2 * SEGMENT_SIZE)) {
+            String payload = "x".repeat(500);
+            for (int i = 0; i < 30; i++) {
+                spool.append("ecogrid/site1/evcharger/001", payload, i);
+            }
+
+            assertThat(segmentFiles(directory)).hasSize(2);
+            assertThat(spool.getSizeOnDisk()).isEqualTo(2L * SEGMENT_SIZE);
+            assertThat(spool.getDroppedMessages()).isPositive();
+            assertThat(spool.getPendingMessages() + spool.getDroppedMessages()).isEqualTo(30);
+            List<TelemetrySpool.Entry> kept = spool.read(100).entries();
+            assertThat(kept).hasSize((int) spool.getPendingMessages());
+            assertThat(kept.get(kept.size() - 1).receivedAt()).isEqualTo(29L);
+        }
+    }
+
+    @Test
+    void append_ShouldRejectMessageLargerThanSegment(@TempDir Path directory) throws Exception {
+        try (TelemetrySpool spool = TelemetrySpool.open(directory, SEGMENT_SIZE, 1 << 20)) {
+            assertThat(spool.append("ecogrid/site1/bms/001", "x".repeat(SEGMENT_SIZE), 1L)).isFalse();
+            assertThat(spool.isEmpty()).isTrue();
+            assertThat(spool.getDroppedMessages()).isEqualTo(1);
+        }
+    }
+
+    private static List<Path> segmentFiles(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static int endOfRecords(Path segment) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int offset = TelemetrySpool.HEADER_SIZE;
+        while (buffer.getInt(offset) != 0) {
+            offset += 8 + buffer.getInt(offset);
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,85 @@
+package com.ecogrid.ems.device.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for TelemetrySubscriptionRegistry
+ */
+class TelemetrySubscriptionRegistryTest {
+
+    private TelemetrySubscriptionRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new TelemetrySubscriptionRegistry();
+    }
+
+    @Test
+    void topicSubscription_ShouldBeCountedAndReleasedOnDisconnect() {
+        registry.register("s1", "sub-0", "/topic/telemetry/1", Map.of());
+
+        assertThat(registry.hasTopicSubscribers(1L)).isTrue();
+        assertThat(registry.hasTopicSubscribers(2L)).isFalse();
+
+        registry.unregisterSession("s1");
+        assertThat(registry.hasTopicSubscribers(1L)).isFalse();
+    }
+
+    @Test
+    void filteredSubscription_ShouldMatchOnlyIndexedDevicesAndTypes() {
+        registry.register("s1", "sub-0", "/user/queue/telemetry/1/sub-0",
+            Map.of("deviceIds", "10, 11", "fields", "soc,voltage"));
+        registry.register("s2", "sub-0", "/user/queue/telemetry/1/sub-0",
+            Map.of("deviceTypes", "ev_charger"));
+
+        List<TelemetrySubscriptionRegistry.TelemetrySubscription> bmsMatches =
+            registry.findMatching(1L, 10L, "BMS");
+        assertThat(bmsMatches).extracting(TelemetrySubscriptionRegistry.TelemetrySubscription::getSessionId)
+            .containsExactly("s1");
+        assertThat(bmsMatches.get(0).getFields()).containsExactly("soc", "voltage");
+
+        assertThat(registry.findMatching(1L, 12L, "EV_CHARGER"))
+            .extracting(TelemetrySubscriptionRegistry.TelemetrySubscription::getSessionId)
+            .containsExactly("s2");
+        assertThat(registry.findMatching(1L, 12L, "BMS")).isEmpty();
+        assertThat(registry.findMatching(2L, 10L, "BMS")).isEmpty();
+
+        registry.unregister("s1", "sub-0");
+        assertThat(registry.findMatching(1L, 10L, "BMS")).isEmpty();
+    }
+
+    @Test
+    void filteredSubscriptionsOfOneSession_ShouldEachGetTheirOwnQueue() {
+        registry.register("s1", "sub-0", "/user/queue/telemetry/1/sub-0", Map.of("deviceIds", "10"));
+        registry.register("s1", "sub-1", "/user/queue/telemetry/1/sub-1", Map.of("fields", "soc"));
+        registry.register("s1", "sub-2", "/user/queue/telemetry/1", Map.of());
+        registry.register("s1", "sub-3", "/user/queue/telemetry/1/sub-0", Map.of());
+
+        assertThat(registry.findMatching(1L, 10L, "BMS"))
+            .extracting(TelemetrySubscriptionRegistry.TelemetrySubscription::getQueue)
+            .containsExactlyInAnyOrder("/queue/telemetry/1/sub-0", "/queue/telemetry/1/sub-1");
+        assertThat(registry.findMatching(1L, 11L, "BMS"))
+            .extracting(TelemetrySubscriptionRegistry.TelemetrySubscription::getQueue)
+            .containsExactly("/queue/telemetry/1/sub-1");
+        assertThat(registry.getFilteredSubscriptionCount()).isEqualTo(2);
+    }
+
+    @Test
+    void maxRate_ShouldThrottlePerDevice() {
+        registry.register("s1", "sub-0", "/user/queue/telemetry/1/sub-0", Map.of("maxRate", "1"));
+        TelemetrySubscriptionRegistry.TelemetrySubscription subscription =
+            registry.findMatching(1L, 10L, "BMS").get(0);
+
+        long start = 5_000_000_000L;
+        assertThat(subscription.tryAcquire(10L, start)).isTrue();
+        assertThat(subscription.tryAcquire(10L, start + 500_000_000L)).isFalse();
+        assertThat(subscription.tryAcquire(11L, start + 500_000_000L)).isTrue();
+        assertThat(subscription.tryAcquire(10L, start + 1_000_000_000L)).isTrue();
+    }
+}
@@ -0,0 +1,63 @@
+package com.ecogrid.ems.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size latency histogram with 1 ms buckets, safe to record into from many threads.
+ * Samples beyond the last bucket are clamped into it, the true maximum is tracked separately.
+ */
+public class LatencyHistogram {
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLong negative = new AtomicLong();
+
+    public LatencyHistogram(int maxMillis) {
+        this.buckets = new AtomicLongArray(maxMillis + 1);
+    }
+
+    public void record(long latencyMillis) {
+        if (latencyMillis < 0) {
+            // Clock skew between the harness and the service host
+            negative.incrementAndGet();
+            latencyMillis = 0;
+        }
+        int bucket = (int) Math.min(latencyMillis, buckets.length() - 1);
+        buckets.incrementAndGet(bucket);
+        count.incrementAndGet();
+        max.accumulateAndGet(latencyMillis, Math::max);
+    }
+
+    /**
+     * Latency in millis below which the given fraction of samples fall
+     */
+    public long percentile(double fraction) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= threshold) {
+                return i;
+            }
+        }
+        return buckets.length() - 1;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getNegative() {
+        return negative.get();
+    }
+}
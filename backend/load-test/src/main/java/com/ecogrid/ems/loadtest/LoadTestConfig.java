@@ -0,0 +1,47 @@
+package com.ecogrid.ems.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load test settings, parsed from --key=value arguments
+ */
+public record LoadTestConfig(
+    String webSocketUrl,
+    String mqttUrl,
+    String mqttUsername,
+    String mqttPassword,
+    String actuatorUrl,
+    int clients,
+    int sites,
+    int messagesPerSite,
+    double messagesPerSecond,
+    int connectTimeoutSeconds,
+    int drainSeconds
+) {
+
+    public static LoadTestConfig fromArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value but got: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+
+        return new LoadTestConfig(
+            options.getOrDefault("url", "ws://localhost:8082/ws"),
+            options.getOrDefault("mqtt", "tcp://localhost:1883"),
+            options.getOrDefault("mqtt-username", "ems_mqtt"),
+            options.getOrDefault("mqtt-password", "ems_mqtt_password"),
+            options.getOrDefault("actuator", "http://localhost:8082/actuator"),
+            Integer.parseInt(options.getOrDefault("clients", "1000")),
+            Integer.parseInt(options.getOrDefault("sites", "10")),
+            Integer.parseInt(options.getOrDefault("messages", "100")),
+            Double.parseDouble(options.getOrDefault("rate", "20")),
+            Integer.parseInt(options.getOrDefault("connect-timeout", "60")),
+            Integer.parseInt(options.getOrDefault("drain", "10"))
+        );
+    }
+}
@@ -0,0 +1,293 @@
+package com.ecogrid.ems.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * WebSocket load test for the device service.
+ *
+ * Opens N STOMP clients on virtual threads, spreads them round-robin over /topic/telemetry/{siteId},
+ * then drives BMS telemetry through MQTT so every frame goes through the real ingestion pipeline
+ * (MQTT, database, Kafka, WebSocket). Reports the server heap cost per connection, the delivery
+ * latency from MQTT arrival (the ingestedAt field) to frame receipt, and the number of dropped frames.
+ */
+public class WebSocketLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(WebSocketLoadTest.class);
+
+    private static final String TELEMETRY_TOPIC_PREFIX = "/topic/telemetry/";
+    private static final String[] BMS_DEVICES = {"001", "002"};
+
+    private final LoadTestConfig config;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final LatencyHistogram latency = new LatencyHistogram(60_000);
+    private final AtomicLong receivedFrames = new AtomicLong();
+    private final AtomicLong transportErrors = new AtomicLong();
+    private final AtomicLongArray subscribersPerSite;
+    private final AtomicLongArray publishedPerSite;
+
+    // Frames ingested before the run started (e.g. from the simulator) are ignored
+    private volatile long runStartedAt;
+
+    public WebSocketLoadTest(LoadTestConfig config) {
+        this.config = config;
+        this.subscribersPerSite = new AtomicLongArray(config.sites() + 1);
+        this.publishedPerSite = new AtomicLongArray(config.sites() + 1);
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromArgs(args);
+        new WebSocketLoadTest(config).run();
+    }
+
+    public void run() throws Exception {
+        logger.info("Starting WebSocket load test: {}", config);
+
+        Double heapBefore = fetchServerHeapBytes();
+        List<StompSession> sessions = connectClients();
+        Double heapAfter = fetchServerHeapBytes();
+
+        runStartedAt = System.currentTimeMillis();
+        long published = publishTelemetry();
+
+        logger.info("Published {} messages, waiting {}s for delivery", published, config.drainSeconds());
+        TimeUnit.SECONDS.sleep(config.drainSeconds());
+
+        report(sessions.size(), heapBefore, heapAfter);
+        disconnect(sessions);
+    }
+
+    /**
+     * Open all clients concurrently, one virtual thread per connection
+     */
+    private List<StompSession> connectClients() throws InterruptedException {
+        WebSocketStompClient stompClient = new WebSocketStompClient(new StandardWebSocketClient());
+        stompClient.setInboundMessageSizeLimit(256 * 1024);
+
+        List<CompletableFuture<StompSession>> futures = new ArrayList<>(config.clients());
+        AtomicInteger failures = new AtomicInteger();
+        long start = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < config.clients(); i++) {
+                int siteId = (i % config.sites()) + 1;
+                futures.add(CompletableFuture.supplyAsync(() -> connect(stompClient, siteId), executor)
+                    .exceptionally(e -> {
+                        failures.incrementAndGet();
+                        logger.debug("Client for site {} failed to connect: {}", siteId, e.getMessage());
+                        return null;
+                    }));
+            }
+        }
+
+        List<StompSession> sessions = new ArrayList<>(futures.size());
+        for (CompletableFuture<StompSession> future : futures) {
+            StompSession session = future.join();
+            if (session != null) {
+                sessions.add(session);
+            }
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        logger.info("Connected {} of {} clients in {} ms ({} failed)",
+            sessions.size(), config.clients(), elapsedMillis, failures.get());
+
+        // Give the broker a moment to register the last subscriptions
+        TimeUnit.SECONDS.sleep(2);
+        return sessions;
+    }
+
+    private StompSession connect(WebSocketStompClient stompClient, int siteId) {
+        try {
+            StompSession session = stompClient.connectAsync(config.webSocketUrl(), new StompSessionHandlerAdapter() {
+                    @Override
+                    public void handleTransportError(StompSession session, Throwable exception) {
+                        transportErrors.incrementAndGet();
+                    }
+                })
+                .get(config.connectTimeoutSeconds(), TimeUnit.SECONDS);
+
+            session.subscribe(TELEMETRY_TOPIC_PREFIX + siteId, new TelemetryFrameHandler());
+            subscribersPerSite.incrementAndGet(siteId);
+            return session;
+        } catch (Exception e) {
+            throw new IllegalStateException("Connection failed for site " + siteId, e);
+        }
+    }
+
+    /**
+     * Publish BMS telemetry for every site over MQTT at the configured total rate
+     */
+    private long publishTelemetry() throws Exception {
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setUserName(config.mqttUsername());
+        options.setPassword(config.mqttPassword().toCharArray());
+        options.setCleanSession(true);
+
+        MqttClient mqttClient = new MqttClient(config.mqttUrl(), "ems-load-test-" + System.nanoTime(),
+            new MemoryPersistence());
+        mqttClient.connect(options);
+
+        long intervalNanos = (long) (1_000_000_000L / config.messagesPerSecond());
+        long nextSendAt = System.nanoTime();
+        long published = 0;
+
+        try {
+            for (int round = 0; round < config.messagesPerSite(); round++) {
+                for (int siteId = 1; siteId <= config.sites(); siteId++) {
+                    String device = BMS_DEVICES[round % BMS_DEVICES.length];
+                    String topic = "ecogrid/site" + siteId + "/bms/" + device;
+
+                    MqttMessage message = new MqttMessage(bmsPayload().getBytes(StandardCharsets.UTF_8));
+                    message.setQos(1);
+                    mqttClient.publish(topic, message);
+                    publishedPerSite.incrementAndGet(siteId);
+                    published++;
+
+                    nextSendAt += intervalNanos;
+                    long waitNanos = nextSendAt - System.nanoTime();
+                    if (waitNanos > 0) {
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    }
+                }
+            }
+        } finally {
+            mqttClient.disconnect();
+            mqttClient.close();
+        }
+        return published;
+    }
+
+    private String bmsPayload() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double soc = 20 + random.nextDouble() * 75;
+        double voltage = 740 + random.nextDouble() * 40;
+        double current = -100 + random.nextDouble() * 200;
+        return String.format(Locale.ROOT,
+            "{\"timestamp\":\"%s\",\"soc\":%.2f,\"remainingCapacity\":%.2f,\"nominalCapacity\":500.00,"
+                + "\"chargeRate\":%.2f,\"voltage\":%.2f,\"current\":%.2f,\"temperature\":%.2f,"
+                + "\"healthStatus\":\"GOOD\",\"efficiency\":%.2f}",
+            Instant.now().toString().replace("Z", ""), soc, soc * 5, voltage * current / 1000,
+            voltage, current, 25 + random.nextDouble() * 10, 92 + random.nextDouble() * 5);
+    }
+
+    /**
+     * Server heap usage from the actuator metrics endpoint, or null when unavailable
+     */
+    private Double fetchServerHeapBytes() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create(config.actuatorUrl() + "/metrics/jvm.memory.used?tag=area:heap"))
+                .timeout(Duration.ofSeconds(5))
+                .GET()
+                .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                logger.warn("Actuator returned {} for heap metric", response.statusCode());
+                return null;
+            }
+            return objectMapper.readTree(response.body()).path("measurements").path(0).path("value").asDouble();
+        } catch (Exception e) {
+            logger.warn("Could not read server heap from actuator: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void report(int connected, Double heapBefore, Double heapAfter) {
+        long expected = 0;
+        for (int siteId = 1; siteId <= config.sites(); siteId++) {
+            expected += publishedPerSite.get(siteId) * subscribersPerSite.get(siteId);
+        }
+        long received = receivedFrames.get();
+
+        StringBuilder summary = new StringBuilder("\n===== WebSocket load test results =====\n");
+        summary.append(String.format("Clients connected:     %d / %d%n", connected, config.clients()));
+        summary.append(String.format("Transport errors:      %d%n", transportErrors.get()));
+        if (heapBefore != null && heapAfter != null && connected > 0) {
+            summary.append(String.format(Locale.ROOT, "Server heap delta:     %.1f MiB (%.1f KiB per connection)%n",
+                (heapAfter - heapBefore) / (1024 * 1024), (heapAfter - heapBefore) / 1024 / connected));
+        } else {
+            summary.append("Server heap delta:     n/a (actuator metrics unavailable)\n");
+        }
+        summary.append(String.format("Frames expected:       %d%n", expected));
+        summary.append(String.format("Frames received:       %d%n", received));
+        summary.append(String.format("Frames dropped:        %d%n", Math.max(0, expected - received)));
+        summary.append(String.format("Latency p50/p90/p99:   %d / %d / %d ms%n",
+            latency.percentile(0.50), latency.percentile(0.90), latency.percentile(0.99)));
+        summary.append(String.format("Latency max:           %d ms%n", latency.getMax()));
+        if (latency.getNegative() > 0) {
+            summary.append(String.format("Negative latencies:    %d (clock skew, counted as 0 ms)%n",
+                latency.getNegative()));
+        }
+        logger.info(summary.toString());
+    }
+
+    private void disconnect(List<StompSession> sessions) {
+        for (StompSession session : sessions) {
+            try {
+                session.disconnect();
+            } catch (Exception e) {
+                logger.debug("Error disconnecting session: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Records delivery latency from the ingestedAt field set by the device service on MQTT arrival
+     */
+    private class TelemetryFrameHandler implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            long receivedAt = System.currentTimeMillis();
+            try {
+                JsonNode ingestedAt = objectMapper.readTree((byte[]) payload).get("ingestedAt");
+                if (ingestedAt == null || ingestedAt.asLong() < runStartedAt) {
+                    return;
+                }
+                receivedFrames.incrementAndGet();
+                latency.record(receivedAt - ingestedAt.asLong());
+            } catch (Exception e) {
+                logger.debug("Could not parse telemetry frame: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -58,15 +58,26 @@ public class AlertController {
     }
     
     /**
-     * Get all alerts with pagination
+     * Get all alerts with pagination. Passing after (empty for the first page) returns newest-first cursor
+     * pages instead, which stay fast at any depth; their total is only counted when includeTotal is set.
      */
     @GetMapping
-    public ResponseEntity<Page<AlertResponse>> getAllAlerts(
+    public ResponseEntity<?> getAllAlerts(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         
         logger.debug("Retrieving alerts - page: {}, size: {}", page, size);
         
+        if (after != null) {
+            try {
+                return ResponseEntity.ok(alertService.getAlertsAfter(after, size, includeTotal));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
         Page<AlertResponse> alerts = alertService.getAllAlerts(pageable);
         
@@ -121,7 +132,7 @@ public class AlertController {
      * Search alerts with filters
      */
     @GetMapping("/search")
-    public ResponseEntity<Page<AlertResponse>> searchAlerts(
+    public ResponseEntity<?> searchAlerts(
             @RequestParam(required = false) Long deviceId,
             @RequestParam(required = false) Long siteId,
             @RequestParam(required = false) String type,
@@ -130,7 +141,9 @@ public class AlertController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
         
         logger.debug("Searching alerts with filters - deviceId: {}, siteId: {}, type: {}, severity: {}", 
                     deviceId, siteId, type, severity);
@@ -143,6 +156,15 @@ public class AlertController {
             endDate = LocalDateTime.now();
         }
         
+        if (after != null) {
+            try {
+                return ResponseEntity.ok(alertService.searchAlertsAfter(
+                    deviceId, siteId, type, severity, acknowledged, startDate, endDate, after, size, includeTotal));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+            }
+        }
+        
         Pageable pageable = PageRequest.of(page, size);
         Page<AlertResponse> alerts = alertService.searchAlerts(
             deviceId, siteId, type, severity, acknowledged, startDate, endDate, pageable);
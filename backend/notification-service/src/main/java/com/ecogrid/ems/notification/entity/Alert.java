@@ -6,7 +6,12 @@ import jakarta.validation.constraints.NotNull;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "alerts")
+@Table(name = "alerts", indexes = {
+    // Keyset pagination: newest first with id as tie-breaker, overall and per device/site
+    @Index(name = "idx_alert_created_id", columnList = "created_at, id"),
+    @Index(name = "idx_alert_device_created_id", columnList = "device_id, created_at, id"),
+    @Index(name = "idx_alert_site_created_id", columnList = "site_id, created_at, id")
+})
 public class Alert {
     
     @Id
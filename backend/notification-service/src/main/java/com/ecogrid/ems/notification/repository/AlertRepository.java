@@ -74,6 +74,73 @@ public interface AlertRepository extends JpaRepository<Alert, Long> {
                                     @Param("endDate") LocalDateTime endDate,
                                     Pageable pageable);
     
+    // First keyset page of alerts, newest first
+    @Query("SELECT a FROM Alert a ORDER BY a.createdAt DESC, a.id DESC")
+    List<Alert> findPage(Pageable pageable);
+    
+    // Keyset page of alerts, newest first, after (afterCreatedAt, afterId)
+    @Query("SELECT a FROM Alert a WHERE " +
+           "a.createdAt <= :afterCreatedAt AND (a.createdAt < :afterCreatedAt OR a.id < :afterId) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Alert> findPageAfter(@Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                              @Param("afterId") long afterId,
+                              Pageable pageable);
+    
+    // First keyset page of findAlertsWithFilters
+    @Query("SELECT a FROM Alert a WHERE " +
+           "(:deviceId IS NULL OR a.deviceId = :deviceId) AND " +
+           "(:siteId IS NULL OR a.siteId = :siteId) AND " +
+           "(:type IS NULL OR a.type LIKE %:type%) AND " +
+           "(:severity IS NULL OR a.severity = :severity) AND " +
+           "(:acknowledged IS NULL OR a.acknowledged = :acknowledged) AND " +
+           "a.createdAt BETWEEN :startDate AND :endDate " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Alert> findAlertsWithFiltersPage(@Param("deviceId") Long deviceId,
+                                          @Param("siteId") Long siteId,
+                                          @Param("type") String type,
+                                          @Param("severity") Alert.AlertSeverity severity,
+                                          @Param("acknowledged") Boolean acknowledged,
+                                          @Param("startDate") LocalDateTime startDate,
+                                          @Param("endDate") LocalDateTime endDate,
+                                          Pageable pageable);
+    
+    // Keyset page of findAlertsWithFilters after (afterCreatedAt, afterId)
+    @Query("SELECT a FROM Alert a WHERE " +
+           "(:deviceId IS NULL OR a.deviceId = :deviceId) AND " +
+           "(:siteId IS NULL OR a.siteId = :siteId) AND " +
+           "(:type IS NULL OR a.type LIKE %:type%) AND " +
+           "(:severity IS NULL OR a.severity = :severity) AND " +
+           "(:acknowledged IS NULL OR a.acknowledged = :acknowledged) AND " +
+           "a.createdAt BETWEEN :startDate AND :endDate AND " +
+           "a.createdAt <= :afterCreatedAt AND (a.createdAt < :afterCreatedAt OR a.id < :afterId) " +
+           "ORDER BY a.createdAt DESC, a.id DESC")
+    List<Alert> findAlertsWithFiltersAfter(@Param("deviceId") Long deviceId,
+                                           @Param("siteId") Long siteId,
+                                           @Param("type") String type,
+                                           @Param("severity") Alert.AlertSeverity severity,
+                                           @Param("acknowledged") Boolean acknowledged,
+                                           @Param("startDate") LocalDateTime startDate,
+                                           @Param("endDate") LocalDateTime endDate,
+                                           @Param("afterCreatedAt") LocalDateTime afterCreatedAt,
+                                           @Param("afterId") long afterId,
+                                           Pageable pageable);
+    
+    // Count of findAlertsWithFilters, for cursor pages that ask for a total
+    @Query("SELECT COUNT(a) FROM Alert a WHERE " +
+           "(:deviceId IS NULL OR a.deviceId = :deviceId) AND " +
+           "(:siteId IS NULL OR a.siteId = :siteId) AND " +
+           "(:type IS NULL OR a.type LIKE %:type%) AND " +
+           "(:severity IS NULL OR a.severity = :severity) AND " +
+           "(:acknowledged IS NULL OR a.acknowledged = :acknowledged) AND " +
+           "a.createdAt BETWEEN :startDate AND :endDate")
+    long countAlertsWithFilters(@Param("deviceId") Long deviceId,
+                                @Param("siteId") Long siteId,
+                                @Param("type") String type,
+                                @Param("severity") Alert.AlertSeverity severity,
+                                @Param("acknowledged") Boolean acknowledged,
+                                @Param("startDate") LocalDateTime startDate,
+                                @Param("endDate") LocalDateTime endDate);
+    
     // Find alerts that need cleanup (older than specified days)
     @Query("SELECT a FROM Alert a WHERE a.createdAt < :cutoffDate AND a.acknowledged = true")
     List<Alert> findAlertsForCleanup(@Param("cutoffDate") LocalDateTime cutoffDate);
@@ -4,15 +4,19 @@ import com.ecogrid.ems.notification.dto.AlertRequest;
 import com.ecogrid.ems.notification.dto.AlertResponse;
 import com.ecogrid.ems.notification.entity.Alert;
 import com.ecogrid.ems.notification.repository.AlertRepository;
+import com.ecogrid.ems.shared.dto.pagination.CursorPage;
+import com.ecogrid.ems.shared.dto.pagination.PageCursor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -23,6 +27,9 @@ public class AlertService {
     
     private static final Logger logger = LoggerFactory.getLogger(AlertService.class);
     
+    // Cursor pages of alerts are always newest first
+    private static final String CURSOR_SORT_KEY = "createdAt";
+    
     @Autowired
     private AlertRepository alertRepository;
     
@@ -74,6 +81,21 @@ public class AlertService {
                 .map(AlertResponse::new);
     }
     
+    /**
+     * Get the page of alerts after a cursor, newest first (the first page when after is blank)
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<AlertResponse> getAlertsAfter(String after, int size, boolean includeTotal) {
+        PageCursor cursor = decodeCursor(after);
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<Alert> alerts = cursor == null
+                ? alertRepository.findPage(page)
+                : alertRepository.findPageAfter(cursorCreatedAt(cursor), cursor.id(), page);
+        Long total = includeTotal ? alertRepository.count() : null;
+        return CursorPage.of(alerts, size, AlertService::cursorAt, AlertResponse::new, total);
+    }
+    
     /**
      * Get alerts by device
      */
@@ -142,6 +164,29 @@ public class AlertService {
                 .map(AlertResponse::new);
     }
     
+    /**
+     * Search alerts with filters, one cursor page at a time, newest first
+     * @throws IllegalArgumentException if the cursor is invalid
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<AlertResponse> searchAlertsAfter(Long deviceId, Long siteId, String type,
+                                                       Alert.AlertSeverity severity, Boolean acknowledged,
+                                                       LocalDateTime startDate, LocalDateTime endDate,
+                                                       String after, int size, boolean includeTotal) {
+        PageCursor cursor = decodeCursor(after);
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<Alert> alerts = cursor == null
+                ? alertRepository.findAlertsWithFiltersPage(
+                        deviceId, siteId, type, severity, acknowledged, startDate, endDate, page)
+                : alertRepository.findAlertsWithFiltersAfter(
+                        deviceId, siteId, type, severity, acknowledged, startDate, endDate,
+                        cursorCreatedAt(cursor), cursor.id(), page);
+        Long total = includeTotal
+                ? alertRepository.countAlertsWithFilters(deviceId, siteId, type, severity, acknowledged, startDate, endDate)
+                : null;
+        return CursorPage.of(alerts, size, AlertService::cursorAt, AlertResponse::new, total);
+    }
+    
     /**
      * Acknowledge an alert
      */
@@ -264,4 +309,23 @@ public class AlertService {
         alertRepository.deleteById(alertId);
         logger.info("Alert ID: {} deleted successfully", alertId);
     }
-}
\ No newline at end of file
+    
+    private static PageCursor decodeCursor(String after) {
+        if (after == null || after.isBlank()) {
+            return null;
+        }
+        return PageCursor.decode(after).requireSort(CURSOR_SORT_KEY, true);
+    }
+    
+    private static LocalDateTime cursorCreatedAt(PageCursor cursor) {
+        try {
+            return LocalDateTime.parse(cursor.sortValue());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid page cursor", e);
+        }
+    }
+    
+    private static PageCursor cursorAt(Alert alert) {
+        return new PageCursor(CURSOR_SORT_KEY, true, alert.getCreatedAt().toString(), alert.getId());
+    }
+}
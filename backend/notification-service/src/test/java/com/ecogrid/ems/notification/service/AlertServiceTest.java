@@ -4,6 +4,8 @@ import com.ecogrid.ems.notification.dto.AlertRequest;
 import com.ecogrid.ems.notification.dto.AlertResponse;
 import com.ecogrid.ems.notification.entity.Alert;
 import com.ecogrid.ems.notification.repository.AlertRepository;
+import com.ecogrid.ems.shared.dto.pagination.CursorPage;
+import com.ecogrid.ems.shared.dto.pagination.PageCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -118,6 +120,57 @@ class AlertServiceTest {
         verify(alertRepository).findAll(pageable);
     }
     
+    @Test
+    void getAlertsAfter_ShouldContinueFromCursorAndReturnNextCursor() {
+        // Given
+        LocalDateTime createdAt = LocalDateTime.of(2026, 10, 19, 12, 0);
+        Alert second = new Alert(1L, 1L, "TEMPERATURE_HIGH", Alert.AlertSeverity.HIGH, "Temperature alert");
+        second.setId(7L);
+        second.setCreatedAt(createdAt.minusMinutes(1));
+        Alert extra = new Alert(1L, 1L, "TEMPERATURE_HIGH", Alert.AlertSeverity.HIGH, "Temperature alert");
+        extra.setId(6L);
+        extra.setCreatedAt(createdAt.minusMinutes(2));
+        String after = new PageCursor("createdAt", true, createdAt.toString(), 9L).encode();
+        
+        when(alertRepository.findPageAfter(createdAt, 9L, PageRequest.of(0, 2))).thenReturn(List.of(second, extra));
+        
+        // When
+        CursorPage<AlertResponse> result = alertService.getAlertsAfter(after, 1, false);
+        
+        // Then
+        assertEquals(1, result.content().size());
+        assertEquals(7L, result.content().get(0).getId());
+        assertTrue(result.hasNext());
+        assertEquals(7L, PageCursor.decode(result.nextCursor()).id());
+        assertNull(result.totalElements());
+        verify(alertRepository, never()).count();
+    }
+    
+    @Test
+    void getAlertsAfter_WithoutCursor_ShouldReadFirstPageWithoutSeekPredicate() {
+        // Given
+        testAlert.setCreatedAt(LocalDateTime.of(2026, 10, 19, 12, 0));
+        when(alertRepository.findPage(PageRequest.of(0, 21))).thenReturn(List.of(testAlert));
+        
+        // When
+        CursorPage<AlertResponse> result = alertService.getAlertsAfter(null, 20, false);
+        
+        // Then
+        assertEquals(1, result.content().size());
+        assertFalse(result.hasNext());
+        verify(alertRepository, never()).findPageAfter(any(), anyLong(), any());
+    }
+    
+    @Test
+    void getAlertsAfter_WithCursorOfAnotherSort_ShouldThrowException() {
+        // Given
+        String after = new PageCursor("name", false, "Site 1", 3L).encode();
+        
+        // When & Then
+        assertThrows(IllegalArgumentException.class, () -> alertService.getAlertsAfter(after, 20, false));
+        verifyNoInteractions(alertRepository);
+    }
+    
     @Test
     void getAlertsByDevice_ShouldReturnDeviceAlerts() {
         // Given
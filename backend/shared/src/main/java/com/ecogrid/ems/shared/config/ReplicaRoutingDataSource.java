@@ -0,0 +1,124 @@
+package com.ecogrid.ems.shared.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Routes connections of read-only transactions to a healthy replica and everything else to the primary.
+ *
+ * Replicas that cannot be reached or replay more than maxLag behind the primary are skipped until the
+ * next lag check finds them caught up; without a healthy replica, reads fall back to the primary. The
+ * route is chosen when a connection is first used, so this must sit behind a LazyConnectionDataSourceProxy.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    public static final String PRIMARY = "primary";
+
+    // Seconds the replica is behind; 0 when it has replayed everything it received or is not a standby, and
+    // null when it is not streaming from the primary, since replaying all it received then says nothing.
+    // The receiver status is hidden without pg_read_all_stats, in which case a running receiver counts.
+    private static final String LAG_QUERY =
+        "SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+        "WHEN NOT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE coalesce(status, 'streaming') = 'streaming') " +
+        "THEN NULL " +
+        "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+        "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END";
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Duration maxLag;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, Duration maxLag) {
+        this.maxLag = maxLag;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach((name, dataSource) -> {
+            targets.put(name, dataSource);
+            this.replicas.add(new Replica(name, new JdbcTemplate(dataSource)));
+        });
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkReplicaLag();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        List<Replica> healthy = replicas.stream().filter(replica -> replica.healthy).toList();
+        if (healthy.isEmpty()) {
+            return PRIMARY;
+        }
+        return healthy.get(Math.floorMod(nextReplica.getAndIncrement(), healthy.size())).name;
+    }
+
+    /**
+     * Re-check every replica's replay lag and update which ones take reads
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-interval-ms:5000}")
+    public void checkReplicaLag() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            String reason;
+            try {
+                Double lagSeconds = replica.jdbcTemplate.queryForObject(LAG_QUERY, Double.class);
+                healthy = lagSeconds != null && lagSeconds * 1000 <= maxLag.toMillis();
+                reason = lagSeconds == null ? "not streaming from the primary or nothing replayed yet"
+                    : "lag " + lagSeconds + "s";
+            } catch (DataAccessException e) {
+                healthy = false;
+                reason = e.getMostSpecificCause().getMessage();
+            }
+            if (healthy != replica.healthy) {
+                if (healthy) {
+                    logger.info("Replica {} is back in read rotation", replica.name);
+                } else {
+                    logger.warn("Replica {} removed from read rotation: {}", replica.name, reason);
+                }
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    /**
+     * Names of the replicas currently taking reads
+     */
+    public List<String> getHealthyReplicas() {
+        return replicas.stream().filter(replica -> replica.healthy).map(replica -> replica.name).toList();
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final JdbcTemplate jdbcTemplate;
+        private volatile boolean healthy = true;
+
+        Replica(String name, JdbcTemplate jdbcTemplate) {
+            this.name = name;
+            this.jdbcTemplate = jdbcTemplate;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.ecogrid.ems.shared.dto.pagination;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (cursor) listing. nextCursor is null on the last page; totalElements is only
+ * present when the client asked for it, since counting is what makes deep offset pages slow.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CursorPage<T>(
+        @JsonProperty("content") List<T> content,
+
+        @JsonProperty("size") int size,
+
+        @JsonProperty("hasNext") boolean hasNext,
+
+        @JsonProperty("nextCursor") String nextCursor,
+
+        @JsonProperty("totalElements") Long totalElements) {
+
+    /**
+     * Build a page from up to size + 1 rows read after the cursor; the extra row only signals a next page
+     * @param cursorOf cursor positioned at a row
+     */
+    public static <R, T> CursorPage<T> of(List<R> rows, int size, Function<R, PageCursor> cursorOf,
+                                          Function<R, T> mapper, Long totalElements) {
+        boolean hasNext = rows.size() > size;
+        List<R> pageRows = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(pageRows.get(size - 1)).encode() : null;
+        return new CursorPage<>(pageRows.stream().map(mapper).toList(), size, hasNext, nextCursor, totalElements);
+    }
+}
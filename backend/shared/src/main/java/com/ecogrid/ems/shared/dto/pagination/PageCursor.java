@@ -0,0 +1,47 @@
+package com.ecogrid.ems.shared.dto.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position after the last row of a keyset page: the sort key and direction the page was read with, the
+ * last row's sort value and its ID as tie-breaker.
+ *
+ * Clients only see the opaque URL-safe token from {@link #encode()} and pass it back as {@code after}.
+ */
+public record PageCursor(String sortKey, boolean descending, String sortValue, long id) {
+
+    private static final String VERSION = "c1";
+
+    public String encode() {
+        String raw = String.join("|", VERSION, sortKey, descending ? "desc" : "asc", Long.toString(id), sortValue);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // The sort value goes last so it may contain the separator
+            String[] parts = raw.split("\\|", 5);
+            if (parts.length != 5 || !VERSION.equals(parts[0]) || !(parts[2].equals("asc") || parts[2].equals("desc"))) {
+                throw new IllegalArgumentException("Invalid page cursor");
+            }
+            return new PageCursor(parts[1], parts[2].equals("desc"), parts[4], Long.parseLong(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page cursor", e);
+        }
+    }
+
+    /**
+     * Reject a cursor taken from a listing with a different order
+     */
+    public PageCursor requireSort(String expectedSortKey, boolean expectedDescending) {
+        if (!sortKey.equals(expectedSortKey) || descending != expectedDescending) {
+            throw new IllegalArgumentException("Page cursor was issued for a different sort order");
+        }
+        return this;
+    }
+}
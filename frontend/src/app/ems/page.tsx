@@ -4,6 +4,7 @@ import { useRouter, useSearchParams } from "next/navigation";
 import EnergyFlowDiagram from "@/components/EnergyFlowDiagram";
 import Topbar from "@/components/Topbar";
 import { SiteSelector } from "@/components/SiteSelector";
+import TelemetryTrendChart from "@/components/TelemetryTrendChart";
 import { useSiteOptions } from "@/hooks/useSiteOptions";
 import { useSiteOverview } from "@/hooks/useSiteOverview";
 import {
@@ -87,7 +88,9 @@ const EMSPageContent: React.FC = () => {
     };
 
     // Fetch site overview data based on selected site
-    const { data: siteOverview } = useSiteOverview({ siteId: selectedSiteId });
+    const { data: siteOverview, history } = useSiteOverview({
+        siteId: selectedSiteId,
+    });
 
     // Extract battery system data from site overview
     const batteryDevices =
@@ -343,6 +346,33 @@ const EMSPageContent: React.FC = () => {
                     </div>
                 </section>
 
+                {/* Live Trends */}
+                <section className="mb-8">
+                    <h2 className="text-2xl font-bold mb-4">Live Trends</h2>
+                    <div className="grid grid-cols-1 md:grid-cols-2 lg:grid-cols-3 gap-6">
+                        <TelemetryTrendChart
+                            points={batteryDevices[0] && history[batteryDevices[0].id]}
+                            field="soc"
+                            label="State of Charge (SoC)"
+                            unit="%"
+                        />
+                        <TelemetryTrendChart
+                            points={solarDevices[0] && history[solarDevices[0].id]}
+                            field="currentOutput"
+                            label="Solar Output"
+                            unit="kW"
+                            color="#ff9800"
+                        />
+                        <TelemetryTrendChart
+                            points={evDevices[0] && history[evDevices[0].id]}
+                            field="powerDelivered"
+                            label="EV Power Delivered"
+                            unit="kW"
+                            color="#2196f3"
+                        />
+                    </div>
+                </section>
+
                 {/* Battery Management System */}
                 <section className="mb-8">
                     <h2 className="text-2xl font-bold mb-4">
@@ -0,0 +1,56 @@
+"use client";
+import React from "react";
+import { LineChart, Line, XAxis, YAxis, Tooltip, ResponsiveContainer } from "recharts";
+import { TelemetryHistoryPoint } from "@/lib/types";
+
+export interface TelemetryTrendChartProps {
+    points: TelemetryHistoryPoint[] | undefined;
+    field: string;
+    label: string;
+    unit?: string;
+    color?: string;
+}
+
+const formatTime = (time: number) =>
+    new Date(time).toLocaleTimeString("en-US", { hour: "2-digit", minute: "2-digit" });
+
+/**
+ * Recent trend of one telemetry field of a device, from the site overview's live history
+ */
+const TelemetryTrendChart: React.FC<TelemetryTrendChartProps> = ({
+    points,
+    field,
+    label,
+    unit = "",
+    color = "#4caf50",
+}) => {
+    const data = (points ?? []).filter((point) => point[field] != null);
+
+    return (
+        <div className="bg-slate-800/50 p-6 rounded-xl border border-green-500/20 backdrop-blur">
+            <h3 className="text-green-400 text-sm font-semibold mb-4">{label}</h3>
+            {data.length === 0 ? (
+                <p className="text-sm text-slate-400">Waiting for telemetry…</p>
+            ) : (
+                <div style={{ width: "100%", height: 160 }}>
+                    <ResponsiveContainer>
+                        <LineChart data={data} margin={{ top: 5, right: 10, left: 0, bottom: 5 }}>
+                            <XAxis dataKey="time" type="number" domain={["dataMin", "dataMax"]}
+                                tickFormatter={formatTime} stroke="#ffffff" />
+                            <YAxis stroke="#ffffff" domain={["auto", "auto"]} />
+                            <Tooltip
+                                labelFormatter={(time) => formatTime(Number(time))}
+                                formatter={(value) => [`${Number(value).toFixed(1)} ${unit}`, label]}
+                                contentStyle={{ backgroundColor: "#1e293b", borderRadius: "8px", color: "#ffffff" }}
+                            />
+                            <Line type="monotone" dataKey={field} stroke={color} strokeWidth={2}
+                                dot={false} isAnimationActive={false} />
+                        </LineChart>
+                    </ResponsiveContainer>
+                </div>
+            )}
+        </div>
+    );
+};
+
+export default TelemetryTrendChart;
@@ -1,7 +1,14 @@
 import { useState, useEffect, useCallback, useRef, use } from "react";
 import { Client, IMessage, StompSubscription } from "@stomp/stompjs";
-import { SiteOverview } from "@/lib/types";
+import { SiteOverview, TelemetryHistoryPoint } from "@/lib/types";
 import { API_CONFIG, SiteService } from "@/lib/api";
+import {
+    DEFAULT_HISTORY_WINDOW_MILLIS,
+    decodeBackfillFrame,
+    mergeHistory,
+    toHistoryPoint,
+    toHistoryPoints,
+} from "@/lib/telemetryHistory";
 
 interface UseSiteOverviewOptions {
     siteId: number | null;
@@ -11,6 +18,7 @@ interface UseSiteOverviewReturn {
     data: SiteOverview | null;
     loading: boolean;
     error: string | null;
+    history: Record<number, TelemetryHistoryPoint[]>;
     refetch: () => Promise<void>;
 }
 
@@ -18,7 +26,8 @@ interface UseSiteOverviewReturn {
  * Custom hook for fetching and managing site overview data
  *
  * @param options - Configuration options including siteId and optional refresh interval
- * @returns Object containing data, loading state, error state, and refetch function
+ * @returns Object containing data, loading state, error state, recent telemetry history per device
+ * (backfilled on subscribe, then extended by live updates), and refetch function
  */
 export function useSiteOverview({
     siteId,
@@ -26,6 +35,10 @@ export function useSiteOverview({
     const [data, setData] = useState<SiteOverview | null>(null);
     const [loading, setLoading] = useState<boolean>(false);
     const [error, setError] = useState<string | null>(null);
+    const [history, setHistory] = useState<
+        Record<number, TelemetryHistoryPoint[]>
+    >({});
+    const historyWindowRef = useRef<number>(DEFAULT_HISTORY_WINDOW_MILLIS);
     const siteIdRef = useRef<number | null>(siteId);
     const stompClientRef = useRef<Client | null>(null);
     const subscriptionRef = useRef<StompSubscription | null>(null);
@@ -53,9 +66,49 @@ export function useSiteOverview({
             setLoading(false);
         }
     }, [siteId]);
+    const handleBackfill = useCallback(async (message: IMessage) => {
+        try {
+            const frame = await decodeBackfillFrame(message.body);
+            if (frame.siteId !== siteIdRef.current) return;
+            historyWindowRef.current =
+                frame.windowMillis || DEFAULT_HISTORY_WINDOW_MILLIS;
+            setHistory((prev) => {
+                const next = { ...prev };
+                for (const device of frame.devices) {
+                    next[device.deviceId] = mergeHistory(
+                        prev[device.deviceId],
+                        toHistoryPoints(device),
+                        historyWindowRef.current
+                    );
+                }
+                return next;
+            });
+        } catch (err) {
+            console.error("[STOMP] Error decoding history backfill:", err);
+        }
+    }, []);
+
     const handleStompMessage = useCallback((message: IMessage) => {
+        // History backfill frames (gzip+base64) seed the charts, they are not live device updates
+        if (message.headers["message-type"] === "backfill") {
+            handleBackfill(message);
+            return;
+        }
         try {
             const payload = JSON.parse(message.body);
+            const time = Date.parse(
+                payload.telemetry?.timestamp ?? payload.timestamp
+            );
+            if (typeof payload.deviceId === "number" && !isNaN(time)) {
+                setHistory((prev) => ({
+                    ...prev,
+                    [payload.deviceId]: mergeHistory(
+                        prev[payload.deviceId],
+                        [toHistoryPoint(time, payload.telemetry ?? {})],
+                        historyWindowRef.current
+                    ),
+                }));
+            }
             // Check if siteId and device id match
 
             setData((prev) => {
@@ -103,7 +156,7 @@ export function useSiteOverview({
         } catch (err) {
             console.error("[STOMP] Error parsing message:", err);
         }
-    }, []);
+    }, [handleBackfill]);
 
     // Fetch data when siteId changes
     useEffect(() => {
@@ -115,6 +168,7 @@ export function useSiteOverview({
             return;
         }
         siteIdRef.current = siteId;
+        setHistory({});
         if (!subscriptionRef.current) {
             return;
         }
@@ -175,6 +229,7 @@ export function useSiteOverview({
         data,
         loading,
         error,
+        history,
         refetch,
     };
 }
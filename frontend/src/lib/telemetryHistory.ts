@@ -0,0 +1,82 @@
+import {
+    TelemetryBackfillDevice,
+    TelemetryBackfillFrame,
+    TelemetryHistoryPoint,
+} from "./types";
+
+export const DEFAULT_HISTORY_WINDOW_MILLIS = 15 * 60 * 1000;
+
+/**
+ * Decode a history backfill frame body: base64 of gzip-compressed JSON
+ */
+export async function decodeBackfillFrame(
+    body: string
+): Promise<TelemetryBackfillFrame> {
+    const bytes = Uint8Array.from(atob(body), (c) => c.charCodeAt(0));
+    const stream = new Blob([bytes])
+        .stream()
+        .pipeThrough(new DecompressionStream("gzip"));
+    const json = await new Response(stream).text();
+    return JSON.parse(json) as TelemetryBackfillFrame;
+}
+
+/**
+ * Expand a device's columnar series (start time, deltas, one array per field) into chart points
+ */
+export function toHistoryPoints(
+    device: TelemetryBackfillDevice
+): TelemetryHistoryPoint[] {
+    const points: TelemetryHistoryPoint[] = [];
+    let time = device.start;
+    for (let i = 0; i <= device.deltas.length; i++) {
+        if (i > 0) {
+            time += device.deltas[i - 1];
+        }
+        const point: TelemetryHistoryPoint = { time };
+        for (const [field, values] of Object.entries(device.series)) {
+            point[field] = values[i] ?? null;
+        }
+        points.push(point);
+    }
+    return points;
+}
+
+/**
+ * Chart point of a live telemetry sample, keeping its numeric readings only
+ */
+export function toHistoryPoint(
+    time: number,
+    telemetry: Record<string, unknown>
+): TelemetryHistoryPoint {
+    const point: TelemetryHistoryPoint = { time };
+    for (const [field, value] of Object.entries(telemetry)) {
+        if (typeof value === "number" && field !== "deviceId") {
+            point[field] = value;
+        }
+    }
+    return point;
+}
+
+/**
+ * Merge points into a device's history: ordered by time, one point per time (existing points win),
+ * and nothing older than the window before the newest point
+ */
+export function mergeHistory(
+    existing: TelemetryHistoryPoint[] | undefined,
+    incoming: TelemetryHistoryPoint[],
+    windowMillis: number
+): TelemetryHistoryPoint[] {
+    const byTime = new Map<number, TelemetryHistoryPoint>();
+    for (const point of incoming) {
+        byTime.set(point.time, point);
+    }
+    for (const point of existing ?? []) {
+        byTime.set(point.time, point);
+    }
+    const merged = Array.from(byTime.values()).sort((a, b) => a.time - b.time);
+    if (merged.length === 0) {
+        return merged;
+    }
+    const cutoff = merged[merged.length - 1].time - windowMillis;
+    return merged.filter((point) => point.time >= cutoff);
+}
@@ -173,6 +173,25 @@ export interface ChargerData {
     connectorType: string;
 }
 
+// Recent telemetry of one device, oldest first; time is epoch millis and a null value is a missing reading
+export type TelemetryHistoryPoint = { time: number } & Record<string, number | null>;
+
+// History backfill frame sent once to a new subscriber of a site topic (gzip+base64 on the wire)
+export interface TelemetryBackfillFrame {
+    type: "backfill";
+    siteId: number;
+    windowMillis: number;
+    devices: TelemetryBackfillDevice[];
+}
+
+export interface TelemetryBackfillDevice {
+    deviceId: number;
+    deviceType: string;
+    start: number;
+    deltas: number[];
+    series: Record<string, (number | null)[]>;
+}
+
 export interface SiteSummary {
     totalDevices: number;
     onlineDevices: number;
@@ -3,7 +3,10 @@ Weekly Database Cleanup Utility for EMS
 
 This script connects to the EMS Postgres databases and performs cleanup:
 - Deletes all records from ems_notifications.alerts
-- Deletes records from ems_devices.device_telemetry older than 7 days
+
+- Deletes records from ems_devices.device_telemetry older than 7 days, but only when
+  TELEMETRY_PARTITIONS_ENABLED=false; otherwise device-service enforces retention by
+  dropping whole daily partitions (app.telemetry.partitions.retention-days).
 
 Intended to be run as a cronjob every 7 days.
 """
@@ -50,10 +53,13 @@ def cleanup_device_telemetry():
             print("Deleted old records from ems_devices.device_telemetry")
     conn.close()
 
+def telemetry_partitioning_enabled():
+    return os.getenv("TELEMETRY_PARTITIONS_ENABLED", "true").lower() != "false"
 
 def run_once():
     cleanup_alerts()
-    cleanup_device_telemetry()
+    if not telemetry_partitioning_enabled():
+        cleanup_device_telemetry()
 
 def run_cron():
     if schedule is None: